@@ -0,0 +1,95 @@
+package net.ripe.rpki.bgpris;
+
+import net.ripe.ipresource.Asn;
+import net.ripe.ipresource.IpRange;
+import net.ripe.ipresource.IpResourceSet;
+import net.ripe.rpki.server.api.dto.BgpRisEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up the announcements relevant to the resources of a member, as done for the ROA suggestions and alerts of
+ * every CA. The repository is loaded with a synthetic RIS dump of realistic size, mostly /24 IPv4 and /48 IPv6
+ * announcements with their covering aggregates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BgpRisEntryLookupBenchmark {
+
+    private static final int LOOKUP_SETS = 1024;
+
+    @Param({"100000", "1000000"})
+    public int entryCount;
+
+    private BgpRisEntryRepositoryBean repository;
+    private BgpRisEntry[] entries;
+    private IpResourceSet[] memberResources;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(entryCount);
+        entries = new BgpRisEntry[entryCount];
+        for (int i = 0; i < entryCount; ++i) {
+            Asn origin = new Asn(1 + random.nextInt(400_000));
+            int visibility = 5 + random.nextInt(300);
+            if (i % 16 == 0) {
+                entries[i] = new BgpRisEntry(origin, IpRange.parse(String.format("%d.%d.0.0/16", 1 + (i >> 12) % 222, (i >> 4) & 0xff)), visibility);
+            } else if (i % 4 == 0) {
+                entries[i] = new BgpRisEntry(origin, IpRange.parse(String.format("2a%02x:%x:%x::/48", (i >> 24) & 0xff, (i >> 8) & 0xffff, i & 0xff)), visibility);
+            } else {
+                entries[i] = new BgpRisEntry(origin, IpRange.parse(String.format("%d.%d.%d.0/24", 1 + (i >> 16) % 222, (i >> 8) & 0xff, i & 0xff)), visibility);
+            }
+        }
+        repository = new BgpRisEntryRepositoryBean();
+        repository.resetEntries(Arrays.asList(entries));
+
+        memberResources = new IpResourceSet[LOOKUP_SETS];
+        for (int i = 0; i < LOOKUP_SETS; ++i) {
+            int firstOctet = 1 + random.nextInt(Math.min(222, (entryCount >> 16) + 1));
+            int ipv6Block = random.nextInt(Math.min(0x10000, (entryCount >> 8) + 1));
+            memberResources[i] = IpResourceSet.parse(String.format("%d.%d.0.0/20, 2a00:%x::/32", firstOctet, random.nextInt(256), ipv6Block));
+        }
+    }
+
+    @Benchmark
+    public BgpRisEntryRepositoryBean resetEntries() {
+        BgpRisEntryRepositoryBean result = new BgpRisEntryRepositoryBean();
+        result.resetEntries(Arrays.asList(entries));
+        return result;
+    }
+
+    @Benchmark
+    public Collection<BgpRisEntry> findMostSpecificOverlapping() {
+        return repository.findMostSpecificOverlapping(nextMemberResources());
+    }
+
+    @Benchmark
+    public Map<Boolean, Collection<BgpRisEntry>> findMostSpecificContainedAndNotContained() {
+        return repository.findMostSpecificContainedAndNotContained(nextMemberResources());
+    }
+
+    private IpResourceSet nextMemberResources() {
+        next = (next + 1) % LOOKUP_SETS;
+        return memberResources[next];
+    }
+}
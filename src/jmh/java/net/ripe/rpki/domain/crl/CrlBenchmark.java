@@ -0,0 +1,71 @@
+package net.ripe.rpki.domain.crl;
+
+import net.ripe.rpki.commons.crypto.crl.X509Crl;
+import net.ripe.rpki.commons.crypto.crl.X509CrlBuilder;
+import net.ripe.rpki.commons.crypto.util.PregeneratedKeyPairFactory;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.security.auth.x500.X500Principal;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing a CRL, as done by {@link CrlEntity#update} for every CA on each manifest and CRL renewal. The number of
+ * revoked entries ranges from a member CA to the production CA after many key rolls and resource changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CrlBenchmark {
+
+    @Param({"0", "1000", "100000"})
+    public int revokedCount;
+
+    private KeyPair keyPair;
+    private DateTime thisUpdateTime;
+    private BigInteger[] serials;
+    private DateTime[] revocationTimes;
+
+    @Setup
+    public void setUp() {
+        keyPair = PregeneratedKeyPairFactory.getInstance().generate();
+        thisUpdateTime = new DateTime(DateTimeZone.UTC).withMillisOfSecond(0);
+        serials = new BigInteger[revokedCount];
+        revocationTimes = new DateTime[revokedCount];
+        for (int i = 0; i < revokedCount; ++i) {
+            serials[i] = BigInteger.valueOf(1_000_000L + i * 7L);
+            revocationTimes[i] = thisUpdateTime.minusMinutes(i);
+        }
+    }
+
+    @Benchmark
+    public X509Crl buildCrl() {
+        X509CrlBuilder builder = new X509CrlBuilder();
+        for (int i = 0; i < revokedCount; ++i) {
+            builder.addEntry(serials[i], revocationTimes[i]);
+        }
+        builder.withAuthorityKeyIdentifier(keyPair.getPublic());
+        builder.withIssuerDN(new X500Principal("CN=issuer"));
+        builder.withThisUpdateTime(thisUpdateTime);
+        builder.withNextUpdateTime(thisUpdateTime.plusHours(24));
+        builder.withNumber(BigInteger.TEN);
+        builder.withSignatureProvider("SunRsaSign");
+        return builder.build(keyPair.getPrivate());
+    }
+}
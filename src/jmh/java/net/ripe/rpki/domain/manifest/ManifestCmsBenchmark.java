@@ -0,0 +1,93 @@
+package net.ripe.rpki.domain.manifest;
+
+import net.ripe.ipresource.IpResourceType;
+import net.ripe.rpki.commons.crypto.ValidityPeriod;
+import net.ripe.rpki.commons.crypto.cms.manifest.ManifestCms;
+import net.ripe.rpki.commons.crypto.cms.manifest.ManifestCmsBuilder;
+import net.ripe.rpki.commons.crypto.util.PregeneratedKeyPairFactory;
+import net.ripe.rpki.commons.crypto.x509cert.X509ResourceCertificate;
+import net.ripe.rpki.commons.crypto.x509cert.X509ResourceCertificateBuilder;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.security.auth.x500.X500Principal;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing a manifest, as done by {@link ManifestEntity#update} for every CA whose published objects changed. The
+ * number of entries ranges from a typical member CA to the production CA with all its child certificates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ManifestCmsBenchmark {
+
+    @Param({"10", "1000", "25000"})
+    public int fileCount;
+
+    private KeyPair eeKeyPair;
+    private X509ResourceCertificate eeCertificate;
+    private String[] fileNames;
+    private byte[][] fileContents;
+
+    @Setup
+    public void setUp() {
+        DateTime now = new DateTime(DateTimeZone.UTC);
+        KeyPair caKeyPair = PregeneratedKeyPairFactory.getInstance().generate();
+        eeKeyPair = PregeneratedKeyPairFactory.getInstance().generate();
+        eeCertificate = new X509ResourceCertificateBuilder()
+            .withCa(false)
+            .withKeyUsage(KeyUsage.digitalSignature)
+            .withIssuerDN(new X500Principal("CN=issuer"))
+            .withSubjectDN(new X500Principal("CN=manifest"))
+            .withSerial(BigInteger.ONE)
+            .withPublicKey(eeKeyPair.getPublic())
+            .withSigningKeyPair(caKeyPair)
+            .withAuthorityKeyIdentifier(true)
+            .withInheritedResourceTypes(EnumSet.allOf(IpResourceType.class))
+            .withValidityPeriod(new ValidityPeriod(now, now.plusDays(1)))
+            .build();
+
+        Random random = new Random(fileCount);
+        fileNames = new String[fileCount];
+        fileContents = new byte[fileCount][];
+        for (int i = 0; i < fileCount; ++i) {
+            fileNames[i] = "object-" + i + (i % 2 == 0 ? ".cer" : ".roa");
+            fileContents[i] = new byte[1024 + random.nextInt(1024)];
+            random.nextBytes(fileContents[i]);
+        }
+    }
+
+    @Benchmark
+    public ManifestCms buildManifest() {
+        ManifestCmsBuilder builder = new ManifestCmsBuilder();
+        for (int i = 0; i < fileCount; ++i) {
+            builder.addFile(fileNames[i], fileContents[i]);
+        }
+        builder.withCertificate(eeCertificate);
+        builder.withManifestNumber(BigInteger.TEN);
+        builder.withThisUpdateTime(eeCertificate.getValidityPeriod().getNotValidBefore());
+        builder.withNextUpdateTime(eeCertificate.getValidityPeriod().getNotValidAfter());
+        builder.withSignatureProvider("SunRsaSign");
+        return builder.build(eeKeyPair.getPrivate());
+    }
+}
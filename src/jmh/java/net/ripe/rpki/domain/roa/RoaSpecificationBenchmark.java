@@ -0,0 +1,94 @@
+package net.ripe.rpki.domain.roa;
+
+import net.ripe.ipresource.Asn;
+import net.ripe.ipresource.IpRange;
+import net.ripe.ipresource.IpResourceSet;
+import net.ripe.rpki.commons.crypto.ValidityPeriod;
+import net.ripe.rpki.commons.crypto.util.PregeneratedKeyPairFactory;
+import net.ripe.rpki.commons.crypto.x509cert.X509ResourceCertificate;
+import net.ripe.rpki.commons.crypto.x509cert.X509ResourceCertificateBuilder;
+import net.ripe.rpki.domain.IncomingResourceCertificate;
+import net.ripe.rpki.domain.ManagedCertificateAuthority;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.security.auth.x500.X500Principal;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Grouping the ROA configuration of a CA into one ROA specification per origin AS, as done by the ROA entity service
+ * before deciding which ROAs must be (re-)issued. The incoming certificate is pre-parsed, so only the grouping and
+ * the resource containment checks are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoaSpecificationBenchmark {
+
+    @Param({"10", "1000", "20000"})
+    public int prefixCount;
+
+    private RoaConfiguration roaConfiguration;
+    private IncomingResourceCertificate incomingCertificate;
+
+    @Setup
+    public void setUp() {
+        DateTime now = new DateTime(DateTimeZone.UTC);
+        KeyPair keyPair = PregeneratedKeyPairFactory.getInstance().generate();
+        X509ResourceCertificate certificate = new X509ResourceCertificateBuilder()
+            .withCa(true)
+            .withKeyUsage(KeyUsage.keyCertSign | KeyUsage.cRLSign)
+            .withIssuerDN(new X500Principal("CN=issuer"))
+            .withSubjectDN(new X500Principal("CN=member"))
+            .withSerial(BigInteger.ONE)
+            .withPublicKey(keyPair.getPublic())
+            .withSigningKeyPair(keyPair)
+            .withResources(IpResourceSet.parse("AS64496-AS64511, 10.0.0.0/8, 2001:db8::/32"))
+            .withValidityPeriod(new ValidityPeriod(now, now.plusYears(1)))
+            .build();
+
+        incomingCertificate = mock(IncomingResourceCertificate.class);
+        when(incomingCertificate.getCertificate()).thenReturn(certificate);
+
+        Random random = new Random(prefixCount);
+        List<RoaConfigurationPrefix> prefixes = new ArrayList<>(prefixCount);
+        for (int i = 0; i < prefixCount; ++i) {
+            Asn asn = new Asn(64496 + random.nextInt(16));
+            if (i % 4 == 0) {
+                prefixes.add(new RoaConfigurationPrefix(asn, IpRange.parse(String.format("2001:db8:%x::/48", i)), i % 8 == 0 ? null : 56));
+            } else {
+                prefixes.add(new RoaConfigurationPrefix(asn, IpRange.parse(String.format("10.%d.%d.0/24", (i >> 8) & 0xff, i & 0xff)), null));
+            }
+        }
+        roaConfiguration = new RoaConfiguration(mock(ManagedCertificateAuthority.class), prefixes);
+    }
+
+    @Benchmark
+    public Map<Asn, RoaSpecification> toRoaSpecifications() {
+        return roaConfiguration.toRoaSpecifications(incomingCertificate);
+    }
+}
@@ -0,0 +1,94 @@
+package net.ripe.rpki.publication.server;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.publication.api.PublicationMessage;
+import net.ripe.rpki.publication.api.PublicationMessage.PublishRequest;
+import net.ripe.rpki.publication.api.PublicationMessage.WithdrawRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a publication query and decoding the reply in {@link ExternalPublishingServer}, with the network replaced
+ * by a client that discards the query and returns a canned reply acknowledging every message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PublicationXmlBenchmark {
+
+    private static final URI PUBLICATION_SERVER_URL = URI.create("http://localhost:7788/");
+    private static final String REPOSITORY = "rsync://rpki.example.net/repository/";
+
+    // Keeps all messages in a single batch of at most ExternalPublishingServer.DEFAULT_MAX_BATCH_SIZE_BYTES
+    @Param({"100", "5000"})
+    public int messageCount;
+
+    private ExternalPublishingServer publishingServer;
+    private List<PublicationMessage> messages;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(messageCount);
+        messages = new ArrayList<>(messageCount);
+        StringBuilder reply = new StringBuilder("<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\">");
+        for (int i = 0; i < messageCount; ++i) {
+            URI uri = URI.create(REPOSITORY + "ca-" + (i / 10) + "/object-" + i + ".roa");
+            if (i % 10 == 9) {
+                messages.add(new WithdrawRequest(uri, String.format("%064x", i)));
+                reply.append("<withdraw uri=\"").append(uri).append("\"/>\n");
+            } else {
+                byte[] content = new byte[1024 + random.nextInt(1024)];
+                random.nextBytes(content);
+                messages.add(new PublishRequest(uri, content, i % 3 == 0 ? Optional.empty() : Optional.of(String.format("%064x", i))));
+                reply.append("<publish uri=\"").append(uri).append("\"/>\n");
+            }
+        }
+        reply.append("</msg>");
+
+        byte[] replyBytes = reply.toString().getBytes(StandardCharsets.UTF_8);
+        PublishingServerClient client = new PublishingServerClient(null) {
+            @Override
+            public Flux<DataBuffer> publish(URI publishingServerUrl, Flux<DataBuffer> query, String clientId) {
+                query.doOnNext(DataBufferUtils::release).blockLast();
+                return Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(replyBytes));
+            }
+        };
+        publishingServer = new ExternalPublishingServer(
+            client,
+            new SimpleMeterRegistry(),
+            PUBLICATION_SERVER_URL,
+            ExternalPublishingServer.DEFAULT_MAX_BATCH_SIZE_BYTES,
+            0,
+            Duration.ZERO);
+    }
+
+    @Benchmark
+    public List<? extends PublicationMessage> execute() {
+        return publishingServer.execute(messages, "benchmark");
+    }
+}
@@ -0,0 +1,96 @@
+package net.ripe.rpki.services.impl.background;
+
+import net.ripe.ipresource.IpResourceSet;
+import net.ripe.rpki.server.api.support.objects.CaName;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparing the registry resources with the local resource cache, as done by {@link ResourceCacheService} on every
+ * update to decide whether the change is acceptable. One percent of the members have changed resources, and a few
+ * members were added and removed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourcesDiffBenchmark {
+
+    @Param({"1000", "40000"})
+    public int memberCount;
+
+    private Map<CaName, IpResourceSet> registryResources;
+    private Map<CaName, IpResourceSet> localResources;
+    private IpResourceSet registryDelegations;
+    private IpResourceSet localDelegations;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(memberCount);
+        registryResources = new HashMap<>();
+        localResources = new HashMap<>();
+        registryDelegations = new IpResourceSet();
+        localDelegations = new IpResourceSet();
+        for (int i = 0; i < memberCount; ++i) {
+            CaName caName = CaName.fromMembershipId(i);
+            IpResourceSet resources = memberResources(i, random);
+            if (i % 1000 != 1) {
+                registryResources.put(caName, resources);
+            }
+            if (i % 1000 == 2) {
+                continue;
+            }
+            if (i % 100 == 3) {
+                IpResourceSet changed = new IpResourceSet(resources);
+                changed.addAll(IpResourceSet.parse(String.format("100.%d.%d.0/24", (i >> 8) & 0xff, i & 0xff)));
+                localResources.put(caName, changed);
+            } else {
+                localResources.put(caName, resources);
+            }
+        }
+        for (int i = 0; i < memberCount / 10; ++i) {
+            IpResourceSet delegation = IpResourceSet.parse(String.format("2a10:%x::/32", i));
+            registryDelegations.addAll(delegation);
+            if (i % 50 != 0) {
+                localDelegations.addAll(delegation);
+            }
+        }
+    }
+
+    private static IpResourceSet memberResources(int member, Random random) {
+        IpResourceSet resources = new IpResourceSet();
+        resources.addAll(IpResourceSet.parse("AS" + (64512 + member)));
+        resources.addAll(IpResourceSet.parse(String.format("%d.%d.%d.0/22", 20 + (member >> 14), (member >> 6) & 0xff, (member & 0x3f) << 2)));
+        resources.addAll(IpResourceSet.parse(String.format("2001:%x::/32", 0x1000 + member)));
+        if (random.nextInt(4) == 0) {
+            resources.addAll(IpResourceSet.parse(String.format("%d.%d.0.0/16", 150 + (member >> 8) % 50, member & 0xff)));
+        }
+        return resources;
+    }
+
+    @Benchmark
+    public ResourceCacheService.ResourceDiffStat resourcesDiff() {
+        return ResourceCacheService.resourcesDiff(registryResources, localResources);
+    }
+
+    @Benchmark
+    public ResourceCacheService.DelegationDiffStat delegationsDiff() {
+        return ResourceCacheService.delegationsDiff(registryDelegations, localDelegations);
+    }
+}
@@ -1,6 +1,8 @@
 package net.ripe.rpki;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.commons.crypto.util.KeyPairFactory;
 import net.ripe.rpki.domain.CertificationProviderConfigurationData;
 import net.ripe.rpki.domain.HardwareKeyPairFactory;
 import net.ripe.rpki.domain.SingleUseKeyPairFactory;
@@ -35,8 +37,15 @@ public class RpkiBootApplication {
     }
 
     @Bean
-    public SingleUseKeyPairFactory singleUseKeyPairFactory() {
-        return new SingleUseKeyPairFactory();
+    public SingleUseKeyPairFactory singleUseKeyPairFactory(
+        @Value("${single.use.key.pair.pool.size}") int poolSize,
+        @Value("${single.use.key.pair.pool.refill.threads}") int refillThreads,
+        MeterRegistry meterRegistry
+    ) {
+        if (poolSize <= 0 || refillThreads <= 0) {
+            return new SingleUseKeyPairFactory();
+        }
+        return new SingleUseKeyPairFactory(new KeyPairFactory(SingleUseKeyPairFactory.SINGLE_USE_KEY_PAIR_PROVIDER), poolSize, refillThreads, meterRegistry);
     }
 
 
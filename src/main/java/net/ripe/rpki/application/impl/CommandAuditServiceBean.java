@@ -6,17 +6,24 @@ import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.domain.CertificateAuthority;
 import net.ripe.rpki.domain.audit.CommandAudit;
 import net.ripe.rpki.domain.audit.CommandAuditService;
+import net.ripe.rpki.server.api.commands.ActivateHostedCertificateAuthorityCommand;
+import net.ripe.rpki.server.api.commands.ActivateNonHostedCertificateAuthorityCommand;
 import net.ripe.rpki.server.api.commands.CertificateAuthorityCommand;
 import net.ripe.rpki.server.api.commands.CertificateAuthorityCommandGroup;
 import net.ripe.rpki.server.api.commands.CommandContext;
+import net.ripe.rpki.server.api.commands.DeleteCertificateAuthorityCommand;
+import net.ripe.rpki.server.api.commands.DeleteNonHostedCertificateAuthorityCommand;
+import net.ripe.rpki.server.api.commands.UpdateRoaConfigurationCommand;
 import net.ripe.rpki.server.api.dto.CommandAuditData;
 import net.ripe.rpki.server.api.security.RoleBasedAuthenticationStrategy;
+import org.joda.time.DateTimeUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -101,6 +108,34 @@ public class CommandAuditServiceBean implements CommandAuditService {
             CommandAudit commandAudit = new CommandAudit(userId, caVersionedId, command, String.join("\n", events));
             entityManager.persist(commandAudit);
         }
+
+        recordCaStatEvent(command, ca);
+    }
+
+    /**
+     * Maintains the events of the CA statistics, so these do not need to be derived from the command audit.
+     */
+    private void recordCaStatEvent(CertificateAuthorityCommand command, CertificateAuthority ca) {
+        String caName = ca != null ? ca.getName().getName() : null;
+        if (command instanceof ActivateHostedCertificateAuthorityCommand || command instanceof ActivateNonHostedCertificateAuthorityCommand) {
+            insertCaStatEvent(caName, "created", 0, 0);
+        } else if (command instanceof DeleteCertificateAuthorityCommand || command instanceof DeleteNonHostedCertificateAuthorityCommand) {
+            insertCaStatEvent("UNKNOWN", "deleted", 0, 0);
+        } else if (command instanceof UpdateRoaConfigurationCommand) {
+            UpdateRoaConfigurationCommand update = (UpdateRoaConfigurationCommand) command;
+            insertCaStatEvent(caName, "roas", update.getAdditions().size(), update.getDeletions().size());
+        }
+    }
+
+    private void insertCaStatEvent(String caName, String event, int roasAdded, int roasDeleted) {
+        entityManager.createNativeQuery("INSERT INTO ca_stat_event (executiontime, ca_name, event, roas_added, roas_deleted) " +
+                "VALUES (:executionTime, :caName, :event, :roasAdded, :roasDeleted)")
+            .setParameter("executionTime", new Timestamp(DateTimeUtils.currentTimeMillis()))
+            .setParameter("caName", caName)
+            .setParameter("event", event)
+            .setParameter("roasAdded", roasAdded)
+            .setParameter("roasDeleted", roasDeleted)
+            .executeUpdate();
     }
 
     @Override
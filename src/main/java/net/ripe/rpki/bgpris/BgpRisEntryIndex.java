@@ -0,0 +1,367 @@
+package net.ripe.rpki.bgpris;
+
+import net.ripe.ipresource.Asn;
+import net.ripe.ipresource.IpAddress;
+import net.ripe.ipresource.IpRange;
+import net.ripe.ipresource.Ipv4Address;
+import net.ripe.ipresource.Ipv6Address;
+import net.ripe.rpki.server.api.dto.BgpRisEntry;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Immutable index of BGP RIS entries, kept in sorted primitive arrays per address family instead of as objects.
+ * <p>
+ * The distinct prefixes are sorted by start address and prefix length, so the exact and more specific prefixes of a
+ * prefix form a contiguous range that is found with a binary search. Every prefix refers to its closest less specific
+ * prefix, so the first less specific prefix is found by following a few of these references. The origin and
+ * visibility of the entries of a prefix are stored next to each other in separate arrays.
+ * <p>
+ * {@link BgpRisEntry} objects are only created for the entries returned by a lookup.
+ */
+final class BgpRisEntryIndex {
+
+    static final BgpRisEntryIndex EMPTY = new Builder().build();
+
+    private final Family ipv4;
+    private final Family ipv6;
+
+    private BgpRisEntryIndex(Family ipv4, Family ipv6) {
+        this.ipv4 = ipv4;
+        this.ipv6 = ipv6;
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the number of distinct entries in the index
+     */
+    int size() {
+        return ipv4.entryCount() + ipv6.entryCount();
+    }
+
+    /**
+     * Adds the entries of the exact and more specific prefixes of the prefix to <code>contained</code>. When these
+     * do not cover the complete prefix, the entries of the first less specific prefix are added to
+     * <code>lessSpecific</code>.
+     */
+    void lookup(IpRange prefix, Collection<BgpRisEntry> contained, Collection<BgpRisEntry> lessSpecific) {
+        BigInteger start = prefix.getStart().getValue();
+        switch (prefix.getType()) {
+            case IPv4:
+                ipv4.lookup(0, start.longValue(), prefix.getPrefixLength(), contained, lessSpecific);
+                break;
+            case IPv6:
+                ipv6.lookup(start.shiftRight(64).longValue(), start.longValue(), prefix.getPrefixLength(), contained, lessSpecific);
+                break;
+            default:
+                break;
+        }
+    }
+
+    static final class Builder {
+        private final FamilyBuilder ipv4 = new FamilyBuilder(32);
+        private final FamilyBuilder ipv6 = new FamilyBuilder(128);
+
+        void add(BgpRisEntry entry) {
+            IpRange prefix = entry.getPrefix();
+            BigInteger start = prefix.getStart().getValue();
+            int origin = (int) entry.getOrigin().longValue();
+            switch (prefix.getType()) {
+                case IPv4:
+                    ipv4.add(0, start.longValue(), prefix.getPrefixLength(), origin, entry.getVisibility());
+                    break;
+                case IPv6:
+                    ipv6.add(start.shiftRight(64).longValue(), start.longValue(), prefix.getPrefixLength(), origin, entry.getVisibility());
+                    break;
+                default:
+                    throw new IllegalArgumentException("not an IP prefix: " + prefix);
+            }
+        }
+
+        BgpRisEntryIndex build() {
+            return new BgpRisEntryIndex(ipv4.build(), ipv6.build());
+        }
+    }
+
+    /**
+     * The prefixes and entries of a single address family. Addresses are unsigned integers of <code>bits</code>
+     * bits, stored as the high and low 64 bits. The high bits are not stored for IPv4.
+     */
+    private static final class Family {
+        private final int bits;
+        private final long[] startHi;
+        private final long[] startLo;
+        private final byte[] prefixLength;
+        /**
+         * Index of the closest less specific prefix, or -1 when there is none.
+         */
+        private final int[] parent;
+        /**
+         * The entries of prefix <code>i</code> are at <code>firstEntry[i]</code> until <code>firstEntry[i + 1]</code>.
+         */
+        private final int[] firstEntry;
+        private final int[] origin;
+        private final int[] visibility;
+
+        private Family(int bits, long[] startHi, long[] startLo, byte[] prefixLength, int[] firstEntry, int[] origin, int[] visibility) {
+            this.bits = bits;
+            this.startHi = startHi;
+            this.startLo = startLo;
+            this.prefixLength = prefixLength;
+            this.firstEntry = firstEntry;
+            this.origin = origin;
+            this.visibility = visibility;
+
+            // The prefixes are in depth-first order, so the less specific prefixes of a prefix are on the stack.
+            this.parent = new int[startLo.length];
+            int[] stack = new int[bits + 1];
+            int depth = 0;
+            for (int i = 0; i < startLo.length; ++i) {
+                while (depth > 0 && !contains(stack[depth - 1], hi(i), startLo[i])) {
+                    --depth;
+                }
+                parent[i] = depth > 0 ? stack[depth - 1] : -1;
+                stack[depth++] = i;
+            }
+        }
+
+        int entryCount() {
+            return origin.length;
+        }
+
+        void lookup(long hi, long lo, int length, Collection<BgpRisEntry> contained, Collection<BgpRisEntry> lessSpecific) {
+            long endHi = hi | hostMaskHi(length);
+            long endLo = lo | hostMaskLo(length);
+            int first = lowerBound(hi, lo, length);
+
+            // Sweep over the exact and more specific prefixes in order of their start address to determine whether
+            // they cover the complete prefix.
+            boolean covered = false;
+            boolean gap = false;
+            long nextHi = hi;
+            long nextLo = lo;
+            for (int i = first; i < startLo.length && compare(hi(i), startLo[i], endHi, endLo) <= 0; ++i) {
+                addEntries(i, contained);
+                if (covered || gap) {
+                    continue;
+                }
+                if (compare(hi(i), startLo[i], nextHi, nextLo) > 0) {
+                    gap = true;
+                } else {
+                    long prefixEndHi = hi(i) | hostMaskHi(length(i));
+                    long prefixEndLo = startLo[i] | hostMaskLo(length(i));
+                    if (compare(prefixEndHi, prefixEndLo, endHi, endLo) >= 0) {
+                        covered = true;
+                    } else if (compare(prefixEndHi, prefixEndLo, nextHi, nextLo) >= 0) {
+                        nextHi = prefixEndLo == -1L ? prefixEndHi + 1 : prefixEndHi;
+                        nextLo = prefixEndLo + 1;
+                    }
+                }
+            }
+
+            if (!covered) {
+                // The closest less specific prefix is a less specific prefix of (or equal to) the preceding prefix.
+                int candidate = first - 1;
+                while (candidate >= 0 && !contains(candidate, hi, lo)) {
+                    candidate = parent[candidate];
+                }
+                if (candidate >= 0) {
+                    addEntries(candidate, lessSpecific);
+                }
+            }
+        }
+
+        private void addEntries(int i, Collection<BgpRisEntry> result) {
+            IpRange prefix = toPrefix(i);
+            for (int entry = firstEntry[i]; entry < firstEntry[i + 1]; ++entry) {
+                result.add(new BgpRisEntry(new Asn(Integer.toUnsignedLong(origin[entry])), prefix, visibility[entry]));
+            }
+        }
+
+        private IpRange toPrefix(int i) {
+            IpAddress start = bits == 32
+                ? new Ipv4Address(startLo[i])
+                : new Ipv6Address(new BigInteger(1, ByteBuffer.allocate(16).putLong(startHi[i]).putLong(startLo[i]).array()));
+            return IpRange.prefix(start, length(i));
+        }
+
+        /**
+         * @return the index of the first prefix that is not ordered before the given prefix
+         */
+        private int lowerBound(long hi, long lo, int length) {
+            int low = 0;
+            int high = startLo.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int c = compare(hi(mid), startLo[mid], hi, lo);
+                if (c < 0 || (c == 0 && length(mid) < length)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private boolean contains(int i, long hi, long lo) {
+            return compare(hi(i), startLo[i], hi, lo) <= 0
+                && compare(hi(i) | hostMaskHi(length(i)), startLo[i] | hostMaskLo(length(i)), hi, lo) >= 0;
+        }
+
+        private long hi(int i) {
+            return startHi == null ? 0 : startHi[i];
+        }
+
+        private int length(int i) {
+            return prefixLength[i] & 0xff;
+        }
+
+        private long hostMaskHi(int length) {
+            int hostBits = bits - length;
+            return hostBits <= 64 ? 0 : hostBits == 128 ? -1L : (1L << (hostBits - 64)) - 1;
+        }
+
+        private long hostMaskLo(int length) {
+            int hostBits = bits - length;
+            return hostBits >= 64 ? -1L : (1L << hostBits) - 1;
+        }
+    }
+
+    private static final class FamilyBuilder {
+        private final int bits;
+        private long[] startHi;
+        private long[] startLo = new long[16];
+        private byte[] prefixLength = new byte[16];
+        private int[] origin = new int[16];
+        private int[] visibility = new int[16];
+        private int count;
+
+        private FamilyBuilder(int bits) {
+            this.bits = bits;
+            this.startHi = bits > 64 ? new long[16] : null;
+        }
+
+        void add(long hi, long lo, int length, int asn, int entryVisibility) {
+            if (count == startLo.length) {
+                int capacity = count * 2;
+                startHi = startHi == null ? null : Arrays.copyOf(startHi, capacity);
+                startLo = Arrays.copyOf(startLo, capacity);
+                prefixLength = Arrays.copyOf(prefixLength, capacity);
+                origin = Arrays.copyOf(origin, capacity);
+                visibility = Arrays.copyOf(visibility, capacity);
+            }
+            if (startHi != null) {
+                startHi[count] = hi;
+            }
+            startLo[count] = lo;
+            prefixLength[count] = (byte) length;
+            origin[count] = asn;
+            visibility[count] = entryVisibility;
+            ++count;
+        }
+
+        Family build() {
+            int[] order = new int[count];
+            for (int i = 0; i < count; ++i) {
+                order[i] = i;
+            }
+            sort(order, this::compareEntries);
+
+            long[] prefixStartHi = startHi == null ? null : new long[count];
+            long[] prefixStartLo = new long[count];
+            byte[] prefixLengths = new byte[count];
+            int[] firstEntry = new int[count + 1];
+            int[] entryOrigin = new int[count];
+            int[] entryVisibility = new int[count];
+            int prefixes = 0;
+            int entries = 0;
+            int previous = -1;
+            for (int i : order) {
+                if (previous >= 0 && compareEntries(previous, i) == 0) {
+                    continue;
+                }
+                if (previous < 0 || comparePrefixes(previous, i) != 0) {
+                    if (prefixStartHi != null) {
+                        prefixStartHi[prefixes] = startHi[i];
+                    }
+                    prefixStartLo[prefixes] = startLo[i];
+                    prefixLengths[prefixes] = prefixLength[i];
+                    firstEntry[prefixes] = entries;
+                    ++prefixes;
+                }
+                entryOrigin[entries] = origin[i];
+                entryVisibility[entries] = visibility[i];
+                ++entries;
+                previous = i;
+            }
+            firstEntry[prefixes] = entries;
+
+            return new Family(
+                bits,
+                prefixStartHi == null ? null : Arrays.copyOf(prefixStartHi, prefixes),
+                Arrays.copyOf(prefixStartLo, prefixes),
+                Arrays.copyOf(prefixLengths, prefixes),
+                Arrays.copyOf(firstEntry, prefixes + 1),
+                Arrays.copyOf(entryOrigin, entries),
+                Arrays.copyOf(entryVisibility, entries)
+            );
+        }
+
+        private int comparePrefixes(int a, int b) {
+            int c = startHi == null ? 0 : Long.compareUnsigned(startHi[a], startHi[b]);
+            if (c == 0) {
+                c = Long.compareUnsigned(startLo[a], startLo[b]);
+            }
+            return c != 0 ? c : Integer.compare(prefixLength[a] & 0xff, prefixLength[b] & 0xff);
+        }
+
+        private int compareEntries(int a, int b) {
+            int c = comparePrefixes(a, b);
+            if (c == 0) {
+                c = Integer.compareUnsigned(origin[a], origin[b]);
+            }
+            return c != 0 ? c : Integer.compare(visibility[a], visibility[b]);
+        }
+    }
+
+    private static int compare(long aHi, long aLo, long bHi, long bLo) {
+        int c = Long.compareUnsigned(aHi, bHi);
+        return c != 0 ? c : Long.compareUnsigned(aLo, bLo);
+    }
+
+    /**
+     * Bottom-up merge sort of the indices, avoiding the boxing needed to sort them with a comparator.
+     */
+    private static void sort(int[] indices, IntBinaryOperator comparator) {
+        int[] source = indices;
+        int[] target = new int[indices.length];
+        for (int width = 1; width < indices.length; width *= 2) {
+            for (int low = 0; low < indices.length; low += 2 * width) {
+                int mid = Math.min(low + width, indices.length);
+                int high = Math.min(low + 2 * width, indices.length);
+                int left = low;
+                int right = mid;
+                for (int k = low; k < high; ++k) {
+                    if (left < mid && (right >= high || comparator.applyAsInt(source[left], source[right]) <= 0)) {
+                        target[k] = source[left++];
+                    } else {
+                        target[k] = source[right++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != indices) {
+            System.arraycopy(source, 0, indices, 0, indices.length);
+        }
+    }
+}
@@ -4,9 +4,6 @@ import net.ripe.ipresource.IpAddress;
 import net.ripe.ipresource.IpRange;
 import net.ripe.ipresource.IpResource;
 import net.ripe.ipresource.IpResourceSet;
-import net.ripe.ipresource.etree.IntervalMap;
-import net.ripe.ipresource.etree.IpResourceIntervalStrategy;
-import net.ripe.ipresource.etree.NestedIntervalMap;
 import net.ripe.rpki.server.api.dto.BgpRisEntry;
 import net.ripe.rpki.server.api.services.read.BgpRisEntryViewService;
 import org.springframework.stereotype.Component;
@@ -17,9 +14,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
 
 @Component
 public class BgpRisEntryRepositoryBean implements BgpRisEntryViewService {
@@ -29,7 +24,7 @@ public class BgpRisEntryRepositoryBean implements BgpRisEntryViewService {
     /*
      * All BgpRisEntries that have enough visibility.
      */
-    private AtomicReference<IntervalMap<IpRange, ArrayList<BgpRisEntry>>> entries = new AtomicReference<>(emptyEntries());
+    private final AtomicReference<BgpRisEntryIndex> entries = new AtomicReference<>(BgpRisEntryIndex.EMPTY);
 
     @Override
     public boolean isEmpty() {
@@ -38,36 +33,23 @@ public class BgpRisEntryRepositoryBean implements BgpRisEntryViewService {
 
     @Override
     public Collection<BgpRisEntry> findMostSpecificOverlapping(IpResourceSet resources) {
-        IntervalMap<IpRange, ArrayList<BgpRisEntry>> current = this.entries.get();
+        BgpRisEntryIndex current = this.entries.get();
 
         Collection<BgpRisEntry> result = new HashSet<>();
         for (IpRange prefix : getPrefixes(resources)) {
-            final List<BgpRisEntry> exactAndMoreSpecific = current.findExactAndAllMoreSpecific(prefix)
-                .stream()
-                .flatMap(Collection::stream)
-                .collect(Collectors.toList());
-            result.addAll(exactAndMoreSpecific);
-
-            final IpResourceSet remaining = findResourcesNotCovered(prefix, exactAndMoreSpecific);
-            addLessSpecificAnnouncements(current, result, remaining);
+            current.lookup(prefix, result, result);
         }
         return result;
     }
 
     @Override
     public Map<Boolean, Collection<BgpRisEntry>> findMostSpecificContainedAndNotContained(IpResourceSet resources) {
-        IntervalMap<IpRange, ArrayList<BgpRisEntry>> current = this.entries.get();
+        BgpRisEntryIndex current = this.entries.get();
 
         Collection<BgpRisEntry> containedEntries = new HashSet<>();
         Collection<BgpRisEntry> notContainedEntries = new HashSet<>();
         for (IpRange prefix : getPrefixes(resources)) {
-            final List<BgpRisEntry> exactAndMoreSpecific = current.findExactAndAllMoreSpecific(prefix)
-                .stream()
-                .flatMap(Collection::stream)
-                .collect(Collectors.toList());
-            containedEntries.addAll(exactAndMoreSpecific);
-            final IpResourceSet remaining = findResourcesNotCovered(prefix, exactAndMoreSpecific);
-            addLessSpecificAnnouncements(current, notContainedEntries, remaining);
+            current.lookup(prefix, containedEntries, notContainedEntries);
         }
         Map<Boolean, Collection<BgpRisEntry>> result = new HashMap<>();
         result.put(true, containedEntries);
@@ -75,41 +57,29 @@ public class BgpRisEntryRepositoryBean implements BgpRisEntryViewService {
         return result;
     }
 
-    private void addLessSpecificAnnouncements(IntervalMap<IpRange, ArrayList<BgpRisEntry>> current, Collection<BgpRisEntry> result, IpResourceSet remaining) {
-        if (!remaining.isEmpty()) {
-            getPrefixes(remaining).stream()
-                    .map(current::findFirstLessSpecific)
-                    .filter(Objects::nonNull)
-                    .forEach(result::addAll);
-        }
-    }
-
-    private IpResourceSet findResourcesNotCovered(IpRange prefix, List<BgpRisEntry> exactAndMoreSpecific) {
-        IpResourceSet exactAndMoreSpecificResources = new IpResourceSet();
-        for (BgpRisEntry entry: exactAndMoreSpecific) {
-            exactAndMoreSpecificResources.add(entry.getPrefix());
-        }
-        IpResourceSet remaining = new IpResourceSet(prefix);
-        remaining.removeAll(exactAndMoreSpecificResources);
-        return remaining;
+    @Override
+    public void resetEntries(Collection<BgpRisEntry> entries) {
+        Update update = startUpdate();
+        entries.forEach(update);
+        update.commit();
     }
 
     @Override
-    public void resetEntries(Collection<BgpRisEntry> entries) {
-        IntervalMap<IpRange, ArrayList<BgpRisEntry>> copy = emptyEntries();
-        for (BgpRisEntry entry : entries) {
-            if (keepEntry(entry)) {
-                ArrayList<BgpRisEntry> exact = copy.findExact(entry.getPrefix());
-                if (exact == null) {
-                    exact = new ArrayList<>();
-                    copy.put(entry.getPrefix(), exact);
-                }
-                if (!exact.contains(entry)) {
-                    exact.add(entry);
+    public Update startUpdate() {
+        BgpRisEntryIndex.Builder builder = new BgpRisEntryIndex.Builder();
+        return new Update() {
+            @Override
+            public void accept(BgpRisEntry entry) {
+                if (keepEntry(entry)) {
+                    builder.add(entry);
                 }
             }
-        }
-        this.entries.set(copy);
+
+            @Override
+            public void commit() {
+                entries.set(builder.build());
+            }
+        };
     }
 
     private boolean keepEntry(BgpRisEntry entry) {
@@ -144,8 +114,4 @@ public class BgpRisEntryRepositoryBean implements BgpRisEntryViewService {
         }
         return result;
     }
-
-    private NestedIntervalMap<IpRange, ArrayList<BgpRisEntry>> emptyEntries() {
-        return new NestedIntervalMap<>(IpResourceIntervalStrategy.getInstance());
-    }
 }
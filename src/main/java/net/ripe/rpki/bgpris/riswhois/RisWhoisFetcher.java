@@ -1,11 +1,13 @@
 package net.ripe.rpki.bgpris.riswhois;
 
-import org.apache.commons.io.IOUtils;
 import org.joda.time.DateTimeConstants;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
@@ -16,9 +18,13 @@ public class RisWhoisFetcher {
 
     private static final int HTTP_TIMEOUT = 30 * DateTimeConstants.MILLIS_PER_SECOND;
 
-    public String fetch(String url) throws IOException {
-        try (InputStream unzipped = new GZIPInputStream(getContent(url))) {
-            return IOUtils.toString(unzipped, StandardCharsets.UTF_8);
+    /**
+     * Passes the decompressed content to the handler while it is being downloaded, so the dump is never held in
+     * memory as a whole.
+     */
+    public <T> T fetch(String url, ContentHandler<T> handler) throws IOException {
+        try (Reader content = new BufferedReader(new InputStreamReader(new GZIPInputStream(getContent(url)), StandardCharsets.UTF_8))) {
+            return handler.handle(content);
         }
     }
 
@@ -28,4 +34,9 @@ public class RisWhoisFetcher {
         connection.setReadTimeout(HTTP_TIMEOUT);
         return connection.getInputStream();
     }
+
+    @FunctionalInterface
+    public interface ContentHandler<T> {
+        T handle(Reader content) throws IOException;
+    }
 }
@@ -5,8 +5,14 @@ import net.ripe.ipresource.Asn;
 import net.ripe.ipresource.IpRange;
 import net.ripe.rpki.server.api.dto.BgpRisEntry;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,22 +23,44 @@ public final class RisWhoisParser {
      * support these anyway. Maybe in the future we should warn ROA administrators when they have
      * resources using AS SETS...
      */
-    private static final Pattern ENTRY_PATTERN = Pattern.compile("^([0-9]+)\t([0-9a-fA-F.:/]+)\t([0-9]+)$", Pattern.MULTILINE);
+    private static final Pattern ENTRY_PATTERN = Pattern.compile("^([0-9]+)\t([0-9a-fA-F.:/]+)\t([0-9]+)$");
 
     private RisWhoisParser() {
     }
 
     public static List<BgpRisEntry> parse(String risWhoisDump) {
         ArrayList<BgpRisEntry> result = new ArrayList<>();
+        try {
+            parse(new StringReader(risWhoisDump), result::add);
+        } catch (IOException e) {
+            // Cannot happen when reading from a string
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
 
-        Matcher matcher = ENTRY_PATTERN.matcher(risWhoisDump);
+    /**
+     * Parses the dump line by line, passing every entry to <code>consumer</code> as soon as it is parsed. Only the
+     * current line is kept in memory.
+     *
+     * @return the number of entries passed to the consumer.
+     */
+    public static int parse(Reader risWhoisDump, Consumer<BgpRisEntry> consumer) throws IOException {
+        BufferedReader reader = risWhoisDump instanceof BufferedReader ? (BufferedReader) risWhoisDump : new BufferedReader(risWhoisDump);
+        Matcher matcher = ENTRY_PATTERN.matcher("");
+        int parsedEntries = 0;
         int rejectedLines = 0;
-        while (matcher.find()) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!matcher.reset(line).matches()) {
+                continue;
+            }
             try {
                 Asn origin = Asn.parse(matcher.group(1));
                 IpRange prefix = IpRange.parse(matcher.group(2));
                 int visibility = Integer.parseInt(matcher.group(3));
-                result.add(new BgpRisEntry(origin, prefix, visibility));
+                consumer.accept(new BgpRisEntry(origin, prefix, visibility));
+                parsedEntries++;
             } catch(IllegalArgumentException e) {
                 log.error("Unable to parse BGP dump entry", e);
                 rejectedLines++;
@@ -45,6 +73,6 @@ public final class RisWhoisParser {
             log.error("RisWhoisParser rejected {} lines (incomplete/invalid)", rejectedLines);
         }
 
-        return result;
+        return parsedEntries;
     }
 }
@@ -13,6 +13,7 @@ import net.ripe.rpki.ripencc.provisioning.ProvisioningAuditLogService;
 import net.ripe.rpki.server.api.dto.*;
 import net.ripe.rpki.server.api.services.read.CertificateAuthorityViewService;
 import net.ripe.rpki.server.api.support.objects.CaName;
+import org.joda.time.DateTime;
 import org.joda.time.Instant;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -152,8 +153,8 @@ public class CertificateAuthorityViewServiceImpl implements CertificateAuthority
     }
 
     @Override
-    public Collection<CaStatEvent> getCaStatEvents() {
-        return certificateAuthorityRepository.getCAStatEvents();
+    public Collection<CaStatEvent> getCaStatEvents(DateTime from, DateTime to, int offset, Integer limit) {
+        return certificateAuthorityRepository.getCAStatEvents(from, to, offset, limit);
     }
 
     @Override
@@ -0,0 +1,34 @@
+package net.ripe.rpki.core.services.background;
+
+/**
+ * The shared data that background services work on. Background services declare which of these they read and write
+ * (see {@link BackgroundResourceAccess}), so that only services with conflicting access are run one at a time.
+ * <p>
+ * Services that update CAs using commands rely on the lock each command takes on its CA for the consistency of that
+ * CA. A resource only needs to be declared when a service needs a consistent view across many CAs, or changes the
+ * data outside of per-CA commands.
+ * <p>
+ * Locks are always acquired in the declaration order of this enum to avoid deadlocks.
+ */
+public enum BackgroundResource {
+    /**
+     * Certificate authorities, their key pairs and their incoming and outgoing resource certificates.
+     */
+    CA_HIERARCHY,
+
+    /**
+     * Manifests, CRLs, signed objects and the publication status of all published objects.
+     */
+    PUBLISHED_OBJECTS,
+
+    /**
+     * The resource cache with the resources of all members, as received from the internet number registry, and the
+     * resource changes that still need to be applied to the CA certificates.
+     */
+    RESOURCE_CACHE,
+
+    /**
+     * The BGP announcements from the RIS whois dumps.
+     */
+    RIS_DATA,
+}
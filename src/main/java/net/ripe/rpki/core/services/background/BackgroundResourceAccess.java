@@ -0,0 +1,73 @@
+package net.ripe.rpki.core.services.background;
+
+import lombok.EqualsAndHashCode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The {@link BackgroundResource}s a background service reads and writes. Two services conflict when one of them
+ * writes a resource the other reads or writes.
+ */
+@EqualsAndHashCode
+public final class BackgroundResourceAccess {
+
+    public static final BackgroundResourceAccess NONE = new BackgroundResourceAccess(EnumSet.noneOf(BackgroundResource.class), EnumSet.noneOf(BackgroundResource.class));
+
+    private final EnumSet<BackgroundResource> reads;
+    private final EnumSet<BackgroundResource> writes;
+
+    private BackgroundResourceAccess(EnumSet<BackgroundResource> reads, EnumSet<BackgroundResource> writes) {
+        this.writes = writes;
+        this.reads = reads;
+        this.reads.removeAll(writes);
+    }
+
+    public static BackgroundResourceAccess reads(BackgroundResource... resources) {
+        return NONE.andReads(resources);
+    }
+
+    public static BackgroundResourceAccess writes(BackgroundResource... resources) {
+        return NONE.andWrites(resources);
+    }
+
+    public BackgroundResourceAccess andReads(BackgroundResource... resources) {
+        EnumSet<BackgroundResource> newReads = EnumSet.copyOf(reads);
+        newReads.addAll(Arrays.asList(resources));
+        return new BackgroundResourceAccess(newReads, EnumSet.copyOf(writes));
+    }
+
+    public BackgroundResourceAccess andWrites(BackgroundResource... resources) {
+        EnumSet<BackgroundResource> newWrites = EnumSet.copyOf(writes);
+        newWrites.addAll(Arrays.asList(resources));
+        return new BackgroundResourceAccess(EnumSet.copyOf(reads), newWrites);
+    }
+
+    /**
+     * @return the resources that are only read, never includes resources that are also written.
+     */
+    public Set<BackgroundResource> getReads() {
+        return Collections.unmodifiableSet(reads);
+    }
+
+    public Set<BackgroundResource> getWrites() {
+        return Collections.unmodifiableSet(writes);
+    }
+
+    public boolean isEmpty() {
+        return reads.isEmpty() && writes.isEmpty();
+    }
+
+    public boolean conflictsWith(BackgroundResourceAccess other) {
+        return !Collections.disjoint(writes, other.reads)
+            || !Collections.disjoint(writes, other.writes)
+            || !Collections.disjoint(reads, other.writes);
+    }
+
+    @Override
+    public String toString() {
+        return "reads=" + reads + ", writes=" + writes;
+    }
+}
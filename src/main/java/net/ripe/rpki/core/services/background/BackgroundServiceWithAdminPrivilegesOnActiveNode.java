@@ -22,8 +22,6 @@ import static net.ripe.rpki.server.api.security.RunAsUser.ADMIN;
 
 public abstract class BackgroundServiceWithAdminPrivilegesOnActiveNode implements BackgroundService {
 
-    private static final ReentrantLock GLOBAL_LOCK = new ReentrantLock(true);
-
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
     private enum State {
@@ -51,13 +49,22 @@ public abstract class BackgroundServiceWithAdminPrivilegesOnActiveNode implement
     private Instant stateChangedAt = Instant.now();
 
     private final BackgroundTaskRunner backgroundTaskRunner;
-    private final boolean useGlobalLocking;
+    private final BackgroundResourceAccess resourceAccess;
+
+    /**
+     * Fencing token of the active node lease when the current execution started.
+     */
+    private volatile long fencingToken;
 
-    BackgroundServiceWithAdminPrivilegesOnActiveNode(BackgroundTaskRunner backgroundTaskRunner, boolean useGlobalLocking) {
-        this.useGlobalLocking = useGlobalLocking;
+    BackgroundServiceWithAdminPrivilegesOnActiveNode(BackgroundTaskRunner backgroundTaskRunner, BackgroundResourceAccess resourceAccess) {
+        this.resourceAccess = resourceAccess;
         this.backgroundTaskRunner = backgroundTaskRunner;
     }
 
+    public BackgroundResourceAccess getResourceAccess() {
+        return resourceAccess;
+    }
+
     @Override
     public String getStatus() {
         lock.lock();
@@ -115,13 +122,14 @@ public abstract class BackgroundServiceWithAdminPrivilegesOnActiveNode implement
             return Pair.of(BackgroundServiceExecutionResult.Status.SKIPPED, 0L);
         }
 
-        // Only allow a single service to execute at a time.
-        if (useGlobalLocking && !GLOBAL_LOCK.tryLock()) {
-            log.info("Waiting for lock on background services…");
-            GLOBAL_LOCK.lock();
-        }
-        try {
-            // Now we have the global lock, if needed. Update our state and run the service.
+        // Do not run at the same time as services with conflicting resource access.
+        try (BackgroundTaskRunner.ResourceLocks ignored = backgroundTaskRunner.lockResources(getName(), resourceAccess)) {
+            // Now we have the resource locks, if needed. Update our state and run the service.
+            fencingToken = backgroundTaskRunner.getFencingToken();
+            if (backgroundTaskRunner.hasLostLease(fencingToken)) {
+                log.info("Skipping execution: active node lease lost while waiting ({})", backgroundTaskRunner.getCurrentNodeName());
+                return Pair.of(BackgroundServiceExecutionResult.Status.SKIPPED, 0L);
+            }
             updateState(State.RUNNING);
             try {
                 RunAsUserHolder.set(ADMIN);
@@ -139,10 +147,6 @@ public abstract class BackgroundServiceWithAdminPrivilegesOnActiveNode implement
             } finally {
                 updateState(State.IDLE);
             }
-        } finally {
-            if (useGlobalLocking) {
-                GLOBAL_LOCK.unlock();
-            }
         }
     }
 
@@ -175,6 +179,16 @@ public abstract class BackgroundServiceWithAdminPrivilegesOnActiveNode implement
         }
     }
 
+    /**
+     * Locks the active node lease held when this execution started in the current transaction, so no other node can
+     * take over the lease before the transaction ends.
+     *
+     * @return false when the lease is lost, so the transaction must be rolled back.
+     */
+    protected boolean lockActiveNodeLease() {
+        return backgroundTaskRunner.lockLease(fencingToken);
+    }
+
     protected void runParallel(Stream<BackgroundTaskRunner.Task> tasks) {
         backgroundTaskRunner.runParallel(tasks);
     }
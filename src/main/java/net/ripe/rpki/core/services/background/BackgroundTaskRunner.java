@@ -1,6 +1,7 @@
 package net.ripe.rpki.core.services.background;
 
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.server.api.security.RunAsUserHolder;
@@ -8,10 +9,16 @@ import net.ripe.rpki.server.api.services.system.ActiveNodeService;
 import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -21,6 +28,13 @@ public class BackgroundTaskRunner implements SmartLifecycle {
     public static final int MAX_ALLOWED_EXCEPTIONS = 20;
 
     private final ActiveNodeService activeNodeService;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Fair read/write lock for every background resource, so background services only wait for services with
+     * conflicting resource access.
+     */
+    private final Map<BackgroundResource, ReentrantReadWriteLock> resourceLocks = new EnumMap<>(BackgroundResource.class);
 
     // Create a separate pool to avoid blocking the whole
     // ForkJoinPool.default() with threads waiting for IO
@@ -29,6 +43,10 @@ public class BackgroundTaskRunner implements SmartLifecycle {
 
     public BackgroundTaskRunner(ActiveNodeService activeNodeService, MeterRegistry meterRegistry) {
         this.activeNodeService = activeNodeService;
+        this.meterRegistry = meterRegistry;
+        for (BackgroundResource resource : BackgroundResource.values()) {
+            resourceLocks.put(resource, new ReentrantReadWriteLock(true));
+        }
         ExecutorServiceMetrics.monitor(meterRegistry, forkJoinPool, "rpkicore.backgroundtask.forkjoinpool");
     }
 
@@ -40,6 +58,18 @@ public class BackgroundTaskRunner implements SmartLifecycle {
         return activeNodeService.getCurrentNodeName();
     }
 
+    public long getFencingToken() {
+        return activeNodeService.getFencingToken();
+    }
+
+    public boolean hasLostLease(long fencingToken) {
+        return activeNodeService.hasLostLease(fencingToken);
+    }
+
+    public boolean lockLease(long fencingToken) {
+        return activeNodeService.lockLease(fencingToken);
+    }
+
     @Override
     public void start() {
         // do nothing
@@ -64,18 +94,68 @@ public class BackgroundTaskRunner implements SmartLifecycle {
         return !forkJoinPool.isShutdown();
     }
 
+    /**
+     * Locks the resources of a background service, waiting until no service with conflicting access holds them. The
+     * time spent waiting is recorded per service. The locks must be released by the same thread.
+     */
+    public ResourceLocks lockResources(String serviceName, BackgroundResourceAccess access) {
+        List<Lock> locks = new ArrayList<>();
+        for (BackgroundResource resource : BackgroundResource.values()) {
+            if (access.getWrites().contains(resource)) {
+                locks.add(resourceLocks.get(resource).writeLock());
+            } else if (access.getReads().contains(resource)) {
+                locks.add(resourceLocks.get(resource).readLock());
+            }
+        }
+
+        long start = System.nanoTime();
+        boolean waiting = false;
+        for (Lock lock : locks) {
+            if (!lock.tryLock()) {
+                if (!waiting) {
+                    log.info("{} is waiting for lock on background resources ({})", serviceName, access);
+                    waiting = true;
+                }
+                lock.lock();
+            }
+        }
+        Timer.builder("rpkicore.background.service.lock.wait")
+            .description("Time background services spent waiting for locks on the resources they use")
+            .tag("service", serviceName)
+            .register(meterRegistry)
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        return () -> {
+            for (int i = locks.size() - 1; i >= 0; --i) {
+                locks.get(i).unlock();
+            }
+        };
+    }
+
+    public interface ResourceLocks extends AutoCloseable {
+        @Override
+        void close();
+    }
+
     public interface Task {
         void execute();
 
         void onException(Exception e);
     }
 
+    /**
+     * Runs the tasks in parallel. Remaining tasks are skipped when the application is stopping, too many tasks
+     * failed, or the active node lease held when the tasks were started is lost.
+     */
     public void runParallel(Stream<Task> tasks) {
-        MaxExceptionsTemplate maxExceptionsTemplate = new MaxExceptionsTemplate(20);
+        MaxExceptionsTemplate maxExceptionsTemplate = new MaxExceptionsTemplate(20, getFencingToken());
         forkJoinPool.submit(() -> tasks.parallel().forEach(task -> maxExceptionsTemplate.wrap(task))).join();
         if (maxExceptionsTemplate.maxExceptionsOccurred()) {
             throw new BackgroundServiceException("Too many exceptions encountered, suspecting problems that affect ALL CAs.");
         }
+        if (maxExceptionsTemplate.leaseLost()) {
+            throw new BackgroundServiceException("Active node lease lost, remaining tasks were skipped.");
+        }
     }
 
     public Task task(Runnable task, Consumer<Exception> onException) {
@@ -95,14 +175,16 @@ public class BackgroundTaskRunner implements SmartLifecycle {
 
     private class MaxExceptionsTemplate {
         private final int maxAllowed;
+        private final long fencingToken;
         private final AtomicInteger numberOfExceptions = new AtomicInteger(0);
 
-        public MaxExceptionsTemplate(int maxAllowed) {
+        public MaxExceptionsTemplate(int maxAllowed, long fencingToken) {
             this.maxAllowed = maxAllowed;
+            this.fencingToken = fencingToken;
         }
 
         public void wrap(final Task task) {
-            if (stopping.get() || maxExceptionsOccurred()) {
+            if (stopping.get() || maxExceptionsOccurred() || leaseLost()) {
                 return;
             }
             try {
@@ -116,5 +198,9 @@ public class BackgroundTaskRunner implements SmartLifecycle {
         boolean maxExceptionsOccurred() {
             return numberOfExceptions.get() > maxAllowed;
         }
+
+        boolean leaseLost() {
+            return hasLostLease(fencingToken);
+        }
     }
 }
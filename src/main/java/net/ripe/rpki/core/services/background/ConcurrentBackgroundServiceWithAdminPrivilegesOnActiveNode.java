@@ -1,9 +1,12 @@
 package net.ripe.rpki.core.services.background;
 
+/**
+ * Background service that can run at the same time as any other background service.
+ */
 public abstract class ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode extends BackgroundServiceWithAdminPrivilegesOnActiveNode {
 
     public ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode(BackgroundTaskRunner backgroundTaskRunner) {
-        super(backgroundTaskRunner, false);
+        super(backgroundTaskRunner, BackgroundResourceAccess.NONE);
     }
 
 }
@@ -1,9 +1,16 @@
 package net.ripe.rpki.core.services.background;
 
+import com.google.common.base.Preconditions;
+
+/**
+ * Background service that never runs at the same time as another service with conflicting
+ * {@link BackgroundResourceAccess resource access}.
+ */
 public abstract class SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode extends BackgroundServiceWithAdminPrivilegesOnActiveNode {
 
-    public SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode(BackgroundTaskRunner backgroundTaskRunner) {
-        super(backgroundTaskRunner, true);
+    public SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode(BackgroundTaskRunner backgroundTaskRunner, BackgroundResourceAccess resourceAccess) {
+        super(backgroundTaskRunner, Preconditions.checkNotNull(resourceAccess, "resourceAccess"));
+        Preconditions.checkArgument(!resourceAccess.isEmpty(), "sequential background service must declare the resources it uses");
     }
 
 }
@@ -9,6 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.core.events.CertificateAuthorityEventVisitor;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
+import net.ripe.rpki.domain.PublicationRequestService;
 import net.ripe.rpki.domain.audit.CommandAuditService;
 import net.ripe.rpki.ripencc.support.event.EventDelegateTracker;
 import net.ripe.rpki.ripencc.support.event.EventSubscription;
@@ -51,6 +52,7 @@ public class CommandServiceImpl implements CommandService {
     private final List<CertificateAuthorityEventVisitor> eventVisitors;
     private final CommandAuditService commandAuditService;
     private final EntityManager entityManager;
+    private final PublicationRequestService publicationRequestService;
 
     private final MeterRegistry meterRegistry;
     private final Map<Class<?>, Timer> commandExecutionTimers = new ConcurrentHashMap<>();
@@ -63,6 +65,7 @@ public class CommandServiceImpl implements CommandService {
         List<CertificateAuthorityEventVisitor> eventVisitors,
         CommandAuditService commandAuditService,
         EntityManager entityManager,
+        PublicationRequestService publicationRequestService,
         MeterRegistry meterRegistry
     ) {
         this.commandDispatcher = commandDispatcher;
@@ -70,6 +73,7 @@ public class CommandServiceImpl implements CommandService {
         this.eventVisitors = eventVisitors;
         this.commandAuditService = commandAuditService;
         this.entityManager = entityManager;
+        this.publicationRequestService = publicationRequestService;
 
         this.meterRegistry = meterRegistry;
 
@@ -147,6 +151,7 @@ public class CommandServiceImpl implements CommandService {
                 commandStatus.setTransactionStatus(status);
                 commandDispatcher.dispatch(command, commandStatus);
                 commandAuditService.finishRecording(commandContext);
+                publicationRequestService.requestPublication(command);
                 log.debug("Command completed.");
             } catch (CommandWithoutEffectException e) {
                 log.debug("Command without effect: {}", command);
@@ -31,7 +31,14 @@ public interface CertificateAuthorityRepository extends Repository<CertificateAu
 
     Collection<CaStat> getCAStats();
 
-    Collection<CaStatEvent> getCAStatEvents();
+    /**
+     * @param from   inclusive lower bound of the event time, or null for no lower bound
+     * @param to     exclusive upper bound of the event time, or null for no upper bound
+     * @param offset number of events to skip
+     * @param limit  maximum number of events to return, or null for all events
+     * @return the CA statistics events in order of occurrence
+     */
+    List<CaStatEvent> getCAStatEvents(DateTime from, DateTime to, int offset, Integer limit);
 
     List<ManagedCertificateAuthority> findAllWithManifestsExpiringBefore(DateTime notValidAfterCutoff, int maxResult);
 
@@ -25,7 +25,7 @@ import java.security.cert.X509CRL;
  */
 @Entity
 @Table(name = "down_stream_provisioning_communicator")
-@SequenceGenerator(name = "seq_identity_material", sequenceName = "seq_all", allocationSize = 1)
+@SequenceGenerator(name = "seq_identity_material", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class DownStreamProvisioningCommunicator extends EntitySupport {
 
     @Id
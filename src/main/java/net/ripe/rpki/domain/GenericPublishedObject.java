@@ -1,5 +1,6 @@
 package net.ripe.rpki.domain;
 
+import com.google.common.hash.Hashing;
 import lombok.Getter;
 import lombok.NonNull;
 import net.ripe.rpki.ncc.core.domain.support.EntitySupport;
@@ -24,7 +25,7 @@ import static net.ripe.rpki.domain.PublicationStatus.WITHDRAWN;
 public abstract class GenericPublishedObject extends EntitySupport {
 
     @Id
-    @SequenceGenerator(name = "seq_published_object", sequenceName = "seq_all", allocationSize = 1)
+    @SequenceGenerator(name = "seq_published_object", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "seq_published_object")
     @Getter
     protected Long id;
@@ -39,11 +40,20 @@ public abstract class GenericPublishedObject extends EntitySupport {
     @NonNull
     protected byte[] content = new byte[0];
 
+    /**
+     * SHA-256 of the content, computed once when the object is created so publication and the manifest update
+     * check can compare objects without reading and hashing the content.
+     */
+    @Column(name = "content_sha256", nullable = false)
+    @NonNull
+    protected byte[] contentSha256 = sha256(content);
+
     protected GenericPublishedObject() {
     }
 
     protected GenericPublishedObject(@NonNull byte[] content) {
         this.content = Arrays.copyOf(content, content.length);
+        this.contentSha256 = sha256(content);
     }
 
     @NonNull
@@ -54,6 +64,15 @@ public abstract class GenericPublishedObject extends EntitySupport {
         return Arrays.copyOf(content, content.length);
     }
 
+    @NonNull
+    public byte[] getContentSha256() {
+        return Arrays.copyOf(contentSha256, contentSha256.length);
+    }
+
+    public static byte[] sha256(@NonNull byte[] content) {
+        return Hashing.sha256().hashBytes(content).asBytes();
+    }
+
     public boolean isPending() {
         return (status == PublicationStatus.TO_BE_PUBLISHED) || (status == PublicationStatus.TO_BE_WITHDRAWN);
     }
@@ -62,7 +62,7 @@ import static net.ripe.rpki.domain.Resources.DEFAULT_RESOURCE_CLASS;
  */
 @Entity
 @Table(name = "keypair")
-@SequenceGenerator(name = "seq_keypair", sequenceName = "seq_all", allocationSize = 1)
+@SequenceGenerator(name = "seq_keypair", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class KeyPairEntity extends EntitySupport {
 
     @Id
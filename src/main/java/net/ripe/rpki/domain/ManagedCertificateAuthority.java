@@ -91,6 +91,13 @@ public abstract class ManagedCertificateAuthority extends CertificateAuthority i
     @Column(name = "manifest_and_crl_check_needed")
     private boolean manifestAndCrlCheckNeeded;
 
+    /**
+     * Bit mask of the {@link ReconciliationReason}s why the ROA and ASPA objects must be reconciled with the
+     * configuration on the next manifest and CRL check. Cleared together with {@link #manifestAndCrlCheckNeeded}.
+     */
+    @Column(name = "reconciliation_reasons")
+    private int reconciliationReasons;
+
     protected ManagedCertificateAuthority() {
     }
 
@@ -165,12 +172,22 @@ public abstract class ManagedCertificateAuthority extends CertificateAuthority i
     }
 
 
-    public void configurationUpdated() {
+    public void reconciliationNeeded(ReconciliationReason reason) {
         this.manifestAndCrlCheckNeeded = true;
+        this.reconciliationReasons |= reason.getMask();
+    }
+
+    public boolean isReconciliationNeeded() {
+        return reconciliationReasons != 0;
+    }
+
+    public Set<ReconciliationReason> getReconciliationReasons() {
+        return ReconciliationReason.fromMask(reconciliationReasons);
     }
 
     public void manifestAndCrlCheckCompleted() {
         this.manifestAndCrlCheckNeeded = false;
+        this.reconciliationReasons = 0;
     }
 
     @Override
@@ -299,6 +316,7 @@ public abstract class ManagedCertificateAuthority extends CertificateAuthority i
 
         // status can change after activatePendingKey
         if (subjectKeyPair.isCurrent()) {
+            reconciliationNeeded(ReconciliationReason.INCOMING_CERTIFICATE);
             ManagedCertificateAuthority.EVENTS.publish(this, new IncomingCertificateUpdatedEvent(getVersionedId(), certificate));
         }
     }
@@ -307,6 +325,7 @@ public abstract class ManagedCertificateAuthority extends CertificateAuthority i
         Optional<KeyPairEntity> currentKeyPair = findCurrentKeyPair();
         currentKeyPair.ifPresent(KeyPairEntity::deactivate);
         newKeyPair.activate();
+        reconciliationNeeded(ReconciliationReason.KEY_STATE);
         ManagedCertificateAuthority.EVENTS.publish(this, new KeyPairActivatedEvent(versionedId, newKeyPair));
     }
 
@@ -333,6 +352,7 @@ public abstract class ManagedCertificateAuthority extends CertificateAuthority i
             .ifPresent(pkp -> {
                 findCurrentKeyPair().ifPresent(KeyPairEntity::deactivate);
                 pkp.activate();
+                reconciliationNeeded(ReconciliationReason.KEY_STATE);
                 EVENTS.publish(this, new KeyPairActivatedEvent(getVersionedId(), pkp));
                 anyKeysActivated.set(true);
             });
@@ -364,7 +384,7 @@ public abstract class ManagedCertificateAuthority extends CertificateAuthority i
 
             keyPairDeletionService.deleteRevokedKeysFromResponses(this, Collections.singletonList(response));
 
-            this.manifestAndCrlCheckNeeded = true;
+            reconciliationNeeded(ReconciliationReason.INCOMING_CERTIFICATE);
 
             log.info("[ca={}] certificate revoked serial={} uri={} resources after revocation={}", getId(), maybeIncomingCert.map(ResourceCertificate::getSerial), publicationUri, getCertifiedResources());
             ManagedCertificateAuthority.EVENTS.publish(this, new IncomingCertificateRevokedEvent(getVersionedId(), response, publicationUri, maybeIncomingCert.map(IncomingResourceCertificate::getCertificate)));
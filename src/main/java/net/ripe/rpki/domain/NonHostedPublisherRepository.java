@@ -16,7 +16,7 @@ import javax.persistence.Table;
 import java.util.UUID;
 
 @Entity
-@SequenceGenerator(name = "seq", sequenceName = "seq_all", allocationSize = 1)
+@SequenceGenerator(name = "seq", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 @Table(name = "non_hosted_publisher_repository")
 public class NonHostedPublisherRepository extends EntitySupport  {
     @Id
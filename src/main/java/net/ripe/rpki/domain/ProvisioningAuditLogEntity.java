@@ -37,7 +37,7 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "provisioning_audit_log")
-@SequenceGenerator(name = "seq_provisioning_audit_log", sequenceName = "seq_all", allocationSize = 1)
+@SequenceGenerator(name = "seq_provisioning_audit_log", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class ProvisioningAuditLogEntity extends EntitySupport {
 
     @Id
@@ -97,6 +97,14 @@ public class ProvisioningAuditLogEntity extends EntitySupport {
         return id;
     }
 
+    /**
+     * Forgets the id and version assigned by an insert that was rolled back, so the entry can be persisted again.
+     */
+    public void resetAfterRollback() {
+        this.id = null;
+        this.version = null;
+    }
+
     public ProvisioningAuditData toData() {
         return new ProvisioningAuditData(new DateTime(executionTime.getTime(), DateTimeZone.UTC), principal, summary);
     }
@@ -29,7 +29,7 @@ import java.util.stream.Collectors;
  */
 @Entity
 @Table(name = "non_hosted_ca_public_key")
-@SequenceGenerator(name = "pk_entity_seq_all", sequenceName = "seq_all", allocationSize = 1)
+@SequenceGenerator(name = "pk_entity_seq_all", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class PublicKeyEntity extends EntitySupport {
 
     @Id
@@ -0,0 +1,40 @@
+package net.ripe.rpki.domain;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Durable queue of certificate authorities with changes that still need to be published. Requests for the same CA
+ * are coalesced into a single request, which gets a new version every time the CA requests publication again.
+ */
+public interface PublicationRequestRepository {
+
+    /**
+     * Records that changes of the CA need to be published. Must be called in the transaction that made the changes,
+     * so the request is only visible once the changes are committed.
+     */
+    void requestPublication(long caId, String commandType);
+
+    boolean hasPendingRequests();
+
+    /**
+     * @return the requests visible to the current transaction. Must be called in the transaction that marks the
+     * objects as published.
+     */
+    List<PublicationRequest> findRequests();
+
+    /**
+     * Removes the requests after the transaction that marked the objects as published has committed. A request is
+     * kept when its CA requested publication again after it was found, since those changes may not have been part
+     * of the published objects.
+     */
+    void removeRequests(Collection<PublicationRequest> requests);
+
+    @lombok.Value
+    class PublicationRequest {
+        String commandType;
+        Instant requestedAt;
+        long version;
+    }
+}
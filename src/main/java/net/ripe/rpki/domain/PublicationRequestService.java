@@ -0,0 +1,14 @@
+package net.ripe.rpki.domain;
+
+import net.ripe.rpki.server.api.commands.CertificateAuthorityCommand;
+
+/**
+ * Publishes the changes made by commands shortly after they are committed.
+ */
+public interface PublicationRequestService {
+
+    /**
+     * Requests publication of the changes made by the command. Must be called in the transaction of the command.
+     */
+    void requestPublication(CertificateAuthorityCommand command);
+}
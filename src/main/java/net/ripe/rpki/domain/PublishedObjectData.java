@@ -13,9 +13,16 @@ public class PublishedObjectData {
 
     byte[] content;
 
+    byte[] sha256;
+
     public PublishedObjectData(Timestamp createdAt, URI uri, byte[] content) {
+        this(createdAt, uri, content, GenericPublishedObject.sha256(content));
+    }
+
+    public PublishedObjectData(Timestamp createdAt, URI uri, byte[] content, byte[] sha256) {
         this.createdAt = createdAt;
         this.uri = uri;
         this.content = content;
+        this.sha256 = sha256;
     }
 }
@@ -5,6 +5,7 @@ import org.joda.time.DateTime;
 
 import java.util.EnumSet;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface PublishedObjectRepository extends Repository<PublishedObject> {
 
@@ -19,10 +20,13 @@ public interface PublishedObjectRepository extends Repository<PublishedObject> {
      * Finds all objects that should be published in the public repository. All these objects are
      * a manifest or are included in a valid manifest. The objects include both {@link PublishedObject}s
      * and {@link TrustAnchorPublishedObject}s.
+     * <p>
+     * The objects are read from a database cursor while the stream is consumed, so the stream must be consumed and
+     * closed inside the transaction that created it.
      *
-     * @return list of objects that should be part of the public repository
+     * @return stream of objects that should be part of the public repository
      */
-    List<PublishedObjectData> findCurrentlyPublishedObjects();
+    Stream<PublishedObjectData> streamCurrentlyPublishedObjects();
 
     List<Long> findObjectIdsWithoutValidityPeriod();
 
@@ -0,0 +1,59 @@
+package net.ripe.rpki.domain;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The reasons why the ROA and ASPA objects of a {@link ManagedCertificateAuthority} must be reconciled with its
+ * configuration before the next manifest and CRL are issued.
+ *
+ * A CA without any reason only needs its manifest and CRL re-signed when they approach their next update time, so
+ * the (expensive) reconciliation of the signed objects is skipped for these routine renewals. Manifest and CRL
+ * expiry itself is not recorded here, it is detected by querying the published objects.
+ *
+ * The reasons are stored as a bit mask, so the masks of existing reasons must never change.
+ */
+public enum ReconciliationReason {
+    /**
+     * The ROA configuration was changed by the user or because resources were removed.
+     */
+    ROA_CONFIGURATION(1),
+
+    /**
+     * The ASPA configuration was changed by the user or because resources were removed.
+     */
+    ASPA_CONFIGURATION(2),
+
+    /**
+     * The incoming certificate of the current key was updated or revoked, so the resources or validity of signed
+     * objects may need to change.
+     */
+    INCOMING_CERTIFICATE(4),
+
+    /**
+     * A key was activated, so signed objects must be re-issued by the new current key.
+     */
+    KEY_STATE(8);
+
+    public static final int ALL = ROA_CONFIGURATION.mask | ASPA_CONFIGURATION.mask | INCOMING_CERTIFICATE.mask | KEY_STATE.mask;
+
+    private final int mask;
+
+    ReconciliationReason(int mask) {
+        this.mask = mask;
+    }
+
+    public int getMask() {
+        return mask;
+    }
+
+    public static Set<ReconciliationReason> fromMask(int mask) {
+        EnumSet<ReconciliationReason> result = EnumSet.noneOf(ReconciliationReason.class);
+        for (ReconciliationReason reason : values()) {
+            if ((mask & reason.mask) != 0) {
+                result.add(reason);
+            }
+        }
+        return result;
+    }
+}
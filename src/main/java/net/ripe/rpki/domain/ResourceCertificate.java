@@ -42,7 +42,7 @@ import static java.util.Objects.requireNonNull;
 @Table(name = "resourcecertificate")
 @Inheritance(strategy=InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "TYPE")
-@SequenceGenerator(name = "seq_resourcecertificate", sequenceName = "seq_all", allocationSize=1)
+@SequenceGenerator(name = "seq_resourcecertificate", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public abstract class ResourceCertificate extends EntitySupport {
 
     @Id
@@ -1,31 +1,128 @@
 package net.ripe.rpki.domain;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.commons.crypto.util.KeyPairFactory;
 
 import java.security.KeyPair;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 /**
  * Key pair factory that generates keys using the software <code>SunRsaSign</code> algorithm. These keys should only
  * be used for single-use signing of CMS objects. See the {@link HardwareKeyPairFactory} for generating keys that
  * should be safely stored by the HSM in production.
+ *
+ * Since RSA key generation is slow compared to signing, key pairs can be generated ahead of time by background
+ * threads into a bounded pool. When the pool is empty the key pair is generated on the calling thread.
  */
-public class SingleUseKeyPairFactory implements Supplier<KeyPair> {
-    private static final String SINGLE_USE_KEY_PAIR_PROVIDER = "SunRsaSign";
+@Slf4j
+public class SingleUseKeyPairFactory implements Supplier<KeyPair>, AutoCloseable {
+    public static final String SINGLE_USE_KEY_PAIR_PROVIDER = "SunRsaSign";
+
+    static final long REFILL_RETRY_DELAY_MILLIS = 1_000;
 
     private final KeyPairFactory keyPairFactory;
 
+    private final BlockingQueue<KeyPair> pool;
+    private final ExecutorService refillExecutor;
+
+    private final Timer pooledKeyPairTimer;
+    private final Timer generatedKeyPairTimer;
+
     public SingleUseKeyPairFactory() {
         this.keyPairFactory = new KeyPairFactory(keyPairGeneratorProvider());
+        this.pool = null;
+        this.refillExecutor = null;
+        this.pooledKeyPairTimer = null;
+        this.generatedKeyPairTimer = null;
     }
 
     public SingleUseKeyPairFactory(KeyPairFactory keyPairFactory) {
         this.keyPairFactory = keyPairFactory.withProvider(keyPairGeneratorProvider());
+        this.pool = null;
+        this.refillExecutor = null;
+        this.pooledKeyPairTimer = null;
+        this.generatedKeyPairTimer = null;
+    }
+
+    /**
+     * @param poolSize the maximum number of pre-generated key pairs to keep
+     * @param refillThreads the number of background threads that generate key pairs while the pool is not full
+     */
+    public SingleUseKeyPairFactory(KeyPairFactory keyPairFactory, int poolSize, int refillThreads, MeterRegistry meterRegistry) {
+        this.keyPairFactory = keyPairFactory.withProvider(keyPairGeneratorProvider());
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+
+        Gauge.builder("rpkicore.single.use.key.pair.pool.size", pool, BlockingQueue::size)
+            .description("The number of pre-generated single-use key pairs available in the pool")
+            .register(meterRegistry);
+        Gauge.builder("rpkicore.single.use.key.pair.pool.capacity", () -> poolSize)
+            .description("The maximum number of pre-generated single-use key pairs in the pool")
+            .register(meterRegistry);
+        Counter refilled = Counter.builder("rpkicore.single.use.key.pair.pool.refilled")
+            .description("The number of single-use key pairs generated in the background")
+            .register(meterRegistry);
+        this.pooledKeyPairTimer = Timer.builder("rpkicore.single.use.key.pair.wait.time")
+            .description("Time spent by callers to obtain a single-use key pair")
+            .tag("source", "pool")
+            .register(meterRegistry);
+        this.generatedKeyPairTimer = Timer.builder("rpkicore.single.use.key.pair.wait.time")
+            .description("Time spent by callers to obtain a single-use key pair")
+            .tag("source", "generated")
+            .register(meterRegistry);
+
+        this.refillExecutor = Executors.newFixedThreadPool(
+            Math.max(1, refillThreads),
+            new ThreadFactoryBuilder().setNameFormat("single-use-key-pair-pool-%d").setDaemon(true).build()
+        );
+        for (int i = 0; i < refillThreads; ++i) {
+            refillExecutor.execute(() -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        try {
+                            // Blocks while the pool is full
+                            pool.put(this.keyPairFactory.generate());
+                            refilled.increment();
+                        } catch (RuntimeException e) {
+                            // Keep refilling, otherwise all callers fall back to generating key pairs themselves
+                            log.error("Failed to pre-generate single-use key pair, retrying in {} ms", REFILL_RETRY_DELAY_MILLIS, e);
+                            Thread.sleep(REFILL_RETRY_DELAY_MILLIS);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        log.info("Pre-generating up to {} single-use key pairs using {} threads", poolSize, refillThreads);
     }
 
     @Override
     public KeyPair get() {
-        return keyPairFactory.generate();
+        if (pool == null) {
+            return keyPairFactory.generate();
+        }
+
+        long start = System.nanoTime();
+        KeyPair keyPair = pool.poll();
+        if (keyPair != null) {
+            pooledKeyPairTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return keyPair;
+        }
+
+        // Pool is drained, do not wait for the background threads
+        keyPair = keyPairFactory.generate();
+        generatedKeyPairTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return keyPair;
     }
 
     public String keyPairGeneratorProvider() {
@@ -35,4 +132,11 @@ public class SingleUseKeyPairFactory implements Supplier<KeyPair> {
     public String signatureProvider() {
         return SINGLE_USE_KEY_PAIR_PROVIDER;
     }
+
+    @Override
+    public void close() {
+        if (refillExecutor != null) {
+            refillExecutor.shutdownNow();
+        }
+    }
 }
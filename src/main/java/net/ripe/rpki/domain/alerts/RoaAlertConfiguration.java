@@ -37,7 +37,7 @@ import java.util.stream.Collectors;
 
 @Entity
 @Table(name="roa_alert_configuration")
-@SequenceGenerator(name = "roa_alert_conf_seq", sequenceName = "seq_all", allocationSize=1)
+@SequenceGenerator(name = "roa_alert_conf_seq", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class RoaAlertConfiguration extends EntitySupport {
 
     @Id
@@ -38,7 +38,7 @@ import static net.ripe.rpki.util.Streams.streamToSortedMap;
 
 @Entity
 @Table(name = "aspaconfiguration")
-@SequenceGenerator(name = "seq_aspaconfiguration", sequenceName = "seq_all", allocationSize = 1)
+@SequenceGenerator(name = "seq_aspaconfiguration", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 @Slf4j
 @NoArgsConstructor
 public class AspaConfiguration extends EntitySupport {
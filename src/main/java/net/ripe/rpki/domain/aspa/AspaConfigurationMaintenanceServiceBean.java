@@ -10,6 +10,7 @@ import net.ripe.rpki.core.events.IncomingCertificateRevokedEvent;
 import net.ripe.rpki.core.events.IncomingCertificateUpdatedEvent;
 import net.ripe.rpki.domain.CertificateAuthorityRepository;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
+import net.ripe.rpki.domain.ReconciliationReason;
 import net.ripe.rpki.server.api.commands.CommandContext;
 import net.ripe.rpki.server.api.commands.UpdateAspaConfigurationCommand;
 import net.ripe.rpki.server.api.dto.AspaConfigurationData;
@@ -68,7 +69,7 @@ public class AspaConfigurationMaintenanceServiceBean implements CertificateAutho
         }
 
         toBeRemoved.forEach(aspaConfigurationRepository::remove);
-        ca.configurationUpdated();
+        ca.reconciliationNeeded(ReconciliationReason.ASPA_CONFIGURATION);
 
         context.recordEvent(
             new AspaConfigurationUpdatedDueToChangedResourcesEvent(
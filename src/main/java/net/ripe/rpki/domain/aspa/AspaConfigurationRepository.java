@@ -3,7 +3,9 @@ package net.ripe.rpki.domain.aspa;
 import net.ripe.ipresource.Asn;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
 
+import java.time.Instant;
 import java.util.Collection;
+import java.util.Optional;
 import java.util.SortedMap;
 
 public interface AspaConfigurationRepository {
@@ -11,6 +13,13 @@ public interface AspaConfigurationRepository {
 
     Collection<AspaConfiguration> findAll();
 
+    int countAspaConfigurations();
+
+    /**
+     * @return the time of the most recent change of an ASPA configuration, or empty when there are none.
+     */
+    Optional<Instant> lastModified();
+
     void add(AspaConfiguration aspaConfiguration);
     void remove(AspaConfiguration aspaConfiguration);
 }
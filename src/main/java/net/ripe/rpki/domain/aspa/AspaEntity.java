@@ -30,7 +30,7 @@ import static net.ripe.rpki.util.Streams.streamToSortedMap;
 
 @Entity
 @Table(name = "aspaentity")
-@SequenceGenerator(name = "seq_aspaentity", sequenceName = "seq_all", allocationSize=1)
+@SequenceGenerator(name = "seq_aspaentity", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 @NoArgsConstructor
 public class AspaEntity extends EntitySupport {
 
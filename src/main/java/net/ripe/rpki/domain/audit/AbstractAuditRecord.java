@@ -2,6 +2,7 @@ package net.ripe.rpki.domain.audit;
 
 import lombok.Getter;
 import net.ripe.rpki.commons.util.VersionedId;
+import net.ripe.rpki.ncc.core.domain.support.EntitySupport;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 import org.joda.time.DateTime;
@@ -18,7 +19,7 @@ import javax.persistence.SequenceGenerator;
 
 @Entity
 @Inheritance(strategy = InheritanceType.TABLE_PER_CLASS)
-@SequenceGenerator(name = "seq_audit_record", sequenceName = "seq_all", allocationSize = 1)
+@SequenceGenerator(name = "seq_audit_record", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public abstract class AbstractAuditRecord implements net.ripe.rpki.ncc.core.domain.support.Entity {
 
     @Id
@@ -0,0 +1,70 @@
+package net.ripe.rpki.domain.audit;
+
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Maintains the partitions of the audit tables. The tables are partitioned by month on their execution time (see
+ * the <code>V120__partition_audit_tables.sql</code> migration). Besides the monthly partitions each table has a
+ * legacy partition with all entries from before the tables were partitioned, and a default partition for entries
+ * that do not fit in a monthly partition.
+ */
+public interface AuditPartitionRepository {
+
+    String COMMAND_AUDIT_TABLE = "commandaudit";
+    String PROVISIONING_AUDIT_LOG_TABLE = "provisioning_audit_log";
+
+    /**
+     * Creates the partition for the month, unless it already exists. Nothing is created when the default partition
+     * already contains entries for the month, since these would have to be moved.
+     *
+     * @return true when the partition exists after this call
+     */
+    boolean createMonthlyPartition(String table, YearMonth month);
+
+    List<AuditPartition> findPartitions(String table);
+
+    /**
+     * Writes the entries of the partition executed before the cutoff as CSV (with header) to the output stream.
+     *
+     * @return the number of entries written
+     */
+    long exportEntries(AuditPartition partition, Instant cutoff, OutputStream out);
+
+    /**
+     * Removes the partition from its table and drops it. The entry uuids of the provisioning audit log entries in the
+     * partition can be used again afterwards.
+     */
+    void dropPartition(AuditPartition partition);
+
+    /**
+     * Deletes the entries of the partition executed before the cutoff, like {@link #dropPartition(AuditPartition)}
+     * does for all entries.
+     *
+     * @return the number of entries deleted
+     */
+    int deleteEntries(AuditPartition partition, Instant cutoff);
+
+    @lombok.Value
+    class AuditPartition {
+        String table;
+        String name;
+        /**
+         * Exclusive upper bound of the execution time of the entries, null for the default partition.
+         */
+        Instant end;
+
+        public boolean isDefault() {
+            return end == null;
+        }
+
+        /**
+         * @return true when all entries of the partition were executed before the cutoff
+         */
+        public boolean endsBefore(Instant cutoff) {
+            return end != null && !end.isAfter(cutoff);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package net.ripe.rpki.domain.crl;
 
+import lombok.Getter;
 import net.ripe.rpki.commons.crypto.ValidityPeriod;
 import net.ripe.rpki.commons.crypto.crl.X509Crl;
 import net.ripe.rpki.commons.crypto.crl.X509CrlBuilder;
@@ -7,6 +8,7 @@ import net.ripe.rpki.domain.KeyPairEntity;
 import net.ripe.rpki.domain.OutgoingResourceCertificate;
 import net.ripe.rpki.domain.PublishedObject;
 import net.ripe.rpki.domain.ResourceCertificateRepository;
+import net.ripe.rpki.domain.manifest.ManifestAndCrlSummaryCache;
 import net.ripe.rpki.ncc.core.domain.support.EntitySupport;
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
@@ -23,15 +25,18 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToOne;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import java.math.BigInteger;
 import java.net.URI;
 import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static net.ripe.rpki.domain.manifest.ManifestEntity.TIME_TO_NEXT_UPDATE_SOFT_LIMIT;
 
 @Entity
 @Table(name = "crlentity")
-@SequenceGenerator(name = "seq_crlentity", sequenceName = "seq_all", allocationSize = 1)
+@SequenceGenerator(name = "seq_crlentity", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class CrlEntity extends EntitySupport {
 
     @Id
@@ -49,6 +54,9 @@ public class CrlEntity extends EntitySupport {
     @JoinColumn(name = "published_object_id", nullable = false)
     private PublishedObject publishedObject;
 
+    @Transient
+    private X509Crl crl;
+
 
     protected CrlEntity() {
     }
@@ -76,7 +84,13 @@ public class CrlEntity extends EntitySupport {
     }
 
     public X509Crl getCrl() {
-        return publishedObject == null ? null : new X509Crl(getEncoded());
+        if (publishedObject == null) {
+            return null;
+        }
+        if (crl == null) {
+            crl = new X509Crl(getEncoded());
+        }
+        return crl;
     }
 
     public KeyPairEntity getKeyPair() {
@@ -89,6 +103,7 @@ public class CrlEntity extends EntitySupport {
 
     public void setPublishedObject(PublishedObject publishedObject) {
         this.publishedObject = publishedObject;
+        this.crl = null;
     }
 
     public void withdraw() {
@@ -97,16 +112,16 @@ public class CrlEntity extends EntitySupport {
         }
     }
 
-    public boolean isUpdateNeeded(DateTime now, ResourceCertificateRepository resourceCertificateRepository) {
+    public boolean isUpdateNeeded(DateTime now, ResourceCertificateRepository resourceCertificateRepository, ManifestAndCrlSummaryCache summaryCache) {
         KeyPairEntity keyPair = getKeyPair();
         if (keyPair.isRevoked()) {
             return false;
         }
 
-        X509Crl current = getCrl();
-        if (current == null) {
+        if (publishedObject == null) {
             return true;
         }
+        CrlSummary current = summaryCache.get(publishedObject, CrlSummary.class, () -> new CrlSummary(getCrl()));
 
         if (current.getNextUpdateTime().minus(TIME_TO_NEXT_UPDATE_SOFT_LIMIT).isBefore(now)) {
             return true;
@@ -117,8 +132,7 @@ public class CrlEntity extends EntitySupport {
         }
 
         Collection<OutgoingResourceCertificate> revokedCertificates = resourceCertificateRepository.findRevokedCertificatesWithValidityTimeAfterNowBySigningKeyPair(keyPair, now);
-        X509CrlBuilder builder = newCrlBuilderWithEntries(revokedCertificates);
-        return !builder.isSatisfiedByEntries(current);
+        return !current.hasEntries(revokedCertificates);
     }
 
     private boolean isPublicationDirChanged(URI resourceCertificateRepository) {
@@ -158,4 +172,35 @@ public class CrlEntity extends EntitySupport {
         return builder;
     }
 
+    /**
+     * The fields of the current CRL that are needed to decide if an update is needed.
+     */
+    private static final class CrlSummary {
+        @Getter
+        private final DateTime nextUpdateTime;
+        private final int entryCount;
+        private final Map<BigInteger, DateTime> revocationTimes;
+
+        CrlSummary(X509Crl crl) {
+            this.nextUpdateTime = crl.getNextUpdateTime();
+            this.entryCount = crl.getRevokedCertificates().size();
+            // A CRL with a duplicate serial has more entries than revocation times, so it is always replaced
+            this.revocationTimes = crl.getRevokedCertificates().stream()
+                .collect(Collectors.toMap(X509Crl.Entry::getSerialNumber, X509Crl.Entry::getRevocationDateTime, (first, second) -> first));
+        }
+
+        boolean hasEntries(Collection<OutgoingResourceCertificate> revokedCertificates) {
+            if (revokedCertificates.size() != entryCount || entryCount != revocationTimes.size()) {
+                return false;
+            }
+            for (OutgoingResourceCertificate certificate : revokedCertificates) {
+                DateTime revocationTime = revocationTimes.get(certificate.getSerial());
+                // CRLs encode the revocation time with a precision of seconds
+                if (revocationTime == null || !revocationTime.withMillisOfSecond(0).isEqual(certificate.getRevocationTime().withMillisOfSecond(0))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package net.ripe.rpki.domain.hsm;
 
+import net.ripe.rpki.ncc.core.domain.support.EntitySupport;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -13,7 +15,7 @@ import javax.validation.constraints.NotNull;
 
 @Entity
 @Table(name = "hsm_certificate_chain")
-@SequenceGenerator(name = "seq_certificate_chain", sequenceName = "seq_all", allocationSize = 1)
+@SequenceGenerator(name = "seq_certificate_chain", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class HsmCertificateChain implements net.ripe.rpki.ncc.core.domain.support.Entity {
 
     @Id
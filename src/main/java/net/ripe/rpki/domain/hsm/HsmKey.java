@@ -19,7 +19,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "hsm_key")
-@SequenceGenerator(name = "seq_hsm_keys", sequenceName = "seq_all", allocationSize = 1)
+@SequenceGenerator(name = "seq_hsm_keys", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class HsmKey extends EntitySupport {
 
     @Id
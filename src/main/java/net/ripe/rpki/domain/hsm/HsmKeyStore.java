@@ -17,7 +17,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "hsm_key_store")
-@SequenceGenerator(name = "seq_hsm_key_store", sequenceName = "seq_all", allocationSize = 1)
+@SequenceGenerator(name = "seq_hsm_key_store", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class HsmKeyStore extends EntitySupport {
 
     @Id
@@ -0,0 +1,34 @@
+package net.ripe.rpki.domain.manifest;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import net.ripe.rpki.domain.PublishedObject;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Summaries of the current manifests and CRLs, holding the fields that are needed to decide if these must be updated.
+ * Summaries are shared between transactions using the content hash of the published object as key, so an unchanged
+ * manifest or CRL is only decoded once.
+ */
+@Component
+public class ManifestAndCrlSummaryCache {
+
+    static final int MAXIMUM_CACHED_SUMMARIES = 100_000;
+
+    private final Cache<HashCode, Object> summaries = CacheBuilder.newBuilder()
+        .maximumSize(MAXIMUM_CACHED_SUMMARIES)
+        .build();
+
+    public <T> T get(PublishedObject publishedObject, Class<T> summaryType, Supplier<T> summarize) {
+        HashCode key = HashCode.fromBytes(publishedObject.getContentSha256());
+        Object summary = summaries.getIfPresent(key);
+        if (!summaryType.isInstance(summary)) {
+            summary = summarize.get();
+            summaries.put(key, summary);
+        }
+        return summaryType.cast(summary);
+    }
+}
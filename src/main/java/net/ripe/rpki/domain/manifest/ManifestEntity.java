@@ -1,5 +1,6 @@
 package net.ripe.rpki.domain.manifest;
 
+import com.google.common.collect.ImmutableMap;
 import net.ripe.ipresource.IpResourceSet;
 import net.ripe.rpki.application.impl.ResourceCertificateInformationAccessStrategyBean;
 import net.ripe.rpki.commons.crypto.cms.manifest.ManifestCms;
@@ -29,11 +30,15 @@ import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import javax.security.auth.x500.X500Principal;
 import java.math.BigInteger;
+import java.net.URI;
 import java.security.KeyPair;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -50,7 +55,7 @@ import java.util.stream.Collectors;
  */
 @Entity
 @Table(name = "manifestentity")
-@SequenceGenerator(name = "seq_manifestentity", sequenceName = "seq_all", allocationSize=1)
+@SequenceGenerator(name = "seq_manifestentity", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class ManifestEntity extends EntitySupport {
 
     /**
@@ -89,6 +94,9 @@ public class ManifestEntity extends EntitySupport {
     @OneToMany(mappedBy = "containingManifest")
     private Set<PublishedObject> entries = new HashSet<>();
 
+    @Transient
+    private ManifestCms manifestCms;
+
     protected ManifestEntity() {}
 
     public ManifestEntity(KeyPairEntity keyPair) {
@@ -118,17 +126,34 @@ public class ManifestEntity extends EntitySupport {
             return null;
         }
 
-        ManifestCmsParser parser = new ManifestCmsParser();
-        parser.parse("manifest", publishedObject.getContent());
-        return parser.getManifestCms();
+        if (manifestCms == null) {
+            ManifestCmsParser parser = new ManifestCmsParser();
+            parser.parse("manifest", publishedObject.getContent());
+            manifestCms = parser.getManifestCms();
+        }
+        return manifestCms;
     }
 
-    public boolean isUpdateNeeded(DateTime now, Collection<PublishedObject> manifestEntries) {
-        ManifestCms cms = getManifestCms();
-        return cms == null
-                || isCloseToNextUpdateTime(now, cms)
-                || parentCertificatePublicationLocationChanged(cms, keyPair.getCurrentIncomingCertificate())
-                || !cms.matchesFiles(manifestEntries.stream().collect(Collectors.toMap(PublishedObject::getFilename, PublishedObject::getContent, (a, b) -> b)));
+    public boolean isUpdateNeeded(DateTime now, Collection<PublishedObject> manifestEntries, ManifestAndCrlSummaryCache summaryCache) {
+        if (publishedObject == null) {
+            return true;
+        }
+        ManifestSummary summary = summaryCache.get(publishedObject, ManifestSummary.class, () -> new ManifestSummary(getManifestCms()));
+        return isCloseToNextUpdateTime(now, summary)
+                || parentCertificatePublicationLocationChanged(summary, keyPair.getCurrentIncomingCertificate())
+                || !matchesEntries(summary, manifestEntries);
+    }
+
+    /**
+     * Compares the file hashes of the manifest against the stored content hashes of the entries, so no entry content
+     * needs to be rehashed.
+     */
+    private static boolean matchesEntries(ManifestSummary summary, Collection<PublishedObject> manifestEntries) {
+        Map<String, byte[]> entryHashes = manifestEntries.stream()
+            .collect(Collectors.toMap(PublishedObject::getFilename, PublishedObject::getContentSha256, (a, b) -> b));
+        Map<String, byte[]> manifestHashes = summary.getFiles();
+        return manifestHashes.keySet().equals(entryHashes.keySet())
+            && entryHashes.entrySet().stream().allMatch(entry -> Arrays.equals(manifestHashes.get(entry.getKey()), entry.getValue()));
     }
 
     public void update(OutgoingResourceCertificate eeCertificate,
@@ -155,6 +180,7 @@ public class ManifestEntity extends EntitySupport {
         ManifestCms manifestCms = buildManifestCms(entries, eeCertificateKeyPair, signatureProvider);
 
         publishedObject = new PublishedObject(keyPair, keyPair.getManifestFilename(), manifestCms.getEncoded(), false, keyPair.getCertificateRepositoryLocation(), manifestCms.getValidityPeriod());
+        this.manifestCms = manifestCms;
 
         this.nextNumber++;
     }
@@ -180,12 +206,12 @@ public class ManifestEntity extends EntitySupport {
         return new CertificateIssuanceRequest(new IpResourceSet(), subject, eeKeyPair.getPublic(), sia);
     }
 
-    private boolean isCloseToNextUpdateTime(DateTime now, ManifestCms cms) {
-        return cms.getNextUpdateTime().minus(TIME_TO_NEXT_UPDATE_SOFT_LIMIT).isBefore(now);
+    private boolean isCloseToNextUpdateTime(DateTime now, ManifestSummary summary) {
+        return summary.getNextUpdateTime().minus(TIME_TO_NEXT_UPDATE_SOFT_LIMIT).isBefore(now);
     }
 
-    private boolean parentCertificatePublicationLocationChanged(ManifestCms cms, IncomingResourceCertificate incomingResourceCertificate) {
-        return !incomingResourceCertificate.getPublicationUri().equals(cms.getParentCertificateUri());
+    private boolean parentCertificatePublicationLocationChanged(ManifestSummary summary, IncomingResourceCertificate incomingResourceCertificate) {
+        return !incomingResourceCertificate.getPublicationUri().equals(summary.getParentCertificateUri());
     }
 
     private void withdraw() {
@@ -193,4 +219,20 @@ public class ManifestEntity extends EntitySupport {
             publishedObject.withdraw();
         }
     }
+
+    /**
+     * The fields of the current manifest that are needed to decide if an update is needed.
+     */
+    @lombok.Value
+    private static class ManifestSummary {
+        DateTime nextUpdateTime;
+        URI parentCertificateUri;
+        Map<String, byte[]> files;
+
+        ManifestSummary(ManifestCms cms) {
+            this.nextUpdateTime = cms.getNextUpdateTime();
+            this.parentCertificateUri = cms.getParentCertificateUri();
+            this.files = ImmutableMap.copyOf(cms.getFiles());
+        }
+    }
 }
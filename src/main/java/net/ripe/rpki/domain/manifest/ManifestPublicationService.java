@@ -34,6 +34,7 @@ public class ManifestPublicationService {
     private final ManifestEntityRepository manifestEntityRepository;
     private final SingleUseKeyPairFactory singleUseKeyPairFactory;
     private final SingleUseEeCertificateFactory singleUseEeCertificateFactory;
+    private final ManifestAndCrlSummaryCache summaryCache;
 
     private final DistributionSummary manifestSizeDistribution;
     private final DistributionSummary crlSizeDistribution;
@@ -50,6 +51,7 @@ public class ManifestPublicationService {
         ManifestEntityRepository manifestEntityRepository,
         SingleUseKeyPairFactory singleUseKeyPairFactory,
         SingleUseEeCertificateFactory singleUseEeCertificateFactory,
+        ManifestAndCrlSummaryCache summaryCache,
         MeterRegistry meterRegistry
     ) {
         this.resourceCertificateRepository = resourceCertificateRepository;
@@ -60,6 +62,7 @@ public class ManifestPublicationService {
         this.manifestEntityRepository = manifestEntityRepository;
         this.singleUseKeyPairFactory = singleUseKeyPairFactory;
         this.singleUseEeCertificateFactory = singleUseEeCertificateFactory;
+        this.summaryCache = summaryCache;
         this.manifestSizeDistribution = DistributionSummary.builder(RPKI_CA_GENERATED_MANIFEST_SIZE_METRIC_NAME)
             .description("size in bytes of generated manifests")
             .baseUnit("byte")
@@ -80,12 +83,18 @@ public class ManifestPublicationService {
      * Update MFTs and CRLs. The generated manifest's and CRL's next update time must be the same, so if either
      * object needs to be updated both are newly issued.
      * <p>
+     * The ROA and ASPA objects are only reconciled with the configuration when the CA recorded a
+     * {@link ReconciliationReason}, so routine renewals only re-sign the manifest and CRL. The caller is responsible
+     * for clearing the reasons using {@link ManagedCertificateAuthority#manifestAndCrlCheckCompleted()}.
+     * <p>
      * Mark all new and updated objects to be published/withdrawn.
      * Emit corresponding event, so that an update is sent to the publication server.
      */
     public long updateManifestAndCrlIfNeeded(ManagedCertificateAuthority certificateAuthority) {
-        aspaEntityService.updateAspaIfNeeded(certificateAuthority);
-        roaEntityService.updateRoasIfNeeded(certificateAuthority);
+        if (certificateAuthority.isReconciliationNeeded()) {
+            aspaEntityService.updateAspaIfNeeded(certificateAuthority);
+            roaEntityService.updateRoasIfNeeded(certificateAuthority);
+        }
 
         return certificateAuthority.getKeyPairs()
             .stream()
@@ -96,7 +105,7 @@ public class ManifestPublicationService {
                 CrlEntity crlEntity = crlEntityRepository.findOrCreateByKeyPair(keyPair);
                 ManifestEntity manifestEntity = manifestEntityRepository.findOrCreateByKeyPairEntity(keyPair);
 
-                boolean updateNeeded = crlEntity.isUpdateNeeded(now, resourceCertificateRepository) || isManifestUpdateNeeded(now, manifestEntity);
+                boolean updateNeeded = crlEntity.isUpdateNeeded(now, resourceCertificateRepository, summaryCache) || isManifestUpdateNeeded(now, manifestEntity);
                 if (!updateNeeded) {
                     return false;
                 }
@@ -133,7 +142,8 @@ public class ManifestPublicationService {
         KeyPairEntity keyPair = manifestEntity.getKeyPair();
         return manifestEntity.isUpdateNeeded(
             now,
-            determineManifestEntries(publishedObjectRepository, keyPair)
+            determineManifestEntries(publishedObjectRepository, keyPair),
+            summaryCache
         );
     }
 
@@ -13,7 +13,7 @@ import javax.persistence.Table;
 
 @Entity
 @Table(name="property")
-@SequenceGenerator(name = "seq_ca_property", sequenceName = "seq_all", allocationSize=1)
+@SequenceGenerator(name = "seq_ca_property", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class PropertyEntity extends EntitySupport {
 
     @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "seq_ca_property")
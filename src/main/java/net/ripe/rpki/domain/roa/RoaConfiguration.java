@@ -39,7 +39,7 @@ import java.util.stream.Collectors;
 @Slf4j
 @Entity
 @Table(name = "roaconfiguration")
-@SequenceGenerator(name = "seq_roaconfiguration", sequenceName = "seq_all", allocationSize = 1)
+@SequenceGenerator(name = "seq_roaconfiguration", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class RoaConfiguration extends EntitySupport {
 
     @Id
@@ -51,7 +51,11 @@ public class RoaConfiguration extends EntitySupport {
     @JoinColumn(name = "certificateauthority_id")
     private ManagedCertificateAuthority certificateAuthority;
 
-    @ElementCollection(fetch = FetchType.EAGER)
+    /**
+     * Prefixes are stored as individual rows keyed by configuration, ASN and prefix. The set is only modified in
+     * place, so Hibernate inserts and deletes the affected rows instead of recreating the whole collection.
+     */
+    @ElementCollection(fetch = FetchType.LAZY)
     @CollectionTable(name = "roaconfiguration_prefixes", joinColumns = @JoinColumn(name = "roaconfiguration_id"))
     private Set<RoaConfigurationPrefix> prefixes = new HashSet<>();
 
@@ -68,7 +72,9 @@ public class RoaConfiguration extends EntitySupport {
     }
 
     public void setPrefixes(Collection<? extends RoaConfigurationPrefix> prefixes) {
-        this.prefixes = convertToSet(convertToMap(prefixes));
+        Set<RoaConfigurationPrefix> replacement = convertToSet(convertToMap(prefixes));
+        this.prefixes.retainAll(replacement);
+        this.prefixes.addAll(replacement);
     }
 
     public Set<RoaConfigurationPrefix> getPrefixes() {
@@ -85,14 +91,25 @@ public class RoaConfiguration extends EntitySupport {
                 .collect(Collectors.toList()));
     }
 
-    public final void addPrefix(Collection<? extends RoaConfigurationPrefix> roaPrefixes) {
-        Map<AnnouncedRoute, Integer> byPrefix = convertToMap(prefixes);
-        byPrefix.putAll(convertToMap(roaPrefixes));
-        prefixes = convertToSet(byPrefix);
+    /**
+     * Adds the prefixes, replacing a configured prefix for the same ASN and prefix with a different maximum length.
+     *
+     * @return the prefixes that were not configured before
+     */
+    public final Set<RoaConfigurationPrefix> addPrefix(Collection<? extends RoaConfigurationPrefix> roaPrefixes) {
+        Map<AnnouncedRoute, Integer> additions = convertToMap(roaPrefixes);
+        prefixes.removeIf(prefix -> {
+            Integer maximumLength = additions.get(new AnnouncedRoute(prefix.getAsn(), prefix.getPrefix()));
+            return maximumLength != null && !prefix.equals(new RoaConfigurationPrefix(prefix.getAsn(), prefix.getPrefix(), maximumLength));
+        });
+        return convertToSet(additions).stream().filter(prefixes::add).collect(Collectors.toSet());
     }
 
-    public final void removePrefix(Collection<? extends RoaConfigurationPrefix> roaPrefixes) {
-        prefixes.removeAll(roaPrefixes);
+    /**
+     * @return the prefixes that were actually removed from this configuration
+     */
+    public final Set<RoaConfigurationPrefix> removePrefix(Collection<? extends RoaConfigurationPrefix> roaPrefixes) {
+        return roaPrefixes.stream().filter(prefixes::remove).collect(Collectors.toSet());
     }
 
     Map<Asn, RoaSpecification> toRoaSpecifications(IncomingResourceCertificate currentIncomingCertificate) {
@@ -10,6 +10,7 @@ import net.ripe.rpki.core.events.IncomingCertificateRevokedEvent;
 import net.ripe.rpki.core.events.IncomingCertificateUpdatedEvent;
 import net.ripe.rpki.domain.CertificateAuthorityRepository;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
+import net.ripe.rpki.domain.ReconciliationReason;
 import net.ripe.rpki.server.api.commands.CommandContext;
 import net.ripe.rpki.server.api.commands.UpdateRoaConfigurationCommand;
 import net.ripe.rpki.server.api.dto.RoaConfigurationPrefixData;
@@ -68,7 +69,7 @@ public class RoaConfigurationMaintenanceServiceBean implements CertificateAuthor
         if (!toBeRemoved.isEmpty()) {
             // Update the config, log the removed prefixes [...]
             config.removePrefix(toBeRemoved);
-            ca.configurationUpdated();
+            ca.reconciliationNeeded(ReconciliationReason.ROA_CONFIGURATION);
 
             roaConfigurationRepository.logRoaPrefixDeletion(config, toBeRemoved);
 
@@ -24,6 +24,11 @@ public interface RoaConfigurationRepository {
 
     List<RoaConfigurationPerCa> findAllPerCa();
 
+    /**
+     * @return the prefixes of all ROA configurations, without loading the configurations themselves.
+     */
+    List<RoaConfigurationPrefix> findAllPrefixes();
+
     void logRoaPrefixDeletion(RoaConfiguration configuration, Collection<? extends RoaConfigurationPrefix> deletedPrefixes);
 
     int countRoaPrefixes();
@@ -31,7 +31,7 @@ import java.net.URI;
  */
 @Entity
 @Table(name = "roaentity")
-@SequenceGenerator(name = "seq_roaentity", sequenceName = "seq_all", allocationSize=1)
+@SequenceGenerator(name = "seq_roaentity", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class RoaEntity extends EntitySupport {
 
     @Id
@@ -5,6 +5,7 @@ import net.ripe.rpki.commons.ta.domain.request.TrustAnchorRequest;
 import net.ripe.rpki.commons.xml.XStreamXmlSerializer;
 import net.ripe.rpki.commons.xml.XStreamXmlSerializerBuilder;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
+import net.ripe.rpki.ncc.core.domain.support.EntitySupport;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -20,7 +21,7 @@ import java.util.Collections;
 
 @Entity
 @Table(name = "upstream_request")
-@SequenceGenerator(name = "seq_upstream_request", sequenceName = "seq_all", allocationSize = 1)
+@SequenceGenerator(name = "seq_upstream_request", sequenceName = "seq_all", allocationSize = EntitySupport.SEQ_ALL_ALLOCATION_SIZE)
 public class UpStreamCARequestEntity {
 
     @SuppressWarnings("unused")
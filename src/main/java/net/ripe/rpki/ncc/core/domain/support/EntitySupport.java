@@ -18,6 +18,14 @@ import java.util.Set;
 @MappedSuperclass
 public abstract class EntitySupport implements Entity {
 
+    /**
+     * Allocation size of all entity id generators using the shared <code>seq_all</code> sequence, which must match
+     * the increment of the sequence. Hibernate's pooled optimizer reserves the ids <code>(n - 50, n]</code> with a
+     * single <code>nextval</code> call, so code that uses <code>nextval('seq_all')</code> directly still gets unique
+     * ids.
+     */
+    public static final int SEQ_ALL_ALLOCATION_SIZE = 50;
+
     @Version
     @Column(nullable=false)
     protected Long version;
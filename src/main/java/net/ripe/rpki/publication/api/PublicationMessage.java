@@ -31,6 +31,10 @@ public interface PublicationMessage {
             return Arrays.copyOf(content, content.length);
         }
 
+        public int getContentLength() {
+            return content.length;
+        }
+
         public String getBase64Content() {
             return BaseEncoding.base64().encode(content);
         }
@@ -3,9 +3,12 @@ package net.ripe.rpki.publication.api;
 import net.ripe.rpki.domain.PublishedObjectData;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.stream.Stream;
 
 
 public interface PublicationWriteService {
-    void writeAll(List<PublishedObjectData> publishedObjects) throws IOException;
+    /**
+     * Writes all objects from the stream. The stream is consumed once and may be backed by a database cursor.
+     */
+    void writeAll(Stream<PublishedObjectData> publishedObjects) throws IOException;
 }
@@ -1,6 +1,8 @@
 package net.ripe.rpki.publication.persistence.disk;
 
+import com.google.common.hash.HashCode;
 import net.ripe.rpki.commons.util.ConfigurationUtil;
+import net.ripe.rpki.domain.GenericPublishedObject;
 import net.ripe.rpki.domain.PublishedObjectData;
 import net.ripe.rpki.server.api.configuration.RepositoryConfiguration;
 import org.apache.commons.io.FileUtils;
@@ -20,20 +22,27 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
 import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
@@ -53,9 +62,21 @@ public class FileSystemPublicationObjectPersistence {
 
     private final Map<URI, Path> baseUriToBaseDir;
 
+    /**
+     * The maximum number of objects read from the stream that are waiting to be written by the file writer pool.
+     */
+    private static final int MAX_PENDING_WRITES = 1024;
+
     private final ForkJoinPool fileWriterPool = new ForkJoinPool(2 * Runtime.getRuntime().availableProcessors());
     private final long targetDirectoryRetentionPeriodMs;
     private final long targetDirectoryRetentionCopiesCount;
+    private final boolean incrementalWriteEnabled;
+
+    /**
+     * The content hashes of the objects in the last target directory written per publication base directory, so
+     * unchanged objects can be recognized without reading the current files.
+     */
+    private final Map<Path, WrittenDirectory> lastWrittenDirectories = new ConcurrentHashMap<>();
 
     @Inject
     public FileSystemPublicationObjectPersistence(
@@ -64,7 +85,8 @@ public class FileSystemPublicationObjectPersistence {
         @Value("${" + RepositoryConfiguration.TA_REPOSITORY_BASE_URI + "}") URI taRepositoryBaseUri,
         @Value("${" + RepositoryConfiguration.TA_REPOSITORY_BASE_DIRECTORY + "}") String taRepositoryBaseDirectory,
         @Value("${" + RepositoryConfiguration.RSYNC_TARGET_DIRECTORY_RETENTION_PERIOD_MINUTES + ":120}") long targetDirectoryRetentionPeriodMinutes,
-        @Value("${" + RepositoryConfiguration.RSYNC_TARGET_DIRECTORY_RETENTION_COPIES_COUNT + ":8}") long targetDirectoryRetentionCopiesCount
+        @Value("${" + RepositoryConfiguration.RSYNC_TARGET_DIRECTORY_RETENTION_COPIES_COUNT + ":8}") long targetDirectoryRetentionCopiesCount,
+        @Value("${" + RepositoryConfiguration.RSYNC_INCREMENTAL_WRITE_ENABLED + ":false}") boolean incrementalWriteEnabled
     ) throws IOException {
 
         baseUriToBaseDir = new LinkedHashMap<>();
@@ -73,6 +95,7 @@ public class FileSystemPublicationObjectPersistence {
 
         targetDirectoryRetentionPeriodMs = TimeUnit.MINUTES.toMillis(targetDirectoryRetentionPeriodMinutes);
         this.targetDirectoryRetentionCopiesCount = Math.max(1, targetDirectoryRetentionCopiesCount);
+        this.incrementalWriteEnabled = incrementalWriteEnabled;
 
         initialize();
     }
@@ -90,58 +113,180 @@ public class FileSystemPublicationObjectPersistence {
         }
     }
 
-    public void writeAll(List<PublishedObjectData> publishedObjects) {
-        Map<Path, List<PublishedObjectData>> byBaseDirectory = publishedObjects.stream().collect(Collectors.groupingBy(po -> publicationBaseDirectory(po.getUri())));
-        byBaseDirectory.entrySet().parallelStream().forEach(entry -> writeAllForBaseDirectory(entry.getKey(), entry.getValue()));
-    }
-
-    private void writeAllForBaseDirectory(Path baseDirectory, List<PublishedObjectData> publishedObjects) {
-        LOG.info("publishing {} objects to publication base directory {}", publishedObjects.size(), baseDirectory);
-
+    /**
+     * Writes the objects to a new target directory per publication base directory and atomically replaces the
+     * `published` symlinks once all objects are written. The objects are written as they are read from the stream
+     * and at most {@link #MAX_PENDING_WRITES} objects are queued for the file writer pool, so memory use does not
+     * depend on the size of the repository.
+     */
+    public void writeAll(Stream<PublishedObjectData> publishedObjects) {
         long now = DateTimeUtils.currentTimeMillis();
+        Map<Path, TargetDirectoryWriter> writers = new LinkedHashMap<>();
         try {
-            Path targetDirectory = writeObjectsToNewTargetDirectory(now, baseDirectory, publishedObjects);
-
-            atomicallyReplacePublishedSymlink(baseDirectory, targetDirectory);
-
-            cleanupOldTargetDirectories(now, baseDirectory);
+            publishedObjects.forEach(object -> writers
+                .computeIfAbsent(publicationBaseDirectory(object.getUri()), baseDirectory -> new TargetDirectoryWriter(now, baseDirectory))
+                .write(object));
+
+            for (TargetDirectoryWriter writer : writers.values()) {
+                Path targetDirectory = writer.complete();
+                atomicallyReplacePublishedSymlink(writer.baseDirectory, targetDirectory);
+                if (incrementalWriteEnabled) {
+                    lastWrittenDirectories.put(writer.baseDirectory, new WrittenDirectory(targetDirectory, writer.writtenHashes));
+                }
+                cleanupOldTargetDirectories(now, writer.baseDirectory);
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
+        } finally {
+            writers.values().forEach(TargetDirectoryWriter::abort);
         }
     }
 
-    private Path writeObjectsToNewTargetDirectory(long now, Path baseDirectory, List<PublishedObjectData> publishedObjects) throws IOException {
-        String formattedNow = new DateTime(now, DateTimeZone.UTC).toString(ISODateTimeFormat.dateTime());
+    /**
+     * Writes the objects of a single publication base directory to a temporary directory, which is renamed to the
+     * new target directory when complete.
+     */
+    private class TargetDirectoryWriter {
+        private final long now;
+        private final Path baseDirectory;
+        private final Path targetDirectory;
+        private final Path temporaryDirectory;
+        private final Optional<Path> currentDirectory;
+        /** Content hashes of the objects in the current directory, or null when these must be read from the files. */
+        private final Map<Path, HashCode> currentHashes;
+        private final Map<Path, HashCode> writtenHashes = new ConcurrentHashMap<>();
+
+        private final Map<Path, Path> createdDirectories = new ConcurrentHashMap<>();
+        /** Paths of the objects read from the stream, only accessed by the reading thread. */
+        private final Set<Path> objectPaths = new HashSet<>();
+        private final Semaphore pendingWrites = new Semaphore(MAX_PENDING_WRITES);
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        private final AtomicLong writtenCount = new AtomicLong();
+        private final AtomicLong linkedCount = new AtomicLong();
+
+        TargetDirectoryWriter(long now, Path baseDirectory) {
+            this.now = now;
+            this.baseDirectory = baseDirectory;
+            String formattedNow = new DateTime(now, DateTimeZone.UTC).toString(ISODateTimeFormat.dateTime());
+
+            this.targetDirectory = baseDirectory.resolve("published-" + formattedNow);
+            if (Files.exists(targetDirectory)) {
+                throw new IllegalStateException("target directory " + targetDirectory + " already exists");
+            }
 
-        Path targetDirectory = baseDirectory.resolve("published-" + formattedNow);
-        if (Files.exists(targetDirectory)) {
-            throw new IllegalStateException("target directory " + targetDirectory + " already exists");
+            try {
+                this.currentDirectory = incrementalWriteEnabled ? currentTargetDirectory(baseDirectory) : Optional.empty();
+                if (incrementalWriteEnabled && !currentDirectory.isPresent()) {
+                    LOG.info("no current publication directory in {}, writing all objects", baseDirectory);
+                }
+                WrittenDirectory lastWritten = lastWrittenDirectories.get(baseDirectory);
+                this.currentHashes = lastWritten != null && currentDirectory.isPresent() && lastWritten.directory.equals(currentDirectory.get())
+                    ? lastWritten.hashes
+                    : null;
+                this.temporaryDirectory = Files.createTempDirectory(baseDirectory, "tmp-" + formattedNow + "-");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
 
-        Path temporaryDirectory = Files.createTempDirectory(baseDirectory, "tmp-" + formattedNow + "-");
-        try {
+        void write(PublishedObjectData object) {
+            Path relativePath = relativeLocation(baseDirectory, object.getUri());
+            boolean duplicate = !objectPaths.add(relativePath);
+            if (duplicate) {
+                // The last object with the same URI wins, so wait until the earlier object is written before
+                // replacing it.
+                awaitPendingWrites();
+            }
+            pendingWrites.acquireUninterruptibly();
+            if (failure.get() != null) {
+                pendingWrites.release();
+                throw failure.get();
+            }
+            try {
+                fileWriterPool.execute(() -> {
+                    try {
+                        writeObject(relativePath, object, duplicate);
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, new UncheckedIOException(e));
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        pendingWrites.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                pendingWrites.release();
+                throw e;
+            }
+        }
 
-            LOG.debug("Creating internal directories for {}", baseDirectory);
-            Set<Path> directories = publishedObjects.stream().map(po -> temporaryLocation(temporaryDirectory, po.getUri()).getParent()).collect(Collectors.toSet());
-            fileWriterPool.submit(() -> directories.parallelStream().forEach(directory -> {
+        /**
+         * Hard links the object from the directory the `published` symlink currently points to when it did not
+         * change since the previous successful write, otherwise writes a new file. An object is considered unchanged
+         * when the content hash of the existing file matches. The hashes of the objects written by this process are
+         * kept in memory; after a restart the existing files are read once to compute their hash. The files of the
+         * current target directory are never modified, so rsync clients keep seeing a complete repository until the
+         * symlink is replaced.
+         */
+        private void writeObject(Path relativePath, PublishedObjectData object, boolean replace) throws IOException {
+            Path file = temporaryDirectory.resolve(relativePath);
+            if (replace) {
+                // Delete instead of overwriting, the file may be a hard link to the current target directory.
+                Files.deleteIfExists(file);
+            }
+            // Concurrent writes to the same directory wait until it is created
+            createdDirectories.computeIfAbsent(file.getParent(), directory -> {
                 try {
-                     Files.createDirectories(directory);
+                    return Files.createDirectories(directory);
                 } catch (IOException e) {
-                    e.printStackTrace();
+                    throw new UncheckedIOException(e);
                 }
-            })).join();
+            });
 
-            LOG.debug("writing {} published object files for {}", publishedObjects.size(), baseDirectory);
-            fileWriterPool.submit(() -> publishedObjects.parallelStream().forEach((object) -> {
-                try {
-                    Path file = temporaryLocation(temporaryDirectory, object.getUri());
-                    Files.write(file, object.getContent());
-                    // rsync relies on the correct timestamp for fast synchronization
-                    Files.setLastModifiedTime(file, FileTime.fromMillis(object.getCreatedAt().getTime()));
-                } catch (IOException e) {
-                    throw new UncheckedIOException(e);
+            HashCode hash = HashCode.fromBytes(object.getSha256());
+            if (incrementalWriteEnabled) {
+                writtenHashes.put(relativePath, hash);
+            }
+
+            if (currentDirectory.isPresent()) {
+                Path existing = currentDirectory.get().resolve(relativePath);
+                if (isUnchanged(existing, relativePath, object, hash)) {
+                    Files.createLink(file, existing);
+                    linkedCount.incrementAndGet();
+                    return;
                 }
-            })).join();
+            }
+
+            Files.write(file, object.getContent());
+            // rsync relies on the correct timestamp for fast synchronization
+            Files.setLastModifiedTime(file, FileTime.fromMillis(object.getCreatedAt().getTime()));
+            writtenCount.incrementAndGet();
+        }
+
+        private boolean isUnchanged(Path existing, Path relativePath, PublishedObjectData object, HashCode hash) throws IOException {
+            if (currentHashes != null && !hash.equals(currentHashes.get(relativePath))) {
+                return false;
+            }
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(existing, BasicFileAttributes.class, NOFOLLOW_LINKS);
+                if (!attributes.isRegularFile() || attributes.size() != object.getContent().length) {
+                    return false;
+                }
+                return currentHashes != null || hash.equals(HashCode.fromBytes(GenericPublishedObject.sha256(Files.readAllBytes(existing))));
+            } catch (NoSuchFileException e) {
+                // New object
+                return false;
+            }
+        }
+
+        /**
+         * Waits for all pending writes and renames the temporary directory to the target directory.
+         */
+        Path complete() throws IOException {
+            awaitPendingWrites();
+            if (failure.get() != null) {
+                throw failure.get();
+            }
 
             // Set all internal directory last modified times to epoch so that rsync does not see the directories
             // as changed, only the objects contained in the directories.
@@ -161,15 +306,54 @@ public class FileSystemPublicationObjectPersistence {
             Files.setPosixFilePermissions(temporaryDirectory, PosixFilePermissions.fromString("rwxr-xr-x"));
             Files.move(temporaryDirectory, targetDirectory, ATOMIC_MOVE);
 
-            LOG.info("published {} objects to {}", publishedObjects.size(), targetDirectory);
+            if (currentDirectory.isPresent()) {
+                LOG.info("linked {} unchanged objects from {}", linkedCount.get(), currentDirectory.get());
+            }
+            LOG.info("published {} objects to {}", objectPaths.size(), targetDirectory);
 
             return targetDirectory;
-        } finally {
+        }
+
+        /**
+         * Waits for pending writes and removes the temporary directory, if it was not completed.
+         */
+        void abort() {
+            awaitPendingWrites();
             try {
                 FileUtils.deleteDirectory(temporaryDirectory.toFile());
             } catch (IOException ignored) {
             }
         }
+
+        private void awaitPendingWrites() {
+            pendingWrites.acquireUninterruptibly(MAX_PENDING_WRITES);
+            pendingWrites.release(MAX_PENDING_WRITES);
+        }
+    }
+
+    private static class WrittenDirectory {
+        private final Path directory;
+        private final Map<Path, HashCode> hashes;
+
+        WrittenDirectory(Path directory, Map<Path, HashCode> hashes) {
+            this.directory = directory;
+            this.hashes = hashes;
+        }
+    }
+
+    private Optional<Path> currentTargetDirectory(Path baseDirectory) throws IOException {
+        Path targetSymlink = baseDirectory.resolve("published");
+        if (!Files.isSymbolicLink(targetSymlink)) {
+            return Optional.empty();
+        }
+
+        Path currentDirectory = baseDirectory.resolve(Files.readSymbolicLink(targetSymlink));
+        if (!Files.isDirectory(currentDirectory, NOFOLLOW_LINKS)
+            || !PUBLICATION_DIRECTORY_PATTERN.matcher(currentDirectory.getFileName().toString()).matches()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(currentDirectory);
     }
 
     private void atomicallyReplacePublishedSymlink(Path baseDirectory, Path targetDirectory) throws IOException {
@@ -243,7 +427,7 @@ public class FileSystemPublicationObjectPersistence {
         throw new IllegalArgumentException("URI does not match known base locations: " + uri);
     }
 
-    private Path temporaryLocation(Path temporaryDirectory, URI uri) {
+    private Path relativeLocation(Path baseDirectory, URI uri) {
         if (!uri.isAbsolute()) {
             throw new IllegalArgumentException("URI must be relative: " + uri);
         }
@@ -251,7 +435,7 @@ public class FileSystemPublicationObjectPersistence {
         for (URI baseUri : baseUriToBaseDir.keySet()) {
             URI relative = baseUri.relativize(uri);
             if (!relative.isAbsolute()) {
-                return temporaryDirectory.resolve(relative.toString());
+                return baseDirectory.getFileSystem().getPath(relative.toString());
             }
         }
 
@@ -1,6 +1,5 @@
 package net.ripe.rpki.publication.server;
 
-import com.jamesmurty.utils.XMLBuilder;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -16,31 +15,48 @@ import net.ripe.rpki.publication.api.PublicationMessage.PublishReply;
 import net.ripe.rpki.publication.api.PublicationMessage.PublishRequest;
 import net.ripe.rpki.publication.api.PublicationMessage.WithdrawReply;
 import net.ripe.rpki.publication.api.PublicationMessage.WithdrawRequest;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import javax.xml.namespace.QName;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Characters;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.stream.events.EndElement;
 import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
-import javax.xml.transform.TransformerException;
-import java.io.StringReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Slf4j
 public class ExternalPublishingServer {
@@ -54,11 +70,28 @@ public class ExternalPublishingServer {
     private static final String METRIC_TAG_PUBLICATION = "publication";
     private static final String METRIC_TAG_URI = "uri";
 
+    public static final long DEFAULT_MAX_BATCH_SIZE_BYTES = 16 * 1024 * 1024;
+    public static final int DEFAULT_MAX_BATCH_RETRIES = 3;
+    private static final Duration DEFAULT_RETRY_BACKOFF = Duration.ofSeconds(1);
+
+    private static final byte[] QUERY_START = "<msg xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\" type=\"query\" version=\"3\">".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] QUERY_END = "</msg>".getBytes(StandardCharsets.UTF_8);
+    private static final long MESSAGE_OVERHEAD_BYTES = 64;
+    private static final int REPLY_PREFETCH_BUFFERS = 16;
+    private static final URI NO_PUBLICATION_DIRECTORY = URI.create("");
+
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
     private final PublishingServerClient publishingServerClient;
 
     @Getter
     private final URI publishingServerUrl;
 
+    private final long maxBatchSizeBytes;
+    private final int maxBatchRetries;
+    private final Duration retryBackoff;
+
     private final Counter rrdpPublicationSuccesses;
     private final Counter rrdpPublicationFailures;
     private final Counter rrdpDataSent;
@@ -75,10 +108,23 @@ public class ExternalPublishingServer {
         PublishingServerClient publishingServerClient,
         MeterRegistry meterRegistry,
         URI publishingServerUrl) {
+        this(publishingServerClient, meterRegistry, publishingServerUrl, DEFAULT_MAX_BATCH_SIZE_BYTES, DEFAULT_MAX_BATCH_RETRIES, DEFAULT_RETRY_BACKOFF);
+    }
+
+    public ExternalPublishingServer(
+        PublishingServerClient publishingServerClient,
+        MeterRegistry meterRegistry,
+        URI publishingServerUrl,
+        long maxBatchSizeBytes,
+        int maxBatchRetries,
+        Duration retryBackoff) {
 
         this.meterRegistry = meterRegistry;
         this.publishingServerClient = publishingServerClient;
         this.publishingServerUrl = publishingServerUrl;
+        this.maxBatchSizeBytes = maxBatchSizeBytes;
+        this.maxBatchRetries = Math.max(0, maxBatchRetries);
+        this.retryBackoff = retryBackoff;
 
         rrdpPublicationSuccesses = Counter.builder("rpkicore.publication.messages")
             .description("The number of publication messages successfully sent to RRDP repository")
@@ -142,71 +188,220 @@ public class ExternalPublishingServer {
             .register(meterRegistry);
     }
 
+    /**
+     * Sends the messages to the publication server and returns the parsed replies. The messages are split into
+     * batches of roughly {@link #maxBatchSizeBytes} (messages for the same publication directory are always sent in
+     * the same batch), and each batch is written to the request body and parsed from the reply as a stream, so the
+     * full publication XML is never held in memory. A batch is retried up to {@link #maxBatchRetries} times when the
+     * publication server cannot be reached or fails with a server error.
+     */
     public List<? extends PublicationMessage> execute(List<? extends PublicationMessage> messages, String clientId) {
         if (publishingServerClient == null) {
             log.warn("Publishing server client is not properly initialized.");
             return Collections.emptyList();
         }
-        final StringBuilder logMessage = new StringBuilder("Sending to publishing server [");
-        logMessage.append(publishingServerUrl).append("] using clientId=").append(clientId).append(":\n");
 
-        try {
-            final XMLBuilder xml = XMLBuilder
-                    .create("msg", "http://www.hactrn.net/uris/rpki/publication-spec/")
-                    .a("version", "3")
-                    .a("type", "query");
-            for (PublicationMessage publicationMessage : messages) {
-                if (publicationMessage instanceof PublishRequest) {
-                    final PublishRequest publish = (PublishRequest) publicationMessage;
-                    final XMLBuilder elem = xml.e(OP_TAG_NAME_PUBLISH).a("uri", publish.getUri().toString());
-                    publish.hashToReplace.ifPresent(s -> elem.a("hash", s));
-                    elem.t(publish.getBase64Content());
-                    logMessage.append('\t').append(publish).append('\n');
-                    oneMorePublish(publish.getUri());
-                } else if (publicationMessage instanceof WithdrawRequest) {
-                    final WithdrawRequest withdraw = (WithdrawRequest) publicationMessage;
-                    xml.e(OP_TAG_NAME_WITHDRAW).a("uri", withdraw.getUri().toString()).a("hash", withdraw.hash);
-                    logMessage.append('\t').append(withdraw).append('\n');
-                    oneMoreWithdraw(withdraw.getUri());
-                } else if (publicationMessage instanceof ListRequest) {
-                    xml.e(OP_TAG_NAME_LIST);
-                    logMessage.append('\t').append(publicationMessage).append('\n');
+        List<List<PublicationMessage>> batches = batches(messages);
+        log.info("Sending {} messages in {} batches to publishing server [{}] using clientId={}", messages.size(), batches.size(), publishingServerUrl, clientId);
+
+        final List<PublicationMessage> replies = new ArrayList<>();
+        for (int i = 0; i < batches.size(); ++i) {
+            List<PublicationMessage> batch = batches.get(i);
+            try {
+                replies.addAll(incrementCounters(executeBatchWithRetries(batch, clientId)));
+                incrementOperationCounters(batch);
+            } catch (Throwable t) {
+                // consider all messages of this and the remaining batches failed
+                rrdpPublicationFailures.increment(batches.subList(i, batches.size()).stream().mapToInt(List::size).sum());
+                throw t;
+            }
+        }
+        return replies;
+    }
+
+    private List<? extends PublicationMessage> executeBatchWithRetries(List<PublicationMessage> batch, String clientId) {
+        int attempt = 0;
+        while (true) {
+            try {
+                return executeBatch(batch, clientId);
+            } catch (WebClientRequestException | WebClientResponseException e) {
+                boolean retryable = !(e instanceof WebClientResponseException) || ((WebClientResponseException) e).getStatusCode().is5xxServerError();
+                if (!retryable || attempt >= maxBatchRetries) {
+                    throw e;
                 }
+                ++attempt;
+                log.warn("Publication of batch of {} messages to {} failed, retrying (attempt {} of {}): {}", batch.size(), publishingServerUrl, attempt, maxBatchRetries, e.getMessage());
+                sleepBeforeRetry(attempt);
             }
+        }
+    }
 
-            log.info(logMessage.toString());
-            String xmlRequest = xml.asString();
+    private List<? extends PublicationMessage> executeBatch(List<PublicationMessage> batch, String clientId) {
+        // Only the data of successful attempts is counted, so retried batches are not counted more than once
+        AtomicLong bytesSent = new AtomicLong();
+        Flux<DataBuffer> query = Flux.concat(
+            Mono.fromSupplier(() -> wrap(QUERY_START)),
+            Flux.fromIterable(batch).map(this::encodeMessage),
+            Mono.fromSupplier(() -> wrap(QUERY_END))
+        ).doOnNext(buffer -> bytesSent.addAndGet(buffer.readableByteCount()));
+
+        rrdpParallelPublishes.incrementAndGet();
+        boolean succeeded = false;
+        long begin = System.nanoTime();
+        try {
+            Flux<DataBuffer> reply = publishingServerClient.publish(publishingServerUrl, query, clientId)
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+            List<? extends PublicationMessage> result;
+            try (Stream<DataBuffer> buffers = reply.toStream(REPLY_PREFETCH_BUFFERS)) {
+                Iterator<DataBuffer> iterator = buffers.iterator();
+                log.debug("Parsing the publishing server response");
+                result = parseResponse(new SequenceInputStream(new Enumeration<InputStream>() {
+                    @Override
+                    public boolean hasMoreElements() {
+                        return iterator.hasNext();
+                    }
 
-            rrdpDataSent.increment(xmlRequest.getBytes(StandardCharsets.UTF_8).length);
+                    @Override
+                    public InputStream nextElement() {
+                        return iterator.next().asInputStream(true);
+                    }
+                }));
+            }
+            succeeded = true;
+            rrdpDataSent.increment(bytesSent.get());
+            return result;
+        } catch (XMLStreamException | URISyntaxException e) {
+            throw new RuntimeException(e);
+        } finally {
+            long end = System.nanoTime();
+            final Duration duration = Duration.ofNanos(end - begin);
+            if (succeeded) {
+                successfulPublishTime.record(duration);
+            } else {
+                failedPublishTime.record(duration);
+            }
+            rrdpParallelPublishes.decrementAndGet();
+        }
+    }
 
-            rrdpParallelPublishes.incrementAndGet();
-            boolean succeeded = false;
+    /**
+     * Splits the messages into batches of at most {@link #maxBatchSizeBytes} (estimated) encoded size. Messages for
+     * objects in the same publication directory are kept together, so a manifest and the objects it lists become
+     * visible in the repository at the same time. The order of messages for the same directory is preserved.
+     */
+    private List<List<PublicationMessage>> batches(List<? extends PublicationMessage> messages) {
+        Map<URI, List<PublicationMessage>> byDirectory = new LinkedHashMap<>();
+        for (PublicationMessage message : messages) {
+            byDirectory.computeIfAbsent(publicationDirectory(message), (directory) -> new ArrayList<>()).add(message);
+        }
 
-            final String postResponse;
-            long begin = System.nanoTime();
-            try {
-                postResponse = publishingServerClient.publish(publishingServerUrl, xmlRequest, clientId).block();
-                succeeded = true;
-            } finally {
-                long end = System.nanoTime();
-                final Duration duration = Duration.ofNanos(end - begin);
-                if (succeeded) {
-                    successfulPublishTime.record(duration);
-                } else {
-                    failedPublishTime.record(duration);
-                }
-                rrdpParallelPublishes.decrementAndGet();
+        List<List<PublicationMessage>> result = new ArrayList<>();
+        List<PublicationMessage> batch = new ArrayList<>();
+        long batchSize = 0;
+        for (List<PublicationMessage> group : byDirectory.values()) {
+            long groupSize = group.stream().mapToLong(ExternalPublishingServer::estimatedSize).sum();
+            if (!batch.isEmpty() && batchSize + groupSize > maxBatchSizeBytes) {
+                result.add(batch);
+                batch = new ArrayList<>();
+                batchSize = 0;
             }
+            batch.addAll(group);
+            batchSize += groupSize;
+        }
+        if (!batch.isEmpty() || result.isEmpty()) {
+            result.add(batch);
+        }
+        return result;
+    }
 
-            log.debug("Parsing the publishing server response");
-            return incrementCounters(parseResponse(postResponse));
-        } catch (ParserConfigurationException | TransformerException | XMLStreamException | URISyntaxException e) {
-            // consider all messages failed
-            rrdpPublicationFailures.increment(messages.size());
+    private static URI publicationDirectory(PublicationMessage message) {
+        if (message instanceof PublishRequest) {
+            return ((PublishRequest) message).getUri().resolve(".");
+        } else if (message instanceof WithdrawRequest) {
+            return ((WithdrawRequest) message).getUri().resolve(".");
+        } else {
+            return NO_PUBLICATION_DIRECTORY;
+        }
+    }
+
+    private static long estimatedSize(PublicationMessage message) {
+        if (message instanceof PublishRequest) {
+            PublishRequest publish = (PublishRequest) message;
+            return MESSAGE_OVERHEAD_BYTES + publish.getUri().toString().length() + publish.hashToReplace.map(String::length).orElse(0)
+                + 4L * ((publish.getContentLength() + 2) / 3);
+        } else if (message instanceof WithdrawRequest) {
+            WithdrawRequest withdraw = (WithdrawRequest) message;
+            return MESSAGE_OVERHEAD_BYTES + withdraw.getUri().toString().length() + withdraw.hash.length();
+        } else {
+            return MESSAGE_OVERHEAD_BYTES;
+        }
+    }
+
+    /**
+     * Encodes a single query PDU. The base64 content of publish requests is encoded directly into the buffer.
+     */
+    private DataBuffer encodeMessage(PublicationMessage publicationMessage) {
+        DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.allocateBuffer((int) Math.min(Integer.MAX_VALUE, estimatedSize(publicationMessage)));
+        try (OutputStream out = buffer.asOutputStream()) {
+            XMLStreamWriter xml = XML_OUTPUT_FACTORY.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+            if (publicationMessage instanceof PublishRequest) {
+                final PublishRequest publish = (PublishRequest) publicationMessage;
+                xml.writeStartElement(OP_TAG_NAME_PUBLISH);
+                if (publish.hashToReplace.isPresent()) {
+                    xml.writeAttribute("hash", publish.hashToReplace.get());
+                }
+                xml.writeAttribute("uri", publish.getUri().toString());
+                // Close the start tag so the base64 content can be written to the underlying stream
+                xml.writeCharacters("");
+                xml.flush();
+                try (OutputStream base64 = Base64.getEncoder().wrap(CloseShieldOutputStream.wrap(out))) {
+                    base64.write(publish.getContent());
+                }
+                xml.writeEndElement();
+                log.debug("\t{}", publish);
+            } else if (publicationMessage instanceof WithdrawRequest) {
+                final WithdrawRequest withdraw = (WithdrawRequest) publicationMessage;
+                xml.writeEmptyElement(OP_TAG_NAME_WITHDRAW);
+                xml.writeAttribute("hash", withdraw.hash);
+                xml.writeAttribute("uri", withdraw.getUri().toString());
+                log.debug("\t{}", withdraw);
+            } else if (publicationMessage instanceof ListRequest) {
+                xml.writeEmptyElement(OP_TAG_NAME_LIST);
+                log.debug("\t{}", publicationMessage);
+            }
+            xml.writeEndDocument();
+            xml.flush();
+            xml.close();
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(e);
+        } catch (XMLStreamException e) {
+            DataBufferUtils.release(buffer);
             throw new RuntimeException(e);
-        } catch (Throwable t) {
-            rrdpPublicationFailures.increment(messages.size());
-            throw t;
+        }
+        return buffer;
+    }
+
+    private static DataBuffer wrap(byte[] bytes) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(bytes);
+    }
+
+    private void sleepBeforeRetry(int attempt) {
+        try {
+            Thread.sleep(retryBackoff.multipliedBy(attempt).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting to retry publication", e);
+        }
+    }
+
+    private void incrementOperationCounters(List<PublicationMessage> batch) {
+        for (PublicationMessage message : batch) {
+            if (message instanceof PublishRequest) {
+                oneMorePublish(((PublishRequest) message).getUri());
+            } else if (message instanceof WithdrawRequest) {
+                oneMoreWithdraw(((WithdrawRequest) message).getUri());
+            }
         }
     }
 
@@ -241,49 +436,56 @@ public class ExternalPublishingServer {
         return replies;
     }
 
-    private List<? extends PublicationMessage> parseResponse(String response) throws XMLStreamException, URISyntaxException {
+    private List<? extends PublicationMessage> parseResponse(InputStream response) throws XMLStreamException, URISyntaxException {
         final List<PublicationMessage> replies = new ArrayList<>();
-        final XMLEventReader reader = XMLInputFactory.newInstance().createXMLEventReader(new StringReader(response));
+        final XMLEventReader reader = XML_INPUT_FACTORY.createXMLEventReader(response);
         String errorCode = null;
+        StringBuilder errorText = null;
         final QName uriAttrName = new QName("uri");
         final QName hashAttrName = new QName("hash");
         final QName errorAttrName = new QName("error_code");
 
-        while (reader.hasNext()) {
-            final XMLEvent event = reader.nextEvent();
-            switch (event.getEventType()) {
-                case XMLStreamConstants.START_ELEMENT:
-                    StartElement startElement = event.asStartElement();
-                    if (OP_TAG_NAME_PUBLISH.equals(startElement.getName().getLocalPart())) {
-                        final String uri = startElement.getAttributeByName(uriAttrName).getValue();
-                        replies.add(new PublishReply(new URI(uri)));
-                    } else if (OP_TAG_NAME_WITHDRAW.equals(startElement.getName().getLocalPart())) {
-                        final String uri = startElement.getAttributeByName(uriAttrName).getValue();
-                        replies.add(new WithdrawReply(new URI(uri)));
-                    } else if (OP_TAG_NAME_LIST.equals(startElement.getName().getLocalPart())) {
-                        final String uri = startElement.getAttributeByName(uriAttrName).getValue();
-                        final String hash = startElement.getAttributeByName(hashAttrName).getValue();
-                        replies.add(new ListReply(new URI(uri), hash));
-                    } else if (OP_TAG_NAME_REPORT_ERROR.equals(startElement.getName().getLocalPart())) {
-                        errorCode = startElement.getAttributeByName(errorAttrName).getValue();
-                    }
-                    break;
-
-                case XMLStreamConstants.END_ELEMENT:
-                    EndElement endElement = event.asEndElement();
-                    if (OP_TAG_NAME_REPORT_ERROR.equals(endElement.getName().getLocalPart())) {
-                        errorCode = null;
-                    }
-                    break;
-
-                case XMLStreamConstants.CHARACTERS:
-                    Characters characters = event.asCharacters();
-                    final String tagContent = characters.getData().trim();
-                    if (errorCode != null) {
-                        replies.add(new ErrorReply(errorCode, tagContent));
-                    }
-                    break;
+        try {
+            while (reader.hasNext()) {
+                final XMLEvent event = reader.nextEvent();
+                switch (event.getEventType()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        StartElement startElement = event.asStartElement();
+                        if (OP_TAG_NAME_PUBLISH.equals(startElement.getName().getLocalPart())) {
+                            final String uri = startElement.getAttributeByName(uriAttrName).getValue();
+                            replies.add(new PublishReply(new URI(uri)));
+                        } else if (OP_TAG_NAME_WITHDRAW.equals(startElement.getName().getLocalPart())) {
+                            final String uri = startElement.getAttributeByName(uriAttrName).getValue();
+                            replies.add(new WithdrawReply(new URI(uri)));
+                        } else if (OP_TAG_NAME_LIST.equals(startElement.getName().getLocalPart())) {
+                            final String uri = startElement.getAttributeByName(uriAttrName).getValue();
+                            final String hash = startElement.getAttributeByName(hashAttrName).getValue();
+                            replies.add(new ListReply(new URI(uri), hash));
+                        } else if (OP_TAG_NAME_REPORT_ERROR.equals(startElement.getName().getLocalPart())) {
+                            errorCode = startElement.getAttributeByName(errorAttrName).getValue();
+                            errorText = new StringBuilder();
+                        }
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        EndElement endElement = event.asEndElement();
+                        if (OP_TAG_NAME_REPORT_ERROR.equals(endElement.getName().getLocalPart()) && errorCode != null) {
+                            replies.add(new ErrorReply(errorCode, errorText.toString().trim()));
+                            errorCode = null;
+                            errorText = null;
+                        }
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                        // Character data may be split over multiple events when the response is streamed
+                        if (errorText != null) {
+                            errorText.append(event.asCharacters().getData());
+                        }
+                        break;
+                }
             }
+        } finally {
+            reader.close();
         }
         return replies;
     }
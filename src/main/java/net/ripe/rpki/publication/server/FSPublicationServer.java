@@ -14,7 +14,8 @@ import org.springframework.stereotype.Service;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 @Service
 public class FSPublicationServer implements PublicationWriteService {
@@ -59,14 +60,15 @@ public class FSPublicationServer implements PublicationWriteService {
     }
 
     @Override
-    public void writeAll(List<PublishedObjectData> publishedObjects) throws IOException  {
+    public void writeAll(Stream<PublishedObjectData> publishedObjects) throws IOException  {
+        AtomicLong count = new AtomicLong();
         try {
             rsyncPublicationTimer.record(() -> {
-                fileSystemPublicationObjectPersistence.writeAll(publishedObjects);
+                fileSystemPublicationObjectPersistence.writeAll(publishedObjects.peek(object -> count.incrementAndGet()));
             });
-            publishedObjectCount = publishedObjects.size();
+            publishedObjectCount = count.get();
             rsyncPublicationSuccesses.increment();
-            LOG.info("successfully published {} objects", publishedObjects.size());
+            LOG.info("successfully published {} objects", count.get());
         } catch (UncheckedIOException e) {
             rsyncPublicationFailures.increment();
             throw e.getCause();
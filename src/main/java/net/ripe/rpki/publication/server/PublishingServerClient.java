@@ -3,11 +3,13 @@ package net.ripe.rpki.publication.server;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
-import reactor.core.publisher.Mono;
+import reactor.core.publisher.Flux;
 
 import java.net.URI;
 
@@ -25,14 +27,18 @@ public class PublishingServerClient {
         this.client = publishingClient;
     }
 
-    public Mono<String> publish(URI publishingServerUrl, String xml, String clientId) {
+    /**
+     * Streams the query to the publication server. The reply is returned as it arrives, without buffering the
+     * complete reply in memory.
+     */
+    public Flux<DataBuffer> publish(URI publishingServerUrl, Flux<DataBuffer> query, String clientId) {
         URI uri = UriComponentsBuilder.fromUri(publishingServerUrl).queryParam(CLIENT_ID_PARAM, clientId).build().toUri();
         return client.post()
                 .uri(uri)
                 .accept(PUBLICATION_MEDIA_TYPE)
                 .contentType(PUBLICATION_MEDIA_TYPE)
-                .bodyValue(xml)
+                .body(BodyInserters.fromDataBuffers(query))
                 .retrieve()
-                .bodyToMono(String.class);
+                .bodyToFlux(DataBuffer.class);
     }
 }
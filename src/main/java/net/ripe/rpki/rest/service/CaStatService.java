@@ -10,7 +10,6 @@ import net.ripe.rpki.rest.pojo.BgpAnnouncement;
 import net.ripe.rpki.rest.pojo.CaStatus;
 import net.ripe.rpki.server.api.dto.BgpRisEntry;
 import net.ripe.rpki.server.api.dto.CaStat;
-import net.ripe.rpki.server.api.dto.CaStatEvent;
 import net.ripe.rpki.server.api.dto.CertificateAuthorityData;
 import net.ripe.rpki.server.api.dto.RoaConfigurationData;
 import net.ripe.rpki.server.api.services.read.BgpRisEntryViewService;
@@ -19,8 +18,11 @@ import net.ripe.rpki.server.api.services.read.ResourceCertificateViewService;
 import net.ripe.rpki.server.api.services.read.RoaAlertConfigurationViewService;
 import net.ripe.rpki.server.api.services.read.RoaViewService;
 import net.ripe.rpki.server.api.support.objects.CaName;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -29,6 +31,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.ws.rs.core.MediaType;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -164,11 +167,22 @@ public class CaStatService {
     }
 
     @GetMapping(path = "events")
-   @Operation(summary = "Return all CAs")
-    public ResponseEntity<Collection<? extends CaStatEvent>> events() {
+   @Operation(summary = "Return the CA creation, deletion and ROA configuration events, optionally in a time range and paged")
+    public ResponseEntity<?> events(@RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final Instant from,
+                                    @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final Instant to,
+                                    @RequestParam(value = "offset", defaultValue = "0") final int offset,
+                                    @RequestParam(value = "limit", required = false) final Integer limit) {
+        if (offset < 0 || (limit != null && limit < 0)) {
+            return ResponseEntity.status(BAD_REQUEST)
+                    .body(of("error", "'offset' and 'limit' must not be negative"));
+        }
         return ResponseEntity.ok()
                 .contentType(org.springframework.http.MediaType.APPLICATION_JSON)
-                .body(certificateAuthorityViewService.getCaStatEvents());
+                .body(certificateAuthorityViewService.getCaStatEvents(toDateTime(from), toDateTime(to), offset, limit));
+    }
+
+    private static DateTime toDateTime(Instant instant) {
+        return instant == null ? null : new DateTime(instant.toEpochMilli(), DateTimeZone.UTC);
     }
 
     private CertificateAuthorityData getCaByName(String unparsedCaName) {
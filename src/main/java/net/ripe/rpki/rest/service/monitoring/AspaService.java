@@ -3,44 +3,26 @@ package net.ripe.rpki.rest.service.monitoring;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AllArgsConstructor;
-import lombok.Value;
-import net.ripe.rpki.domain.aspa.AspaConfiguration;
-import net.ripe.rpki.domain.aspa.AspaConfigurationRepository;
-import net.ripe.rpki.server.api.dto.AspaConfigurationData;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
-import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
-
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
 
 @AllArgsConstructor
 @Tag(name = "/api/monitoring/aspa")
 @Controller
-@Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
 public class AspaService {
     @Autowired
-    private final AspaConfigurationRepository aspaConfigurationRepository;
+    private final MonitoringFeedService monitoringFeedService;
 
-    @Operation(summary = "Get all the ASPA configurations")
+    @Operation(summary = "Get all the ASPA configurations, a page of them, or the changes since an earlier version")
     @GetMapping("/api/monitoring/aspa-configurations")
-    public ResponseEntity<ValidatedObjectsResponse<AspaConfigurationData>> listAspaConfigs() {
-        final Collection<AspaConfiguration> aspaConfigurations = aspaConfigurationRepository.findAll();
-        final List<AspaConfigurationData> aspas = aspaConfigurations.stream()
-            .map(AspaConfiguration::toData)
-            .collect(Collectors.toList());
-        return ResponseEntity.ok(ValidatedObjectsResponse.of(aspas, Collections.singletonMap("origin", "rpki-core")));
-    }
-
-    @Value(staticConstructor = "of")
-    private static class ValidatedObjectsResponse<T> {
-        private List<T> aspaConfigurations;
-        private Map<String, String> metadata;
+    public ResponseEntity<?> listAspaConfigs(WebRequest request,
+                                             @RequestParam(value = "since", required = false) String since,
+                                             @RequestParam(value = "cursor", required = false) String cursor,
+                                             @RequestParam(value = "limit", required = false) Integer limit) {
+        return monitoringFeedService.aspaConfigurations().respond(request, since, cursor, limit);
     }
 }
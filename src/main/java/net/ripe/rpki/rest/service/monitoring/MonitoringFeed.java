@@ -0,0 +1,254 @@
+package net.ripe.rpki.rest.service.monitoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.IOUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A monitoring feed that is materialised when the underlying configuration changes. The current items are kept
+ * sorted together with the pre-serialised, gzip compressed JSON document, so requests are answered without
+ * touching the database.
+ * <p>
+ * The version is derived from the database state the items were read from, so all nodes use the same version for
+ * the same items. The entity tag is computed over the items only. A few previous versions are retained, so clients
+ * can page through the version they started with and fetch the changes since the version they have. When a version
+ * is no longer available the client gets <code>410 Gone</code> and starts over with the full feed.
+ */
+final class MonitoringFeed<T> {
+
+    private static final Map<String, String> ORIGIN = Collections.singletonMap("origin", "rpki-core");
+
+    private final String itemsField;
+    private final Comparator<? super T> order;
+    private final ObjectMapper objectMapper;
+    private final int historySize;
+
+    /** Previous snapshots, most recent first. Guarded by <code>this</code>. */
+    private final Deque<Snapshot<T>> history = new ArrayDeque<>();
+    private volatile Snapshot<T> current;
+
+    MonitoringFeed(String itemsField, Comparator<? super T> order, ObjectMapper objectMapper, int historySize) {
+        this.itemsField = itemsField;
+        this.order = order;
+        this.objectMapper = objectMapper;
+        this.historySize = historySize;
+    }
+
+    boolean isCurrent(String version) {
+        Snapshot<T> snapshot = current;
+        return snapshot != null && snapshot.version.equals(version);
+    }
+
+    /**
+     * Replaces the items of the feed with the items read from the database state identified by
+     * <code>version</code>.
+     */
+    synchronized void update(String version, Collection<? extends T> items) {
+        List<T> sorted = new ArrayList<>(items);
+        sorted.sort(order);
+        if (current != null && current.version.equals(version) && current.items.equals(sorted)) {
+            return;
+        }
+
+        Snapshot<T> next = new Snapshot<>(version, Collections.unmodifiableList(sorted),
+            compress(document(version, sorted)), Hashing.sha256().hashBytes(serialize(sorted)).toString());
+        if (current != null && !current.version.equals(version)) {
+            history.addFirst(current);
+            while (history.size() > historySize) {
+                history.removeLast();
+            }
+        }
+        current = next;
+    }
+
+    Snapshot<T> current() {
+        return current;
+    }
+
+    private synchronized Snapshot<T> find(String version) {
+        if (current != null && current.version.equals(version)) {
+            return current;
+        }
+        return history.stream().filter(snapshot -> snapshot.version.equals(version)).findFirst().orElse(null);
+    }
+
+    /**
+     * Answers a request for the feed: the complete document, a page of it when a <code>limit</code> is given, or the
+     * changes since an earlier version. Answers <code>503 Service Unavailable</code> until the feed is built.
+     */
+    ResponseEntity<?> respond(WebRequest request, String since, String cursor, Integer limit) {
+        Snapshot<T> snapshot = current;
+        if (snapshot == null) {
+            // The feed could not be built yet, for example because the database is unavailable.
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("monitoring feed " + itemsField + " is not available yet");
+        }
+        if (since != null) {
+            if (cursor != null || limit != null) {
+                return ResponseEntity.badRequest().body("paging is not supported for changes since a version");
+            }
+            return respondWithChanges(request, snapshot, since);
+        } else if (cursor != null || limit != null) {
+            return respondWithPage(request, snapshot, cursor, limit);
+        }
+
+        boolean gzip = acceptsGzip(request);
+        if (request.checkNotModified(snapshot.entityTag + (gzip ? "-gzip" : ""))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.compressed);
+        }
+        return response.body(decompress(snapshot.compressed));
+    }
+
+    private ResponseEntity<?> respondWithChanges(WebRequest request, Snapshot<T> snapshot, String since) {
+        Snapshot<T> previous = find(since);
+        if (previous == null) {
+            return ResponseEntity.status(HttpStatus.GONE).body("version " + since + " is no longer available");
+        }
+        if (request.checkNotModified(snapshot.entityTag + "-since-" + since)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("since", since);
+        body.putAll(snapshot.changesSince(previous));
+        body.put("metadata", metadata(snapshot.version));
+        return ResponseEntity.ok(body);
+    }
+
+    private ResponseEntity<?> respondWithPage(WebRequest request, Snapshot<T> snapshot, String cursor, Integer limit) {
+        if (limit == null || limit <= 0) {
+            return ResponseEntity.badRequest().body("a positive limit is required for paging");
+        }
+        int offset = 0;
+        if (cursor != null) {
+            int separator = cursor.lastIndexOf(':');
+            try {
+                offset = separator < 0 ? -1 : Integer.parseInt(cursor.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                offset = -1;
+            }
+            if (offset < 0) {
+                return ResponseEntity.badRequest().body("invalid cursor " + cursor);
+            }
+            snapshot = find(cursor.substring(0, separator));
+            if (snapshot == null) {
+                return ResponseEntity.status(HttpStatus.GONE).body("version of cursor " + cursor + " is no longer available");
+            }
+        }
+        if (request.checkNotModified(snapshot.entityTag + "-" + offset + "-" + limit)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        int end = (int) Math.min((long) offset + limit, snapshot.items.size());
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put(itemsField, offset < end ? snapshot.items.subList(offset, end) : Collections.emptyList());
+        body.put("metadata", metadata(snapshot.version));
+        if (end < snapshot.items.size()) {
+            body.put("nextCursor", snapshot.version + ":" + end);
+        }
+        return ResponseEntity.ok(body);
+    }
+
+    private Map<String, Object> document(String version, List<T> items) {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put(itemsField, items);
+        document.put("metadata", metadata(version));
+        return document;
+    }
+
+    private static Map<String, String> metadata(String version) {
+        Map<String, String> metadata = new LinkedHashMap<>(ORIGIN);
+        metadata.put("version", version);
+        return metadata;
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to serialise monitoring feed " + itemsField, e);
+        }
+    }
+
+    private byte[] compress(Object document) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+                objectMapper.writeValue(out, document);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to serialise monitoring feed " + itemsField, e);
+        }
+    }
+
+    private static byte[] decompress(byte[] compressed) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return IOUtils.toByteArray(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean acceptsGzip(WebRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    static final class Snapshot<T> {
+        final String version;
+        final List<T> items;
+        final byte[] compressed;
+        final String entityTag;
+        /** Changes since previous versions, computed on first request. */
+        private final Map<String, Map<String, List<T>>> changes = new ConcurrentHashMap<>();
+
+        private Snapshot(String version, List<T> items, byte[] compressed, String entityTag) {
+            this.version = version;
+            this.items = items;
+            this.compressed = compressed;
+            this.entityTag = entityTag;
+        }
+
+        Map<String, List<T>> changesSince(Snapshot<T> previous) {
+            return changes.computeIfAbsent(previous.version, v -> {
+                Set<T> before = new HashSet<>(previous.items);
+                Set<T> after = new HashSet<>(items);
+                Map<String, List<T>> result = new LinkedHashMap<>();
+                result.put("added", items.stream().filter(item -> !before.contains(item)).collect(Collectors.toList()));
+                result.put("removed", previous.items.stream().filter(item -> !after.contains(item)).collect(Collectors.toList()));
+                return result;
+            });
+        }
+    }
+}
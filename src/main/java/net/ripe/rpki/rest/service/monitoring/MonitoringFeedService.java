@@ -0,0 +1,153 @@
+package net.ripe.rpki.rest.service.monitoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.domain.aspa.AspaConfiguration;
+import net.ripe.rpki.domain.aspa.AspaConfigurationRepository;
+import net.ripe.rpki.domain.roa.RoaConfigurationPrefix;
+import net.ripe.rpki.domain.roa.RoaConfigurationRepository;
+import net.ripe.rpki.server.api.dto.AspaConfigurationData;
+import net.ripe.rpki.server.api.dto.RoaConfigurationPrefixData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Materialises the ROA prefix and ASPA configuration monitoring feeds. The feeds are checked periodically with a
+ * cheap query for the time of the last change and the number of entries, and are only rebuilt when these changed.
+ * <p>
+ * The time of the last change and the number of entries are also the version of the feed, so every node serves the
+ * same version for the same configuration. Additions and updates move the time of the last change forward, while
+ * deletions that do not record a time (ASPA configurations) lower the number of entries. So different items never
+ * get the same version.
+ */
+@Slf4j
+@Service
+public class MonitoringFeedService {
+
+    private final RoaConfigurationRepository roaConfigurationRepository;
+    private final AspaConfigurationRepository aspaConfigurationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long refreshIntervalSeconds;
+
+    private final MonitoringFeed<RoaConfigurationPrefixData> roaPrefixes;
+    private final MonitoringFeed<AspaConfigurationData> aspaConfigurations;
+
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("monitoring-feed-refresh").setDaemon(true).build()
+    );
+
+    @Autowired
+    public MonitoringFeedService(RoaConfigurationRepository roaConfigurationRepository,
+                                 AspaConfigurationRepository aspaConfigurationRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper,
+                                 @Value("${monitoring.feed.refresh.interval.seconds:10}") long refreshIntervalSeconds,
+                                 @Value("${monitoring.feed.history.size:10}") int historySize) {
+        this.roaConfigurationRepository = roaConfigurationRepository;
+        this.aspaConfigurationRepository = aspaConfigurationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.refreshIntervalSeconds = refreshIntervalSeconds;
+
+        this.roaPrefixes = new MonitoringFeed<>("roas", RoaConfigurationPrefixData.COMPARATOR, objectMapper, historySize);
+        this.aspaConfigurations = new MonitoringFeed<>("aspaConfigurations",
+            Comparator.comparing(AspaConfigurationData::getCustomerAsn).thenComparing(aspa -> aspa.getProviders().toString()),
+            objectMapper, historySize);
+    }
+
+    @PostConstruct
+    private void startRefresh() {
+        refreshExecutor.scheduleWithFixedDelay(() -> refresh(false), 0, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void stopRefresh() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the feed, which has no current snapshot when it could not be built yet
+     */
+    MonitoringFeed<RoaConfigurationPrefixData> roaPrefixes() {
+        if (roaPrefixes.current() == null) {
+            tryRefreshRoaPrefixes(false);
+        }
+        return roaPrefixes;
+    }
+
+    /**
+     * @return the feed, which has no current snapshot when it could not be built yet
+     */
+    MonitoringFeed<AspaConfigurationData> aspaConfigurations() {
+        if (aspaConfigurations.current() == null) {
+            tryRefreshAspaConfigurations(false);
+        }
+        return aspaConfigurations;
+    }
+
+    /**
+     * Rebuilds the feeds whose configuration changed, or all feeds when <code>force</code> is set.
+     */
+    void refresh(boolean force) {
+        tryRefreshRoaPrefixes(force);
+        tryRefreshAspaConfigurations(force);
+    }
+
+    private void tryRefreshRoaPrefixes(boolean force) {
+        try {
+            refreshRoaPrefixes(force);
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh the ROA prefixes monitoring feed", e);
+        }
+    }
+
+    private void tryRefreshAspaConfigurations(boolean force) {
+        try {
+            refreshAspaConfigurations(force);
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh the ASPA configurations monitoring feed", e);
+        }
+    }
+
+    private void refreshRoaPrefixes(boolean force) {
+        transactionTemplate.executeWithoutResult(status -> {
+            String version = version(roaConfigurationRepository.lastModified(), roaConfigurationRepository.countRoaPrefixes());
+            if (force || !roaPrefixes.isCurrent(version)) {
+                roaPrefixes.update(version, roaConfigurationRepository.findAllPrefixes().stream()
+                    .map(RoaConfigurationPrefix::toData)
+                    .collect(Collectors.toList()));
+            }
+        });
+    }
+
+    private void refreshAspaConfigurations(boolean force) {
+        transactionTemplate.executeWithoutResult(status -> {
+            String version = version(aspaConfigurationRepository.lastModified(), aspaConfigurationRepository.countAspaConfigurations());
+            if (force || !aspaConfigurations.isCurrent(version)) {
+                aspaConfigurations.update(version, aspaConfigurationRepository.findAll().stream()
+                    .map(AspaConfiguration::toData)
+                    .collect(Collectors.toList()));
+            }
+        });
+    }
+
+    static String version(Optional<Instant> lastModified, int count) {
+        return lastModified.map(Instant::toEpochMilli).orElse(0L) + "-" + count;
+    }
+}
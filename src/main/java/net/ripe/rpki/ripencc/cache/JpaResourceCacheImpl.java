@@ -1,7 +1,10 @@
 package net.ripe.rpki.ripencc.cache;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import net.ripe.ipresource.IpResourceSet;
 import net.ripe.rpki.domain.property.PropertyEntity;
 import net.ripe.rpki.domain.property.PropertyEntityRepository;
@@ -9,24 +12,73 @@ import net.ripe.rpki.server.api.configuration.RepositoryConfiguration;
 import net.ripe.rpki.server.api.ports.DelegationsCache;
 import net.ripe.rpki.server.api.ports.ResourceCache;
 import net.ripe.rpki.server.api.support.objects.CaName;
+import org.hibernate.Session;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+/**
+ * Resource cache backed by the <code>resource_cache</code> table.
+ *
+ * Lookups are served from an immutable in-memory snapshot of the table. Every modification of the cache stores a new
+ * generation number in the <code>property</code> table in the same transaction, while holding a lock on that row.
+ * When a modifying transaction commits its changes are applied to the snapshot, provided the snapshot has the
+ * generation that the transaction replaced. Otherwise the snapshot is loaded again on the next lookup. Lookups inside
+ * a transaction that modified the cache go to the database, so they see the uncommitted changes.
+ *
+ * The stored generation is checked at most once per refresh interval by a background thread, which reloads the
+ * snapshot when another node updated the cache. Lookups never wait for this check, so they do not need a database
+ * connection besides the one of their own transaction.
+ */
+@Slf4j
 @Component
 public class JpaResourceCacheImpl implements ResourceCache, DelegationsCache {
 
     private static final String RESOURCE_CACHE_UPDATE_KEY = "last_resource_cache_update";
+    private static final String RESOURCE_CACHE_GENERATION_KEY = "resource_cache_generation";
+    private static final int BATCH_SIZE = 1000;
 
     private final PropertyEntityRepository propertyEntityRepository;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final long refreshIntervalMillis;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.notLoaded());
+    private final ReentrantLock snapshotLoadLock = new ReentrantLock();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private volatile long lastGenerationCheckMillis;
+
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("resource-cache-refresh").setDaemon(true).build()
+    );
 
     @PersistenceContext
     private EntityManager entityManager;
@@ -36,9 +88,20 @@ public class JpaResourceCacheImpl implements ResourceCache, DelegationsCache {
 
     @Autowired
     public JpaResourceCacheImpl(PropertyEntityRepository propertyEntityRepository,
-                                RepositoryConfiguration configuration) {
+                                RepositoryConfiguration configuration,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${resource.cache.snapshot.refresh.interval.milliseconds:1000}") long refreshIntervalMillis) {
         this.propertyEntityRepository = Preconditions.checkNotNull(propertyEntityRepository);
         this.productionCaName = CaName.of(configuration.getProductionCaPrincipal());
+        this.refreshIntervalMillis = refreshIntervalMillis;
+
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    @PreDestroy
+    private void stopRefresh() {
+        refreshExecutor.shutdownNow();
     }
 
     @Override
@@ -66,6 +129,18 @@ public class JpaResourceCacheImpl implements ResourceCache, DelegationsCache {
 
     @Override
     public Optional<IpResourceSet> lookupResources(final CaName user) {
+        if (isModifiedInCurrentTransaction()) {
+            return lookupResourcesInDatabase(user);
+        }
+        return Optional.ofNullable(currentSnapshot().getResources().get(user));
+    }
+
+    @Override
+    public long getGeneration() {
+        return isModifiedInCurrentTransaction() ? -1 : currentSnapshot().getGeneration();
+    }
+
+    private Optional<IpResourceSet> lookupResourcesInDatabase(CaName user) {
         ResourceCacheLine cacheRecord = entityManager.find(ResourceCacheLine.class, user.toString());
         return Optional.ofNullable(cacheRecord).map(ResourceCacheLine::getResources);
     }
@@ -81,31 +156,131 @@ public class JpaResourceCacheImpl implements ResourceCache, DelegationsCache {
             .collect(Collectors.toMap(ResourceCacheLine::getName, ResourceCacheLine::getResources));
     }
 
+    /**
+     * Brings the member rows in line with <code>certifiableResources</code>. Only rows that are new, changed or no
+     * longer present are written, using batched statements.
+     *
+     * @return the number of inserted, updated and deleted rows.
+     */
     @Override
-    public void populateCache(Map<CaName, IpResourceSet> certifiableResources) {
-        clearCache();
-        // clear the session to avoid "duplicate entity in the session error from Hibernate"
+    public int populateCache(Map<CaName, IpResourceSet> certifiableResources) {
+        // The rows are modified using JDBC, so make sure the session does not contain pending or stale cache lines.
+        entityManager.flush();
         entityManager.clear();
-        populateWith(certifiableResources);
+
+        Map<String, String> current = currentMemberRows();
+        List<String[]> inserts = new ArrayList<>();
+        List<String[]> updates = new ArrayList<>();
+        for (Map.Entry<CaName, IpResourceSet> entry : certifiableResources.entrySet()) {
+            String name = entry.getKey().toString();
+            String resources = entry.getValue().toString();
+            String existing = current.remove(name);
+            if (existing == null) {
+                inserts.add(new String[]{name, resources});
+            } else if (!existing.equals(resources) && !IpResourceSet.parse(existing).equals(entry.getValue())) {
+                updates.add(new String[]{resources, name});
+            }
+        }
+        List<String[]> deletes = current.keySet().stream().map(name -> new String[]{name}).collect(Collectors.toList());
+
+        int changedRows = entityManager.unwrap(Session.class).doReturningWork(connection ->
+            executeBatched(connection, "DELETE FROM resource_cache WHERE name = ?", deletes)
+                + executeBatched(connection, "UPDATE resource_cache SET resources = ? WHERE name = ?", updates)
+                + executeBatched(connection, "INSERT INTO resource_cache (name, resources) VALUES (?, ?)", inserts)
+        );
+        log.info("Resource cache rows changed: {} (inserted {}, updated {}, deleted {})", changedRows, inserts.size(), updates.size(), deletes.size());
+
+        List<String> changedNames = new ArrayList<>(inserts.size() + updates.size() + deletes.size());
+        inserts.forEach(row -> changedNames.add(row[0]));
+        updates.forEach(row -> changedNames.add(row[1]));
+        deletes.forEach(row -> changedNames.add(row[0]));
+        recordResourceChanges(changedNames);
+
+        if (changedRows > 0) {
+            registerModification(resources -> {
+                certifiableResources.forEach(resources::put);
+                deletes.forEach(row -> resources.remove(CaName.parse(row[0])));
+            });
+        }
         registerUpdateCompleted();
+        return changedRows;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<CaName, Long> findResourceChanges() {
+        List<Object[]> rows = entityManager.createNativeQuery("SELECT name, generation FROM resource_cache_change").getResultList();
+        Map<CaName, Long> result = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            result.put(CaName.parse((String) row[0]), ((Number) row[1]).longValue());
+        }
+        return result;
+    }
+
+    @Override
+    public void clearResourceChange(CaName caName, long generation) {
+        entityManager.createNativeQuery("DELETE FROM resource_cache_change WHERE name = :name AND generation = :generation")
+            .setParameter("name", caName.toString())
+            .setParameter("generation", generation)
+            .executeUpdate();
+    }
+
+    private void recordResourceChanges(List<String> names) {
+        if (names.isEmpty()) {
+            return;
+        }
+        String generation = String.valueOf(nextGeneration());
+        List<String[]> rows = names.stream().map(name -> new String[]{name, generation}).collect(Collectors.toList());
+        entityManager.unwrap(Session.class).doWork(connection -> executeBatched(connection,
+            "INSERT INTO resource_cache_change (name, generation) VALUES (?, CAST(? AS BIGINT)) " +
+                "ON CONFLICT (name) DO UPDATE SET generation = EXCLUDED.generation",
+            rows));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> currentMemberRows() {
+        List<Object[]> rows = entityManager.createNativeQuery("SELECT name, resources FROM resource_cache WHERE name <> :productionCAName")
+            .setParameter("productionCAName", productionCaName.toString())
+            .getResultList();
+        Map<String, String> result = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            result.put((String) row[0], (String) row[1]);
+        }
+        return result;
+    }
+
+    private static int executeBatched(Connection connection, String sql, List<String[]> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (List<String[]> batch : Lists.partition(rows, BATCH_SIZE)) {
+                for (String[] parameters : batch) {
+                    for (int i = 0; i < parameters.length; ++i) {
+                        statement.setString(i + 1, parameters[i]);
+                    }
+                    statement.addBatch();
+                }
+                for (int updateCount : statement.executeBatch()) {
+                    count += updateCount == Statement.SUCCESS_NO_INFO ? 1 : updateCount;
+                }
+            }
+        }
+        return count;
     }
 
     void clearCache() {
         entityManager.createQuery("delete from ResourceCacheLine rc where rc.name != :productionCAName")
                 .setParameter("productionCAName", productionCaName.toString())
                 .executeUpdate();
+        registerModification(resources -> resources.keySet().removeIf(name -> !name.equals(productionCaName)));
     }
 
     public void dropCache() {
         entityManager.createQuery("delete from ResourceCacheLine rc")
                 .executeUpdate();
-    }
-
-    private void populateWith(Map<CaName, IpResourceSet> certifiableResources) {
-        for (final Map.Entry<CaName, IpResourceSet> entry : certifiableResources.entrySet()) {
-            final ResourceCacheLine resourceCacheLine = new ResourceCacheLine(entry.getKey(), entry.getValue());
-            entityManager.persist(resourceCacheLine);
-        }
+        registerModification(Map::clear);
     }
 
     private void registerUpdateCompleted() {
@@ -126,6 +301,8 @@ public class JpaResourceCacheImpl implements ResourceCache, DelegationsCache {
             .executeUpdate();
         ResourceCacheLine cacheRecord = entityManager.find(ResourceCacheLine.class, caName.toString());
         entityManager.refresh(cacheRecord);
+        recordResourceChanges(Collections.singletonList(caName.toString()));
+        registerModification(resourcesByName -> resourcesByName.put(caName, resources));
     }
 
     /**
@@ -138,10 +315,198 @@ public class JpaResourceCacheImpl implements ResourceCache, DelegationsCache {
     @Override
     public void cacheDelegations(IpResourceSet delegations) {
         entityManager.merge(new ResourceCacheLine(productionCaName, delegations));
+        registerModification(resources -> resources.put(productionCaName, delegations));
     }
 
     @Override
     public Optional<IpResourceSet> getDelegationsCache() {
         return lookupResources(productionCaName);
     }
+
+    /**
+     * Stores a new generation number and makes sure <code>change</code> is applied to the snapshot once the current
+     * transaction commits. Until then lookups in the current transaction are served from the database.
+     */
+    private void registerModification(Consumer<Map<CaName, IpResourceSet>> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            storeNextGeneration();
+            snapshot.set(Snapshot.notLoaded());
+            return;
+        }
+
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            PendingChanges changes = new PendingChanges(lockStoredGeneration());
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(JpaResourceCacheImpl.this);
+                    if (status == STATUS_COMMITTED) {
+                        applyCommittedChanges(changes);
+                    }
+                }
+            });
+            pending = changes;
+        }
+        pending.getChanges().add(change);
+        pending.setGeneration(storeNextGeneration());
+    }
+
+    private long storeNextGeneration() {
+        long generation = nextGeneration();
+        propertyEntityRepository.createOrUpdate(RESOURCE_CACHE_GENERATION_KEY, String.valueOf(generation));
+        return generation;
+    }
+
+    /**
+     * Locks the stored generation until the current transaction completes, so the generation a transaction replaces
+     * is the generation of the transaction that modified the cache before it.
+     */
+    @SuppressWarnings("unchecked")
+    private long lockStoredGeneration() {
+        List<String> values = entityManager.createNativeQuery("SELECT value FROM property WHERE key = :key FOR UPDATE")
+            .setParameter("key", RESOURCE_CACHE_GENERATION_KEY)
+            .getResultList();
+        return values.isEmpty() ? 0 : Long.parseLong(values.get(0));
+    }
+
+    private void applyCommittedChanges(PendingChanges pending) {
+        Snapshot current = snapshot.get();
+        if (current.isLoaded() && current.getGeneration() == pending.getPreviousGeneration()) {
+            Map<CaName, IpResourceSet> resources = new HashMap<>(current.getResources());
+            pending.getChanges().forEach(change -> change.accept(resources));
+            Snapshot updated = new Snapshot(pending.getGeneration(), Collections.unmodifiableMap(resources));
+            if (snapshot.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+        // The snapshot misses changes of another transaction, so it is loaded again on the next lookup.
+        snapshot.set(Snapshot.notLoaded());
+    }
+
+    private long nextGeneration() {
+        return ((Number) entityManager.createNativeQuery("SELECT nextval('seq_all')").getSingleResult()).longValue();
+    }
+
+    private boolean isModifiedInCurrentTransaction() {
+        return TransactionSynchronizationManager.hasResource(this);
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot.get();
+        if (!current.isLoaded()) {
+            return loadSnapshot();
+        }
+        if (System.currentTimeMillis() - lastGenerationCheckMillis >= refreshIntervalMillis && refreshScheduled.compareAndSet(false, true)) {
+            try {
+                refreshExecutor.execute(this::refreshSnapshot);
+            } catch (RejectedExecutionException e) {
+                refreshScheduled.set(false);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Loads the snapshot when there is none. Inside a transaction the snapshot is read using the connection of that
+     * transaction, so no second connection is needed.
+     */
+    private Snapshot loadSnapshot() {
+        snapshotLoadLock.lock();
+        try {
+            Snapshot current = snapshot.get();
+            if (current.isLoaded()) {
+                return current;
+            }
+            long checkedAt = System.currentTimeMillis();
+            Snapshot loaded = TransactionSynchronizationManager.isActualTransactionActive()
+                ? readSnapshot()
+                : readOnlyTransactionTemplate.execute(status -> readSnapshot());
+            // Not installed when a transaction that committed while loading could not be applied.
+            if (snapshot.compareAndSet(current, loaded)) {
+                lastGenerationCheckMillis = checkedAt;
+                log.debug("Loaded resource cache snapshot generation {} with {} entries", loaded.getGeneration(), loaded.getResources().size());
+            }
+            return loaded;
+        } finally {
+            snapshotLoadLock.unlock();
+        }
+    }
+
+    /**
+     * Reloads the snapshot when the stored generation changed, which happens when another node updated the cache.
+     * Runs on the refresh thread.
+     */
+    private void refreshSnapshot() {
+        try {
+            long checkedAt = System.currentTimeMillis();
+            Snapshot current = snapshot.get();
+            Snapshot refreshed = readOnlyTransactionTemplate.execute(status -> {
+                long generation = storedGeneration();
+                return current.isLoaded() && current.getGeneration() == generation ? current : readSnapshot(generation);
+            });
+            // A snapshot replaced while refreshing is checked again on the next lookup.
+            if (snapshot.compareAndSet(current, refreshed)) {
+                lastGenerationCheckMillis = checkedAt;
+                if (refreshed != current) {
+                    log.debug("Loaded resource cache snapshot generation {} with {} entries", refreshed.getGeneration(), refreshed.getResources().size());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh the resource cache snapshot", e);
+        } finally {
+            refreshScheduled.set(false);
+        }
+    }
+
+    private Snapshot readSnapshot() {
+        return readSnapshot(storedGeneration());
+    }
+
+    private Snapshot readSnapshot(long generation) {
+        return new Snapshot(generation, loadAllResources());
+    }
+
+    private long storedGeneration() {
+        PropertyEntity entity = propertyEntityRepository.findByKey(RESOURCE_CACHE_GENERATION_KEY);
+        return entity == null ? 0 : Long.parseLong(entity.getValue());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<CaName, IpResourceSet> loadAllResources() {
+        List<Object[]> rows = entityManager.createNativeQuery("SELECT name, resources FROM resource_cache").getResultList();
+        Map<CaName, IpResourceSet> result = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            result.put(CaName.parse((String) row[0]), IpResourceSet.parse((String) row[1]));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * The modifications of the snapshot by the current transaction.
+     */
+    @lombok.Data
+    private static class PendingChanges {
+        private final long previousGeneration;
+        private final List<Consumer<Map<CaName, IpResourceSet>>> changes = new ArrayList<>();
+        private long generation;
+    }
+
+    @lombok.Value
+    private static class Snapshot {
+        long generation;
+        Map<CaName, IpResourceSet> resources;
+
+        /**
+         * A new instance every time, so a snapshot loaded before it was replaced by this one is not installed.
+         */
+        static Snapshot notLoaded() {
+            return new Snapshot(-1, Collections.emptyMap());
+        }
+
+        boolean isLoaded() {
+            return generation >= 0;
+        }
+    }
 }
@@ -1,14 +1,21 @@
 package net.ripe.rpki.ripencc.provisioning;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Value;
 import net.ripe.ipresource.IpResourceSet;
 import net.ripe.rpki.commons.provisioning.payload.common.CertificateElement;
 import net.ripe.rpki.commons.provisioning.payload.common.GenericClassElementBuilder;
 import net.ripe.rpki.commons.provisioning.payload.list.response.ResourceClassListResponseClassElement;
 import net.ripe.rpki.commons.provisioning.payload.list.response.ResourceClassListResponsePayload;
 import net.ripe.rpki.commons.provisioning.payload.list.response.ResourceClassListResponsePayloadBuilder;
+import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.domain.CertificateAuthority;
 import net.ripe.rpki.server.api.dto.ManagedCertificateAuthorityData;
 import net.ripe.rpki.server.api.dto.NonHostedCertificateAuthorityData;
+import net.ripe.rpki.server.api.dto.NonHostedPublicKeyData;
+import net.ripe.rpki.server.api.dto.ResourceCertificateData;
+import net.ripe.rpki.server.api.ports.ResourceCache;
 import net.ripe.rpki.server.api.ports.ResourceLookupService;
 import net.ripe.rpki.server.api.services.read.ResourceCertificateViewService;
 import org.joda.time.DateTime;
@@ -16,52 +23,113 @@ import org.springframework.stereotype.Component;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static net.ripe.rpki.domain.Resources.DEFAULT_RESOURCE_CLASS;
 
+/**
+ * Answers list requests of non-hosted CAs. Children poll every few minutes and the answer rarely changes, so the
+ * class elements are cached per child CA for as long as the inputs they are computed from are unchanged. The
+ * response payload (and the CMS object wrapping it) is still created for every request.
+ */
 @Component
 class ListResourceClassProcessor extends AbstractProvisioningProcessor {
 
+    static final int MAXIMUM_CACHED_CHILDREN = 10_000;
+
     private final ResourceCertificateViewService resourceCertificateViewService;
+    private final ResourceCache resourceCache;
+
+    private final Cache<Long, CachedClassElements> classElementsByChild = CacheBuilder.newBuilder()
+        .maximumSize(MAXIMUM_CACHED_CHILDREN)
+        .build();
 
-    ListResourceClassProcessor(ResourceLookupService resourceLookupService, ResourceCertificateViewService resourceCertificateViewService) {
+    ListResourceClassProcessor(ResourceLookupService resourceLookupService,
+                               ResourceCertificateViewService resourceCertificateViewService,
+                               ResourceCache resourceCache) {
         super(resourceLookupService);
         this.resourceCertificateViewService = resourceCertificateViewService;
+        this.resourceCache = resourceCache;
     }
 
     public ResourceClassListResponsePayload process(NonHostedCertificateAuthorityData nonHostedCertificateAuthority,
                                                     ManagedCertificateAuthorityData productionCA) {
+        final Optional<ResourceCertificateData> currentIncomingResourceCertificate = resourceCertificateViewService.findCurrentIncomingResourceCertificate(productionCA.getId());
+        final CacheKey key = new CacheKey(
+            nonHostedCertificateAuthority.getVersionedId(),
+            nonHostedCertificateAuthority.getPublicKeys(),
+            productionCA.getVersionedId(),
+            productionCA.getResources(),
+            currentIncomingResourceCertificate.orElse(null),
+            resourceCache.getGeneration(),
+            CertificateAuthority.calculateValidityNotAfter(new DateTime())
+        );
+
+        List<ResourceClassListResponseClassElement> classElements;
+        CachedClassElements cached = classElementsByChild.getIfPresent(nonHostedCertificateAuthority.getId());
+        if (cached != null && cached.key.equals(key)) {
+            classElements = cached.classElements;
+        } else {
+            classElements = buildClassElements(nonHostedCertificateAuthority, productionCA, key);
+            if (key.resourceCacheGeneration >= 0) {
+                classElementsByChild.put(nonHostedCertificateAuthority.getId(), new CachedClassElements(key, classElements));
+            }
+        }
 
         final ResourceClassListResponsePayloadBuilder responsePayloadBuilder = new ResourceClassListResponsePayloadBuilder();
+        classElements.forEach(responsePayloadBuilder::addClassElement);
+        return responsePayloadBuilder.build();
+    }
 
+    private List<ResourceClassListResponseClassElement> buildClassElements(NonHostedCertificateAuthorityData nonHostedCertificateAuthority,
+                                                                           ManagedCertificateAuthorityData productionCA,
+                                                                           CacheKey key) {
         final IpResourceSet resources = getCertifiableResources(nonHostedCertificateAuthority, productionCA);
-        if (!resources.isEmpty()) {
-            resourceCertificateViewService.findCurrentIncomingResourceCertificate(productionCA.getId())
-                .ifPresent(currentIncomingResourceCertificate -> {
-                    final ResourceClassListResponseClassElement classElement = new GenericClassElementBuilder()
-                        .withClassName(DEFAULT_RESOURCE_CLASS)
-                        .withIpResourceSet(resources)
-                        .withCertificateAuthorityUri(Collections.singletonList(currentIncomingResourceCertificate.getPublicationUri()))
-                        .withIssuer(currentIncomingResourceCertificate.getCertificate())
-                        .withValidityNotAfter(CertificateAuthority.calculateValidityNotAfter(new DateTime()))
-                        .buildResourceClassListResponseClassElement();
-
-                    final List<CertificateElement> certificateElements = nonHostedCertificateAuthority.getPublicKeys().stream()
-                        .filter(publicKeyData -> publicKeyData.getCurrentCertificate() != null)
-                        .map(publicKeyData -> createClassElement(
-                            publicKeyData.getCurrentCertificate().getCertificate(),
-                            publicKeyData.getRequestedResourceSets(),
-                            publicKeyData.getCurrentCertificate().getPublicationUri()
-                        ))
-                        .collect(Collectors.toList());
-
-                    classElement.setCertificateElements(certificateElements);
-                    responsePayloadBuilder.addClassElement(classElement);
-                });
+        if (resources.isEmpty() || key.incomingCertificate == null) {
+            return Collections.emptyList();
         }
 
-        return responsePayloadBuilder.build();
+        final ResourceClassListResponseClassElement classElement = new GenericClassElementBuilder()
+            .withClassName(DEFAULT_RESOURCE_CLASS)
+            .withIpResourceSet(resources)
+            .withCertificateAuthorityUri(Collections.singletonList(key.incomingCertificate.getPublicationUri()))
+            .withIssuer(key.incomingCertificate.getCertificate())
+            .withValidityNotAfter(key.validityNotAfter)
+            .buildResourceClassListResponseClassElement();
+
+        final List<CertificateElement> certificateElements = nonHostedCertificateAuthority.getPublicKeys().stream()
+            .filter(publicKeyData -> publicKeyData.getCurrentCertificate() != null)
+            .map(publicKeyData -> createClassElement(
+                publicKeyData.getCurrentCertificate().getCertificate(),
+                publicKeyData.getRequestedResourceSets(),
+                publicKeyData.getCurrentCertificate().getPublicationUri()
+            ))
+            .collect(Collectors.toList());
+
+        classElement.setCertificateElements(certificateElements);
+        return Collections.singletonList(classElement);
     }
 
+    /**
+     * Everything the class elements are computed from. The public keys are included since their certificates can
+     * change without a new version of the child CA.
+     */
+    @Value
+    private static class CacheKey {
+        VersionedId childVersion;
+        Set<NonHostedPublicKeyData> childPublicKeys;
+        VersionedId productionCaVersion;
+        IpResourceSet productionCaResources;
+        ResourceCertificateData incomingCertificate;
+        long resourceCacheGeneration;
+        DateTime validityNotAfter;
+    }
+
+    @Value
+    private static class CachedClassElements {
+        CacheKey key;
+        List<ResourceClassListResponseClassElement> classElements;
+    }
 }
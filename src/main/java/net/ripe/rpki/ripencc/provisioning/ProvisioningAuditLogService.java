@@ -8,6 +8,10 @@ import java.util.UUID;
 
 public interface ProvisioningAuditLogService {
 
+    /**
+     * Queues the entry for the provisioning log and the database. The original request is only included in the
+     * provisioning log when it is not <code>null</code>, so it should be passed once per up-down exchange.
+     */
     void log(ProvisioningAuditLogEntity entry, byte[] request);
 
     List<ProvisioningAuditData> findRecentMessagesForCA(UUID caUUID);
@@ -1,9 +1,13 @@
 package net.ripe.rpki.ripencc.provisioning;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.application.impl.CommandAuditServiceBean;
 import net.ripe.rpki.commons.provisioning.payload.PayloadMessageType;
 import net.ripe.rpki.domain.ProvisioningAuditLogEntity;
@@ -15,21 +19,45 @@ import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static net.logstash.logback.argument.StructuredArguments.kv;
 
+/**
+ * Writes the provisioning audit log outside of the up-down request path. Entries are put on a bounded queue and a
+ * single writer thread formats them for the provisioning log and stores them in the database in batches.
+ * <p>
+ * When the queue is full, or the writer is not running, the entry is written by the calling thread instead, so
+ * entries are never dropped. On shutdown the writer is stopped and the remaining entries are written before the
+ * database connections are closed.
+ * <p>
+ * When a batch cannot be stored its entries are stored one by one, and the writer retries the entries that still fail
+ * every {@value #RETRY_INTERVAL_MILLIS} milliseconds for up to {@value #MAX_STORE_ATTEMPTS} attempts.
+ */
+@Slf4j
 @Component
-@Transactional
 class ProvisioningAuditLogServiceBean implements ProvisioningAuditLogService {
     /**
      * <emph>Important:</emph> separate logger for provisioning messages. There tend to be quite big and should not
@@ -37,32 +65,200 @@ class ProvisioningAuditLogServiceBean implements ProvisioningAuditLogService {
      */
     private static final Logger provisioningLog = LoggerFactory.getLogger("provisioning-logger");
 
+    private static final String QUEUE_DEPTH_METRIC = "rpkicore.provisioning.audit.queue.depth";
+    private static final String SYNCHRONOUS_WRITES_METRIC = "rpkicore.provisioning.audit.synchronous.writes";
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final int MAX_STORE_ATTEMPTS = 30;
+    private static final long RETRY_INTERVAL_MILLIS = 10_000;
+
     @PersistenceContext
     protected EntityManager entityManager;
 
-    public ProvisioningAuditLogServiceBean() {
-        this(null);
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final BlockingQueue<QueuedEntry> queue;
+    private final Counter synchronousWrites;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("provisioning-audit-writer").setDaemon(true).build()
+    );
+    private volatile boolean running;
+
+    @Autowired
+    public ProvisioningAuditLogServiceBean(PlatformTransactionManager transactionManager,
+                                           MeterRegistry meterRegistry,
+                                           @Value("${provisioning.audit.queue.capacity:10000}") int queueCapacity,
+                                           @Value("${provisioning.audit.batch.size:100}") int batchSize) {
+        this(null, transactionManager, meterRegistry, queueCapacity, batchSize);
     }
 
-    public ProvisioningAuditLogServiceBean(EntityManager entityManager) {
+    ProvisioningAuditLogServiceBean(EntityManager entityManager,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry,
+                                    int queueCapacity,
+                                    int batchSize) {
         this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder(QUEUE_DEPTH_METRIC, queue::size)
+            .description("Number of provisioning audit log entries waiting to be written")
+            .register(meterRegistry);
+        synchronousWrites = Counter.builder(SYNCHRONOUS_WRITES_METRIC)
+            .description("Number of provisioning audit log entries written in the request path because the queue was full or the writer was stopped")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        writer.execute(this::writeQueuedEntries);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        writer.shutdown();
+        if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Provisioning audit log writer did not stop in time, writing remaining entries");
+        }
+        flush();
     }
 
-    @SuppressWarnings("java:S3457")
-    @SneakyThrows
     @Override
     public void log(ProvisioningAuditLogEntity entry, byte[] request) {
-        // We use structured/json logging: The LogEntry will be added to the json.
-        // There is no need to also template it into the log line (this would bloat the log). SonarQube warning is ignored.
-        provisioningLog.info("Up-down message", kv("entry", LogEntry.make(entry, request)));
-        final PayloadMessageType requestMessageType = entry.getRequestMessageType();
-        if (requestMessageType != PayloadMessageType.list &&
-            requestMessageType != PayloadMessageType.list_response) {
-            entityManager.persist(entry);
+        QueuedEntry queued = new QueuedEntry(entry, request);
+        if (!running || !queue.offer(queued)) {
+            synchronousWrites.increment();
+            write(Collections.singletonList(queued));
+        } else if (!running) {
+            // Stopped while the entry was queued, make sure it is not left behind.
+            flush();
+        }
+    }
+
+    /**
+     * Writes all queued entries in the calling thread.
+     */
+    void flush() {
+        List<QueuedEntry> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeQueuedEntries() {
+        List<QueuedEntry> batch = new ArrayList<>(batchSize);
+        List<PendingEntity> failed = new ArrayList<>();
+        long nextRetryMillis = 0;
+        try {
+            while (running) {
+                QueuedEntry first = queue.poll(1, TimeUnit.SECONDS);
+                if (!failed.isEmpty() && System.currentTimeMillis() >= nextRetryMillis) {
+                    failed = store(failed);
+                    nextRetryMillis = System.currentTimeMillis() + RETRY_INTERVAL_MILLIS;
+                }
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    logEntries(batch);
+                    List<PendingEntity> notStored = store(pendingEntities(batch));
+                    if (!notStored.isEmpty() && failed.isEmpty()) {
+                        nextRetryMillis = System.currentTimeMillis() + RETRY_INTERVAL_MILLIS;
+                    }
+                    failed.addAll(notStored);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Provisioning audit log writer failed, writing remaining entries synchronously", e);
+            running = false;
+            failed.addAll(pendingEntities(batch));
+            flush();
+        } finally {
+            storeOrGiveUp(failed);
+        }
+    }
+
+    /**
+     * Writes the entries in the calling thread. Entries that cannot be stored are retried once before giving up.
+     */
+    private void write(List<QueuedEntry> batch) {
+        logEntries(batch);
+        storeOrGiveUp(store(pendingEntities(batch)));
+    }
+
+    @SuppressWarnings("java:S3457")
+    private void logEntries(List<QueuedEntry> batch) {
+        for (QueuedEntry queued : batch) {
+            // We use structured/json logging: The LogEntry will be added to the json.
+            // There is no need to also template it into the log line (this would bloat the log). SonarQube warning is ignored.
+            provisioningLog.info("Up-down message", kv("entry", LogEntry.make(queued.entry, queued.request)));
+        }
+    }
+
+    private static List<PendingEntity> pendingEntities(List<QueuedEntry> batch) {
+        return batch.stream()
+            .map(queued -> queued.entry)
+            .filter(ProvisioningAuditLogServiceBean::isStored)
+            .map(PendingEntity::new)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Stores the entries in a single transaction, the inserts are batched by Hibernate. When that fails each entry is
+     * stored in its own transaction, so a single bad entry or a short database outage does not lose the others.
+     *
+     * @return the entries that could not be stored and should be retried
+     */
+    private List<PendingEntity> store(List<PendingEntity> pending) {
+        if (pending.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> pending.forEach(p -> entityManager.persist(p.entity)));
+            return new ArrayList<>();
+        } catch (RuntimeException e) {
+            log.warn("Failed to store {} provisioning audit log entries, storing them one by one", pending.size(), e);
+        }
+
+        List<PendingEntity> failed = new ArrayList<>();
+        for (PendingEntity p : pending) {
+            p.entity.resetAfterRollback();
+            try {
+                transactionTemplate.executeWithoutResult(status -> entityManager.persist(p.entity));
+            } catch (RuntimeException e) {
+                p.entity.resetAfterRollback();
+                if (++p.attempts < MAX_STORE_ATTEMPTS) {
+                    log.warn("Failed to store provisioning audit log entry {}, will retry", kv("entryUuid", p.entity.getEntryUuid()), e);
+                    failed.add(p);
+                } else {
+                    log.error("Giving up storing provisioning audit log entry {}, it is only in the provisioning log", kv("entryUuid", p.entity.getEntryUuid()), e);
+                }
+            }
         }
+        return failed;
+    }
+
+    private void storeOrGiveUp(List<PendingEntity> pending) {
+        for (PendingEntity p : store(pending)) {
+            log.error("Could not store provisioning audit log entry {}, it is only in the provisioning log", kv("entryUuid", p.entity.getEntryUuid()));
+        }
+    }
+
+    private static boolean isStored(ProvisioningAuditLogEntity entry) {
+        final PayloadMessageType requestMessageType = entry.getRequestMessageType();
+        return requestMessageType != PayloadMessageType.list &&
+            requestMessageType != PayloadMessageType.list_response;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<ProvisioningAuditData> findRecentMessagesForCA(UUID caUUID) {
         final TypedQuery<ProvisioningAuditLogEntity> query = entityManager.createQuery(
             "select pal from ProvisioningAuditLogEntity pal " +
@@ -75,6 +271,21 @@ class ProvisioningAuditLogServiceBean implements ProvisioningAuditLogService {
             .collect(Collectors.toList());
     }
 
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    private static class QueuedEntry {
+        private final ProvisioningAuditLogEntity entry;
+        private final byte[] request;
+    }
+
+    private static class PendingEntity {
+        private final ProvisioningAuditLogEntity entity;
+        private int attempts;
+
+        private PendingEntity(ProvisioningAuditLogEntity entity) {
+            this.entity = entity;
+        }
+    }
+
     @Getter
     @AllArgsConstructor(access = AccessLevel.PRIVATE)
     private static class LogEntry {
@@ -98,8 +309,8 @@ class ProvisioningAuditLogServiceBean implements ProvisioningAuditLogService {
                 entry.getSummary(),
                 Objects.toString(entry.getEntryUuid(), null),
                 dateFormat.print(utcDate),
-                // since request is a DER binary, encode it as base64 as well
-                Base64.encodeBase64String(request));
+                // since request is a DER binary, encode it as base64 as well. Only present for the first entry of an exchange.
+                request == null ? null : Base64.encodeBase64String(request));
         }
     }
 
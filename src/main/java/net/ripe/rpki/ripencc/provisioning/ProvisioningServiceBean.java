@@ -44,7 +44,7 @@ class ProvisioningServiceBean implements ProvisioningService {
                 ProvisioningCmsObject responseObject = provisioningRequestProcessor.process(requestObject);
 
                 ProvisioningAuditLogEntity responseLogEntry = new ProvisioningAuditLogEntity(responseObject, RunAsUser.ADMIN.getFriendlyName(), memberUUID);
-                provisioningAuditLogService.log(responseLogEntry, request);
+                provisioningAuditLogService.log(responseLogEntry, null);
 
                 provisioningMetricsService.trackPayload(responseObject.getPayload());
 
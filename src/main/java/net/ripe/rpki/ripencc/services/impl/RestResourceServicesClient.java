@@ -3,6 +3,7 @@ package net.ripe.rpki.ripencc.services.impl;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.server.api.ports.ResourceServicesClient;
 import org.glassfish.jersey.client.ClientConfig;
@@ -16,6 +17,11 @@ import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 
 @Slf4j
 @Component
@@ -63,11 +69,14 @@ class RestResourceServicesClient implements ResourceServicesClient {
 
     @Override
     public TotalResources fetchAllResources() {
-        final TotalResourceResponse response = httpGetJson(resourcesTarget().path(TOTAL_RESOURCES), TotalResourceResponse.class);
-        if (response == null || response.getResponse() == null || response.getResponse().getContent() == null) {
-            throw new RuntimeException("Invalid response: " + response);
+        // The response is large, so decode it while reading instead of materializing the text and DTOs first.
+        final WebTarget webResource = resourcesTarget().path(TOTAL_RESOURCES);
+        try (InputStream in = httpGet(webResource).readEntity(InputStream.class);
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return TotalResourcesJsonDecoder.decode(reader);
+        } catch (IOException | JsonParseException e) {
+            throw new RuntimeException("Invalid response from " + webResource.getUri() + ": " + e.getMessage(), e);
         }
-        return response.getResponse().getContent();
     }
 
     @VisibleForTesting
@@ -77,6 +86,10 @@ class RestResourceServicesClient implements ResourceServicesClient {
 
     @VisibleForTesting
     <T> T httpGetJson(WebTarget webResource, Class<T> responseType) {
+        return gson.fromJson(httpGet(webResource).readEntity(String.class), responseType);
+    }
+
+    private Response httpGet(WebTarget webResource) {
         log.info("HTTP GET " + webResource.getUri());
         final Response clientResponse = webResource.request(MediaType.APPLICATION_JSON_TYPE)
                 .header("X-API_KEY", apiKey)
@@ -84,7 +97,7 @@ class RestResourceServicesClient implements ResourceServicesClient {
         if (clientResponse.getStatus() != 200) {
             throw new IllegalArgumentException(webResource.getUri() + " GET failure: " + clientResponse.getStatusInfo());
         }
-        return gson.fromJson(clientResponse.readEntity(String.class), responseType);
+        return clientResponse;
     }
 
     private WebTarget resourcesTarget() {
@@ -1,15 +1,14 @@
 package net.ripe.rpki.ripencc.services.impl;
 
-import com.google.gson.Gson;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.server.api.ports.ResourceServicesClient;
-import org.apache.commons.io.IOUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
-import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 
 @Slf4j
@@ -34,10 +33,8 @@ public class StaticResourceServicesClient implements ResourceServicesClient {
     @SneakyThrows
     @Override
     public TotalResources fetchAllResources() {
-        try (InputStream in = file.getInputStream()) {
-            String data = IOUtils.toString(in, StandardCharsets.UTF_8);
-            TotalResourceResponse response = new Gson().fromJson(data, TotalResourceResponse.class);
-            return response.getResponse().getContent();
+        try (Reader reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
+            return TotalResourcesJsonDecoder.decode(reader);
         }
     }
 }
@@ -0,0 +1,207 @@
+package net.ripe.rpki.ripencc.services.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import net.ripe.ipresource.Asn;
+import net.ripe.ipresource.IpRange;
+import net.ripe.ipresource.IpResource;
+import net.ripe.ipresource.IpResourceSet;
+import net.ripe.rpki.server.api.ports.ResourceServicesClient.MemberResources;
+import net.ripe.rpki.server.api.ports.ResourceServicesClient.RipeNccDelegation;
+import net.ripe.rpki.server.api.ports.ResourceServicesClient.RipeNccDelegations;
+import net.ripe.rpki.server.api.ports.ResourceServicesClient.TotalResources;
+import net.ripe.rpki.server.api.support.objects.CaName;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Decodes the total-resources response of the resource services while reading it. The member resources are
+ * aggregated per CA as they are read, so neither the response text nor the individual resource records are kept in
+ * memory.
+ */
+final class TotalResourcesJsonDecoder {
+
+    /**
+     * Member resource arrays in the response, with the name used in {@link MemberResources#getMemberResourcesCounts()}.
+     */
+    private static final Map<String, String> MEMBER_RESOURCE_COUNT_NAMES = ImmutableMap.<String, String>builder()
+        .put("asns", "Asn")
+        .put("ipv4Allocations", "Ipv4Allocations")
+        .put("ipv4Assignments", "Ipv4Assignments")
+        .put("ipv6Allocations", "Ipv6Allocations")
+        .put("ipv6Assignments", "Ipv6Assignments")
+        .put("ipv4ErxResources", "Ipv4ErxResources")
+        .build();
+
+    private TotalResourcesJsonDecoder() {
+    }
+
+    static TotalResources decode(Reader json) throws IOException {
+        try (JsonReader reader = new JsonReader(json)) {
+            TotalResources result = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("response".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    result = readResponse(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (result == null) {
+                throw new JsonParseException("Invalid response: no response content");
+            }
+            return result;
+        }
+    }
+
+    private static TotalResources readResponse(JsonReader reader) throws IOException {
+        TotalResources result = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("content".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                result = readContent(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return result;
+    }
+
+    private static TotalResources readContent(JsonReader reader) throws IOException {
+        MemberResources memberResources = null;
+        RipeNccDelegations delegations = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+            } else if ("allMembersResources".equals(name)) {
+                memberResources = readMemberResources(reader);
+            } else if ("ripeNccDelegations".equals(name)) {
+                delegations = readDelegations(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (memberResources == null || delegations == null) {
+            throw new JsonParseException("Invalid response: missing allMembersResources or ripeNccDelegations");
+        }
+        return new TotalResources(memberResources, delegations);
+    }
+
+    private static MemberResources readMemberResources(JsonReader reader) throws IOException {
+        Map<CaName, IpResourceSet> certifiableResources = new LinkedHashMap<>();
+        Map<String, Integer> counts = new TreeMap<>();
+        MEMBER_RESOURCE_COUNT_NAMES.values().forEach(countName -> counts.put(countName, 0));
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            String countName = MEMBER_RESOURCE_COUNT_NAMES.get(name);
+            if (countName == null || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                reader.skipValue();
+            } else {
+                Function<String, IpResource> parser = "asns".equals(name) ? Asn::parse : IpRange::parse;
+                counts.put(countName, readMemberResourceArray(reader, parser, certifiableResources));
+            }
+        }
+        reader.endObject();
+        return new MemberResources(certifiableResources, counts);
+    }
+
+    private static int readMemberResourceArray(JsonReader reader, Function<String, IpResource> parser, Map<CaName, IpResourceSet> certifiableResources) throws IOException {
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String resource = null;
+            String caName = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("resource".equals(name)) {
+                    resource = nextStringOrNull(reader);
+                } else if ("caName".equals(name)) {
+                    caName = nextStringOrNull(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (resource == null) {
+                throw new JsonParseException("Invalid response: member resource without resource at " + reader.getPath());
+            }
+            if (caName != null) {
+                certifiableResources.computeIfAbsent(CaName.parse(caName.toUpperCase()), k -> new IpResourceSet())
+                    .add(parser.apply(resource));
+            }
+            count++;
+        }
+        reader.endArray();
+        return count;
+    }
+
+    private static RipeNccDelegations readDelegations(JsonReader reader) throws IOException {
+        List<RipeNccDelegation> asns = Collections.emptyList();
+        List<RipeNccDelegation> ipv4 = Collections.emptyList();
+        List<RipeNccDelegation> ipv6 = Collections.emptyList();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                reader.skipValue();
+            } else if ("ripeNccAsnDelegations".equals(name)) {
+                asns = readDelegationArray(reader);
+            } else if ("ripeNccIpv4Delegations".equals(name)) {
+                ipv4 = readDelegationArray(reader);
+            } else if ("ripeNccIpv6Delegations".equals(name)) {
+                ipv6 = readDelegationArray(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new RipeNccDelegations(asns, ipv4, ipv6);
+    }
+
+    private static List<RipeNccDelegation> readDelegationArray(JsonReader reader) throws IOException {
+        List<RipeNccDelegation> result = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String range = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("range".equals(reader.nextName())) {
+                    range = nextStringOrNull(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            result.add(new RipeNccDelegation(range));
+        }
+        reader.endArray();
+        return result;
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
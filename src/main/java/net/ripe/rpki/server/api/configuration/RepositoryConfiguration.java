@@ -19,6 +19,7 @@ public interface RepositoryConfiguration {
     String ALL_RESOURCES_CA_NAME = "all.resources.ca.name";
     String RSYNC_TARGET_DIRECTORY_RETENTION_PERIOD_MINUTES = "rsync.target.directory.retention.period.minutes";
     String RSYNC_TARGET_DIRECTORY_RETENTION_COPIES_COUNT = "rsync.target.directory.retention.copies.count";
+    String RSYNC_INCREMENTAL_WRITE_ENABLED = "rsync.incremental.write.enabled";
 
     URI getPublicRepositoryUri();
 
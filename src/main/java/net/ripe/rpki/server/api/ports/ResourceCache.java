@@ -17,10 +17,37 @@ public interface ResourceCache {
 
     boolean hasNoMemberResources();
 
-    void populateCache(Map<CaName, IpResourceSet> certifiableResources);
+    /**
+     * Replaces the member resources in the cache.
+     *
+     * @return the number of cache entries that were added, changed or removed.
+     */
+    int populateCache(Map<CaName, IpResourceSet> certifiableResources);
 
     Map<CaName, IpResourceSet> allMemberResources();
 
+    /**
+     * The generation changes whenever the cached resources are modified, so it can be used to invalidate values
+     * computed from the cached resources.
+     *
+     * @return the generation of the resources returned by {@link #lookupResources(CaName)}, or a negative value when
+     * the cache was modified by the current transaction.
+     */
+    long getGeneration();
+
+    /**
+     * Member CAs that were added, changed or removed by {@link #populateCache(Map)} are recorded until the change is
+     * cleared.
+     *
+     * @return the recorded changes, mapping the name of the CA to the generation of the change.
+     */
+    Map<CaName, Long> findResourceChanges();
+
+    /**
+     * Clears the recorded change of the CA, unless it changed again after the generation was read.
+     */
+    void clearResourceChange(CaName caName, long generation);
+
     default void verifyResourcesArePresent() {
         if (hasNoProductionResources()) {
             throw new IllegalStateException("Resource cache doesn't contain production CA resources");
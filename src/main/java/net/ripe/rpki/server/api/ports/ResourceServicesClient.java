@@ -37,49 +37,38 @@ public interface ResourceServicesClient {
     }
 
     class MemberResourceContent {
-        @Getter
-        private MemberResources content;
-    }
-
-    class TotalResourceResponse {
-        @Getter
-        private TotalResourceContent response;
-    }
+        private MemberResourceLists content;
 
-    class TotalResourceContent {
-        @Getter
-        private TotalResources content;
+        public MemberResources getContent() {
+            return content == null ? null : content.toMemberResources();
+        }
     }
 
-    @EqualsAndHashCode
-    class MemberResources {
-        private List<AsnResource> asns;
+    /**
+     * The individual member resources as they appear in the response of the resource services.
+     */
+    @AllArgsConstructor
+    class MemberResourceLists {
+        private final List<AsnResource> asns;
         private final List<Ipv4Allocation> ipv4Allocations;
-        private final List<Ipv6Allocation> ipv6Allocations;
         private final List<Ipv4Assignment> ipv4Assignments;
+        private final List<Ipv6Allocation> ipv6Allocations;
         private final List<Ipv6Assignment> ipv6Assignments;
         private final List<Ipv4ErxResource> ipv4ErxResources;
 
-        public MemberResources(List<AsnResource> asns,
-                               List<Ipv4Allocation> ipv4Allocations,
-                               List<Ipv4Assignment> ipv4Assignments,
-                               List<Ipv6Allocation> ipv6Allocations,
-                               List<Ipv6Assignment> ipv6Assignments,
-                               List<Ipv4ErxResource> ipv4ErxResources) {
-            this.asns = asns;
-            this.ipv4Allocations = ipv4Allocations;
-            this.ipv4Assignments = ipv4Assignments;
-            this.ipv6Allocations = ipv6Allocations;
-            this.ipv6Assignments = ipv6Assignments;
-            this.ipv4ErxResources = ipv4ErxResources;
-        }
-
-        public void ignoreAsns() {
-            asns = null;
+        public MemberResources toMemberResources() {
+            return new MemberResources(asns, ipv4Allocations, ipv4Assignments, ipv6Allocations, ipv6Assignments, ipv4ErxResources);
         }
+    }
 
+    /**
+     * The member resources aggregated per CA, together with the number of resources of each type.
+     */
+    @Getter
+    @EqualsAndHashCode
+    class MemberResources {
         /**
-         * Get the certifiable resources.
+         * The certifiable resources.
          *
          * Independent allocations in RSNG that are contiguous are combined here; this is a MUST in
          * https://tools.ietf.org/html/rfc3779#section-2.2.3.6 .
@@ -98,7 +87,15 @@ public interface ResourceServicesClient {
          *  CN=28402 | 185.66.64.0/22, 2a05:640::/29
          * </pre>
          */
-        public Map<CaName, IpResourceSet> getCertifiableResources() {
+        private final Map<CaName, IpResourceSet> certifiableResources;
+        private final Map<String, Integer> memberResourcesCounts;
+
+        public MemberResources(List<AsnResource> asns,
+                               List<Ipv4Allocation> ipv4Allocations,
+                               List<Ipv4Assignment> ipv4Assignments,
+                               List<Ipv6Allocation> ipv6Allocations,
+                               List<Ipv6Assignment> ipv6Assignments,
+                               List<Ipv4ErxResource> ipv4ErxResources) {
             final Map<CaName, IpResourceSet> map = Maps.newLinkedHashMap();
             Stream.of(asns, ipv4Allocations, ipv4Assignments, ipv6Allocations, ipv6Assignments, ipv4ErxResources)
                 .filter(Objects::nonNull)
@@ -108,18 +105,25 @@ public interface ResourceServicesClient {
                             map.computeIfAbsent(dto.getCaName(), k -> new IpResourceSet()).add(r));
                 }));
 
-            return ImmutableMap.copyOf(map);
+            Map<String, Integer> counts = Maps.newTreeMap();
+            counts.put("Asn", sizeOf(asns));
+            counts.put("Ipv4Allocations", sizeOf(ipv4Allocations));
+            counts.put("Ipv4Assignments", sizeOf(ipv4Assignments));
+            counts.put("Ipv6Allocations", sizeOf(ipv6Allocations));
+            counts.put("Ipv6Assignments", sizeOf(ipv6Assignments));
+            counts.put("Ipv4ErxResources", sizeOf(ipv4ErxResources));
+
+            this.certifiableResources = ImmutableMap.copyOf(map);
+            this.memberResourcesCounts = ImmutableMap.copyOf(counts);
+        }
+
+        public MemberResources(Map<CaName, IpResourceSet> certifiableResources, Map<String, Integer> memberResourcesCounts) {
+            this.certifiableResources = ImmutableMap.copyOf(certifiableResources);
+            this.memberResourcesCounts = ImmutableMap.copyOf(memberResourcesCounts);
         }
 
-        public Map<String, Integer> getMemberResourcesCounts() {
-                Map<String, Integer> result = Maps.newTreeMap();
-                result.put("Asn", asns.size());
-                result.put("Ipv4Allocations", ipv4Allocations.size());
-                result.put("Ipv4Assignments", ipv4Assignments.size());
-                result.put("Ipv6Allocations", ipv6Allocations.size());
-                result.put("Ipv6Assignments", ipv6Assignments.size());
-                result.put("Ipv4ErxResources", ipv4ErxResources.size());
-                return result;
+        private static int sizeOf(List<?> resources) {
+            return resources == null ? 0 : resources.size();
         }
     }
 
@@ -5,6 +5,7 @@ import net.ripe.rpki.server.api.dto.BgpRisEntry;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.Consumer;
 
 
 public interface BgpRisEntryViewService {
@@ -26,4 +27,14 @@ public interface BgpRisEntryViewService {
     Map<Boolean, Collection<BgpRisEntry>> findMostSpecificContainedAndNotContained(IpResourceSet resources);
 
     void resetEntries(Collection<BgpRisEntry> entries);
+
+    /**
+     * Starts building a new set of entries that replaces the current entries when {@link Update#commit()} is
+     * called. Entries that are not kept (e.g. due to low visibility) are discarded as they are added.
+     */
+    Update startUpdate();
+
+    interface Update extends Consumer<BgpRisEntry> {
+        void commit();
+    }
 }
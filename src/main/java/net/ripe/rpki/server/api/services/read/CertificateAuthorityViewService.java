@@ -10,6 +10,7 @@ import net.ripe.rpki.server.api.dto.CaStatEvent;
 import net.ripe.rpki.server.api.dto.CertificateAuthorityData;
 import net.ripe.rpki.server.api.dto.CommandAuditData;
 import net.ripe.rpki.server.api.dto.ProvisioningAuditData;
+import org.joda.time.DateTime;
 import org.joda.time.Instant;
 
 import javax.security.auth.x500.X500Principal;
@@ -78,7 +79,7 @@ public interface CertificateAuthorityViewService {
 
     Collection<CaStat> getCaStats();
 
-    Collection<? extends CaStatEvent> getCaStatEvents();
+    Collection<? extends CaStatEvent> getCaStatEvents(DateTime from, DateTime to, int offset, Integer limit);
 
     Map<UUID, RepositoryResponse> findNonHostedPublisherRepositories(X500Principal caName);
 
@@ -6,8 +6,33 @@ public interface ActiveNodeService {
 
     String getCurrentNodeName();
 
+    /**
+     * @return true when the current node holds the active node lease. Answered from memory, so this is cheap
+     * enough to call from metrics and before every background task.
+     */
 	boolean isActiveNode();
 
+    /**
+     * @return the fencing token of the active node lease held by the current node, or 0 when no lease is held. A
+     * node gets a new, larger token every time it acquires the lease.
+     */
+    long getFencingToken();
+
+    /**
+     * @return true when the lease identified by the fencing token is no longer held by the current node, so work
+     * started under that lease must be aborted.
+     */
+    boolean hasLostLease(long fencingToken);
+
+    /**
+     * Locks the lease identified by the fencing token in the current transaction. Another node cannot take over the
+     * lease until the transaction ends, so changes committed by the transaction are made under this lease.
+     *
+     * @return false when the lease is no longer held by the current node, in which case the transaction must not
+     * commit its changes.
+     */
+    boolean lockLease(long fencingToken);
+
 	String getActiveNodeName();
 
 	void setActiveNodeName(String nodeName);
@@ -2,26 +2,70 @@ package net.ripe.rpki.services.impl;
 
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.server.api.configuration.Environment;
 import net.ripe.rpki.domain.property.PropertyEntity;
 import net.ripe.rpki.domain.property.PropertyEntityRepository;
 import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import net.ripe.rpki.util.JdbcDBComponent;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
-
-
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The active node is selected by the <code>activeNode</code> property. The selected node acquires a time-bounded
+ * lease and renews it in the background, so whether the current node is active is answered from memory. A node
+ * considers itself active until the lease expires (measured from before the lease was renewed) or until a renewal
+ * finds that another node was selected, so two nodes never consider themselves active at the same time.
+ */
 @Service
-@Transactional
+@Slf4j
 public class ActiveNodeServiceBean implements ActiveNodeService {
     public static final String ACTIVE_NODE_KEY = "activeNode";
 
     private final PropertyEntityRepository propertyEntityRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final long leaseDurationSeconds;
+    private final long renewIntervalSeconds;
+
+    private final ScheduledExecutorService leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "active-node-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Lease lease;
 
     @Inject
-    public ActiveNodeServiceBean(PropertyEntityRepository propertyEntityRepository, MeterRegistry meterRegistry) {
+    public ActiveNodeServiceBean(
+        PropertyEntityRepository propertyEntityRepository,
+        EntityManager entityManager,
+        PlatformTransactionManager transactionManager,
+        MeterRegistry meterRegistry,
+        @Value("${active.node.lease.duration.seconds:30}") long leaseDurationSeconds,
+        @Value("${active.node.lease.renew.interval.seconds:10}") long renewIntervalSeconds
+    ) {
         this.propertyEntityRepository = propertyEntityRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.leaseDurationSeconds = leaseDurationSeconds;
+        this.renewIntervalSeconds = renewIntervalSeconds;
 
         // Reference is kept through the meter registry
         Gauge.builder("rpkicore_is_active_node", () -> this.isActiveNode() ? 1 : 0)
@@ -30,7 +74,18 @@ public class ActiveNodeServiceBean implements ActiveNodeService {
                 .register(meterRegistry);
     }
 
+    @PostConstruct
+    private void startLeaseRenewal() {
+        leaseRenewer.scheduleWithFixedDelay(this::renewLease, 0, renewIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void stopLeaseRenewal() {
+        leaseRenewer.shutdownNow();
+    }
+
     @Override
+    @Transactional
     public void activateCurrentNode() {
         setActiveNodeName(getCurrentNodeName());
     }
@@ -40,23 +95,113 @@ public class ActiveNodeServiceBean implements ActiveNodeService {
         return Environment.getInstanceName();
     }
 
-	private boolean isActiveNode(String nodeName) {
-		return nodeName.equals(getActiveNodeName());
-	}
+    @Override
+    public boolean isActiveNode() {
+        Lease current = lease;
+        return current != null && current.isValid();
+    }
 
     @Override
-    public boolean isActiveNode() { return this.isActiveNode(getCurrentNodeName()); }
+    public long getFencingToken() {
+        Lease current = lease;
+        return current != null && current.isValid() ? current.fencingToken : 0;
+    }
+
+    @Override
+    public boolean hasLostLease(long fencingToken) {
+        Lease current = lease;
+        return current == null || !current.isValid() || current.fencingToken != fencingToken;
+    }
+
+    /**
+     * Takes a share lock on the lease row, which blocks lease renewals and take-overs until the transaction ends. The
+     * expiry is compared with <code>clock_timestamp()</code>, since <code>NOW()</code> is the start of the
+     * transaction.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean lockLease(long fencingToken) {
+        if (hasLostLease(fencingToken)) {
+            return false;
+        }
+        return !entityManager.createNativeQuery(
+                "SELECT 1 FROM active_node_lease " +
+                " WHERE fencing_token = :fencingToken AND node_name = :node AND expires_at > clock_timestamp() " +
+                "   FOR SHARE")
+            .setParameter("fencingToken", fencingToken)
+            .setParameter("node", getCurrentNodeName())
+            .getResultList()
+            .isEmpty();
+    }
 
 	@Override
+    @Transactional(readOnly = true)
 	public String getActiveNodeName() {
 		return getValueForKey(ACTIVE_NODE_KEY);
 	}
 
 	@Override
+    @Transactional
 	public void setActiveNodeName(String nodeName) {
 		setValueForKey(ACTIVE_NODE_KEY, nodeName);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Acquire or release the lease right away instead of waiting for the next renewal.
+            JdbcDBComponent.afterCommit(this::renewLease);
+        }
 	}
 
+    /**
+     * Acquires or renews the lease when the current node is the selected active node, otherwise releases it. The
+     * local lease validity is measured from before the database transaction started, so it always ends before the
+     * lease in the database expires.
+     */
+    synchronized void renewLease() {
+        String nodeName = getCurrentNodeName();
+        try {
+            long startedAt = System.nanoTime();
+            Lease previous = lease;
+            Long fencingToken = transactionTemplate.execute(status -> {
+                @SuppressWarnings("unchecked")
+                List<Number> tokens = entityManager.createNativeQuery(
+                        "UPDATE active_node_lease " +
+                        "   SET fencing_token = CASE WHEN node_name = :node AND expires_at > NOW() THEN fencing_token ELSE fencing_token + 1 END, " +
+                        "       node_name = :node, " +
+                        "       expires_at = NOW() + MAKE_INTERVAL(secs => :seconds) " +
+                        " WHERE (node_name = :node OR expires_at <= NOW()) " +
+                        "   AND EXISTS (SELECT 1 FROM property WHERE key = :activeNodeKey AND value = :node) " +
+                        "RETURNING fencing_token")
+                    .setParameter("node", nodeName)
+                    .setParameter("seconds", leaseDurationSeconds)
+                    .setParameter("activeNodeKey", ACTIVE_NODE_KEY)
+                    .getResultList();
+                if (!tokens.isEmpty()) {
+                    return tokens.get(0).longValue();
+                }
+
+                // Not (or no longer) the selected node, release our lease so the selected node can take over.
+                entityManager.createNativeQuery(
+                        "UPDATE active_node_lease SET expires_at = NOW() WHERE node_name = :node AND expires_at > NOW()")
+                    .setParameter("node", nodeName)
+                    .executeUpdate();
+                return null;
+            });
+
+            if (fencingToken == null) {
+                lease = null;
+                if (previous != null) {
+                    log.warn("Node {} released the active node lease (fencing token {})", nodeName, previous.fencingToken);
+                }
+            } else {
+                lease = new Lease(fencingToken, startedAt + TimeUnit.SECONDS.toNanos(leaseDurationSeconds));
+                if (previous == null || previous.fencingToken != fencingToken) {
+                    log.info("Node {} acquired the active node lease (fencing token {})", nodeName, fencingToken);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Keep the current lease until it expires, the next renewal may succeed.
+            log.error("Failed to renew the active node lease", e);
+        }
+    }
 
     private String getValueForKey(String key) {
         PropertyEntity property = propertyEntityRepository.findByKey(key);
@@ -77,4 +222,17 @@ public class ActiveNodeServiceBean implements ActiveNodeService {
         propertyEntityRepository.add(new PropertyEntity(key, value));
     }
 
+    private static class Lease {
+        private final long fencingToken;
+        private final long validUntilNanos;
+
+        private Lease(long fencingToken, long validUntilNanos) {
+            this.fencingToken = fencingToken;
+            this.validUntilNanos = validUntilNanos;
+        }
+
+        private boolean isValid() {
+            return System.nanoTime() - validUntilNanos < 0;
+        }
+    }
 }
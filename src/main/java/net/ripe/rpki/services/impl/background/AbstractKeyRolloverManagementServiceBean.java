@@ -1,6 +1,8 @@
 package net.ripe.rpki.services.impl.background;
 
 import net.ripe.rpki.application.CertificationConfiguration;
+import net.ripe.rpki.core.services.background.BackgroundResource;
+import net.ripe.rpki.core.services.background.BackgroundResourceAccess;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
@@ -25,7 +27,7 @@ public abstract class AbstractKeyRolloverManagementServiceBean extends Sequentia
                                                     CertificateAuthorityViewService certificationService,
                                                     CommandService commandService,
                                                     Optional<Integer> batchSize) {
-        super(backgroundTaskRunner);
+        super(backgroundTaskRunner, BackgroundResourceAccess.writes(BackgroundResource.CA_HIERARCHY));
         this.certificationConfiguration = certificationConfiguration;
         this.caViewService = certificationService;
         this.commandService = commandService;
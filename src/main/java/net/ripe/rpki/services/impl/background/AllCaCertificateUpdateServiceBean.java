@@ -1,5 +1,7 @@
 package net.ripe.rpki.services.impl.background;
 
+import net.ripe.rpki.core.services.background.BackgroundResource;
+import net.ripe.rpki.core.services.background.BackgroundResourceAccess;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.domain.CertificateAuthorityRepository;
@@ -11,21 +13,35 @@ import net.ripe.rpki.server.api.ports.ResourceCache;
 import net.ripe.rpki.server.api.services.command.CommandService;
 import net.ripe.rpki.server.api.services.command.CommandStatus;
 import net.ripe.rpki.server.api.services.read.CertificateAuthorityViewService;
+import net.ripe.rpki.server.api.support.objects.CaName;
 import net.ripe.rpki.services.impl.handlers.ChildParentCertificateUpdateSaga;
+import org.joda.time.DateTimeUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.security.auth.x500.X500Principal;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static net.ripe.rpki.services.impl.background.BackgroundServices.ALL_CA_CERTIFICATE_UPDATE_SERVICE;
 
+/**
+ * Updates the incoming resource certificates of the production CA and its member CAs. Only member CAs with resource
+ * changes recorded by the resource cache are updated, except for a periodic full sweep over all member CAs that also
+ * catches updates that are not caused by resource changes. The first run after startup is always a full sweep.
+ */
 @Service(ALL_CA_CERTIFICATE_UPDATE_SERVICE)
 public class AllCaCertificateUpdateServiceBean extends SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode {
     private final int updateBatchSize;
+    private final long fullSweepIntervalMillis;
 
     private final CertificateAuthorityViewService caViewService;
     private final CommandService commandService;
@@ -35,6 +51,7 @@ public class AllCaCertificateUpdateServiceBean extends SequentialBackgroundServi
     private final CertificateAuthorityRepository certificateAuthorityRepository;
     private final ChildParentCertificateUpdateSaga childParentCertificateUpdateSaga;
 
+    private volatile Long lastFullSweepMillis;
 
     public AllCaCertificateUpdateServiceBean(BackgroundTaskRunner backgroundTaskRunner,
                                              CertificateAuthorityViewService caViewService,
@@ -44,8 +61,10 @@ public class AllCaCertificateUpdateServiceBean extends SequentialBackgroundServi
                                              TransactionTemplate transactionTemplate,
                                              CertificateAuthorityRepository certificateAuthorityRepository,
                                              ChildParentCertificateUpdateSaga childParentCertificateUpdateSaga,
-                                             @Value("${certificate.authority.update.batch.size:1000}") int updateBatchSize) {
-        super(backgroundTaskRunner);
+                                             @Value("${certificate.authority.update.batch.size:1000}") int updateBatchSize,
+                                             @Value("${certificate.authority.update.full.sweep.interval.hours:24}") int fullSweepIntervalHours) {
+        // Reads the member resources and clears the resource changes it has handled from the resource cache.
+        super(backgroundTaskRunner, BackgroundResourceAccess.writes(BackgroundResource.CA_HIERARCHY, BackgroundResource.RESOURCE_CACHE));
         this.caViewService = caViewService;
         this.commandService = commandService;
         this.resourceCache = resourceCache;
@@ -54,6 +73,7 @@ public class AllCaCertificateUpdateServiceBean extends SequentialBackgroundServi
         this.certificateAuthorityRepository = certificateAuthorityRepository;
         this.childParentCertificateUpdateSaga = childParentCertificateUpdateSaga;
         this.updateBatchSize = updateBatchSize;
+        this.fullSweepIntervalMillis = TimeUnit.HOURS.toMillis(fullSweepIntervalHours);
     }
 
     @Override
@@ -96,8 +116,8 @@ public class AllCaCertificateUpdateServiceBean extends SequentialBackgroundServi
     }
 
     private void updateProductionCa(CertificateAuthorityData productionCa) {
-        // NOTE: There's no update of potentially over-claiming CAs happening here,
-        // since we are updating all member CAs anyway.
+        // NOTE: There's no update of potentially over-claiming CAs happening here, since the member CAs with
+        // changed resources are updated anyway.
         runParallel(Stream.of(task(
             () -> commandService.execute(new UpdateAllIncomingResourceCertificatesCommand(productionCa.getVersionedId(), Integer.MAX_VALUE)),
             ex -> log.error("Unable to update incoming resource certificate for CA '{}'", productionCa.getName(), ex)
@@ -105,31 +125,66 @@ public class AllCaCertificateUpdateServiceBean extends SequentialBackgroundServi
     }
 
     private int updateMemberCas(CertificateAuthorityData productionCa) {
-        AtomicInteger updatedCounter = new AtomicInteger(0);
+        long now = DateTimeUtils.currentTimeMillis();
+        boolean fullSweep = lastFullSweepMillis == null || now - lastFullSweepMillis >= fullSweepIntervalMillis;
 
+        Map<CaName, Long> resourceChanges = transactionTemplate.execute(status -> resourceCache.findResourceChanges());
         Collection<CaIdentity> allChildrenIds = caViewService.findAllChildrenIdsForCa(productionCa.getName());
-        runParallel(allChildrenIds
+        List<CaIdentity> members = allChildrenIds.stream()
+            .filter(member -> fullSweep || resourceChanges.containsKey(member.getCaName()))
+            .collect(Collectors.toList());
+
+        AtomicInteger updatedCounter = new AtomicInteger(0);
+        AtomicBoolean batchLimitReached = new AtomicBoolean(false);
+        runParallel(members
             .stream()
             .map(member -> task(
-                () -> updateChildCertificate(commandService, member, updatedCounter),
+                () -> {
+                    if (updateChildCertificate(commandService, member, updatedCounter)) {
+                        clearResourceChange(member.getCaName(), resourceChanges);
+                    } else {
+                        batchLimitReached.set(true);
+                    }
+                },
                 ex -> log.error("Unable to update incoming resource certificate for CA '{}", member.getCaName(), ex)
             ))
         );
 
-        log.info("updated {} incoming resource certificates of {} member CAs", updatedCounter.get(), allChildrenIds.size());
+        // Changes of CAs that are not a member CA (anymore) do not require a certificate update.
+        Set<CaName> memberNames = allChildrenIds.stream().map(CaIdentity::getCaName).collect(Collectors.toSet());
+        resourceChanges.keySet().stream()
+            .filter(caName -> !memberNames.contains(caName))
+            .forEach(caName -> clearResourceChange(caName, resourceChanges));
+
+        if (fullSweep && !batchLimitReached.get()) {
+            lastFullSweepMillis = now;
+        }
+
+        log.info("updated {} incoming resource certificates of {} member CAs ({} with resource changes, full sweep: {})",
+            updatedCounter.get(), members.size(), resourceChanges.size(), fullSweep);
 
         return updatedCounter.get();
     }
 
+    private void clearResourceChange(CaName caName, Map<CaName, Long> resourceChanges) {
+        Long generation = resourceChanges.get(caName);
+        if (generation != null) {
+            transactionTemplate.executeWithoutResult(status -> resourceCache.clearResourceChange(caName, generation));
+        }
+    }
 
-    private void updateChildCertificate(CommandService commandService, CaIdentity member, AtomicInteger updatedCounter) {
+    /**
+     * @return false when the member CA was skipped because the batch size was reached.
+     */
+    private boolean updateChildCertificate(CommandService commandService, CaIdentity member, AtomicInteger updatedCounter) {
         if (updatedCounter.get() >= updateBatchSize) {
-            return;
+            return false;
         }
         CommandStatus status = commandService.execute(new UpdateAllIncomingResourceCertificatesCommand(member.getVersionedId(), Integer.MAX_VALUE));
         if (status.isHasEffect()) {
             updatedCounter.incrementAndGet();
         }
+        return true;
     }
 
 }
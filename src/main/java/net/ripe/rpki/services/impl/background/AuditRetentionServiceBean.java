@@ -0,0 +1,210 @@
+package net.ripe.rpki.services.impl.background;
+
+import com.google.common.base.Preconditions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
+import net.ripe.rpki.core.services.background.ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode;
+import net.ripe.rpki.domain.audit.AuditPartitionRepository;
+import net.ripe.rpki.domain.audit.AuditPartitionRepository.AuditPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static net.ripe.rpki.services.impl.background.BackgroundServices.AUDIT_RETENTION_SERVICE;
+
+/**
+ * Maintains the monthly partitions of the command audit and provisioning audit log. Partitions are created a few
+ * months ahead. When a retention period is configured, entries executed before the start of the oldest retained
+ * month are archived as compressed CSV files in the archive directory and then removed: monthly partitions are
+ * dropped as a whole, entries in the legacy and default partitions are deleted.
+ * <p>
+ * An archive file is completely written and synced to disk before the entries are removed in the same transaction. When
+ * that transaction fails the archive file is deleted again, so the entries are archived once, by the next run. Existing
+ * archive files are never replaced: entries that are archived from the same partition later, for example entries that
+ * ended up in the default partition, get a file with a sequence number added to its name.
+ * <p>
+ * The archive directory must be configured explicitly when a retention period is set.
+ */
+@Slf4j
+@Service(AUDIT_RETENTION_SERVICE)
+public class AuditRetentionServiceBean extends ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode {
+
+    static final int MONTHS_CREATED_AHEAD = 3;
+
+    private static final List<String> AUDIT_TABLES = Arrays.asList(
+        AuditPartitionRepository.COMMAND_AUDIT_TABLE,
+        AuditPartitionRepository.PROVISIONING_AUDIT_LOG_TABLE
+    );
+
+    private final AuditPartitionRepository auditPartitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int retentionMonths;
+    private final Path archiveDirectory;
+    private final Clock clock;
+    private final Counter archivedEntriesCounter;
+
+    @Inject
+    public AuditRetentionServiceBean(BackgroundTaskRunner backgroundTaskRunner,
+                                     AuditPartitionRepository auditPartitionRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${audit.retention.months:0}") int retentionMonths,
+                                     @Value("${audit.archive.directory:}") String archiveDirectory) {
+        this(backgroundTaskRunner, auditPartitionRepository, transactionManager, meterRegistry, retentionMonths,
+            archiveDirectory.isEmpty() ? null : Paths.get(archiveDirectory), Clock.systemUTC());
+    }
+
+    AuditRetentionServiceBean(BackgroundTaskRunner backgroundTaskRunner,
+                              AuditPartitionRepository auditPartitionRepository,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              int retentionMonths,
+                              Path archiveDirectory,
+                              Clock clock) {
+        super(backgroundTaskRunner);
+        Preconditions.checkArgument(retentionMonths <= 0 || archiveDirectory != null,
+            "audit.archive.directory must be set when audit.retention.months is set");
+        this.auditPartitionRepository = auditPartitionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retentionMonths = retentionMonths;
+        this.archiveDirectory = archiveDirectory;
+        this.clock = clock;
+        this.archivedEntriesCounter = Counter.builder("rpkicore.audit.archived.entries")
+            .description("The number of audit entries archived and removed from the database")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return "Audit retention service";
+    }
+
+    @Override
+    protected void runService() {
+        YearMonth currentMonth = YearMonth.now(clock.withZone(ZoneOffset.UTC));
+        for (String table : AUDIT_TABLES) {
+            createPartitions(table, currentMonth);
+            if (retentionMonths > 0) {
+                Instant cutoff = currentMonth.minusMonths(retentionMonths).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+                archivePartitions(table, cutoff);
+            }
+        }
+    }
+
+    private void createPartitions(String table, YearMonth currentMonth) {
+        for (int i = 0; i <= MONTHS_CREATED_AHEAD; ++i) {
+            YearMonth month = currentMonth.plusMonths(i);
+            Boolean created = transactionTemplate.execute(status -> auditPartitionRepository.createMonthlyPartition(table, month));
+            if (!Boolean.TRUE.equals(created)) {
+                log.warn("Not creating partition of {} for {}, the default partition already contains entries for this month", table, month);
+            }
+        }
+    }
+
+    private void archivePartitions(String table, Instant cutoff) {
+        List<AuditPartition> partitions = transactionTemplate.execute(status -> auditPartitionRepository.findPartitions(table));
+        for (AuditPartition partition : partitions) {
+            List<Path> archives = new ArrayList<>();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (partition.endsBefore(cutoff)) {
+                        long count = archive(partition, cutoff, partition.getName(), archives);
+                        auditPartitionRepository.dropPartition(partition);
+                        archivedEntriesCounter.increment(count);
+                        log.info("Archived {} entries and dropped partition {}", count, partition.getName());
+                    } else if (partition.isDefault() || partition.getName().endsWith("_legacy")) {
+                        String suffix = "_before_" + YearMonth.from(cutoff.atZone(ZoneOffset.UTC));
+                        long count = archive(partition, cutoff, partition.getName() + suffix, archives);
+                        if (count > 0) {
+                            int deleted = auditPartitionRepository.deleteEntries(partition, cutoff);
+                            archivedEntriesCounter.increment(deleted);
+                            log.info("Archived and deleted {} entries before {} from partition {}", deleted, cutoff, partition.getName());
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                // The entries are still in the database, remove the archive so they are not archived twice.
+                for (Path archive : archives) {
+                    deleteArchive(archive);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Writes the entries to a new archive file named after <code>baseName</code> and adds it to <code>archives</code>.
+     * No file is created when there are no entries to archive.
+     */
+    private long archive(AuditPartition partition, Instant cutoff, String baseName, List<Path> archives) {
+        try {
+            Files.createDirectories(archiveDirectory);
+            Path temporary = Files.createTempFile(archiveDirectory, partition.getName(), ".tmp");
+            try {
+                long count;
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary))) {
+                    count = auditPartitionRepository.exportEntries(partition, cutoff, out);
+                }
+                if (count > 0) {
+                    // The archive must survive a crash once the transaction that removes the entries commits
+                    force(temporary, StandardOpenOption.WRITE);
+                    archives.add(moveToNewFile(temporary, baseName));
+                    force(archiveDirectory, StandardOpenOption.READ);
+                }
+                return count;
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to archive partition " + partition.getName() + " to " + archiveDirectory, e);
+        }
+    }
+
+    private Path moveToNewFile(Path temporary, String baseName) throws IOException {
+        for (int sequence = 1; ; ++sequence) {
+            Path target = archiveDirectory.resolve(sequence == 1 ? baseName + ".csv.gz" : baseName + "." + sequence + ".csv.gz");
+            try {
+                return Files.move(temporary, target);
+            } catch (FileAlreadyExistsException e) {
+                log.debug("Archive {} already exists", target);
+            }
+        }
+    }
+
+    private static void force(Path path, OpenOption option) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, option)) {
+            channel.force(true);
+        }
+    }
+
+    private static void deleteArchive(Path archive) {
+        try {
+            Files.deleteIfExists(archive);
+        } catch (IOException e) {
+            log.error("Failed to delete archive {} of entries that were not removed", archive, e);
+        }
+    }
+}
@@ -50,6 +50,7 @@ public class BackgroundServices {
     public static final String CA_CLEAN_UP_SERVICE = "caCleanUpService";
     public static final String ROA_ALERT_BACKGROUND_SERVICE = "roaAlertBackgroundServiceDaily";
     public static final String ROA_ALERT_BACKGROUND_SERVICE_WEEKLY = "roaAlertBackgroundServiceWeekly";
+    public static final String AUDIT_RETENTION_SERVICE = "auditRetentionService";
 
     public static final String PUBLISHER_SYNC_SERVICE = "publisherSyncService";
 
@@ -160,6 +161,10 @@ public class BackgroundServices {
                 futureDate(1, HOUR),
                 weeklyOnDayAndHourAndMinute(2,23, 23));
 
+        schedule(AUDIT_RETENTION_SERVICE,
+                futureDate(30, MINUTE),
+                dailyAtHourAndMinute(3, 17));
+
         schedule(RESOURCE_CACHE_UPDATE_SERVICE,
                 futureDate(3, MINUTE),
                 repeat().withIntervalInMinutes(15));
@@ -3,6 +3,8 @@ package net.ripe.rpki.services.impl.background;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.core.services.background.BackgroundResource;
+import net.ripe.rpki.core.services.background.BackgroundResourceAccess;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.domain.ResourceCertificateRepository;
@@ -27,7 +29,9 @@ public class CertificateExpirationServiceBean extends SequentialBackgroundServic
         ResourceCertificateRepository resourceCertificateRepository,
         MeterRegistry meterRegistry
     ) {
-        super(backgroundTaskRunner);
+        // Expires certificates, deletes their ROAs and ASPAs and withdraws their published objects for all CAs in a
+        // single statement, without the per-CA commands that other services use to update published objects.
+        super(backgroundTaskRunner, BackgroundResourceAccess.writes(BackgroundResource.CA_HIERARCHY, BackgroundResource.PUBLISHED_OBJECTS));
         this.resourceCertificateRepository = resourceCertificateRepository;
 
         this.expiredOutgoingResourceCertificatesCounter = Counter.builder("rpkicore.expired.outgoing.resource.certificates")
@@ -2,6 +2,8 @@ package net.ripe.rpki.services.impl.background;
 
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.application.CertificationConfiguration;
+import net.ripe.rpki.core.services.background.BackgroundResource;
+import net.ripe.rpki.core.services.background.BackgroundResourceAccess;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.server.api.commands.KeyManagementActivatePendingKeysCommand;
@@ -38,7 +40,7 @@ public class KeyPairActivationManagementServiceBean extends SequentialBackground
         ResourceCache resourceCache,
         CertificationConfiguration configuration
     ) {
-        super(backgroundTaskRunner);
+        super(backgroundTaskRunner, BackgroundResourceAccess.writes(BackgroundResource.CA_HIERARCHY).andReads(BackgroundResource.RESOURCE_CACHE));
         this.caViewService = caViewService;
         this.commandService = commandService;
         this.resourceCache = resourceCache;
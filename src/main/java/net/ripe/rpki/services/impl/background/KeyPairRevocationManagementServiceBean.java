@@ -1,5 +1,7 @@
 package net.ripe.rpki.services.impl.background;
 
+import net.ripe.rpki.core.services.background.BackgroundResource;
+import net.ripe.rpki.core.services.background.BackgroundResourceAccess;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.server.api.commands.KeyManagementRevokeOldKeysCommand;
@@ -21,7 +23,7 @@ public class KeyPairRevocationManagementServiceBean extends SequentialBackground
     public KeyPairRevocationManagementServiceBean(BackgroundTaskRunner backgroundTaskRunner,
                                                   CertificateAuthorityViewService caViewService,
                                                   CommandService commandService) {
-        super(backgroundTaskRunner);
+        super(backgroundTaskRunner, BackgroundResourceAccess.writes(BackgroundResource.CA_HIERARCHY));
         this.caViewService = caViewService;
         this.commandService = commandService;
     }
@@ -3,6 +3,8 @@ package net.ripe.rpki.services.impl.background;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.commons.util.UTC;
+import net.ripe.rpki.core.services.background.BackgroundResource;
+import net.ripe.rpki.core.services.background.BackgroundResourceAccess;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.domain.CertificateAuthorityRepository;
@@ -35,7 +37,7 @@ public class ManifestCrlUpdateServiceBean extends SequentialBackgroundServiceWit
         CertificateAuthorityRepository certificateAuthorityRepository,
         @Value("${manifest.crl.update.interval.minutes}") int manifestCrlUpdateIntervalMinutes
     ) {
-        super(backgroundTaskRunner);
+        super(backgroundTaskRunner, BackgroundResourceAccess.writes(BackgroundResource.PUBLISHED_OBJECTS));
         this.commandService = commandService;
         this.certificateAuthorityRepository = certificateAuthorityRepository;
         this.manifestCrlUpdateIntervalMinutes = manifestCrlUpdateIntervalMinutes;
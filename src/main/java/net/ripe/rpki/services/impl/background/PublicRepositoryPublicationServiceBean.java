@@ -2,13 +2,19 @@ package net.ripe.rpki.services.impl.background;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.commons.util.UTC;
+import net.ripe.rpki.core.services.background.BackgroundResource;
+import net.ripe.rpki.core.services.background.BackgroundResourceAccess;
+import net.ripe.rpki.core.services.background.BackgroundServiceException;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.domain.CertificateAuthority;
 import net.ripe.rpki.domain.CertificateAuthorityRepository;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
+import net.ripe.rpki.domain.PublicationRequestRepository;
+import net.ripe.rpki.domain.PublicationRequestRepository.PublicationRequest;
 import net.ripe.rpki.domain.PublishedObjectRepository;
 import net.ripe.rpki.domain.TrustAnchorPublishedObjectRepository;
 import net.ripe.rpki.domain.manifest.ManifestEntity;
@@ -25,8 +31,12 @@ import org.springframework.transaction.support.TransactionTemplate;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.LockModeType;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_REPOSITORY_PUBLICATION_SERVICE;
@@ -59,11 +69,15 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
     private final ManifestPublicationService manifestPublicationService;
     private final PublishedObjectRepository publishedObjectRepository;
     private final TrustAnchorPublishedObjectRepository trustAnchorPublishedObjectRepository;
+    private final PublicationRequestRepository publicationRequestRepository;
     private final EntityManager entityManager;
     private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate requestTransactionTemplate;
 
     private final Counter certificateAuthorityCounter;
     private final Counter publishedObjectCounter;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> publicationLatencyTimers = new ConcurrentHashMap<>();
 
     @Inject
     public PublicRepositoryPublicationServiceBean(
@@ -72,18 +86,21 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
         ManifestPublicationService manifestPublicationService,
         PublishedObjectRepository publishedObjectRepository,
         TrustAnchorPublishedObjectRepository trustAnchorPublishedObjectRepository,
+        PublicationRequestRepository publicationRequestRepository,
         EntityManager entityManager,
         PlatformTransactionManager transactionManager,
         MeterRegistry meterRegistry) {
-        super(backgroundTaskRunner);
+        super(backgroundTaskRunner, BackgroundResourceAccess.writes(BackgroundResource.PUBLISHED_OBJECTS));
         this.certificateAuthorityRepository = certificateAuthorityRepository;
         this.manifestPublicationService = manifestPublicationService;
         this.publishedObjectRepository = publishedObjectRepository;
         this.trustAnchorPublishedObjectRepository = trustAnchorPublishedObjectRepository;
+        this.publicationRequestRepository = publicationRequestRepository;
         this.entityManager = entityManager;
         this.transactionTemplate = new TransactionTemplate(transactionManager);
         // Repeatable read so we get a consistent snapshot of to-be-published objects
         this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.requestTransactionTemplate = new TransactionTemplate(transactionManager);
 
         this.certificateAuthorityCounter = Counter.builder("rpkicore.publication.certificate.authorities")
             .description("The number of certificate authorities with pending publications updated")
@@ -93,6 +110,7 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
             .description("The number of published objects marked as published or withdrawn")
             .tag("publication", "update")
             .register(meterRegistry);
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -103,7 +121,13 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
     @Override
     protected void runService() {
         try {
-            transactionTemplate.executeWithoutResult((status) -> runTransaction());
+            List<PublicationRequest> completedRequests = transactionTemplate.execute((status) -> runTransaction());
+            if (completedRequests != null && !completedRequests.isEmpty()) {
+                // Removed outside the repeatable read transaction, so requests updated in the meantime do not cause
+                // a serialization failure but are kept for the next run.
+                requestTransactionTemplate.executeWithoutResult(status -> publicationRequestRepository.removeRequests(completedRequests));
+                recordPublicationLatency(completedRequests);
+            }
         } catch (TransientDataAccessException e) {
             // The transaction runs with repeatable read isolation level which may cause transient exceptions due
             // to data access ordering. See https://www.postgresql.org/docs/current/transaction-iso.html for
@@ -112,7 +136,17 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
         }
     }
 
-    private void runTransaction() {
+    /**
+     * @return the publication requests completed by the transaction
+     */
+    private List<PublicationRequest> runTransaction() {
+        // Locked as the first statement, before the repeatable read snapshot is taken, so lease renewals committed
+        // earlier do not cause a serialization failure. Renewals and take-overs wait until this transaction ends.
+        if (!lockActiveNodeLease()) {
+            // Another node may be publishing by now, do not mark objects as published.
+            throw new BackgroundServiceException("Active node lease lost, not marking objects as published");
+        }
+
         DateTime manifestAndCrlValidityCutoff = UTC.dateTime().plus(ManifestEntity.TIME_TO_NEXT_UPDATE_HARD_LIMIT);
 
         // List of certificate authorities that may need a new manifest/CRL. Children are sorted before parents
@@ -134,7 +168,7 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
             if (timeout.isBeforeNow()) {
                 // Process is taking too long, commit current results and wait for next run to process further CAs.
                 log.info("Updated {} manifests before running out of time, continuing during next run", updateCountTotal);
-                return;
+                return Collections.emptyList();
             }
 
             entityManager.lock(ca, LockModeType.PESSIMISTIC_WRITE);
@@ -146,7 +180,7 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
 
         if (!certificateAuthorityRepository.findAllWithOutdatedManifests(manifestAndCrlValidityCutoff, 1).isEmpty()) {
             log.info("Not all certificate authorities are ready for publication, continuing during next run");
-            return;
+            return Collections.emptyList();
         }
 
         // Atomically mark the new set of objects that are publishable.
@@ -157,6 +191,9 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
         // be published.
         count += trustAnchorPublishedObjectRepository.updatePublicationStatus();
 
+        // All changes committed before the snapshot of this transaction are now published.
+        List<PublicationRequest> completedRequests = publicationRequestRepository.findRequests();
+
         if (count > 0) {
             log.info(
                 "Published/withdrawn {} objects after updating {} manifests while checking {} CAs",
@@ -165,5 +202,21 @@ public class PublicRepositoryPublicationServiceBean extends SequentialBackground
         }
 
         publishedObjectCounter.increment(count);
+        return completedRequests;
+    }
+
+    private void recordPublicationLatency(List<PublicationRequest> completedRequests) {
+        long now = System.currentTimeMillis();
+        for (PublicationRequest request : completedRequests) {
+            Timer timer = publicationLatencyTimers.computeIfAbsent(request.getCommandType(), commandType ->
+                Timer.builder("rpkicore.publication.request.latency")
+                    .description("Time from the command that changed a CA until its objects are marked as published")
+                    .tag("command", commandType)
+                    .maximumExpectedValue(java.time.Duration.ofMinutes(15))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+            );
+            timer.record(Math.max(0, now - request.getRequestedAt().toEpochMilli()), TimeUnit.MILLISECONDS);
+        }
     }
 }
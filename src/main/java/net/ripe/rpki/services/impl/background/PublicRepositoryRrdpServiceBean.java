@@ -11,7 +11,7 @@ import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.List;
+import java.util.stream.Stream;
 
 import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_REPOSITORY_RRDP_SERVICE;
 
@@ -37,6 +37,7 @@ public class PublicRepositoryRrdpServiceBean extends ConcurrentBackgroundService
         this.transactionTemplate = new TransactionTemplate(transactionManager);
         // Repeatable read so we get a consistent snapshot of to-be-published objects
         this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.transactionTemplate.setReadOnly(true);
     }
 
     @Override
@@ -47,9 +48,12 @@ public class PublicRepositoryRrdpServiceBean extends ConcurrentBackgroundService
     @Override
     @SneakyThrows
     protected void runService() {
-        List<PublishedObjectData> publishedObjects = transactionTemplate.execute(
-            (status) -> publishedObjectRepository.findCurrentlyPublishedObjects()
-        );
-        publicationSupport.publishAllObjects(publishedObjects);
+        // Objects are compared with the publication servers while they are read. The transaction ends before the
+        // servers are updated, so no database connection is held during the (slow) publication requests.
+        publicationSupport.publishAllObjects(resolver -> transactionTemplate.executeWithoutResult((status) -> {
+            try (Stream<PublishedObjectData> publishedObjects = publishedObjectRepository.streamCurrentlyPublishedObjects()) {
+                publishedObjects.forEach(resolver);
+            }
+        }));
     }
 }
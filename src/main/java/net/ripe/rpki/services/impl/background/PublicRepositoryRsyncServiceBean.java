@@ -1,6 +1,5 @@
 package net.ripe.rpki.services.impl.background;
 
-import lombok.SneakyThrows;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.domain.PublishedObjectData;
@@ -11,7 +10,9 @@ import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
 
 import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_REPOSITORY_RSYNC_SERVICE;
 
@@ -37,6 +38,7 @@ public class PublicRepositoryRsyncServiceBean extends ConcurrentBackgroundServic
         this.transactionTemplate = new TransactionTemplate(transactionManager);
         // Repeatable read so we get a consistent snapshot of to-be-published objects
         this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.transactionTemplate.setReadOnly(true);
     }
 
     @Override
@@ -45,11 +47,14 @@ public class PublicRepositoryRsyncServiceBean extends ConcurrentBackgroundServic
     }
 
     @Override
-    @SneakyThrows
     protected void runService() {
-        List<PublishedObjectData> publishedObjects = transactionTemplate.execute(
-            (status) -> publishedObjectRepository.findCurrentlyPublishedObjects()
-        );
-        publicationWriteService.writeAll(publishedObjects);
+        // Objects are processed while they are read, so the transaction stays open until all objects are written.
+        transactionTemplate.executeWithoutResult((status) -> {
+            try (Stream<PublishedObjectData> publishedObjects = publishedObjectRepository.streamCurrentlyPublishedObjects()) {
+                publicationWriteService.writeAll(publishedObjects);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 }
@@ -0,0 +1,206 @@
+package net.ripe.rpki.services.impl.background;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult;
+import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
+import net.ripe.rpki.domain.PublicationRequestRepository;
+import net.ripe.rpki.domain.PublicationRequestService;
+import net.ripe.rpki.server.api.commands.CertificateAuthorityCommand;
+import net.ripe.rpki.server.api.configuration.Environment;
+import net.ripe.rpki.server.api.services.background.BackgroundService;
+import net.ripe.rpki.util.JdbcDBComponent;
+import org.joda.time.DateTimeUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.inject.Inject;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_REPOSITORY_PUBLICATION_SERVICE;
+import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_REPOSITORY_RRDP_SERVICE;
+
+/**
+ * Publishes changes shortly after the commands that made them are committed, instead of waiting for the next
+ * scheduled run of the publication services (which remain scheduled as a safety net).
+ * <p>
+ * Commands record a durable {@link PublicationRequestRepository publication request} for their CA. After commit a
+ * single worker thread is signalled. Signals are coalesced: at most one signal is pending and the worker waits a
+ * short time before running so a burst of commands results in a single publication. Consecutive publications are at
+ * least a minimum interval apart, so a steady stream of commands does not result in back-to-back publication runs.
+ * The publication service limits the number of CAs updated per run, so when requests remain the worker keeps running
+ * until the queue is drained, backing off while other services hold the published objects. Pending requests left by
+ * a previous process are picked up on start.
+ */
+@Slf4j
+@Component
+public class PublicationRequestQueue implements PublicationRequestService, SmartLifecycle {
+
+    private static final Object SIGNAL = new Object();
+
+    private final PublicationRequestRepository publicationRequestRepository;
+    private final BackgroundTaskRunner backgroundTaskRunner;
+    private final BackgroundServiceMetrics backgroundServiceMetrics;
+    private final ApplicationContext applicationContext;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long coalesceDelayMillis;
+    private final long minimumIntervalMillis;
+    private final long retryDelayMillis;
+    private final Sleeper sleeper;
+
+    /** Holds at most one pending signal, so signals arriving while one is pending are coalesced. */
+    private final BlockingQueue<Object> signals = new ArrayBlockingQueue<>(1);
+
+    private volatile Thread worker;
+    /** Start time of the last publication, only accessed by the worker. */
+    private long lastPublicationMillis;
+
+    @Inject
+    public PublicationRequestQueue(
+        PublicationRequestRepository publicationRequestRepository,
+        BackgroundTaskRunner backgroundTaskRunner,
+        BackgroundServiceMetrics backgroundServiceMetrics,
+        ApplicationContext applicationContext,
+        PlatformTransactionManager transactionManager,
+        @Value("${public.repository.publication.queue.enabled:true}") boolean enabled,
+        @Value("${public.repository.publication.queue.coalesce.delay.milliseconds:500}") long coalesceDelayMillis,
+        @Value("${public.repository.publication.queue.minimum.interval.milliseconds:5000}") long minimumIntervalMillis,
+        @Value("${public.repository.publication.queue.retry.delay.milliseconds:10000}") long retryDelayMillis
+    ) {
+        this(publicationRequestRepository, backgroundTaskRunner, backgroundServiceMetrics, applicationContext, transactionManager,
+            enabled, coalesceDelayMillis, minimumIntervalMillis, retryDelayMillis, Thread::sleep);
+    }
+
+    PublicationRequestQueue(
+        PublicationRequestRepository publicationRequestRepository,
+        BackgroundTaskRunner backgroundTaskRunner,
+        BackgroundServiceMetrics backgroundServiceMetrics,
+        ApplicationContext applicationContext,
+        PlatformTransactionManager transactionManager,
+        boolean enabled,
+        long coalesceDelayMillis,
+        long minimumIntervalMillis,
+        long retryDelayMillis,
+        Sleeper sleeper
+    ) {
+        this.publicationRequestRepository = publicationRequestRepository;
+        this.backgroundTaskRunner = backgroundTaskRunner;
+        this.backgroundServiceMetrics = backgroundServiceMetrics;
+        this.applicationContext = applicationContext;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled && !Environment.isLocal() && !Environment.isTest();
+        this.coalesceDelayMillis = coalesceDelayMillis;
+        this.minimumIntervalMillis = minimumIntervalMillis;
+        this.retryDelayMillis = retryDelayMillis;
+        this.sleeper = sleeper;
+    }
+
+    @Override
+    public void requestPublication(CertificateAuthorityCommand command) {
+        publicationRequestRepository.requestPublication(command.getCertificateAuthorityId(), command.getCommandType());
+        JdbcDBComponent.afterCommit(this::signal);
+    }
+
+    void signal() {
+        signals.offer(SIGNAL);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || worker != null) {
+            return;
+        }
+        worker = new Thread(this::run, "publication-request-queue");
+        worker.setDaemon(true);
+        worker.start();
+        // Process requests that were not published before the previous shutdown.
+        signal();
+    }
+
+    @Override
+    public synchronized void stop() {
+        Thread thread = worker;
+        worker = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return worker != null;
+    }
+
+    private void run() {
+        while (worker == Thread.currentThread()) {
+            try {
+                processNextSignal();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Waits for a signal and publishes the pending requests. Without a signal, checks for requests that could not be
+     * published earlier after the retry delay.
+     */
+    void processNextSignal() throws InterruptedException {
+        try {
+            Object signal = signals.poll(retryDelayMillis, TimeUnit.MILLISECONDS);
+            if (signal == null && !hasPendingRequests()) {
+                return;
+            }
+            // Give concurrent commands the opportunity to commit, so they are published together. Commands that
+            // commit during the minimum interval since the last publication are published together as well.
+            sleeper.sleep(Math.max(coalesceDelayMillis, lastPublicationMillis + minimumIntervalMillis - DateTimeUtils.currentTimeMillis()));
+            signals.clear();
+
+            lastPublicationMillis = DateTimeUtils.currentTimeMillis();
+            if (publish() && hasPendingRequests()) {
+                // The publication service updates a limited number of CAs per run, so continue after the
+                // minimum interval.
+                signal();
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to process publication requests, retrying in {} ms", retryDelayMillis, e);
+        }
+    }
+
+    private boolean hasPendingRequests() {
+        Boolean pending = transactionTemplate.execute(status -> publicationRequestRepository.hasPendingRequests());
+        return Boolean.TRUE.equals(pending);
+    }
+
+    /**
+     * @return true when the publication service ran, false when it was skipped or failed
+     */
+    private boolean publish() {
+        if (!backgroundTaskRunner.isActiveNode()) {
+            return false;
+        }
+        if (execute(PUBLIC_REPOSITORY_PUBLICATION_SERVICE) != BackgroundServiceExecutionResult.Status.SUCCESS) {
+            return false;
+        }
+        execute(PUBLIC_REPOSITORY_RRDP_SERVICE);
+        return true;
+    }
+
+    private BackgroundServiceExecutionResult.Status execute(String name) {
+        backgroundServiceMetrics.trackStartTime(name);
+        BackgroundServiceExecutionResult result = applicationContext.getBean(name, BackgroundService.class).execute();
+        backgroundServiceMetrics.trackResult(name, result);
+        return result.getStatus();
+    }
+
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+}
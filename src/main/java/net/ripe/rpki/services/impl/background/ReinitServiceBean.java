@@ -2,6 +2,8 @@ package net.ripe.rpki.services.impl.background;
 
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.commons.provisioning.x509.ProvisioningIdentityCertificate;
+import net.ripe.rpki.core.services.background.BackgroundResource;
+import net.ripe.rpki.core.services.background.BackgroundResourceAccess;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.server.api.commands.CreateAllResourcesCertificateAuthorityCommand;
@@ -35,7 +37,7 @@ public class ReinitServiceBean extends SequentialBackgroundServiceWithAdminPrivi
                              CertificateAuthorityViewService caViewService,
                              ProvisioningIdentityViewService provisioningIdentityViewService,
                              RepositoryConfiguration repositoryConfiguration) {
-        super(backgroundTaskRunner);
+        super(backgroundTaskRunner, BackgroundResourceAccess.writes(BackgroundResource.CA_HIERARCHY));
         this.commandService = commandService;
         this.caViewService = caViewService;
         this.provisioningIdentityViewService = provisioningIdentityViewService;
@@ -192,15 +192,16 @@ public class ResourceCacheService {
 
         Runnable accepted = () -> {
             resourceStats.set(new ResourceStat(resourcesDiff, Instant.now()));
-            resourceCache.populateCache(registryResources);
-            resourceCacheServiceMetrics.onMemberCacheAccepted();
-            if (resourcesDiff.absoluteSizeDiff() == 0) {
+            int changedEntries = resourceCache.populateCache(registryResources);
+            resourceCacheServiceMetrics.onMemberCacheAccepted(changedEntries);
+            if (changedEntries == 0) {
                 log.info("Resource cache has no update; remaining at {} entries", resourcesDiff.localSize);
             } else {
                 log.info(
-                    "Resource cache has been updated from {} entries to {}\n{}",
+                    "Resource cache has been updated from {} entries to {}, {} CA entries changed\n{}",
                     resourcesDiff.localSize,
                     resourcesDiff.registrySize,
+                    changedEntries,
                     showDiffSummary(resourcesDiff)
                 );
             }
@@ -460,6 +461,7 @@ public class ResourceCacheService {
         public final Counter delegationsUpdatesException;
         public final Counter delegationsUpdatesRejected;
 
+        public final AtomicDouble resourceCacheEntriesChanged = new AtomicDouble(0);
         public final AtomicDouble delegationsAdded = new AtomicDouble(0);
         public final AtomicDouble delegationsRemoved = new AtomicDouble(0);
 
@@ -489,6 +491,10 @@ public class ResourceCacheService {
                     .description("Timestamp at which the last update was successful")
                     .register(meterRegistry);
 
+            Gauge.builder("rpkicore.resource.cache.entries.changed", resourceCacheEntriesChanged, AtomicDouble::get)
+                    .description("The number of resource cache entries written by the last accepted update")
+                    .register(meterRegistry);
+
             resourceUpdatesAccepted = Counter.builder(RESOURCE_UPDATES_METRIC)
                     .description(RESOURCE_UPDATES_DESCRIPTION)
                     .tag(STATUS, "accepted")
@@ -557,8 +563,9 @@ public class ResourceCacheService {
             delegationsUpdatesRejected.increment();
         }
 
-        public void onMemberCacheAccepted() {
+        public void onMemberCacheAccepted(int changedEntries) {
             resourceUpdatesAccepted.increment();
+            resourceCacheEntriesChanged.set(changedEntries);
         }
 
         public void onMemberCacheRejected() {
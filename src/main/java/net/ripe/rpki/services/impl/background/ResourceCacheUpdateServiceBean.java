@@ -1,21 +1,23 @@
 package net.ripe.rpki.services.impl.background;
 
 import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.core.services.background.BackgroundResource;
+import net.ripe.rpki.core.services.background.BackgroundResourceAccess;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
-import net.ripe.rpki.core.services.background.ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode;
+import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 @Slf4j
 @Service("resourceCacheUpdateService")
-public class ResourceCacheUpdateServiceBean extends ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode {
+public class ResourceCacheUpdateServiceBean extends SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode {
 
     private final ResourceCacheService resourceCacheService;
 
     @Autowired
     public ResourceCacheUpdateServiceBean(BackgroundTaskRunner backgroundTaskRunner,
                                           ResourceCacheService resourceCacheService) {
-        super(backgroundTaskRunner);
+        super(backgroundTaskRunner, BackgroundResourceAccess.writes(BackgroundResource.RESOURCE_CACHE));
         this.resourceCacheService = resourceCacheService;
     }
 
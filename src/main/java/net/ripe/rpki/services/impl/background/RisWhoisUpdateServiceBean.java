@@ -5,18 +5,16 @@ import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.bgpris.riswhois.RisWhoisFetcher;
 import net.ripe.rpki.bgpris.riswhois.RisWhoisParser;
+import net.ripe.rpki.core.services.background.BackgroundResource;
+import net.ripe.rpki.core.services.background.BackgroundResourceAccess;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
-import net.ripe.rpki.core.services.background.ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode;
-import net.ripe.rpki.server.api.dto.BgpRisEntry;
+import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.server.api.services.read.BgpRisEntryViewService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -25,7 +23,7 @@ import static net.ripe.rpki.services.impl.background.BackgroundServices.RIS_WHOI
 
 @Slf4j
 @Service(RIS_WHOIS_UPDATE_SERVICE)
-public class RisWhoisUpdateServiceBean extends ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode {
+public class RisWhoisUpdateServiceBean extends SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode {
     private static final int MINIMUM_EXPECTED_UPDATES = 100000;
     static final String[] FILENAMES = {"riswhoisdump.IPv4.gz", "riswhoisdump.IPv6.gz"};
 
@@ -45,7 +43,7 @@ public class RisWhoisUpdateServiceBean extends ConcurrentBackgroundServiceWithAd
                                      @Value("${riswhoisdump.base.url}") String risWhoisBaseUrl,
                                      RisWhoisFetcher fetcher,
                                      MeterRegistry meterRegistry) {
-        super(backgroundTaskRunner);
+        super(backgroundTaskRunner, BackgroundResourceAccess.writes(BackgroundResource.RIS_DATA));
         this.repository = repository;
         this.risWhoisBaseUrl = risWhoisBaseUrl;
         this.fetcher = fetcher;
@@ -66,34 +64,38 @@ public class RisWhoisUpdateServiceBean extends ConcurrentBackgroundServiceWithAd
 
     @Override
     protected void runService() {
-        List<BgpRisEntry> entries = new ArrayList<>();
+        // Entries are added to the update while the dumps are downloaded and parsed, so only the entries that are
+        // kept by the repository are held in memory.
+        BgpRisEntryViewService.Update update = repository.startUpdate();
+        long entryCount = 0;
 
         for (String filename : FILENAMES) {
             String url = risWhoisBaseUrl + "/" + filename;
             try {
                 log.info("fetching RIS whois entries from {}", url);
 
-                String text = fetcher.fetch(url);
-                final Collection<BgpRisEntry> currentEntries = RisWhoisParser.parse(text);
-                updateMetrics(url, currentEntries);
+                int currentEntryCount = fetcher.fetch(url, content -> RisWhoisParser.parse(content, update));
+                updateMetrics(url, currentEntryCount);
 
-                entries.addAll(currentEntries);
+                entryCount += currentEntryCount;
             } catch (IOException | NullPointerException e) {
+                // The update may already contain part of the entries of this dump, so keep the current entries
                 log.error(String.format("Exception while handling RIS dump from %s - aborting update", url), e);
+                return;
             }
         }
 
-        if (entries.size() >= MINIMUM_EXPECTED_UPDATES) {
-            log.info("fetched {} RIS whois entries.", entries.size());
-            repository.resetEntries(entries);
+        if (entryCount >= MINIMUM_EXPECTED_UPDATES) {
+            log.info("fetched {} RIS whois entries.", entryCount);
+            update.commit();
         } else {
             log.error("Found an unusually small number of RIS whois entries, please check files at: {}", risWhoisBaseUrl);
         }
     }
 
-    private void updateMetrics(String url, Collection<?> content) {
+    private void updateMetrics(String url, long entryCount) {
         risUpdateMetrics.computeIfAbsent(url, (entryUrl) -> new RisWhoisSourceMetrics(meterRegistry, entryUrl))
-                .update(content);
+                .update(entryCount);
     }
 
     private static class RisWhoisSourceMetrics {
@@ -112,9 +114,9 @@ public class RisWhoisUpdateServiceBean extends ConcurrentBackgroundServiceWithAd
                     .register(registry);
         }
 
-        public void update(Collection<?> c) {
+        public void update(long count) {
             lastUpdate.set(Instant.now().getEpochSecond());
-            entryCount.set(c.size());
+            entryCount.set(count);
         }
     }
 }
@@ -1,14 +1,16 @@
 package net.ripe.rpki.services.impl.background;
 
 import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.core.services.background.BackgroundResource;
+import net.ripe.rpki.core.services.background.BackgroundResourceAccess;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
-import net.ripe.rpki.core.services.background.ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode;
+import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.domain.alerts.RoaAlertFrequency;
 import net.ripe.rpki.server.api.services.read.RoaAlertConfigurationViewService;
 import net.ripe.rpki.services.impl.RoaAlertChecker;
 
 @Slf4j
-abstract class RoaAlertBackgroundService extends ConcurrentBackgroundServiceWithAdminPrivilegesOnActiveNode {
+abstract class RoaAlertBackgroundService extends SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode {
 
     private final RoaAlertConfigurationViewService roaAlertConfigurationViewService;
     private final RoaAlertChecker roaAlertChecker;
@@ -18,7 +20,7 @@ abstract class RoaAlertBackgroundService extends ConcurrentBackgroundServiceWith
                                      RoaAlertConfigurationViewService roaAlertConfigurationViewService,
                                      RoaAlertChecker roaAlertChecker,
                                      RoaAlertFrequency frequency) {
-        super(backgroundTaskRunner);
+        super(backgroundTaskRunner, BackgroundResourceAccess.reads(BackgroundResource.RIS_DATA));
         this.roaAlertConfigurationViewService = roaAlertConfigurationViewService;
         this.roaAlertChecker = roaAlertChecker;
         this.frequency = frequency;
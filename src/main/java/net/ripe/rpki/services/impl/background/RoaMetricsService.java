@@ -1,13 +1,31 @@
 package net.ripe.rpki.services.impl.background;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.domain.roa.RoaConfigurationRepository;
+import net.ripe.rpki.util.JdbcDBComponent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ROA metrics. The VRP count is computed periodically and shortly after ROA configuration changes are committed, so
+ * scraping the metrics does not query the database.
+ */
 @Slf4j
 @Service
 public class RoaMetricsService {
@@ -18,16 +36,39 @@ public class RoaMetricsService {
     private final static String ROA_UPDATE_METRICS = "rpkicore.roas.update";
     private final static String ROA_UPDATE_DESCRIPTION = "Accumulative counter of roas added or deleted";
 
+    private final RoaConfigurationRepository roaConfigurationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long refreshIntervalSeconds;
+
     private final Counter roaAddCounter;
     private final Counter roaDeleteCounter;
 
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("roa-metrics-refresh").setDaemon(true).build()
+    );
+    /** Set while a refresh is scheduled, so a burst of changes results in a single refresh. */
+    private final AtomicBoolean refreshPending = new AtomicBoolean(false);
+
+    private volatile VrpCount vrpCount = new VrpCount(Double.NaN, 0);
+
     @Autowired
     public RoaMetricsService(MeterRegistry meterRegistry,
-                             RoaConfigurationRepository roaConfigurationRepository) {
-        Gauge.builder(VRP_COUNT_METRIC, roaConfigurationRepository, RoaConfigurationRepository::countRoaPrefixes)
+                             RoaConfigurationRepository roaConfigurationRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${roa.metrics.refresh.interval.seconds:300}") long refreshIntervalSeconds) {
+        this.roaConfigurationRepository = roaConfigurationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.refreshIntervalSeconds = refreshIntervalSeconds;
+
+        Gauge.builder(VRP_COUNT_METRIC, () -> vrpCount.count)
                 .description(VRP_COUNT_METRIC_DESCRIPTION)
                 .register(meterRegistry);
 
+        Gauge.builder(VRP_COUNT_METRIC + ".computed", () -> vrpCount.computedAtEpochSecond)
+                .description("Timestamp at which the number of current VRPs was computed")
+                .register(meterRegistry);
+
         roaAddCounter = Counter.builder(ROA_UPDATE_METRICS)
                 .description(ROA_UPDATE_DESCRIPTION)
                 .tags("operation", "added")
@@ -39,11 +80,62 @@ public class RoaMetricsService {
                 .register(meterRegistry);
     }
 
+    @PostConstruct
+    private void startRefresh() {
+        refreshExecutor.scheduleWithFixedDelay(this::refresh, 0, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void stopRefresh() {
+        refreshExecutor.shutdownNow();
+    }
+
     public void countAdded(int added) {
         roaAddCounter.increment(added);
+        if (added > 0) {
+            refreshAfterCommit();
+        }
     }
 
     public void countDeleted(int deleted) {
         roaDeleteCounter.increment(deleted);
+        if (deleted > 0) {
+            refreshAfterCommit();
+        }
+    }
+
+    private void refreshAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            JdbcDBComponent.afterCommit(this::requestRefresh);
+        }
+    }
+
+    private void requestRefresh() {
+        if (refreshPending.compareAndSet(false, true)) {
+            refreshExecutor.execute(this::refresh);
+        }
+    }
+
+    void refresh() {
+        refreshPending.set(false);
+        try {
+            Integer count = transactionTemplate.execute(status -> roaConfigurationRepository.countRoaPrefixes());
+            if (count != null) {
+                vrpCount = new VrpCount(count, Instant.now().getEpochSecond());
+            }
+        } catch (RuntimeException e) {
+            // Keep reporting the previous value, its timestamp shows it is outdated.
+            log.warn("Failed to compute the number of current VRPs", e);
+        }
+    }
+
+    private static class VrpCount {
+        private final double count;
+        private final long computedAtEpochSecond;
+
+        private VrpCount(double count, long computedAtEpochSecond) {
+            this.count = count;
+            this.computedAtEpochSecond = computedAtEpochSecond;
+        }
     }
 }
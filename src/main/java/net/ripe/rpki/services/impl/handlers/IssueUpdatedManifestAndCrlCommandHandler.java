@@ -33,8 +33,9 @@ public class IssueUpdatedManifestAndCrlCommandHandler extends AbstractCertificat
     public void handle(IssueUpdatedManifestAndCrlCommand command, CommandStatus commandStatus) {
         ManagedCertificateAuthority hostedCa = lookupManagedCa(command.getCertificateAuthorityVersionedId().getId());
 
+        boolean checkNeeded = hostedCa.isManifestAndCrlCheckNeeded() || hostedCa.isReconciliationNeeded();
         long updateCount = manifestPublicationService.updateManifestAndCrlIfNeeded(hostedCa);
-        if (hostedCa.isManifestAndCrlCheckNeeded()) {
+        if (checkNeeded) {
             hostedCa.manifestAndCrlCheckCompleted();
         } else if (updateCount == 0) {
             throw new CommandWithoutEffectException(command);
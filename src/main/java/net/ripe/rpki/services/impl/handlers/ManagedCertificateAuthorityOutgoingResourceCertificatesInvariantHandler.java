@@ -89,7 +89,7 @@ public class ManagedCertificateAuthorityOutgoingResourceCertificatesInvariantHan
 
         checkOutgoingChildResourcesInvariant(ca, incomingResources);
 
-        if (!ca.isManifestAndCrlCheckNeeded()) {
+        if (!ca.isManifestAndCrlCheckNeeded() && !ca.isReconciliationNeeded()) {
             // Manifest and CRL are up-to-date, so all outgoing RPKI object certificates should be contained in
             // incoming resources.
             checkOutgoingRpkiObjectResourcesInvariant(ca, incomingResources);
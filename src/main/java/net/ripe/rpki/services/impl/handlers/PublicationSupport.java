@@ -19,10 +19,10 @@ import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
 import java.net.URI;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -51,12 +51,14 @@ public class PublicationSupport {
     public PublicationSupport(
         PublishingServerClient publishingServerClient,
         MeterRegistry meterRegistry,
-        @Value("${publication.server.url}") List<URI> publicationServerUris
+        @Value("${publication.server.url}") List<URI> publicationServerUris,
+        @Value("${publication.server.batch.max.bytes:" + ExternalPublishingServer.DEFAULT_MAX_BATCH_SIZE_BYTES + "}") long maxBatchSizeBytes,
+        @Value("${publication.server.batch.max.retries:" + ExternalPublishingServer.DEFAULT_MAX_BATCH_RETRIES + "}") int maxBatchRetries
     ) {
         log.info("Interfacing with {} external publication servers: {}", publicationServerUris.size(), publicationServerUris);
 
         externalPublishingServers = publicationServerUris.stream()
-            .map(uri -> new ExternalPublishingServer(publishingServerClient, meterRegistry, uri))
+            .map(uri -> new ExternalPublishingServer(publishingServerClient, meterRegistry, uri, maxBatchSizeBytes, maxBatchRetries, Duration.ofSeconds(1)))
             .collect(Collectors.toList());
         forkJoinPool = new ForkJoinPool(Math.max(1, externalPublishingServers.size()));
 
@@ -72,18 +74,44 @@ public class PublicationSupport {
             .register(meterRegistry);
     }
 
-    public void publishAllObjects(List<PublishedObjectData> publishedObjects) {
+    public void publishAllObjects(Stream<PublishedObjectData> publishedObjects) {
+        publishAllObjects(publishedObjects::forEach);
+    }
+
+    /**
+     * Publishes the objects to all publication servers. The objects currently on each server are listed first,
+     * so the objects can be compared with every server while they are read. Only the content of objects that need
+     * to be (re)published is retained. The servers are only updated after <code>readObjects</code> returned, so the
+     * objects can be read in a transaction that does not stay open while the servers are updated.
+     *
+     * @param readObjects passes all currently published objects to the given consumer
+     */
+    public void publishAllObjects(Consumer<Consumer<PublishedObjectData>> readObjects) {
         boolean success = false;
         try {
-            success = forkJoinPool.submit(() -> externalPublishingServers.parallelStream().map(externalPublishingServer -> {
+            List<Optional<ServerObjects>> servers = forkJoinPool.submit(() -> externalPublishingServers.parallelStream().map(externalPublishingServer -> {
                 try {
-                    publishObjects(externalPublishingServer, publishedObjects, CORE_CLIENT_ID);
+                    return Optional.of(listServerObjects(externalPublishingServer, CORE_CLIENT_ID));
+                } catch (Exception e) {
+                    log.error("Listing objects of external publication server {} failed:", externalPublishingServer.getPublishingServerUrl(), e);
+                    return Optional.<ServerObjects>empty();
+                }
+            }).collect(Collectors.toList())).join();
+
+            readObjects.accept(object -> servers.forEach(server -> server.ifPresent(s -> s.resolve(object))));
+
+            success = forkJoinPool.submit(() -> servers.parallelStream().map(server -> {
+                if (!server.isPresent()) {
+                    return false;
+                }
+                try {
+                    publishObjects(server.get(), CORE_CLIENT_ID);
                     return true;
                 } catch (Exception e) {
-                    log.error("Publication to external publication server {} failed:", externalPublishingServer.getPublishingServerUrl(), e);
+                    log.error("Publication to external publication server {} failed:", server.get().externalPublishingServer.getPublishingServerUrl(), e);
                     return false;
                 }
-            })).join().allMatch(Boolean::booleanValue);
+            }).collect(Collectors.toList())).join().stream().allMatch(Boolean::booleanValue);
         } catch (Exception e) {
             log.error("Publication to external publication servers failed", e);
         }
@@ -95,17 +123,18 @@ public class PublicationSupport {
         }
     }
 
-    private void publishObjects(ExternalPublishingServer externalPublishingServer, List<PublishedObjectData> publishedObjects, String clientId) {
-        final Map<URI, PublishedObjectData> localObjects = publishedObjects.stream().collect(
-            Collectors.toMap(PublishedObjectData::getUri, po -> po)
-        );
-        log.info("Publishing {} active objects to {} for client {}", localObjects.size(), externalPublishingServer.getPublishingServerUrl(), clientId);
-
+    private ServerObjects listServerObjects(ExternalPublishingServer externalPublishingServer, String clientId) {
         final List<PublicationMessage.ListReply> objectOnServer = getObjectsFromServer(externalPublishingServer, clientId);
         Map<URI, ListReply> theirObjects = groupPublicationMessagesByUri(objectOnServer);
         log.info("Received {} ({} unique URIs) objects from server for client {}", objectOnServer.size(), theirObjects.size(), clientId);
+        return new ServerObjects(externalPublishingServer, theirObjects);
+    }
+
+    private void publishObjects(ServerObjects server, String clientId) {
+        ExternalPublishingServer externalPublishingServer = server.externalPublishingServer;
+        log.info("Publishing {} active objects to {} for client {}", server.localObjectCount, externalPublishingServer.getPublishingServerUrl(), clientId);
 
-        List<PublicationMessage> resolutionMessages = getResolutionMessages(theirObjects, localObjects);
+        List<PublicationMessage> resolutionMessages = server.getResolutionMessages();
         if (resolutionMessages.isEmpty()) {
             return;
         }
@@ -124,47 +153,64 @@ public class PublicationSupport {
                 log.error("Got errors from the publication server:\n" + Joiner.on('\n').join(bucket)));
     }
 
-    private static List<PublicationMessage> getResolutionMessages(Map<URI, ListReply> remoteObjects, Map<URI, PublishedObjectData> localObjects) {
-        List<PublicationMessage> result = new ArrayList<>();
-
-        Set<URI> localUris = localObjects.keySet();
-        Set<URI> remoteUris = remoteObjects.keySet();
-
-        Set<URI> onlyRemote = new HashSet<>(remoteUris);
-        onlyRemote.removeAll(localUris);
-
-        Set<URI> onlyLocal = new HashSet<>(localUris);
-        onlyLocal.removeAll(remoteUris);
-
-        Set<URI> existBoth = new HashSet<>(localUris);
-        existBoth.retainAll(remoteUris);
-
-        // URIs only on remote need to all be withdrawn.
-        for (URI toWithdraw : onlyRemote) {
-            String hash = remoteObjects.get(toWithdraw).hash;
-            result.add(new WithdrawRequest(toWithdraw, hash));
+    /**
+     * The objects on a publication server and the publish requests needed to make the server match the local objects
+     * seen so far. When multiple local objects have the same URI the last one wins.
+     */
+    private static class ServerObjects {
+        private final ExternalPublishingServer externalPublishingServer;
+        private final Map<URI, ListReply> remoteObjects;
+        private final Set<URI> localUris = new HashSet<>();
+        private final Map<URI, PublicationMessage.PublishRequest> publishRequests = new HashMap<>();
+        private final Map<URI, PublicationMessage.PublishRequest> replaceRequests = new HashMap<>();
+        private long localObjectCount;
+
+        private ServerObjects(ExternalPublishingServer externalPublishingServer, Map<URI, ListReply> remoteObjects) {
+            this.externalPublishingServer = externalPublishingServer;
+            this.remoteObjects = remoteObjects;
         }
 
-        // URIs found only on local have to be republished if the last updated publishing object is publishable.
-        for (URI toRepublish : onlyLocal) {
-            PublishedObjectData latest = localObjects.get(toRepublish);
-            // Not replacing remote objects, we are only publishing new ones, so the hash must be empty.
-            result.add(new PublicationMessage.PublishRequest(latest.getUri(), latest.getContent(), Optional.empty()));
-        }
+        private void resolve(PublishedObjectData local) {
+            URI uri = local.getUri();
+            if (localUris.add(uri)) {
+                localObjectCount++;
+            } else {
+                publishRequests.remove(uri);
+                replaceRequests.remove(uri);
+            }
 
-        // URIs found on both has might need to be withdrawn, or leave as is.
-        for (URI onBoth : existBoth) {
-            PublishedObjectData local = localObjects.get(onBoth);
-            ListReply remote = remoteObjects.get(onBoth);
-            String localObjectHash = objectHash(local.getContent());
-            if (!remote.hash.equalsIgnoreCase(localObjectHash)) {
-                result.add(new PublicationMessage.PublishRequest(local.getUri(), local.getContent(), Optional.of(remote.hash)));
+            ListReply remote = remoteObjects.get(uri);
+            if (remote == null) {
+                // Not replacing remote objects, we are only publishing new ones, so the hash must be empty.
+                publishRequests.put(uri, new PublicationMessage.PublishRequest(uri, local.getContent(), Optional.empty()));
             } else {
-                // All good, local and published hash match.
+                String localObjectHash = BaseEncoding.base16().encode(local.getSha256());
+                if (!remote.hash.equalsIgnoreCase(localObjectHash)) {
+                    replaceRequests.put(uri, new PublicationMessage.PublishRequest(uri, local.getContent(), Optional.of(remote.hash)));
+                } else {
+                    // All good, local and published hash match.
+                }
             }
         }
 
-        return result;
+        /**
+         * Withdraws objects only found on the server, followed by publishing new objects and replacing changed
+         * objects, each ordered by URI.
+         */
+        private List<PublicationMessage> getResolutionMessages() {
+            List<PublicationMessage> result = new ArrayList<>();
+            remoteObjects.values().stream()
+                .filter(remote -> !localUris.contains(remote.uri))
+                .sorted(Comparator.comparing((ListReply remote) -> remote.uri))
+                .forEach(remote -> result.add(new WithdrawRequest(remote.uri, remote.hash)));
+            publishRequests.values().stream()
+                .sorted(Comparator.comparing(PublicationMessage.PublishRequest::getUri))
+                .forEach(result::add);
+            replaceRequests.values().stream()
+                .sorted(Comparator.comparing(PublicationMessage.PublishRequest::getUri))
+                .forEach(result::add);
+            return result;
+        }
     }
 
     private Map<URI, ListReply> groupPublicationMessagesByUri(List<ListReply> publicationMessages) {
@@ -178,13 +224,4 @@ public class PublicationSupport {
                 .map(x -> (ListReply) x)
                 .collect(Collectors.toList());
     }
-
-    public static String objectHash(byte[] bytes) {
-        try {
-            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
-            return BaseEncoding.base16().encode(digest);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        }
-    }
 }
@@ -11,6 +11,7 @@ import net.ripe.ipresource.IpResourceSet;
 import net.ripe.ipresource.IpResourceType;
 import net.ripe.rpki.domain.CertificateAuthorityRepository;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
+import net.ripe.rpki.domain.ReconciliationReason;
 import net.ripe.rpki.domain.aspa.AspaConfiguration;
 import net.ripe.rpki.domain.aspa.AspaConfigurationRepository;
 import net.ripe.rpki.server.api.commands.UpdateAspaConfigurationCommand;
@@ -81,7 +82,7 @@ public class UpdateAspaConfigurationCommandHandler extends AbstractCertificateAu
             entities.get(updated.getKey()).setProviders(updated.getValue().rightValue());
         }
 
-        ca.configurationUpdated();
+        ca.reconciliationNeeded(ReconciliationReason.ASPA_CONFIGURATION);
     }
 
     private SortedMap<Asn, SortedMap<Asn, AspaAfiLimit>> parseUpdatedConfiguration(ManagedCertificateAuthority ca, UpdateAspaConfigurationCommand command) {
@@ -7,6 +7,7 @@ import net.ripe.ipresource.IpResourceSet;
 import net.ripe.ipresource.IpResourceType;
 import net.ripe.rpki.domain.CertificateAuthorityRepository;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
+import net.ripe.rpki.domain.ReconciliationReason;
 import net.ripe.rpki.domain.roa.RoaConfiguration;
 import net.ripe.rpki.domain.roa.RoaConfigurationPrefix;
 import net.ripe.rpki.domain.roa.RoaConfigurationRepository;
@@ -21,7 +22,6 @@ import org.springframework.beans.factory.annotation.Value;
 
 import javax.inject.Inject;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -67,19 +67,20 @@ public class UpdateRoaConfigurationCommandHandler extends AbstractCertificateAut
 
         ManagedCertificateAuthority ca = lookupManagedCa(command.getCertificateAuthorityVersionedId().getId());
         RoaConfiguration configuration = roaConfigurationRepository.getOrCreateByCertificateAuthority(ca);
-        final Set<RoaConfigurationPrefix> formerPrefixes = new HashSet<>(configuration.getPrefixes());
-        configuration.addPrefix(RoaConfigurationPrefix.fromData(command.getAdditions()));
         final Collection<? extends RoaConfigurationPrefix> deletedPrefixes = RoaConfigurationPrefix.fromData(command.getDeletions());
+        // Determined before the additions are applied, since an addition replaces a configured prefix with a
+        // different maximum length.
+        final Set<? extends RoaConfigurationPrefix> actualDeletable =
+            deletedPrefixes.stream().filter(configuration.getPrefixes()::contains).collect(Collectors.toSet());
+        configuration.addPrefix(RoaConfigurationPrefix.fromData(command.getAdditions()));
         configuration.removePrefix(deletedPrefixes);
         if (!deletedPrefixes.isEmpty()) {
-            final Set<? extends RoaConfigurationPrefix> actualDeletable =
-                deletedPrefixes.stream().filter(formerPrefixes::contains).collect(Collectors.toSet());
             roaEntityService.logRoaPrefixDeletion(configuration, actualDeletable);
         }
         roaMetricsService.countAdded(command.getAdditions().size());
         roaMetricsService.countDeleted(command.getDeletions().size());
 
-        ca.configurationUpdated();
+        ca.reconciliationNeeded(ReconciliationReason.ROA_CONFIGURATION);
     }
 
     private List<Asn> findAddedPrivateAsns(UpdateRoaConfigurationCommand command) {
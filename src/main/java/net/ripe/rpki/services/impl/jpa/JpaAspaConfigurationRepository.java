@@ -8,6 +8,10 @@ import net.ripe.rpki.ripencc.support.persistence.JpaRepository;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Optional;
 import java.util.SortedMap;
 import java.util.stream.Stream;
 
@@ -30,6 +34,18 @@ public class JpaAspaConfigurationRepository extends JpaRepository<AspaConfigurat
         );
     }
 
+    @Override
+    public int countAspaConfigurations() {
+        return ((BigInteger) createNativeQuery("SELECT count(*) FROM aspaconfiguration").getSingleResult()).intValue();
+    }
+
+    @Override
+    public Optional<Instant> lastModified() {
+        // Changes of the providers update the owning configuration, deletions are noticed by the count.
+        Timestamp res = (Timestamp) createNativeQuery("SELECT max(updated_at) FROM aspaconfiguration").getSingleResult();
+        return Optional.ofNullable(res).map(Timestamp::toInstant);
+    }
+
     @Override
     protected Class<AspaConfiguration> getEntityClass() {
         return AspaConfiguration.class;
@@ -0,0 +1,119 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import com.google.common.base.Preconditions;
+import net.ripe.rpki.domain.audit.AuditPartitionRepository;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Component
+public class JpaAuditPartitionRepository implements AuditPartitionRepository {
+
+    private static final List<String> PARTITIONED_TABLES = Arrays.asList(COMMAND_AUDIT_TABLE, PROVISIONING_AUDIT_LOG_TABLE);
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("'_p'yyyy_MM");
+    /**
+     * Keeps the entry uuids of the provisioning audit log unique across partitions, see the
+     * <code>V124__provisioning_audit_log_unique_entry_uuid.sql</code> migration.
+     */
+    private static final String ENTRY_UUID_TABLE = "provisioning_audit_log_entry_uuid";
+
+    @PersistenceContext
+    private EntityManager manager;
+
+    @Override
+    public boolean createMonthlyPartition(String table, YearMonth month) {
+        checkPartitionedTable(table);
+        Instant start = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant end = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+
+        boolean hasDefaultEntries = (Boolean) manager.createNativeQuery("SELECT EXISTS (SELECT 1 FROM " + table + "_default " +
+                "WHERE executiontime >= :start AND executiontime < :end)")
+            .setParameter("start", Timestamp.from(start))
+            .setParameter("end", Timestamp.from(end))
+            .getSingleResult();
+        if (hasDefaultEntries) {
+            return false;
+        }
+
+        manager.createNativeQuery("CREATE TABLE IF NOT EXISTS " + table + month.format(PARTITION_SUFFIX) +
+                " PARTITION OF " + table + " FOR VALUES FROM ('" + start + "') TO ('" + end + "')")
+            .executeUpdate();
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<AuditPartition> findPartitions(String table) {
+        checkPartitionedTable(table);
+        List<Object[]> rows = manager.createNativeQuery("SELECT c.relname, " +
+                "       CAST(substring(pg_get_expr(c.relpartbound, c.oid) FROM 'TO \\(''([^'']+)''\\)') AS TIMESTAMPTZ) AS partition_end " +
+                "  FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                " WHERE i.inhparent = CAST(:table AS regclass) " +
+                " ORDER BY partition_end NULLS LAST")
+            .setParameter("table", table)
+            .getResultList();
+        return rows.stream()
+            .map(row -> new AuditPartition(table, (String) row[0], row[1] == null ? null : ((Timestamp) row[1]).toInstant()))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public long exportEntries(AuditPartition partition, Instant cutoff, OutputStream out) {
+        String sql = "COPY (SELECT * FROM " + partitionName(partition) + " WHERE executiontime < '" + cutoff + "' ORDER BY executiontime, id) " +
+            "TO STDOUT WITH (FORMAT csv, HEADER)";
+        return manager.unwrap(Session.class).doReturningWork(connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void dropPartition(AuditPartition partition) {
+        if (PROVISIONING_AUDIT_LOG_TABLE.equals(partition.getTable())) {
+            manager.createNativeQuery("DELETE FROM " + ENTRY_UUID_TABLE + " u USING " + partitionName(partition) + " p " +
+                    "WHERE u.entry_uuid = p.entry_uuid")
+                .executeUpdate();
+        }
+        manager.createNativeQuery("DROP TABLE " + partitionName(partition)).executeUpdate();
+    }
+
+    @Override
+    public int deleteEntries(AuditPartition partition, Instant cutoff) {
+        if (PROVISIONING_AUDIT_LOG_TABLE.equals(partition.getTable())) {
+            manager.createNativeQuery("DELETE FROM " + ENTRY_UUID_TABLE + " u USING " + partitionName(partition) + " p " +
+                    "WHERE u.entry_uuid = p.entry_uuid AND p.executiontime < :cutoff")
+                .setParameter("cutoff", Timestamp.from(cutoff))
+                .executeUpdate();
+        }
+        return manager.createNativeQuery("DELETE FROM " + partitionName(partition) + " WHERE executiontime < :cutoff")
+            .setParameter("cutoff", Timestamp.from(cutoff))
+            .executeUpdate();
+    }
+
+    private static void checkPartitionedTable(String table) {
+        Preconditions.checkArgument(PARTITIONED_TABLES.contains(table), "not a partitioned audit table: %s", table);
+    }
+
+    private static String partitionName(AuditPartition partition) {
+        checkPartitionedTable(partition.getTable());
+        Preconditions.checkArgument(partition.getName().matches("[a-z0-9_]+"), "invalid partition name: %s", partition.getName());
+        return partition.getName();
+    }
+}
@@ -18,6 +18,7 @@ import net.ripe.rpki.server.api.dto.KeyPairStatus;
 import net.ripe.rpki.util.JdbcDBComponent;
 import org.apache.commons.lang.Validate;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.Duration;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -29,15 +30,13 @@ import javax.persistence.NoResultException;
 import javax.persistence.PersistenceException;
 import javax.persistence.Query;
 import javax.security.auth.x500.X500Principal;
-import java.util.ArrayList;
+import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.UUID;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -46,6 +45,7 @@ import java.util.stream.Stream;
 public class JpaCertificateAuthorityRepository extends JpaRepository<CertificateAuthority> implements CertificateAuthorityRepository {
 
     private static final DateTimeFormatter ISO_DATE_FORMAT = DateTimeFormat.forPattern("YYYY-MM-dd HH:mm:ss");
+    private static final DateTime CA_STAT_EVENTS_END_OF_TIME = new DateTime(9999, 12, 31, 0, 0, DateTimeZone.UTC);
 
     @Override
     protected Class<CertificateAuthority> getEntityClass() {
@@ -149,14 +149,13 @@ public class JpaCertificateAuthorityRepository extends JpaRepository<Certificate
     @SuppressWarnings("unchecked")
     @Override
     public Collection<CaStat> getCAStats() {
+        // The number of ROA prefixes per CA is maintained in ca_stat by triggers on the ROA configuration tables.
         final Stream<Object[]> rowStream = manager.createNativeQuery("SELECT " +
                 "ca.name, " +
-                "count(rp.*), " +
+                "COALESCE(s.roa_count, 0), " +
                 "ca.created_at " +
                 "FROM certificateauthority ca " +
-                "LEFT JOIN roaconfiguration r ON r.certificateauthority_id = ca.id " +
-                "LEFT JOIN roaconfiguration_prefixes rp ON rp.roaconfiguration_id = r.id " +
-                "GROUP BY ca.name, ca.created_at"
+                "LEFT JOIN ca_stat s ON s.ca_id = ca.id"
         ).getResultStream();
 
         return rowStream.map(row -> {
@@ -167,71 +166,34 @@ public class JpaCertificateAuthorityRepository extends JpaRepository<Certificate
         }).collect(Collectors.toList());
     }
 
+    @SuppressWarnings("unchecked")
     @Override
-    public Collection<CaStatEvent> getCAStatEvents() {
-        final String updateRoaConf = "UpdateRoaConfigurationCommand";
-        final String createRoaSpec = "CreateRoaSpecificationCommand";
-        final String deleteRoaSpec = "DeleteRoaSpecificationCommand";
-        final String activateCaSpec = "ActivateHostedCertificateAuthorityCommand";
-        final String activateNonHostedCaSpec = "ActivateNonHostedCertificateAuthorityCommand";
-        final String deleteCaSpec = "DeleteCertificateAuthorityCommand";
-        final String deleteNonHostedCaSpec = "DeleteNonHostedCertificateAuthorityCommand";
-
-        final List<String> commandTypes = Arrays.asList(updateRoaConf, createRoaSpec, deleteRoaSpec,
-                activateCaSpec, activateNonHostedCaSpec, deleteCaSpec, deleteNonHostedCaSpec);
-
-        final Pattern updateConfPattern = Pattern.compile("Updated ROA configuration. Additions: (.+). Deletions: (.+)\\.");
-        final Pattern createSpecPattern = Pattern.compile("Created ROA specification '.+' (.+).");
-        final Pattern deleteSpecPattern = Pattern.compile("Deleted ROA specification '.+' (.+).");
-
-        final Query q = manager.createNativeQuery("SELECT " +
-                "ca.name, " +
-                "au.commandtype, " +
-                "au.executiontime, " +
-                "au.commandsummary " +
-                "FROM commandAudit au " +
-                "LEFT JOIN certificateAuthority ca ON ca.id = au.ca_id " +
-                "WHERE commandtype IN (" + inClause(commandTypes) + ")" +
-                "ORDER BY au.executiontime ASC, ca.name");
+    public List<CaStatEvent> getCAStatEvents(DateTime from, DateTime to, int offset, Integer limit) {
+        final Query q = manager.createNativeQuery("SELECT ca_name, event, executiontime, roas_added, roas_deleted " +
+                "FROM ca_stat_event " +
+                "WHERE executiontime >= :from AND executiontime < :to " +
+                "ORDER BY executiontime ASC, id ASC")
+            .setParameter("from", new Timestamp(from == null ? 0 : from.getMillis()))
+            .setParameter("to", new Timestamp((to == null ? CA_STAT_EVENTS_END_OF_TIME : to).getMillis()))
+            .setFirstResult(offset);
+        if (limit != null) {
+            q.setMaxResults(limit);
+        }
 
-        final List<?> resultList = q.getResultList();
-        final List<CaStatEvent> result = new ArrayList<>();
-        for (final Object r : resultList) {
-            final Object[] columns = (Object[]) r;
-            final String caName = toStr(columns[0]);
-            final String type = toStr(columns[1]);
-            final String date = ISO_DATE_FORMAT.print(new DateTime(columns[2]));
-            final String summary = toStr(columns[3]);
-            if (updateRoaConf.equals(type)) {
-                final Matcher m = updateConfPattern.matcher(summary);
-                if (m.matches()) {
-                    final String additions = m.group(1);
-                    final String deletions = m.group(2);
-                    result.add(new CaStatRoaEvent(caName, date, countRoas(additions), countRoas(deletions)));
-                }
-            } else if (createRoaSpec.equals(type)) {
-                final Matcher m = createSpecPattern.matcher(summary);
-                if (m.matches()) {
-                    final String additions = m.group(1);
-                    int added = countRoasUpdateSpecPattern(additions);
-                    if (added > 0)
-                        result.add(new CaStatRoaEvent(caName, date, added, 0));
-                }
-            } else if (deleteRoaSpec.equals(type)) {
-                final Matcher m = deleteSpecPattern.matcher(summary);
-                if (m.matches()) {
-                    final String deletions = m.group(1);
-                    int deleted = countRoasUpdateSpecPattern(deletions);
-                    if (deleted > 0)
-                        result.add(new CaStatRoaEvent(caName, date, 0, deleted));
-                }
-            } else if (activateCaSpec.equals(type) || activateNonHostedCaSpec.equals(type)) {
-                result.add(CaStatCaEvent.created(caName, date));
-            } else if (deleteCaSpec.equals(type) || deleteNonHostedCaSpec.equals(type)) {
-                result.add(CaStatCaEvent.deleted(date));
+        final Stream<Object[]> rowStream = q.getResultStream();
+        return rowStream.<CaStatEvent>map(row -> {
+            final String caName = toStr(row[0]);
+            final String event = toStr(row[1]);
+            final String date = ISO_DATE_FORMAT.print(new DateTime(row[2]));
+            switch (event) {
+                case "created":
+                    return CaStatCaEvent.created(caName, date);
+                case "deleted":
+                    return CaStatCaEvent.deleted(date);
+                default:
+                    return new CaStatRoaEvent(caName, date, toInt(row[3]), toInt(row[4]));
             }
-        }
-        return result;
+        }).collect(Collectors.toList());
     }
 
     @Override
@@ -337,22 +299,6 @@ public class JpaCertificateAuthorityRepository extends JpaRepository<Certificate
             .getResultList();
     }
 
-    private static String inClause(final Collection<String> items) {
-        return items.stream().collect(Collectors.joining(",", "'", "'"));
-    }
-
-    private static int countRoasUpdateSpecPattern(String summary) {
-        int c = summary.replaceFirst("\\[asn=AS[0-9]+, ", "").split("maximumLength=").length - 1;
-        return Math.max(c, 0);
-    }
-
-    private static int countRoas(String summaryArray) {
-        if (summaryArray != null && !"none".equals(summaryArray)) {
-            return summaryArray.split("\\], \\[").length;
-        }
-        return 0;
-    }
-
     private static String toStr(Object o) {
         return o == null ? null : o.toString();
     }
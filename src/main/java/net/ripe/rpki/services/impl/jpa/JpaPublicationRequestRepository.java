@@ -0,0 +1,64 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import net.ripe.rpki.domain.PublicationRequestRepository;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Component
+public class JpaPublicationRequestRepository implements PublicationRequestRepository {
+
+    @PersistenceContext
+    private EntityManager manager;
+
+    @Override
+    public void requestPublication(long caId, String commandType) {
+        // Select the CA so nothing is recorded when the command deleted it. A pending request gets a new version, so
+        // a publication that found the previous version does not remove it, and keeps the time of the oldest change
+        // that may not be published yet.
+        manager.createNativeQuery("INSERT INTO publication_request (ca_id, command_type, requested_at, version) " +
+                "SELECT ca.id, :commandType, NOW(), nextval('seq_all') FROM certificateauthority ca WHERE ca.id = :caId " +
+                "ON CONFLICT (ca_id) DO UPDATE SET command_type = EXCLUDED.command_type, " +
+                "    requested_at = LEAST(publication_request.requested_at, EXCLUDED.requested_at), " +
+                "    version = EXCLUDED.version")
+            .setParameter("caId", caId)
+            .setParameter("commandType", commandType)
+            .executeUpdate();
+    }
+
+    @Override
+    public boolean hasPendingRequests() {
+        return (Boolean) manager.createNativeQuery("SELECT EXISTS (SELECT 1 FROM publication_request)")
+            .getSingleResult();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<PublicationRequest> findRequests() {
+        List<Object[]> rows = manager.createNativeQuery(
+                "SELECT command_type, requested_at, version FROM publication_request")
+            .getResultList();
+        return rows.stream()
+            .map(row -> new PublicationRequest(
+                (String) row[0],
+                ((Timestamp) row[1]).toInstant(),
+                ((Number) row[2]).longValue()
+            ))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public void removeRequests(Collection<PublicationRequest> requests) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        manager.createNativeQuery("DELETE FROM publication_request WHERE version IN (:versions)")
+            .setParameter("versions", requests.stream().map(PublicationRequest::getVersion).collect(Collectors.toList()))
+            .executeUpdate();
+    }
+}
@@ -8,6 +8,7 @@ import net.ripe.rpki.domain.PublishedObjectEntry;
 import net.ripe.rpki.domain.PublishedObjectRepository;
 import net.ripe.rpki.ripencc.support.persistence.JpaRepository;
 import org.apache.commons.lang.Validate;
+import org.hibernate.jpa.QueryHints;
 import org.joda.time.DateTime;
 import org.joda.time.Instant;
 import org.springframework.stereotype.Repository;
@@ -22,6 +23,11 @@ import java.util.stream.Stream;
 @Repository
 public class JpaPublishedObjectRepository extends JpaRepository<PublishedObject> implements PublishedObjectRepository {
 
+    /**
+     * Number of published objects fetched from the database cursor at a time.
+     */
+    static final int PUBLISHED_OBJECTS_FETCH_SIZE = 1000;
+
     @Override
     public List<PublishedObject> findActiveManifestEntries(KeyPairEntity keyPair) {
         return manager.createQuery("select po from PublishedObject po " +
@@ -39,12 +45,12 @@ public class JpaPublishedObjectRepository extends JpaRepository<PublishedObject>
     @Override
     public List<PublishedObjectEntry> findEntriesByPublicationStatus(EnumSet<PublicationStatus> statuses) {
         return manager.createNativeQuery("SELECT " +
-                "updated_at, status, directory || filename as uri, sha256(content) as sha256_content " +
+                "updated_at, status, directory || filename as uri, content_sha256 as sha256_content " +
                 "FROM published_object po " +
                 "WHERE po.status IN :statuses " +
                 "UNION ALL " +
                 "SELECT " +
-                "updated_at, status, uri, sha256(content) as sha256_content " +
+                "updated_at, status, uri, content_sha256 as sha256_content " +
                 "FROM ta_published_object tap " +
                 "WHERE tap.status IN :statuses ",
             "PublishedObjectEntryResult")
@@ -53,24 +59,24 @@ public class JpaPublishedObjectRepository extends JpaRepository<PublishedObject>
     }
 
     @Override
-    public List<PublishedObjectData> findCurrentlyPublishedObjects() {
+    public Stream<PublishedObjectData> streamCurrentlyPublishedObjects() {
+        // Inside a transaction the PostgreSQL driver uses a server-side cursor when a fetch size is set, so only
+        // the current batch of rows (including the object content) is held in memory.
         @SuppressWarnings("unchecked")
-        Stream<PublishedObjectData> stream = manager.createNativeQuery(
-            "SELECT po.created_at, po.directory || po.filename AS uri, po.content " +
+        Stream<Object[]> rows = manager.createNativeQuery(
+            "SELECT po.created_at, po.directory || po.filename AS uri, po.content, po.content_sha256 " +
                 "  FROM published_object po " +
                 " WHERE po.status IN :published " +
                 "UNION ALL " +
-                "SELECT po.created_at, po.uri, po.content " +
+                "SELECT po.created_at, po.uri, po.content, po.content_sha256 " +
                 "  FROM ta_published_object po " +
                 " WHERE po.status IN :published ")
             .setParameter("published", PublicationStatus.PUBLISHED_STATUSES.stream().map(PublicationStatus::name).collect(Collectors.toSet()))
-            .getResultStream()
-            .map((o) -> {
-                Object[] row = (Object[]) o;
-                return new PublishedObjectData((Timestamp) row[0], URI.create((String) row[1]), (byte[]) row[2]);
-            });
+            .setHint(QueryHints.HINT_FETCH_SIZE, PUBLISHED_OBJECTS_FETCH_SIZE)
+            .setHint(QueryHints.HINT_READONLY, true)
+            .getResultStream();
 
-        return stream.collect(Collectors.toList());
+        return rows.map(row -> new PublishedObjectData((Timestamp) row[0], URI.create((String) row[1]), (byte[]) row[2], (byte[]) row[3]));
     }
 
     @SuppressWarnings("unchecked")
@@ -1,6 +1,7 @@
 package net.ripe.rpki.services.impl.jpa;
 
 import net.ripe.ipresource.Asn;
+import net.ripe.ipresource.IpAddress;
 import net.ripe.ipresource.IpRange;
 import net.ripe.ipresource.IpResourceRange;
 import net.ripe.ipresource.IpResourceType;
@@ -81,6 +82,24 @@ public class JpaRoaConfigurationRepository extends JpaRepository<RoaConfiguratio
                 .collect(Collectors.toList());
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RoaConfigurationPrefix> findAllPrefixes() {
+        return (List<RoaConfigurationPrefix>) createNativeQuery("SELECT rcp.asn, rcp.prefix_type_id, rcp.prefix_start, rcp.prefix_end, rcp.maximum_length\n" +
+                "FROM roaconfiguration_prefixes rcp")
+                .getResultList()
+                .stream()
+                .map(o -> {
+                    final Object[] row = (Object[]) o;
+                    final Asn asn = new Asn(((BigDecimal) row[0]).longValue());
+                    final IpResourceType resourceType = IpResourceType.values()[(Integer) row[1]];
+                    final IpAddress begin = (IpAddress) resourceType.fromBigInteger(((BigDecimal) row[2]).toBigInteger());
+                    final IpAddress end = (IpAddress) resourceType.fromBigInteger(((BigDecimal) row[3]).toBigInteger());
+                    return new RoaConfigurationPrefix(asn, IpRange.range(begin, end), (Integer) row[4]);
+                })
+                .collect(Collectors.toList());
+    }
+
     @Override
     public void logRoaPrefixDeletion(RoaConfiguration configuration, Collection<? extends RoaConfigurationPrefix> deletedPrefixes) {
         // do it in SQL because Hibernate makes it harder to have the same enity
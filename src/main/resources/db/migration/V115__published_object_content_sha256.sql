@@ -0,0 +1,15 @@
+ALTER TABLE published_object ADD COLUMN content_sha256 BYTEA;
+UPDATE published_object SET content_sha256 = sha256(content);
+ALTER TABLE published_object ALTER COLUMN content_sha256 SET NOT NULL;
+
+ALTER TABLE ta_published_object ADD COLUMN content_sha256 BYTEA;
+UPDATE ta_published_object SET content_sha256 = sha256(content);
+ALTER TABLE ta_published_object ALTER COLUMN content_sha256 SET NOT NULL;
+
+-- Covering indexes so the published objects monitoring endpoint can be answered without reading the content.
+CREATE INDEX published_object_status_content_sha256
+          ON published_object (status)
+     INCLUDE (updated_at, directory, filename, content_sha256);
+CREATE INDEX ta_published_object_status_content_sha256
+          ON ta_published_object (status)
+     INCLUDE (updated_at, uri, content_sha256);
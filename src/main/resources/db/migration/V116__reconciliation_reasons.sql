@@ -0,0 +1,12 @@
+ALTER TABLE certificateauthority ADD COLUMN reconciliation_reasons INTEGER;
+
+-- The reasons were not tracked before, so reconcile the ROAs and ASPAs of every hosted CA once (all reasons set).
+UPDATE certificateauthority
+   SET reconciliation_reasons = 15
+ WHERE type <> 'NONHOSTED';
+
+ALTER TABLE certificateauthority
+  ADD CONSTRAINT reconciliation_reasons CHECK (CASE type
+                                               WHEN 'NONHOSTED' THEN reconciliation_reasons IS NULL
+                                               ELSE reconciliation_reasons IS NOT NULL
+                                               END);
@@ -0,0 +1,8 @@
+-- Durable queue of certificate authorities with changes that need to be published. Executing a command records
+-- the CA (at most once, the oldest request is kept) and the publication service removes the requests when it
+-- marks a consistent set of objects as published.
+CREATE TABLE publication_request (
+    ca_id        BIGINT PRIMARY KEY REFERENCES certificateauthority (id) ON DELETE CASCADE,
+    command_type TEXT NOT NULL,
+    requested_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
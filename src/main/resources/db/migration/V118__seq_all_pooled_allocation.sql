@@ -0,0 +1,5 @@
+-- Entities allocate ids from seq_all in blocks of 50 (see EntitySupport.SEQ_ALL_ALLOCATION_SIZE). Hibernate's pooled
+-- optimizer uses the ids (n - 50, n] for a sequence value n, so all ids it hands out after this change are larger
+-- than any id allocated before. Code that calls nextval('seq_all') directly (column defaults, CA ids, resource cache
+-- generations) uses n itself, which is never part of a block handed out by Hibernate.
+ALTER SEQUENCE seq_all INCREMENT BY 50;
@@ -0,0 +1,10 @@
+-- Time-bounded lease on the active node role. Only the node named by the `activeNode` property can acquire the
+-- lease, and the fencing token is incremented every time the lease is (re-)acquired.
+CREATE TABLE active_node_lease (
+    id            INTEGER PRIMARY KEY CHECK (id = 1),
+    node_name     TEXT NULL,
+    fencing_token BIGINT NOT NULL,
+    expires_at    TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+INSERT INTO active_node_lease (id, node_name, fencing_token, expires_at) VALUES (1, NULL, 0, 'epoch');
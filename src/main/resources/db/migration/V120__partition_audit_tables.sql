@@ -0,0 +1,51 @@
+-- Partition the command audit and provisioning audit log by month on the execution time, so entries older than the
+-- retention period can be archived and dropped a partition at a time. The existing rows are attached as a single
+-- "legacy" partition that ends at the start of the current month. Rows that do not fit in a monthly partition end up
+-- in the default partition. Monthly partitions are created ahead of time by the audit retention service.
+--
+-- Unique constraints on a partitioned table must include the partition key, so the primary keys become
+-- (id, executiontime). The ids are still allocated from seq_all. The execution time index is used when entries are
+-- archived from the legacy and default partitions.
+
+ALTER TABLE commandaudit RENAME TO commandaudit_legacy;
+ALTER INDEX commandaudit_pkey RENAME TO commandaudit_legacy_pkey;
+ALTER INDEX commandaudit_ca_and_version_idx RENAME TO commandaudit_legacy_ca_and_version_idx;
+
+CREATE TABLE commandaudit (LIKE commandaudit_legacy INCLUDING DEFAULTS) PARTITION BY RANGE (executiontime);
+ALTER TABLE commandaudit ADD CONSTRAINT commandaudit_pkey PRIMARY KEY (id, executiontime);
+CREATE INDEX commandaudit_ca_and_version_idx ON commandaudit (ca_id, ca_version);
+CREATE INDEX commandaudit_executiontime_idx ON commandaudit (executiontime);
+
+ALTER TABLE provisioning_audit_log RENAME TO provisioning_audit_log_legacy;
+ALTER INDEX provisioning_audit_log_pkey RENAME TO provisioning_audit_log_legacy_pkey;
+ALTER INDEX provisioning_audit_log_non_hosted_ca_uuid_idx RENAME TO provisioning_audit_log_legacy_non_hosted_ca_uuid_idx;
+ALTER TABLE provisioning_audit_log_legacy
+    RENAME CONSTRAINT provisioning_audit_log_unique_entry_uuid TO provisioning_audit_log_legacy_unique_entry_uuid;
+
+CREATE TABLE provisioning_audit_log (LIKE provisioning_audit_log_legacy INCLUDING DEFAULTS) PARTITION BY RANGE (executiontime);
+ALTER TABLE provisioning_audit_log ADD CONSTRAINT provisioning_audit_log_pkey PRIMARY KEY (id, executiontime);
+ALTER TABLE provisioning_audit_log ADD CONSTRAINT provisioning_audit_log_unique_entry_uuid UNIQUE (entry_uuid, executiontime);
+CREATE INDEX provisioning_audit_log_non_hosted_ca_uuid_idx ON provisioning_audit_log (non_hosted_ca_uuid);
+CREATE INDEX provisioning_audit_log_executiontime_idx ON provisioning_audit_log (executiontime);
+
+DO $$
+DECLARE
+    audit_table TEXT;
+    -- Month boundaries are computed in UTC
+    current_month TIMESTAMP := date_trunc('month', NOW() AT TIME ZONE 'UTC');
+    month_start TIMESTAMP;
+BEGIN
+    FOREACH audit_table IN ARRAY ARRAY['commandaudit', 'provisioning_audit_log'] LOOP
+        EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (MINVALUE) TO (%L)',
+            audit_table, audit_table || '_legacy', current_month AT TIME ZONE 'UTC');
+
+        FOR i IN 0..2 LOOP
+            month_start := current_month + make_interval(months => i);
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                audit_table || to_char(month_start, '"_p"YYYY_MM'), audit_table,
+                month_start AT TIME ZONE 'UTC', (month_start + INTERVAL '1 month') AT TIME ZONE 'UTC');
+        END LOOP;
+
+        EXECUTE format('CREATE TABLE %I PARTITION OF %I DEFAULT', audit_table || '_default', audit_table);
+    END LOOP;
+END $$;
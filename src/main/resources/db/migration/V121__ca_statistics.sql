@@ -0,0 +1,94 @@
+-- Summary tables for the CA statistics, so the statistics endpoints no longer aggregate the ROA configuration or scan
+-- and parse the command audit on every request.
+
+-- Number of ROA configuration prefixes per CA, maintained by triggers on the ROA configuration tables.
+CREATE TABLE ca_stat (
+    ca_id       BIGINT PRIMARY KEY REFERENCES certificateauthority (id) ON DELETE CASCADE,
+    roa_count   INTEGER NOT NULL
+);
+
+INSERT INTO ca_stat (ca_id, roa_count)
+SELECT rc.certificateauthority_id, COUNT(*)
+  FROM roaconfiguration rc
+  JOIN roaconfiguration_prefixes rcp ON rcp.roaconfiguration_id = rc.id
+ GROUP BY rc.certificateauthority_id;
+
+CREATE FUNCTION ca_stat_roa_prefix_trigger()
+RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO ca_stat (ca_id, roa_count)
+        SELECT rc.certificateauthority_id, 1 FROM roaconfiguration rc WHERE rc.id = NEW.roaconfiguration_id
+            ON CONFLICT (ca_id) DO UPDATE SET roa_count = ca_stat.roa_count + 1;
+    ELSE
+        -- No-op when the ROA configuration itself is being deleted, see below.
+        UPDATE ca_stat SET roa_count = roa_count - 1
+         WHERE ca_id = (SELECT rc.certificateauthority_id FROM roaconfiguration rc WHERE rc.id = OLD.roaconfiguration_id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER ca_stat_roa_prefix_trigger
+ AFTER INSERT OR DELETE ON roaconfiguration_prefixes
+   FOR EACH ROW EXECUTE PROCEDURE ca_stat_roa_prefix_trigger();
+
+CREATE FUNCTION ca_stat_roa_configuration_trigger()
+RETURNS trigger AS $$
+BEGIN
+    UPDATE ca_stat SET roa_count = 0 WHERE ca_id = OLD.certificateauthority_id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER ca_stat_roa_configuration_trigger
+ AFTER DELETE ON roaconfiguration
+   FOR EACH ROW EXECUTE PROCEDURE ca_stat_roa_configuration_trigger();
+
+-- CA creation and deletion, and ROA configuration changes. Recorded together with the command audit.
+CREATE TABLE ca_stat_event (
+    id              BIGSERIAL PRIMARY KEY,
+    executiontime   TIMESTAMP WITH TIME ZONE NOT NULL,
+    ca_name         TEXT NULL,
+    event           TEXT NOT NULL CHECK (event IN ('created', 'deleted', 'roas')),
+    roas_added      INTEGER NOT NULL DEFAULT 0,
+    roas_deleted    INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE INDEX ca_stat_event_executiontime_idx ON ca_stat_event (executiontime, id);
+
+-- Convert the events that were derived from the command audit until now. The ROA changes are counted from the
+-- command summaries, like the statistics did before.
+INSERT INTO ca_stat_event (executiontime, ca_name, event, roas_added, roas_deleted)
+SELECT executiontime, ca_name, event, roas_added, roas_deleted
+  FROM (
+    SELECT au.executiontime, ca.name AS ca_name, au.id, 'created' AS event, 0 AS roas_added, 0 AS roas_deleted
+      FROM commandaudit au LEFT JOIN certificateauthority ca ON ca.id = au.ca_id
+     WHERE au.commandtype IN ('ActivateHostedCertificateAuthorityCommand', 'ActivateNonHostedCertificateAuthorityCommand')
+    UNION ALL
+    SELECT au.executiontime, 'UNKNOWN', au.id, 'deleted', 0, 0
+      FROM commandaudit au
+     WHERE au.commandtype IN ('DeleteCertificateAuthorityCommand', 'DeleteNonHostedCertificateAuthorityCommand')
+    UNION ALL
+    SELECT executiontime, ca_name, id, 'roas',
+           CASE WHEN summary[1] = 'none' THEN 0 ELSE array_length(string_to_array(summary[1], '], ['), 1) END,
+           CASE WHEN summary[2] = 'none' THEN 0 ELSE array_length(string_to_array(summary[2], '], ['), 1) END
+      FROM (SELECT au.executiontime, ca.name AS ca_name, au.id,
+                   regexp_match(au.commandsummary, '^Updated ROA configuration. Additions: (.+). Deletions: (.+)\.$') AS summary
+              FROM commandaudit au LEFT JOIN certificateauthority ca ON ca.id = au.ca_id
+             WHERE au.commandtype = 'UpdateRoaConfigurationCommand') updates
+     WHERE summary IS NOT NULL
+    UNION ALL
+    SELECT executiontime, ca_name, id, 'roas',
+           CASE WHEN commandtype = 'CreateRoaSpecificationCommand' THEN prefix_count ELSE 0 END,
+           CASE WHEN commandtype = 'DeleteRoaSpecificationCommand' THEN prefix_count ELSE 0 END
+      FROM (SELECT au.executiontime, ca.name AS ca_name, au.id, au.commandtype,
+                   (length(prefixes) - length(replace(prefixes, 'maximumLength=', ''))) / length('maximumLength=') AS prefix_count
+              FROM (SELECT *, regexp_replace(substring(commandsummary FROM '^(?:Created|Deleted) ROA specification ''.+'' (.+).$'),
+                                             '\[asn=AS[0-9]+, ', '') AS prefixes
+                      FROM commandaudit
+                     WHERE commandtype IN ('CreateRoaSpecificationCommand', 'DeleteRoaSpecificationCommand')) au
+              LEFT JOIN certificateauthority ca ON ca.id = au.ca_id) specifications
+     WHERE prefix_count > 0
+  ) events
+ ORDER BY executiontime, id;
@@ -0,0 +1,7 @@
+-- CAs whose resources changed in the resource cache, so the certificate update service only has to update the
+-- certificates of these CAs. The generation identifies the resource cache update that recorded the change, so a change
+-- recorded while the certificates are being updated is not lost.
+CREATE TABLE resource_cache_change (
+    name        TEXT PRIMARY KEY,
+    generation  BIGINT NOT NULL
+);
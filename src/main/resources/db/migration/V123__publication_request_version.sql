@@ -0,0 +1,6 @@
+-- Publication requests get a new version every time the CA requests publication again. The publication service only
+-- removes the versions it has seen, so a request made while the objects are being published is not lost.
+ALTER TABLE publication_request ADD COLUMN version BIGINT;
+UPDATE publication_request SET version = nextval('seq_all');
+ALTER TABLE publication_request ALTER COLUMN version SET NOT NULL;
+CREATE UNIQUE INDEX publication_request_version_idx ON publication_request (version);
@@ -0,0 +1,28 @@
+-- A unique constraint on the partitioned provisioning audit log must include the partition key, so V120 weakened the
+-- uniqueness of the entry uuid to (entry_uuid, executiontime). The entry uuids are now kept unique by the primary key
+-- of a separate table, which is filled by a trigger on insert. The audit retention service removes the uuids of the
+-- entries it archives.
+
+CREATE TABLE provisioning_audit_log_entry_uuid (
+    entry_uuid    UUID NOT NULL,
+    executiontime TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+INSERT INTO provisioning_audit_log_entry_uuid (entry_uuid, executiontime)
+SELECT entry_uuid, executiontime FROM provisioning_audit_log;
+
+ALTER TABLE provisioning_audit_log DROP CONSTRAINT provisioning_audit_log_unique_entry_uuid;
+ALTER TABLE provisioning_audit_log_entry_uuid
+    ADD CONSTRAINT provisioning_audit_log_unique_entry_uuid PRIMARY KEY (entry_uuid);
+
+CREATE FUNCTION provisioning_audit_log_entry_uuid_trigger()
+RETURNS trigger AS $$
+BEGIN
+    INSERT INTO provisioning_audit_log_entry_uuid (entry_uuid, executiontime) VALUES (NEW.entry_uuid, NEW.executiontime);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER provisioning_audit_log_entry_uuid_trigger
+ AFTER INSERT ON provisioning_audit_log
+   FOR EACH ROW EXECUTE PROCEDURE provisioning_audit_log_entry_uuid_trigger();
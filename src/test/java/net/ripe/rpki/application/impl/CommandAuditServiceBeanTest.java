@@ -1,11 +1,17 @@
 package net.ripe.rpki.application.impl;
 
+import net.ripe.ipresource.Asn;
+import net.ripe.ipresource.IpRange;
 import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.domain.CertificateAuthority;
 import net.ripe.rpki.domain.audit.CommandAudit;
 import net.ripe.rpki.server.api.commands.CommandContext;
 import net.ripe.rpki.server.api.commands.CreateRootCertificateAuthorityCommand;
+import net.ripe.rpki.server.api.commands.DeleteCertificateAuthorityCommand;
 import net.ripe.rpki.server.api.commands.KeyManagementInitiateRollCommand;
+import net.ripe.rpki.server.api.commands.UpdateRoaConfigurationCommand;
+import net.ripe.rpki.server.api.dto.RoaConfigurationData;
+import net.ripe.rpki.server.api.dto.RoaConfigurationPrefixData;
 import net.ripe.rpki.server.api.security.CertificationUserId;
 import net.ripe.rpki.server.api.security.RoleBasedAuthenticationStrategy;
 import org.junit.Before;
@@ -13,6 +19,10 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.security.auth.x500.X500Principal;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.UUID;
 
 import static org.junit.Assert.*;
@@ -21,6 +31,7 @@ import static org.mockito.Mockito.*;
 public class CommandAuditServiceBeanTest {
 
     private EntityManager entityManager;
+    private Query caStatEventQuery;
     private CommandAuditServiceBean subject;
     private RoleBasedAuthenticationStrategy authStrategy;
 
@@ -35,7 +46,11 @@ public class CommandAuditServiceBeanTest {
 
         CertificateAuthority ca = mock(CertificateAuthority.class);
         when(ca.getVersionedId()).thenReturn(new VersionedId(12));
+        when(ca.getName()).thenReturn(new X500Principal("CN=zz.example"));
         when(entityManager.find(eq(CertificateAuthority.class), any())).thenReturn(ca);
+
+        caStatEventQuery = mock(Query.class, RETURNS_SELF);
+        when(entityManager.createNativeQuery(startsWith("INSERT INTO ca_stat_event"))).thenReturn(caStatEventQuery);
     }
 
     @Test
@@ -70,4 +85,50 @@ public class CommandAuditServiceBeanTest {
 
         verify(entityManager, never()).persist(isA(CommandAudit.class));
     }
+
+    @Test
+    public void shouldRecordRoaConfigurationChangesAsCaStatEvent() {
+        when(authStrategy.getOriginalUserId()).thenReturn(TEST_USER);
+
+        UpdateRoaConfigurationCommand command = new UpdateRoaConfigurationCommand(
+            new VersionedId(12),
+            Arrays.asList(
+                new RoaConfigurationPrefixData(new Asn(64496), IpRange.parse("10.0.0.0/8"), null),
+                new RoaConfigurationPrefixData(new Asn(64497), IpRange.parse("10.0.0.0/8"), 16)
+            ),
+            Collections.singletonList(new RoaConfigurationPrefixData(new Asn(64498), IpRange.parse("11.0.0.0/8"), null))
+        );
+        subject.finishRecording(subject.startRecording(command));
+
+        verify(caStatEventQuery).setParameter("caName", "CN=zz.example");
+        verify(caStatEventQuery).setParameter("event", "roas");
+        verify(caStatEventQuery).setParameter("roasAdded", 2);
+        verify(caStatEventQuery).setParameter("roasDeleted", 1);
+        verify(caStatEventQuery).executeUpdate();
+    }
+
+    @Test
+    public void shouldRecordCaDeletionAsCaStatEvent() {
+        when(authStrategy.getOriginalUserId()).thenReturn(TEST_USER);
+        when(entityManager.find(eq(CertificateAuthority.class), any())).thenReturn(null);
+
+        DeleteCertificateAuthorityCommand command = new DeleteCertificateAuthorityCommand(new VersionedId(12), new X500Principal("CN=zz.example"), new RoaConfigurationData(Collections.emptyList()));
+        subject.finishRecording(subject.startRecording(command));
+
+        verify(caStatEventQuery).setParameter("caName", "UNKNOWN");
+        verify(caStatEventQuery).setParameter("event", "deleted");
+        verify(caStatEventQuery).setParameter("roasAdded", 0);
+        verify(caStatEventQuery).setParameter("roasDeleted", 0);
+        verify(caStatEventQuery).executeUpdate();
+    }
+
+    @Test
+    public void shouldNotRecordCaStatEventForOtherCommands() {
+        when(authStrategy.getOriginalUserId()).thenReturn(TEST_USER);
+
+        KeyManagementInitiateRollCommand command = new KeyManagementInitiateRollCommand(new VersionedId(1), 120);
+        subject.finishRecording(subject.startRecording(command));
+
+        verify(entityManager, never()).createNativeQuery(anyString());
+    }
 }
@@ -0,0 +1,86 @@
+package net.ripe.rpki.bgpris;
+
+import net.ripe.ipresource.Asn;
+import net.ripe.ipresource.IpRange;
+import net.ripe.rpki.server.api.dto.BgpRisEntry;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BgpRisEntryIndexTest {
+
+    private static final BgpRisEntry ENTRY_10_8 = entry("AS65000", "10.0.0.0/8");
+    private static final BgpRisEntry ENTRY_10_16 = entry("AS65001", "10.0.0.0/16");
+    private static final BgpRisEntry ENTRY_10_1_16 = entry("AS65002", "10.1.0.0/16");
+    private static final BgpRisEntry ENTRY_10_1_1_24 = entry("AS65003", "10.1.1.0/24");
+    private static final BgpRisEntry ENTRY_2001_DB8_32 = entry("AS4200000000", "2001:db8::/32");
+    private static final BgpRisEntry ENTRY_FFCE_16 = entry("AS65004", "ffce::/16");
+    private static final BgpRisEntry ENTRY_FFCE_1_32 = entry("AS65005", "ffce:1::/32");
+
+    private final BgpRisEntryIndex subject = index(ENTRY_10_8, ENTRY_10_16, ENTRY_10_1_16, ENTRY_10_1_1_24,
+        ENTRY_2001_DB8_32, ENTRY_FFCE_16, ENTRY_FFCE_1_32);
+
+    @Test
+    public void should_be_empty_without_entries() {
+        assertTrue(BgpRisEntryIndex.EMPTY.isEmpty());
+        assertEquals(7, subject.size());
+    }
+
+    @Test
+    public void should_store_duplicate_entries_once() {
+        BgpRisEntry otherOrigin = entry("AS65009", "10.0.0.0/8");
+        BgpRisEntryIndex index = index(ENTRY_10_8, otherOrigin, ENTRY_10_8);
+
+        assertEquals(2, index.size());
+        assertEquals(entries(ENTRY_10_8, otherOrigin), contained(index, "10.0.0.0/8"));
+    }
+
+    @Test
+    public void should_find_exact_and_more_specific_entries() {
+        assertEquals(entries(ENTRY_10_16, ENTRY_10_1_16, ENTRY_10_1_1_24), contained(subject, "10.0.0.0/15"));
+        assertEquals(entries(ENTRY_10_1_16, ENTRY_10_1_1_24), contained(subject, "10.1.0.0/16"));
+        assertEquals(entries(ENTRY_2001_DB8_32), contained(subject, "2001::/16"));
+        assertEquals(entries(ENTRY_FFCE_16, ENTRY_FFCE_1_32), contained(subject, "ff00::/8"));
+    }
+
+    @Test
+    public void should_find_less_specific_entries_only_when_not_covered() {
+        assertEquals(entries(), lessSpecific(subject, "10.0.0.0/15"));
+        assertEquals(entries(ENTRY_10_8), lessSpecific(subject, "10.0.0.0/14"));
+        assertEquals(entries(ENTRY_10_1_16), lessSpecific(subject, "10.1.0.0/23"));
+        assertEquals(entries(ENTRY_10_1_16), lessSpecific(subject, "10.1.2.0/24"));
+        assertEquals(entries(ENTRY_FFCE_16), lessSpecific(subject, "ffce:2::/32"));
+        assertEquals(entries(), lessSpecific(subject, "11.0.0.0/8"));
+    }
+
+    private static Collection<BgpRisEntry> contained(BgpRisEntryIndex index, String prefix) {
+        Collection<BgpRisEntry> result = new HashSet<>();
+        index.lookup(IpRange.parse(prefix), result, new HashSet<>());
+        return result;
+    }
+
+    private static Collection<BgpRisEntry> lessSpecific(BgpRisEntryIndex index, String prefix) {
+        Collection<BgpRisEntry> result = new HashSet<>();
+        index.lookup(IpRange.parse(prefix), new HashSet<>(), result);
+        return result;
+    }
+
+    private static BgpRisEntryIndex index(BgpRisEntry... entries) {
+        BgpRisEntryIndex.Builder builder = new BgpRisEntryIndex.Builder();
+        Arrays.stream(entries).forEach(builder::add);
+        return builder.build();
+    }
+
+    private static BgpRisEntry entry(String origin, String prefix) {
+        return new BgpRisEntry(Asn.parse(origin), IpRange.parse(prefix), 10);
+    }
+
+    private static Collection<BgpRisEntry> entries(BgpRisEntry... entries) {
+        return new HashSet<>(Arrays.asList(entries));
+    }
+}
@@ -46,7 +46,7 @@ public class RisWhoisFetcherTest {
 
     @Test
     public void test() throws Exception {
-        String data = subject.fetch("http://localhost:39443/");
+        String data = subject.fetch("http://localhost:39443/", IOUtils::toString);
         assertTrue(data, data.contains("45528\t1.22.52.0/23\t99"));
     }
 
@@ -3,11 +3,15 @@ package net.ripe.rpki.bgpris.riswhois;
 import net.ripe.ipresource.Asn;
 import net.ripe.ipresource.IpRange;
 import net.ripe.rpki.server.api.dto.BgpRisEntry;
+import net.ripe.rpki.util.GeneratedReader;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.*;
 
@@ -52,4 +56,33 @@ public class RisWhoisParserTest {
         assertEquals(Collections.singletonList(new BgpRisEntry(Asn.parse("3333"), IpRange.parse("127.0.0.0/8"), 201)), RisWhoisParser.parse("%This is a comment\n3333\t127.0.0.0/8\t201"));
     }
 
+    @Test
+    public void shouldStreamLargeDumpWithBoundedMemory() throws IOException {
+        int lines = 300_000;
+        GeneratedReader dump = new GeneratedReader(lines, RisWhoisParserTest::line);
+        AtomicInteger count = new AtomicInteger();
+        AtomicLong charactersOfParsedEntries = new AtomicLong();
+        AtomicLong maximumReadAhead = new AtomicLong();
+
+        int parsed = RisWhoisParser.parse(dump, entry -> {
+            int index = count.getAndIncrement();
+            String[] fields = line(index).trim().split("\t");
+            assertEquals(new BgpRisEntry(Asn.parse(fields[0]), IpRange.parse(fields[1]), Integer.parseInt(fields[2])), entry);
+            charactersOfParsedEntries.addAndGet(line(index).length());
+            maximumReadAhead.accumulateAndGet(dump.getCharactersRead() - charactersOfParsedEntries.get(), Math::max);
+        });
+
+        assertEquals(lines, parsed);
+        assertEquals(lines, count.get());
+        // Every entry is passed on after reading at most a buffer beyond it, not after reading the whole dump.
+        assertTrue("read " + maximumReadAhead.get() + " characters ahead of the parsed entries", maximumReadAhead.get() <= 64 * 1024);
+    }
+
+    private static String line(int i) {
+        if (i % 2 == 0) {
+            return (i % 65000 + 1) + "\t" + (i >>> 16 & 0xff) + "." + (i >>> 8 & 0xff) + "." + (i & 0xff) + ".0/24\t" + (i % 300 + 1) + "\n";
+        } else {
+            return (i % 65000 + 1) + "\t2001:" + Integer.toHexString(i >>> 16 & 0xffff) + ":" + Integer.toHexString(i & 0xffff) + "::/48\t" + (i % 300 + 1) + "\n";
+        }
+    }
 }
@@ -2,6 +2,7 @@ package net.ripe.rpki.core.write.services.command;
 
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.ripe.rpki.commons.util.VersionedId;
+import net.ripe.rpki.domain.PublicationRequestService;
 import net.ripe.rpki.domain.audit.CommandAuditService;
 import net.ripe.rpki.server.api.commands.CertificateAuthorityCommand;
 import net.ripe.rpki.server.api.commands.CommandContext;
@@ -36,6 +37,7 @@ import static org.mockito.Mockito.*;
 public class CommandServiceImplTest {
 
     private MessageDispatcher messageDispatcher;
+    private PublicationRequestService publicationRequestService;
     private List<TransactionStatus> transactionStatuses;
 
 
@@ -48,6 +50,7 @@ public class CommandServiceImplTest {
     public void setUp() {
         command = mock(CertificateAuthorityCommand.class);
         messageDispatcher = mock(MessageDispatcher.class);
+        publicationRequestService = mock(PublicationRequestService.class);
         transactionStatuses = new ArrayList<>();
         CommandAuditService commandAuditService = mock(CommandAuditService.class);
         when(commandAuditService.startRecording(any())).thenAnswer((args) -> new CommandContext(args.getArgument(0)));
@@ -61,7 +64,7 @@ public class CommandServiceImplTest {
         };
 
         meterRegistry = new SimpleMeterRegistry();
-        subject = new CommandServiceImpl(messageDispatcher, transactionTemplate, Collections.emptyList(), commandAuditService, null, meterRegistry);
+        subject = new CommandServiceImpl(messageDispatcher, transactionTemplate, Collections.emptyList(), commandAuditService, null, publicationRequestService, meterRegistry);
     }
 
     @Test
@@ -70,6 +73,21 @@ public class CommandServiceImplTest {
         verify(messageDispatcher).dispatch(command, status);
     }
 
+    @Test
+    public void should_request_publication_when_command_has_effect() {
+        subject.execute(command);
+        verify(publicationRequestService).requestPublication(command);
+    }
+
+    @Test
+    public void should_not_request_publication_when_command_has_no_effect() {
+        doThrow(new CommandWithoutEffectException(command)).when(messageDispatcher).dispatch(eq(command), any(CommandStatus.class));
+
+        subject.execute(command);
+
+        verify(publicationRequestService, never()).requestPublication(any());
+    }
+
     @Test
     public void should_rollback_transaction_when_dispatcher_throws_command_without_effect_exception() {
         doThrow(new CommandWithoutEffectException(command)).when(messageDispatcher).dispatch(eq(command), any(CommandStatus.class));
@@ -8,6 +8,7 @@ import net.ripe.rpki.domain.aspa.AspaEntityService;
 import net.ripe.rpki.domain.crl.CrlEntityRepository;
 import net.ripe.rpki.domain.interca.CertificateIssuanceRequest;
 import net.ripe.rpki.domain.interca.CertificateIssuanceResponse;
+import net.ripe.rpki.domain.manifest.ManifestAndCrlSummaryCache;
 import net.ripe.rpki.domain.manifest.ManifestEntityRepository;
 import net.ripe.rpki.domain.manifest.ManifestPublicationService;
 import net.ripe.rpki.domain.roa.RoaEntityService;
@@ -74,6 +75,9 @@ public abstract class CertificationDomainTestCase {
     @Autowired
     protected ManifestEntityRepository manifestEntityRepository;
 
+    @Autowired
+    protected ManifestAndCrlSummaryCache manifestAndCrlSummaryCache;
+
     @Autowired
     protected KeyPairService keyPairService;
 
@@ -99,6 +103,7 @@ public abstract class CertificationDomainTestCase {
             manifestEntityRepository,
             singleUseKeyPairFactory,
             singleUseEeCertificateFactory,
+            manifestAndCrlSummaryCache,
             meterRegistry
         );
         Environment.load();
@@ -0,0 +1,77 @@
+package net.ripe.rpki.domain;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.commons.crypto.util.KeyPairFactory;
+import net.ripe.rpki.commons.crypto.util.PregeneratedKeyPairFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SingleUseKeyPairFactoryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private SingleUseKeyPairFactory subject;
+
+    @After
+    public void tearDown() {
+        subject.close();
+    }
+
+    @Test
+    public void should_take_key_pairs_from_pool_when_available() throws InterruptedException {
+        subject = new SingleUseKeyPairFactory(PregeneratedKeyPairFactory.getInstance(), 2, 1, meterRegistry);
+        waitForPoolSize(2);
+
+        assertNotNull(subject.get());
+
+        assertEquals(1, meterRegistry.get("rpkicore.single.use.key.pair.wait.time").tag("source", "pool").timer().count());
+        assertEquals(0, meterRegistry.get("rpkicore.single.use.key.pair.wait.time").tag("source", "generated").timer().count());
+    }
+
+    @Test
+    public void should_generate_key_pair_when_pool_is_drained() {
+        subject = new SingleUseKeyPairFactory(PregeneratedKeyPairFactory.getInstance(), 2, 0, meterRegistry);
+
+        assertNotNull(subject.get());
+
+        assertEquals(0, meterRegistry.get("rpkicore.single.use.key.pair.wait.time").tag("source", "pool").timer().count());
+        assertEquals(1, meterRegistry.get("rpkicore.single.use.key.pair.wait.time").tag("source", "generated").timer().count());
+    }
+
+    @Test
+    public void should_keep_refilling_pool_after_key_pair_generation_fails() throws InterruptedException {
+        KeyPairFactory keyPairFactory = mock(KeyPairFactory.class);
+        when(keyPairFactory.withProvider(anyString())).thenReturn(keyPairFactory);
+        when(keyPairFactory.generate())
+            .thenThrow(new IllegalStateException("key pair generation failed"))
+            .thenReturn(PregeneratedKeyPairFactory.getInstance().generate());
+
+        subject = new SingleUseKeyPairFactory(keyPairFactory, 2, 1, meterRegistry);
+        waitForPoolSize(2);
+
+        assertEquals(2, meterRegistry.get("rpkicore.single.use.key.pair.pool.refilled").counter().count(), 0.1);
+    }
+
+    @Test
+    public void should_generate_key_pairs_without_pool() {
+        subject = new SingleUseKeyPairFactory(PregeneratedKeyPairFactory.getInstance());
+
+        assertNotNull(subject.get());
+    }
+
+    private void waitForPoolSize(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (meterRegistry.get("rpkicore.single.use.key.pair.pool.size").gauge().value() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, meterRegistry.get("rpkicore.single.use.key.pair.pool.size").gauge().value(), 0.1);
+    }
+}
@@ -85,7 +85,7 @@ public class CrlEntityTest extends CertificationDomainTestCase {
         subject.update(validityPeriod, resourceCertificateRepository);
 
         now = now.plusHours(8);
-        assertFalse(subject.isUpdateNeeded(now, resourceCertificateRepository));
+        assertFalse(subject.isUpdateNeeded(now, resourceCertificateRepository, manifestAndCrlSummaryCache));
     }
 
     @Test
@@ -93,7 +93,7 @@ public class CrlEntityTest extends CertificationDomainTestCase {
         subject.update(validityPeriod, resourceCertificateRepository);
 
         now = now.plusHours(8).plusMinutes(1);
-        assertTrue(subject.isUpdateNeeded(now, resourceCertificateRepository));
+        assertTrue(subject.isUpdateNeeded(now, resourceCertificateRepository, manifestAndCrlSummaryCache));
     }
 
     @Test
@@ -102,7 +102,18 @@ public class CrlEntityTest extends CertificationDomainTestCase {
         OutgoingResourceCertificate revokedCertificate = resourceCertificateRepository.findLatestOutgoingCertificate(keyPair.getPublicKey(), keyPair);
         revokedCertificate.revoke();
 
-        assertTrue(subject.isUpdateNeeded(validityPeriod.getNotValidBefore(), resourceCertificateRepository));
+        assertTrue(subject.isUpdateNeeded(validityPeriod.getNotValidBefore(), resourceCertificateRepository, manifestAndCrlSummaryCache));
+    }
+
+    @Test
+    public void shouldNotUpdateWhenRevokedEntriesAreUnchanged() {
+        OutgoingResourceCertificate revokedCertificate = resourceCertificateRepository.findLatestOutgoingCertificate(keyPair.getPublicKey(), keyPair);
+        revokedCertificate.revoke();
+        subject.update(validityPeriod, resourceCertificateRepository);
+
+        assertFalse(subject.isUpdateNeeded(validityPeriod.getNotValidBefore(), resourceCertificateRepository, manifestAndCrlSummaryCache));
+        // Second check uses the cached summary of the same CRL
+        assertFalse(subject.isUpdateNeeded(validityPeriod.getNotValidBefore(), resourceCertificateRepository, manifestAndCrlSummaryCache));
     }
 
     @Test
@@ -115,7 +126,7 @@ public class CrlEntityTest extends CertificationDomainTestCase {
 
         keyPair.revoke(publishedObjectRepository);
 
-        assertFalse(subject.isUpdateNeeded(now, resourceCertificateRepository));
+        assertFalse(subject.isUpdateNeeded(now, resourceCertificateRepository, manifestAndCrlSummaryCache));
     }
 
     @Test
@@ -127,7 +138,7 @@ public class CrlEntityTest extends CertificationDomainTestCase {
         subject.update(new ValidityPeriod(now, now.plusHours(24)), resourceCertificateRepository);
 
         DateTimeUtils.setCurrentMillisFixed(certificateToRevoke.getNotValidAfter().plusHours(1).getMillis());
-        assertFalse(subject.isUpdateNeeded(now, resourceCertificateRepository));
+        assertFalse(subject.isUpdateNeeded(now, resourceCertificateRepository, manifestAndCrlSummaryCache));
     }
 
     @Ignore
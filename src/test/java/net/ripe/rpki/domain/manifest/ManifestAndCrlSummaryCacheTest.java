@@ -0,0 +1,46 @@
+package net.ripe.rpki.domain.manifest;
+
+import net.ripe.rpki.domain.GenericPublishedObject;
+import net.ripe.rpki.domain.PublishedObject;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ManifestAndCrlSummaryCacheTest {
+
+    private final ManifestAndCrlSummaryCache subject = new ManifestAndCrlSummaryCache();
+
+    @Test
+    public void should_summarize_same_content_once() {
+        AtomicInteger summarized = new AtomicInteger();
+
+        String first = subject.get(publishedObject(new byte[]{1, 2, 3}), String.class, () -> "summary-" + summarized.incrementAndGet());
+        String second = subject.get(publishedObject(new byte[]{1, 2, 3}), String.class, () -> "summary-" + summarized.incrementAndGet());
+
+        assertThat(first).isEqualTo("summary-1");
+        assertThat(second).isEqualTo("summary-1");
+        assertThat(summarized).hasValue(1);
+    }
+
+    @Test
+    public void should_summarize_changed_content() {
+        assertThat(subject.get(publishedObject(new byte[]{1, 2, 3}), String.class, () -> "first")).isEqualTo("first");
+        assertThat(subject.get(publishedObject(new byte[]{4, 5, 6}), String.class, () -> "second")).isEqualTo("second");
+    }
+
+    @Test
+    public void should_replace_summary_of_other_type() {
+        assertThat(subject.get(publishedObject(new byte[]{1, 2, 3}), String.class, () -> "summary")).isEqualTo("summary");
+        assertThat(subject.get(publishedObject(new byte[]{1, 2, 3}), Integer.class, () -> 42)).isEqualTo(42);
+    }
+
+    private static PublishedObject publishedObject(byte[] content) {
+        PublishedObject publishedObject = mock(PublishedObject.class);
+        when(publishedObject.getContentSha256()).thenReturn(GenericPublishedObject.sha256(content));
+        return publishedObject;
+    }
+}
@@ -84,21 +84,21 @@ public class ManifestEntityTest extends CertificationDomainTestCase {
         subject = new ManifestEntity(currentKeyPair);
 
         assertNull(subject.getManifestCms());
-        assertTrue(subject.isUpdateNeeded(now, initialEntries));
+        assertTrue(subject.isUpdateNeeded(now, initialEntries, manifestAndCrlSummaryCache));
     }
 
     @Test
     public void shouldRequireUpdateWhenCloseToNextUpdateTime() {
         DateTime now = this.now.plusHours(8).plusMinutes(1);
 
-        assertTrue(subject.isUpdateNeeded(now, initialEntries));
+        assertTrue(subject.isUpdateNeeded(now, initialEntries, manifestAndCrlSummaryCache));
     }
 
     @Test
     public void shouldNotUpdateTooSoon() {
         DateTime now = this.now.plusHours(8);
 
-        assertFalse(subject.isUpdateNeeded(now, initialEntries));
+        assertFalse(subject.isUpdateNeeded(now, initialEntries, manifestAndCrlSummaryCache));
     }
 
     @Test
@@ -125,14 +125,14 @@ public class ManifestEntityTest extends CertificationDomainTestCase {
             resourceCertificateRepository
         );
 
-        assertTrue(subject.isUpdateNeeded(now, initialEntries));
+        assertTrue(subject.isUpdateNeeded(now, initialEntries, manifestAndCrlSummaryCache));
     }
 
     @Test
     public void shouldRequireUpdateWhenManifestEntriesChange() {
-        assertFalse("no update when entries are the same", subject.isUpdateNeeded(now, initialEntries));
+        assertFalse("no update when entries are the same", subject.isUpdateNeeded(now, initialEntries, manifestAndCrlSummaryCache));
         assertTrue("update required when entries change",
-                subject.isUpdateNeeded(now, Collections.singleton(publishedObject2)));
+                subject.isUpdateNeeded(now, Collections.singleton(publishedObject2), manifestAndCrlSummaryCache));
     }
 
     @Test
@@ -22,6 +22,7 @@ import net.ripe.rpki.domain.roa.RoaEntity;
 import net.ripe.rpki.domain.roa.RoaEntityRepository;
 import net.ripe.rpki.server.api.dto.AspaAfiLimit;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
 import org.joda.time.DateTimeZone;
 import org.junit.Before;
 import org.junit.Test;
@@ -160,6 +161,7 @@ public class ManifestPublicationServiceTest extends CertificationDomainTestCase
         entityManager.flush();
 
         roaConfigurationRepository.getOrCreateByCertificateAuthority(ca).addPrefix(Collections.singleton(new RoaConfigurationPrefix(Asn.parse("AS3333"), IpRange.parse("10.0.0.0/8"))));
+        ca.reconciliationNeeded(ReconciliationReason.ROA_CONFIGURATION);
         subject.updateManifestAndCrlIfNeeded(ca);
 
         List<RoaEntity> roas = roaEntityRepository.findByCertificateSigningKeyPair(currentKeyPair);
@@ -185,6 +187,7 @@ public class ManifestPublicationServiceTest extends CertificationDomainTestCase
     @Test
     public void should_update_roa_entities() {
         roaConfigurationRepository.getOrCreateByCertificateAuthority(ca).addPrefix(Collections.singleton(new RoaConfigurationPrefix(Asn.parse("AS3333"), IpRange.parse("10.0.0.0/8"))));
+        ca.reconciliationNeeded(ReconciliationReason.ROA_CONFIGURATION);
 
         assertThat(roaEntityRepository.findByCertificateSigningKeyPair(currentKeyPair)).describedAs("current ROA entities").isEmpty();
 
@@ -201,6 +204,7 @@ public class ManifestPublicationServiceTest extends CertificationDomainTestCase
     @Test
     public void should_update_aspa_entities() {
         aspaConfigurationRepository.add(new AspaConfiguration(ca, Asn.parse("AS64512"), Collections.singletonMap(Asn.parse("AS1"), AspaAfiLimit.ANY)));
+        ca.reconciliationNeeded(ReconciliationReason.ASPA_CONFIGURATION);
 
         assertThat(aspaEntityRepository.findByCertificateSigningKeyPair(currentKeyPair)).describedAs("current ASPA entities").isEmpty();
 
@@ -213,4 +217,24 @@ public class ManifestPublicationServiceTest extends CertificationDomainTestCase
         PublishedObject aspa = aspas.get(0).getPublishedObject();
         assertThat(updatedManifest.verifyFileContents(aspa.getFilename(), aspa.getContent())).isTrue();
     }
+
+    @Test
+    public void should_only_renew_manifest_and_crl_when_no_reconciliation_is_needed() {
+        subject.updateManifestAndCrlIfNeeded(ca);
+        ca.manifestAndCrlCheckCompleted();
+        ManifestCms originalManifest = manifestEntityRepository.findByKeyPairEntity(currentKeyPair).getManifestCms();
+
+        // Configuration changed without recording a reason, so the routine renewal must not issue the ROA
+        roaConfigurationRepository.getOrCreateByCertificateAuthority(ca).addPrefix(Collections.singleton(new RoaConfigurationPrefix(Asn.parse("AS3333"), IpRange.parse("10.0.0.0/8"))));
+        DateTimeUtils.setCurrentMillisFixed(now.plus(ManifestPublicationService.TIME_TO_NEXT_UPDATE).getMillis());
+        try {
+            assertThat(subject.updateManifestAndCrlIfNeeded(ca)).describedAs("manifest and CRL renewed").isEqualTo(1);
+        } finally {
+            DateTimeUtils.setCurrentMillisSystem();
+        }
+
+        assertThat(roaEntityRepository.findByCertificateSigningKeyPair(currentKeyPair)).describedAs("ROA entities").isEmpty();
+        ManifestCms renewedManifest = manifestEntityRepository.findByKeyPairEntity(currentKeyPair).getManifestCms();
+        assertThat(renewedManifest.getNumber()).isGreaterThan(originalManifest.getNumber());
+    }
 }
@@ -6,7 +6,9 @@ import net.ripe.rpki.domain.ManagedCertificateAuthority;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -48,4 +50,25 @@ public class RoaConfigurationTest {
 
         assertEquals(Collections.EMPTY_SET, subject.getPrefixes());
     }
+
+    @Test
+    public void should_return_actual_changes() {
+        assertEquals(Collections.singleton(AS3333_10_8_NULL), subject.addPrefix(Collections.singleton(AS3333_10_8_NULL)));
+        assertEquals(Collections.emptySet(), subject.addPrefix(Collections.singleton(AS3333_10_8_NULL)));
+        assertEquals(Collections.singleton(AS3333_10_8_16), subject.addPrefix(Collections.singleton(AS3333_10_8_16)));
+
+        assertEquals(Collections.emptySet(), subject.removePrefix(Collections.singleton(AS3333_10_8_NULL)));
+        assertEquals(Collections.singleton(AS3333_10_8_16), subject.removePrefix(Collections.singleton(AS3333_10_8_16)));
+        assertEquals(Collections.EMPTY_SET, subject.getPrefixes());
+    }
+
+    @Test
+    public void should_keep_unchanged_prefixes_when_setting_prefixes() {
+        RoaConfigurationPrefix as3333_11_8 = new RoaConfigurationPrefix(Asn.parse("AS3333"), IpRange.parse("11/8"), null);
+        subject.addPrefix(Collections.singleton(AS3333_10_8_NULL));
+
+        subject.setPrefixes(Arrays.asList(AS3333_10_8_16, as3333_11_8));
+
+        assertEquals(new HashSet<>(Arrays.asList(AS3333_10_8_16, as3333_11_8)), subject.getPrefixes());
+    }
 }
@@ -0,0 +1,62 @@
+package net.ripe.rpki.ncc.core.domain.support;
+
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.domain.property.PropertyEntity;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+public class EntityIdAllocationTest extends CertificationDomainTestCase {
+
+    private Statistics statistics;
+
+    @Before
+    public void setUp() {
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    public void should_allocate_ids_in_blocks_and_batch_inserts() {
+        List<PropertyEntity> properties = createProperties(40);
+
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(40);
+        assertThat(properties.stream().map(PropertyEntity::getId).distinct()).hasSize(40);
+        // At most two id blocks and one batched insert per block, instead of a sequence call and an insert per entity.
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    public void should_never_allocate_ids_returned_by_nextval() {
+        long direct = ((Number) entityManager.createNativeQuery("SELECT nextval('seq_all')").getSingleResult()).longValue();
+
+        List<PropertyEntity> properties = createProperties(3 * EntitySupport.SEQ_ALL_ALLOCATION_SIZE);
+
+        assertThat(properties.stream().map(PropertyEntity::getId)).doesNotContain(direct);
+    }
+
+    private List<PropertyEntity> createProperties(int count) {
+        List<PropertyEntity> properties = IntStream.range(0, count)
+            .mapToObj(i -> new PropertyEntity("id.allocation.test." + i, "value"))
+            .collect(Collectors.toList());
+        properties.forEach(entityManager::persist);
+        entityManager.flush();
+        return properties;
+    }
+}
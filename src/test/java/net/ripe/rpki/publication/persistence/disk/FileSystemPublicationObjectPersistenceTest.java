@@ -16,11 +16,11 @@ import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Timestamp;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static net.ripe.rpki.publication.persistence.disk.FileSystemPublicationObjectPersistence.PUBLICATION_DIRECTORY_PATTERN;
 import static org.junit.Assert.assertArrayEquals;
@@ -58,7 +58,7 @@ public class FileSystemPublicationObjectPersistenceTest {
         subject = new FileSystemPublicationObjectPersistence(
             ONLINE_REPOSITORY_BASE_URI, onlineRepositoryBaseDirectory.toString(),
             TA_REPOSITORY_BASE_URI, taRepositoryBaseDirectory.toString(),
-            120, 1);
+            120, 1, false);
     }
 
     @After
@@ -80,7 +80,7 @@ public class FileSystemPublicationObjectPersistenceTest {
     public void should_write_contents_of_publish_request_to_online_repository() throws IOException {
         URI uri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/bar.cer");
 
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
 
         assertArrayEquals(CONTENTS, FileUtils.readFileToByteArray(new File(onlineRepositoryBaseDirectory, "published/foo/bar.cer")));
     }
@@ -89,7 +89,7 @@ public class FileSystemPublicationObjectPersistenceTest {
     public void should_set_last_modification_time_of_published_object() {
         URI uri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/bar.cer");
 
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
 
         assertEquals(CREATED_AT.getTime() / 1000, new File(onlineRepositoryBaseDirectory, "published/foo/bar.cer").lastModified() / 1000);
     }
@@ -98,7 +98,7 @@ public class FileSystemPublicationObjectPersistenceTest {
     public void should_set_last_modification_time_internal_directories() throws IOException {
         URI uri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/baz/bar.cer");
 
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
 
         assertEquals(FileSystemPublicationObjectPersistence.INTERNAL_DIRECTORY_LAST_MODIFIED_TIME, Files.getLastModifiedTime(new File(onlineRepositoryBaseDirectory, "published/foo").toPath()));
         assertEquals(FileSystemPublicationObjectPersistence.INTERNAL_DIRECTORY_LAST_MODIFIED_TIME, Files.getLastModifiedTime(new File(onlineRepositoryBaseDirectory, "published/foo/baz").toPath()));
@@ -108,7 +108,7 @@ public class FileSystemPublicationObjectPersistenceTest {
     public void should_write_contents_of_publish_request_to_ta_repository() throws IOException {
         URI uri = TA_REPOSITORY_BASE_URI.resolve("foo/bar.cer");
 
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
 
         assertArrayEquals(CONTENTS, FileUtils.readFileToByteArray(new File(taRepositoryBaseDirectory, "published/foo/bar.cer")));
     }
@@ -118,13 +118,13 @@ public class FileSystemPublicationObjectPersistenceTest {
         URI uri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/bar.cer");
 
         DateTimeUtils.setCurrentMillisFixed(1619000000000L);
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
 
         Path targetDirectory = Files.readSymbolicLink(new File(onlineRepositoryBaseDirectory, "published").toPath());
         assertEquals("published-2021-04-21T10:13:20.000Z", targetDirectory.toString());
 
         DateTimeUtils.setCurrentMillisFixed(1619000000000L + TimeUnit.MINUTES.toMillis(60));
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
 
         targetDirectory = Files.readSymbolicLink(new File(onlineRepositoryBaseDirectory, "published").toPath());
         assertEquals("published-2021-04-21T11:13:20.000Z", targetDirectory.toString());
@@ -140,7 +140,7 @@ public class FileSystemPublicationObjectPersistenceTest {
         Files.createDirectories(published);
         assertTrue(Files.isDirectory(published));
 
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
 
         assertTrue(Files.isSymbolicLink(published));
         assertTrue(Files.isDirectory(published.resolveSibling("published.bak")));
@@ -151,14 +151,14 @@ public class FileSystemPublicationObjectPersistenceTest {
         URI uri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/bar.cer");
 
         DateTimeUtils.setCurrentMillisFixed(1619000000000L);
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
         assertEquals(Sets.newHashSet(
             "published-2021-04-21T10:13:20.000Z",
             "published"
         ), Sets.newHashSet(onlineRepositoryBaseDirectory.list()));
 
         DateTimeUtils.setCurrentMillisFixed(1619000000000L + TimeUnit.MINUTES.toMillis(60));
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
         assertEquals(Sets.newHashSet(
             "published-2021-04-21T10:13:20.000Z",
             "published",
@@ -166,7 +166,7 @@ public class FileSystemPublicationObjectPersistenceTest {
         ), Sets.newHashSet(onlineRepositoryBaseDirectory.list()));
 
         DateTimeUtils.setCurrentMillisFixed(1619000000000L + TimeUnit.MINUTES.toMillis(150));
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
         assertEquals(Sets.newHashSet(
             "published",
             "published-2021-04-21T11:13:20.000Z",
@@ -181,19 +181,19 @@ public class FileSystemPublicationObjectPersistenceTest {
         subject = new FileSystemPublicationObjectPersistence(
             ONLINE_REPOSITORY_BASE_URI, onlineRepositoryBaseDirectory.getAbsolutePath(),
             TA_REPOSITORY_BASE_URI, taRepositoryBaseDirectory.getAbsolutePath(),
-            120, N);
+            120, N, false);
 
         URI uri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/bar.cer");
 
         DateTimeUtils.setCurrentMillisFixed(1619000000000L);
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
         assertEquals(Sets.newHashSet(
             "published-2021-04-21T10:13:20.000Z",
             "published"
         ), Sets.newHashSet(onlineRepositoryBaseDirectory.list()));
 
         DateTimeUtils.setCurrentMillisFixed(1619000000000L + TimeUnit.MINUTES.toMillis(150));
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
         assertEquals(Sets.newHashSet(
             "published-2021-04-21T10:13:20.000Z",
             "published",
@@ -201,7 +201,7 @@ public class FileSystemPublicationObjectPersistenceTest {
         ), Sets.newHashSet(onlineRepositoryBaseDirectory.list()));
 
         DateTimeUtils.setCurrentMillisFixed(1619000000000L + TimeUnit.MINUTES.toMillis(200));
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
         assertEquals(Sets.newHashSet(
             "published",
             "published-2021-04-21T13:33:20.000Z",
@@ -212,10 +212,10 @@ public class FileSystemPublicationObjectPersistenceTest {
     @Test
     public void should_fail_to_write_with_same_timestamp() {
         URI uri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/old.cer");
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
 
         try {
-            subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+            subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
             fail("IllegalStateException expected");
         } catch (IllegalStateException expected) {
             // expected
@@ -227,12 +227,12 @@ public class FileSystemPublicationObjectPersistenceTest {
         URI oldUri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/old.cer");
         URI newUri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/new.cer");
 
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, oldUri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, oldUri, CONTENTS)));
         assertTrue(new File(onlineRepositoryBaseDirectory, "published/foo/old.cer").exists());
 
         DateTimeUtils.setCurrentMillisFixed(DateTimeUtils.currentTimeMillis() + 100);
 
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(new Timestamp(System.currentTimeMillis()), newUri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(new Timestamp(System.currentTimeMillis()), newUri, CONTENTS)));
 
         assertTrue(new File(onlineRepositoryBaseDirectory, "published/foo/new.cer").exists());
         assertFalse(new File(onlineRepositoryBaseDirectory, "published/foo/old.cer").exists());
@@ -242,21 +242,173 @@ public class FileSystemPublicationObjectPersistenceTest {
     public void should_reject_uri_outside_of_public_repository() {
         URI uri = URI.create("rsync://somewhere/else/bar.cer");
 
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void should_reject_uri_outside_of_public_repository_using_relative_segments() {
         URI uri = ONLINE_REPOSITORY_BASE_URI.resolve("../bar.cer");
 
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void should_reject_relative_uri() {
         URI uri = URI.create("foo/bar.cer");
 
-        subject.writeAll(Collections.singletonList(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+    }
+
+    @Test
+    public void should_link_unchanged_objects_when_writing_incrementally() throws IOException {
+        subject = new FileSystemPublicationObjectPersistence(
+            ONLINE_REPOSITORY_BASE_URI, onlineRepositoryBaseDirectory.getAbsolutePath(),
+            TA_REPOSITORY_BASE_URI, taRepositoryBaseDirectory.getAbsolutePath(),
+            120, 2, true);
+
+        URI unchangedUri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/unchanged.cer");
+        URI updatedUri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/updated.mft");
+        URI withdrawnUri = ONLINE_REPOSITORY_BASE_URI.resolve("bar/withdrawn.roa");
+        URI addedUri = ONLINE_REPOSITORY_BASE_URI.resolve("baz/added.roa");
+        byte[] updatedContents = new byte[]{1, 2, 3};
+
+        DateTimeUtils.setCurrentMillisFixed(1619000000000L);
+        subject.writeAll(Stream.of(
+            new PublishedObjectData(CREATED_AT, unchangedUri, CONTENTS),
+            new PublishedObjectData(CREATED_AT, updatedUri, CONTENTS),
+            new PublishedObjectData(CREATED_AT, withdrawnUri, CONTENTS)
+        ));
+        Path previous = onlineRepositoryBaseDirectory.toPath().resolve("published-2021-04-21T10:13:20.000Z");
+
+        DateTimeUtils.setCurrentMillisFixed(1619000000000L + TimeUnit.MINUTES.toMillis(15));
+        Timestamp updatedAt = new Timestamp(CREATED_AT.getTime() + 1000);
+        subject.writeAll(Stream.of(
+            new PublishedObjectData(CREATED_AT, unchangedUri, CONTENTS),
+            new PublishedObjectData(updatedAt, updatedUri, updatedContents),
+            new PublishedObjectData(updatedAt, addedUri, CONTENTS)
+        ));
+        Path current = onlineRepositoryBaseDirectory.toPath().resolve("published-2021-04-21T10:28:20.000Z");
+        assertEquals(current.getFileName(), Files.readSymbolicLink(onlineRepositoryBaseDirectory.toPath().resolve("published")));
+
+        // unchanged object is the same file in both publication directories
+        assertTrue(Files.isSameFile(previous.resolve("foo/unchanged.cer"), current.resolve("foo/unchanged.cer")));
+        assertArrayEquals(CONTENTS, Files.readAllBytes(current.resolve("foo/unchanged.cer")));
+
+        // updated object is written to a new file, the previous publication directory is not modified
+        assertFalse(Files.isSameFile(previous.resolve("foo/updated.mft"), current.resolve("foo/updated.mft")));
+        assertArrayEquals(updatedContents, Files.readAllBytes(current.resolve("foo/updated.mft")));
+        assertArrayEquals(CONTENTS, Files.readAllBytes(previous.resolve("foo/updated.mft")));
+        assertEquals(updatedAt.getTime() / 1000, Files.getLastModifiedTime(current.resolve("foo/updated.mft")).toMillis() / 1000);
+
+        // withdrawn objects and their now empty directories are gone, added objects are present
+        assertFalse(Files.exists(current.resolve("bar")));
+        assertTrue(Files.exists(previous.resolve("bar/withdrawn.roa")));
+        assertArrayEquals(CONTENTS, Files.readAllBytes(current.resolve("baz/added.roa")));
+        assertEquals(FileSystemPublicationObjectPersistence.INTERNAL_DIRECTORY_LAST_MODIFIED_TIME, Files.getLastModifiedTime(current.resolve("foo")));
+    }
+
+    @Test
+    public void should_write_changed_object_with_same_size_and_creation_time_when_writing_incrementally() throws IOException {
+        subject = new FileSystemPublicationObjectPersistence(
+            ONLINE_REPOSITORY_BASE_URI, onlineRepositoryBaseDirectory.getAbsolutePath(),
+            TA_REPOSITORY_BASE_URI, taRepositoryBaseDirectory.getAbsolutePath(),
+            120, 2, true);
+        URI uri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/bar.cer");
+        byte[] otherContents = CONTENTS.clone();
+        otherContents[0] ^= 1;
+
+        DateTimeUtils.setCurrentMillisFixed(1619000000000L);
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        Path previous = onlineRepositoryBaseDirectory.toPath().resolve("published-2021-04-21T10:13:20.000Z");
+
+        DateTimeUtils.setCurrentMillisFixed(1619000000000L + TimeUnit.MINUTES.toMillis(15));
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, otherContents)));
+        Path current = onlineRepositoryBaseDirectory.toPath().resolve("published-2021-04-21T10:28:20.000Z");
+
+        assertFalse(Files.isSameFile(previous.resolve("foo/bar.cer"), current.resolve("foo/bar.cer")));
+        assertArrayEquals(otherContents, Files.readAllBytes(current.resolve("foo/bar.cer")));
+        assertArrayEquals(CONTENTS, Files.readAllBytes(previous.resolve("foo/bar.cer")));
+    }
+
+    @Test
+    public void should_link_unchanged_objects_written_by_another_process() throws IOException {
+        URI unchangedUri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/unchanged.cer");
+        URI updatedUri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/updated.cer");
+        byte[] updatedContents = CONTENTS.clone();
+        updatedContents[0] ^= 1;
+
+        DateTimeUtils.setCurrentMillisFixed(1619000000000L);
+        subject.writeAll(Stream.of(
+            new PublishedObjectData(CREATED_AT, unchangedUri, CONTENTS),
+            new PublishedObjectData(CREATED_AT, updatedUri, CONTENTS)
+        ));
+        Path previous = onlineRepositoryBaseDirectory.toPath().resolve("published-2021-04-21T10:13:20.000Z");
+
+        // A new instance has no content hashes of the current directory, so it reads the current files
+        subject = new FileSystemPublicationObjectPersistence(
+            ONLINE_REPOSITORY_BASE_URI, onlineRepositoryBaseDirectory.getAbsolutePath(),
+            TA_REPOSITORY_BASE_URI, taRepositoryBaseDirectory.getAbsolutePath(),
+            120, 2, true);
+        DateTimeUtils.setCurrentMillisFixed(1619000000000L + TimeUnit.MINUTES.toMillis(15));
+        subject.writeAll(Stream.of(
+            new PublishedObjectData(CREATED_AT, unchangedUri, CONTENTS),
+            new PublishedObjectData(CREATED_AT, updatedUri, updatedContents)
+        ));
+        Path current = onlineRepositoryBaseDirectory.toPath().resolve("published-2021-04-21T10:28:20.000Z");
+
+        assertTrue(Files.isSameFile(previous.resolve("foo/unchanged.cer"), current.resolve("foo/unchanged.cer")));
+        assertFalse(Files.isSameFile(previous.resolve("foo/updated.cer"), current.resolve("foo/updated.cer")));
+        assertArrayEquals(updatedContents, Files.readAllBytes(current.resolve("foo/updated.cer")));
+    }
+
+    @Test
+    public void should_write_last_object_with_duplicate_uri() throws IOException {
+        URI uri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/bar.cer");
+        byte[] otherContents = new byte[]{1, 2, 3};
+
+        subject.writeAll(Stream.of(
+            new PublishedObjectData(CREATED_AT, uri, CONTENTS),
+            new PublishedObjectData(CREATED_AT, uri, otherContents)
+        ));
+
+        assertArrayEquals(otherContents, FileUtils.readFileToByteArray(new File(onlineRepositoryBaseDirectory, "published/foo/bar.cer")));
+    }
+
+    @Test
+    public void should_not_modify_linked_object_when_replaced_by_duplicate_uri() throws IOException {
+        subject = new FileSystemPublicationObjectPersistence(
+            ONLINE_REPOSITORY_BASE_URI, onlineRepositoryBaseDirectory.getAbsolutePath(),
+            TA_REPOSITORY_BASE_URI, taRepositoryBaseDirectory.getAbsolutePath(),
+            120, 2, true);
+        URI uri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/bar.cer");
+        byte[] otherContents = new byte[]{1, 2, 3};
+
+        DateTimeUtils.setCurrentMillisFixed(1619000000000L);
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+        Path previous = onlineRepositoryBaseDirectory.toPath().resolve("published-2021-04-21T10:13:20.000Z");
+
+        DateTimeUtils.setCurrentMillisFixed(1619000000000L + TimeUnit.MINUTES.toMillis(15));
+        subject.writeAll(Stream.of(
+            new PublishedObjectData(CREATED_AT, uri, CONTENTS),
+            new PublishedObjectData(CREATED_AT, uri, otherContents)
+        ));
+        Path current = onlineRepositoryBaseDirectory.toPath().resolve("published-2021-04-21T10:28:20.000Z");
+
+        assertArrayEquals(otherContents, Files.readAllBytes(current.resolve("foo/bar.cer")));
+        assertArrayEquals(CONTENTS, Files.readAllBytes(previous.resolve("foo/bar.cer")));
+    }
+
+    @Test
+    public void should_write_all_objects_incrementally_without_current_publication_directory() throws IOException {
+        subject = new FileSystemPublicationObjectPersistence(
+            ONLINE_REPOSITORY_BASE_URI, onlineRepositoryBaseDirectory.getAbsolutePath(),
+            TA_REPOSITORY_BASE_URI, taRepositoryBaseDirectory.getAbsolutePath(),
+            120, 1, true);
+        URI uri = ONLINE_REPOSITORY_BASE_URI.resolve("foo/bar.cer");
+
+        subject.writeAll(Stream.of(new PublishedObjectData(CREATED_AT, uri, CONTENTS)));
+
+        assertArrayEquals(CONTENTS, FileUtils.readFileToByteArray(new File(onlineRepositoryBaseDirectory, "published/foo/bar.cer")));
     }
 
     @Test
@@ -6,19 +6,32 @@ import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
-import reactor.core.publisher.Mono;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import reactor.core.publisher.Flux;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static net.ripe.rpki.publication.server.PublishingServerReplies.replyWith;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ExternalPublishingServerTest {
@@ -32,6 +45,8 @@ public class ExternalPublishingServerTest {
     private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
     private final PublishingServerClient publishingServerClient = mock(PublishingServerClient.class);
 
+    private final List<String> queries = new ArrayList<>();
+
     private final String replyDoesntMatter = "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\"></msg>";
 
     @Before
@@ -41,13 +56,12 @@ public class ExternalPublishingServerTest {
 
     @Test
     public void shouldCreateEmptyRequest() {
-        final String query = "<msg xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\" type=\"query\" version=\"3\"/>";
-        ArgumentCaptor<String> xmlCaptor = ArgumentCaptor.forClass(String.class);
+        final String query = "<msg xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\" type=\"query\" version=\"3\"></msg>";
         ArgumentCaptor<String> clientIdCaptor = ArgumentCaptor.forClass(String.class);
-        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), xmlCaptor.capture(), clientIdCaptor.capture())).thenReturn(Mono.just(replyDoesntMatter));
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), clientIdCaptor.capture())).then(replyWith(queries, replyDoesntMatter));
         String clientId = getRandomClientId();
         externalPublishingServer.execute(Collections.emptyList(), clientId);
-        assertEquals(query, xmlCaptor.getValue());
+        assertEquals(Collections.singletonList(query), queries);
         assertEquals(clientId, clientIdCaptor.getValue());
     }
 
@@ -58,16 +72,15 @@ public class ExternalPublishingServerTest {
                 "<withdraw hash=\"not important\" uri=\"rsync://blabla.com/yyy.cer\"/>" +
                 "<publish hash=\"aHash\" uri=\"rsync://blabla.com/xxx.cer\">AQID</publish></msg>";
 
-        ArgumentCaptor<String> xmlCaptor = ArgumentCaptor.forClass(String.class);
         ArgumentCaptor<String> clientIdCaptor = ArgumentCaptor.forClass(String.class);
-        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), xmlCaptor.capture(), clientIdCaptor.capture())).thenReturn(Mono.just(replyDoesntMatter));
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), clientIdCaptor.capture())).then(replyWith(queries, replyDoesntMatter));
         List<PublicationMessage> messages = new ArrayList<>();
         messages.add(new PublicationMessage.PublishRequest(new URI("rsync://blabla.com/xxx.cer"), new byte[]{1, 2, 3}, Optional.empty()));
         messages.add(new PublicationMessage.WithdrawRequest(new URI("rsync://blabla.com/yyy.cer"), "not important"));
         messages.add(new PublicationMessage.PublishRequest(new URI("rsync://blabla.com/xxx.cer"), new byte[]{1, 2, 3}, java.util.Optional.of("aHash")));
         String clientId = getRandomClientId();
         externalPublishingServer.execute(messages, clientId);
-        assertEquals(query, xmlCaptor.getValue());
+        assertEquals(Collections.singletonList(query), queries);
         assertEquals(clientId, clientIdCaptor.getValue());
     }
 
@@ -78,7 +91,7 @@ public class ExternalPublishingServerTest {
     @Test
     public void shouldParseEmptyResponse() {
         String reply = "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\"></msg>";
-        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), anyString(), anyString())).thenReturn(Mono.just(reply));
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), anyString())).then(replyWith(queries, reply));
         List<? extends PublicationMessage> parsedReply = externalPublishingServer.execute(Collections.emptyList(), getRandomClientId());
         assertTrue(parsedReply.isEmpty());
     }
@@ -90,7 +103,7 @@ public class ExternalPublishingServerTest {
                 "<withdraw uri=\"rsync://wombat.example/Alice/bbb.cer\"/>\n" +
                 "<report_error error_code=\"an_error_code\">Bla bla</report_error>\n" +
                 "</msg>";
-        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), anyString(), anyString())).thenReturn(Mono.just(reply));
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), anyString())).then(replyWith(queries, reply));
         List<? extends PublicationMessage> parsedReply = externalPublishingServer.execute(Collections.emptyList(), getRandomClientId());
         assertEquals(3, parsedReply.size());
         PublicationMessage.PublishReply r1 = (PublicationMessage.PublishReply) parsedReply.get(0);
@@ -106,13 +119,12 @@ public class ExternalPublishingServerTest {
     public void should_create_list_request() {
         String query = "<msg xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\" type=\"query\" version=\"3\"><list/></msg>";
 
-        ArgumentCaptor<String> xmlCaptor = ArgumentCaptor.forClass(String.class);
         ArgumentCaptor<String> clientIdCaptor = ArgumentCaptor.forClass(String.class);
-        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), xmlCaptor.capture(), clientIdCaptor.capture())).thenReturn(Mono.just(replyDoesntMatter));
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), clientIdCaptor.capture())).then(replyWith(queries, replyDoesntMatter));
         List<? extends PublicationMessage> messages = Collections.singletonList(new PublicationMessage.ListRequest());
         String clientId = getRandomClientId();
         externalPublishingServer.execute(messages, clientId);
-        assertEquals(query, xmlCaptor.getValue().replaceAll("[\\r\\n]", ""));
+        assertEquals(query, queries.get(0).replaceAll("[\\r\\n]", ""));
         assertEquals(clientId, clientIdCaptor.getValue());
     }
 
@@ -127,7 +139,7 @@ public class ExternalPublishingServerTest {
                 "    <list uri=\"rsync://wombat.example/Alice/blCrcCp9ltyPDNzYKPfxc.mft\"\n" +
                 "          hash=\"6D776A0A90EA55F479F63C15B3BFC8E91CFBEA549439CF9C474AAB738D741224\"/>\n" +
                 "</msg>";
-        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), anyString(), anyString())).thenReturn(Mono.just(reply));
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), anyString())).then(replyWith(queries, reply));
         List<? extends PublicationMessage> parsedReply = externalPublishingServer.execute(Collections.emptyList(), getRandomClientId());
         assertEquals(2, parsedReply.size());
         PublicationMessage.ListReply r1 = (PublicationMessage.ListReply) parsedReply.get(0);
@@ -142,7 +154,7 @@ public class ExternalPublishingServerTest {
     public void should_update_publication_metrics() throws Exception {
         String clientId = RandomStringUtils.randomAlphanumeric(8);
         String reply = "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\"></msg>";
-        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), anyString(), eq(clientId))).thenReturn(Mono.just(reply));
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), eq(clientId))).then(replyWith(queries, reply));
         List<PublicationMessage> messages = Stream.of(
             new PublicationMessage.PublishRequest(new URI("rsync://blabla.com/xxx.cer"), new byte[]{1, 2, 3}, Optional.empty()),
             new PublicationMessage.PublishRequest(new URI("rsync://blabla.com/xxx2.cer"), new byte[]{1, 2, 3, 4}, Optional.empty()),
@@ -157,4 +169,102 @@ public class ExternalPublishingServerTest {
         assertEquals(1.0, meterRegistry.get("rpkicore.publication.operations").tag("operation", "withdraw").tag("type", "unknown").counter().count(), 0.1);
     }
 
+    @Test
+    public void should_split_messages_into_batches_per_publication_directory() throws Exception {
+        externalPublishingServer = new ExternalPublishingServer(publishingServerClient, meterRegistry, PUBLICATION_SERVER_URL, 200, 0, Duration.ZERO);
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), anyString())).then(replyWith(queries, replyDoesntMatter));
+
+        List<PublicationMessage> messages = Arrays.asList(
+            new PublicationMessage.PublishRequest(new URI("rsync://blabla.com/a/xxx.cer"), new byte[]{1, 2, 3}, Optional.empty()),
+            new PublicationMessage.PublishRequest(new URI("rsync://blabla.com/b/xxx.cer"), new byte[]{1, 2, 3}, Optional.empty()),
+            new PublicationMessage.WithdrawRequest(new URI("rsync://blabla.com/a/yyy.cer"), "not important")
+        );
+        externalPublishingServer.execute(messages, getRandomClientId());
+
+        assertEquals(Arrays.asList(
+            "<msg xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\" type=\"query\" version=\"3\">" +
+                "<publish uri=\"rsync://blabla.com/a/xxx.cer\">AQID</publish>" +
+                "<withdraw hash=\"not important\" uri=\"rsync://blabla.com/a/yyy.cer\"/></msg>",
+            "<msg xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\" type=\"query\" version=\"3\">" +
+                "<publish uri=\"rsync://blabla.com/b/xxx.cer\">AQID</publish></msg>"
+        ), queries);
+    }
+
+    @Test
+    public void should_retry_batch_when_publication_server_cannot_be_reached() throws Exception {
+        externalPublishingServer = new ExternalPublishingServer(publishingServerClient, meterRegistry, PUBLICATION_SERVER_URL, 1024, 1, Duration.ZERO);
+        String reply = "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\">" +
+            "<publish uri=\"rsync://blabla.com/xxx.cer\"/>" +
+            "</msg>";
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), anyString()))
+            .thenThrow(new WebClientRequestException(new IOException("connection refused"), HttpMethod.POST, PUBLICATION_SERVER_URL, new HttpHeaders()))
+            .then(replyWith(queries, reply));
+
+        List<? extends PublicationMessage> parsedReply = externalPublishingServer.execute(
+            Collections.singletonList(new PublicationMessage.PublishRequest(new URI("rsync://blabla.com/xxx.cer"), new byte[]{1, 2, 3}, Optional.empty())),
+            getRandomClientId()
+        );
+
+        verify(publishingServerClient, times(2)).publish(eq(PUBLICATION_SERVER_URL), any(), anyString());
+        assertEquals(Collections.singletonList(new PublicationMessage.PublishReply(new URI("rsync://blabla.com/xxx.cer"))), parsedReply);
+    }
+
+    @Test
+    public void should_count_operations_of_retried_batch_once() throws Exception {
+        externalPublishingServer = new ExternalPublishingServer(publishingServerClient, meterRegistry, PUBLICATION_SERVER_URL, 1024, 2, Duration.ZERO);
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), anyString()))
+            .then(invocation -> {
+                // The query is sent completely before the publication server fails
+                PublishingServerReplies.asString(invocation.getArgument(1));
+                return Flux.error(WebClientResponseException.create(503, "Service Unavailable", null, null, null));
+            })
+            .then(replyWith(queries, replyDoesntMatter));
+
+        externalPublishingServer.execute(
+            Arrays.asList(
+                new PublicationMessage.PublishRequest(new URI("rsync://blabla.com/xxx.cer"), new byte[]{1, 2, 3}, Optional.empty()),
+                new PublicationMessage.WithdrawRequest(new URI("rsync://blabla.com/yyy.roa"), "not important")
+            ),
+            getRandomClientId()
+        );
+
+        verify(publishingServerClient, times(2)).publish(eq(PUBLICATION_SERVER_URL), any(), anyString());
+        assertEquals(1.0, meterRegistry.get("rpkicore.publication.operations").tag("operation", "publish").tag("type", "cer").counter().count(), 0.1);
+        assertEquals(1.0, meterRegistry.get("rpkicore.publication.operations").tag("operation", "withdraw").tag("type", "roa").counter().count(), 0.1);
+        assertEquals(queries.get(0).getBytes(StandardCharsets.UTF_8).length, meterRegistry.get("rpkicore.publication.total.payload.size").counter().count(), 0.1);
+    }
+
+    @Test
+    public void should_not_retry_batch_on_client_error() throws Exception {
+        externalPublishingServer = new ExternalPublishingServer(publishingServerClient, meterRegistry, PUBLICATION_SERVER_URL, 1024, 3, Duration.ZERO);
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), anyString()))
+            .thenThrow(WebClientResponseException.create(400, "Bad Request", null, null, null));
+
+        try {
+            externalPublishingServer.execute(
+                Collections.singletonList(new PublicationMessage.PublishRequest(new URI("rsync://blabla.com/xxx.cer"), new byte[]{1, 2, 3}, Optional.empty())),
+                getRandomClientId()
+            );
+            fail("WebClientResponseException expected");
+        } catch (WebClientResponseException expected) {
+            // expected
+        }
+
+        verify(publishingServerClient, times(1)).publish(eq(PUBLICATION_SERVER_URL), any(), anyString());
+        assertEquals(1.0, meterRegistry.get("rpkicore.publication.messages").tag("status", "failure").counter().count(), 0.1);
+    }
+
+    @Test
+    public void should_parse_error_text_split_over_multiple_buffers() {
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), anyString())).thenReturn(Flux.just(
+            "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\">",
+            "<report_error error_code=\"an_error_code\">Bla ",
+            "bla</report_error></msg>"
+        ).map(part -> DefaultDataBufferFactory.sharedInstance.wrap(part.getBytes(StandardCharsets.UTF_8))));
+
+        List<? extends PublicationMessage> parsedReply = externalPublishingServer.execute(Collections.emptyList(), getRandomClientId());
+
+        assertEquals(Collections.singletonList(new PublicationMessage.ErrorReply("an_error_code", "Bla bla")), parsedReply);
+    }
+
 }
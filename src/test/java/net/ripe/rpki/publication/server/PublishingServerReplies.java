@@ -0,0 +1,43 @@
+package net.ripe.rpki.publication.server;
+
+import org.mockito.stubbing.Answer;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stubbing support for {@link PublishingServerClient#publish}, which streams both the query and the reply.
+ */
+public final class PublishingServerReplies {
+
+    private PublishingServerReplies() {
+    }
+
+    /**
+     * Records the query of every call in <code>queries</code> and replies with the given replies in order, repeating
+     * the last reply for any additional calls.
+     */
+    public static Answer<Flux<DataBuffer>> replyWith(List<String> queries, String... replies) {
+        AtomicInteger call = new AtomicInteger();
+        return invocation -> {
+            Flux<DataBuffer> query = invocation.getArgument(1);
+            queries.add(asString(query));
+            String reply = replies[Math.min(call.getAndIncrement(), replies.length - 1)];
+            return Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(reply.getBytes(StandardCharsets.UTF_8)));
+        };
+    }
+
+    public static String asString(Flux<DataBuffer> buffers) {
+        DataBuffer joined = DataBufferUtils.join(buffers).block();
+        try {
+            return joined == null ? "" : joined.toString(StandardCharsets.UTF_8);
+        } finally {
+            DataBufferUtils.release(joined);
+        }
+    }
+}
@@ -2,7 +2,11 @@ package net.ripe.rpki.rest.service;
 
 import net.ripe.rpki.TestRpkiBootApplication;
 import net.ripe.rpki.server.api.dto.CaStat;
+import net.ripe.rpki.server.api.dto.CaStatCaEvent;
+import net.ripe.rpki.server.api.dto.CaStatRoaEvent;
 import net.ripe.rpki.server.api.services.read.CertificateAuthorityViewService;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,6 +22,10 @@ import java.util.Arrays;
 import java.util.Collection;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -54,6 +62,39 @@ public class CaStatServiceTest {
                 .andExpect(jsonPath("$.[1].createdAt").value("2013-11-24 20:30:40"));
     }
 
+    @Test
+    public void shouldReturnAllEventsWithoutParameters() throws Exception {
+        when(certificateAuthorityViewService.getCaStatEvents(null, null, 0, null)).thenReturn(Arrays.asList(
+                CaStatCaEvent.created("CN=11", "2011-12-12 12:13:14"),
+                new CaStatRoaEvent("CN=11", "2011-12-12 12:20:00", 2, 0)));
+
+        mockMvc.perform(Rest.get("/api/ca-stat/events"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_JSON))
+                .andExpect(jsonPath("$.[0].caName").value("CN=11"))
+                .andExpect(jsonPath("$.[1].roasAdded").value(2));
+    }
+
+    @Test
+    public void shouldReturnEventsInRangeAndPaged() throws Exception {
+        DateTime from = new DateTime(2022, 1, 1, 0, 0, DateTimeZone.UTC);
+        DateTime to = new DateTime(2022, 2, 1, 0, 0, DateTimeZone.UTC);
+        when(certificateAuthorityViewService.getCaStatEvents(from, to, 100, 50)).thenReturn(Arrays.asList(
+                CaStatCaEvent.deleted("2022-01-15 10:00:00")));
+
+        mockMvc.perform(Rest.get("/api/ca-stat/events?from=2022-01-01T00:00:00Z&to=2022-02-01T00:00:00Z&offset=100&limit=50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].date").value("2022-01-15 10:00:00"));
+    }
+
+    @Test
+    public void shouldRejectNegativePaging() throws Exception {
+        mockMvc.perform(Rest.get("/api/ca-stat/events?limit=-1"))
+                .andExpect(status().isBadRequest());
+
+        verify(certificateAuthorityViewService, never()).getCaStatEvents(any(), any(), anyInt(), any());
+    }
+
     // TODO There should be more tests
 
 }
\ No newline at end of file
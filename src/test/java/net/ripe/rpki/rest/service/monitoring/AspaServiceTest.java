@@ -43,6 +43,9 @@ public class AspaServiceTest {
     @MockBean
     private AspaConfigurationRepository aspaConfigurationRepository;
 
+    @Autowired
+    private MonitoringFeedService monitoringFeedService;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -56,6 +59,7 @@ public class AspaServiceTest {
             new AspaConfiguration(mock(ManagedCertificateAuthority.class), Asn.parse("AS1"), Collections.emptyMap()),
             new AspaConfiguration(mock(ManagedCertificateAuthority.class), Asn.parse("AS2"), providers)
         ));
+        monitoringFeedService.refresh(true);
 
         mockMvc.perform(Rest.get("/api/monitoring/aspa-configurations"))
             .andExpect(status().isOk())
@@ -0,0 +1,100 @@
+package net.ripe.rpki.rest.service.monitoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MonitoringFeedTest {
+
+    private final MonitoringFeed<String> subject = new MonitoringFeed<>("items", Comparator.naturalOrder(), new ObjectMapper(), 1);
+
+    @Test
+    public void should_only_create_new_version_when_database_state_changes() {
+        subject.update("1-2", Arrays.asList("b", "a"));
+        MonitoringFeed.Snapshot<String> first = subject.current();
+
+        subject.update("1-2", Arrays.asList("a", "b"));
+        assertThat(subject.current()).isSameAs(first);
+        assertThat(subject.isCurrent("1-2")).isTrue();
+
+        subject.update("2-1", Collections.singletonList("a"));
+        assertThat(subject.current().version).isEqualTo("2-1");
+        assertThat(subject.current().items).containsExactly("a");
+    }
+
+    @Test
+    public void should_use_same_version_and_entity_tag_on_every_node() {
+        MonitoringFeed<String> otherNode = new MonitoringFeed<>("items", Comparator.naturalOrder(), new ObjectMapper(), 1);
+
+        subject.update("1-2", Arrays.asList("b", "a"));
+        otherNode.update("1-2", Arrays.asList("a", "b"));
+
+        assertThat(otherNode.current().version).isEqualTo(subject.current().version);
+        assertThat(otherNode.current().entityTag).isEqualTo(subject.current().entityTag);
+    }
+
+    @Test
+    public void should_compute_entity_tag_over_items_only() {
+        subject.update("1-2", Arrays.asList("a", "b"));
+        String entityTag = subject.current().entityTag;
+
+        subject.update("3-2", Arrays.asList("a", "b"));
+
+        assertThat(subject.current().version).isEqualTo("3-2");
+        assertThat(subject.current().entityTag).isEqualTo(entityTag);
+    }
+
+    @Test
+    public void should_serve_compressed_document_to_clients_accepting_gzip() throws IOException {
+        subject.update("1-2", Arrays.asList("b", "a"));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+
+        ResponseEntity<?> response = subject.respond(new ServletWebRequest(request, new MockHttpServletResponse()), null, null, null);
+
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream((byte[]) response.getBody()))) {
+            assertThat(IOUtils.toString(in, StandardCharsets.UTF_8))
+                .isEqualTo("{\"items\":[\"a\",\"b\"],\"metadata\":{\"origin\":\"rpki-core\",\"version\":\"1-2\"}}");
+        }
+    }
+
+    @Test
+    public void should_be_unavailable_until_built() {
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
+
+        assertThat(subject.respond(request, null, null, null).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(subject.respond(request, "1-1", null, null).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(subject.respond(request, null, "1-1:0", 10).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void should_reject_changes_since_versions_no_longer_retained() {
+        subject.update("1-1", Collections.singletonList("a"));
+        subject.update("2-1", Collections.singletonList("b"));
+        subject.update("3-1", Collections.singletonList("c"));
+
+        assertThat(respondSince("2-1").getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(respondSince("1-1").getStatusCode()).isEqualTo(HttpStatus.GONE);
+    }
+
+    private ResponseEntity<?> respondSince(String version) {
+        return subject.respond(new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse()), version, null, null);
+    }
+}
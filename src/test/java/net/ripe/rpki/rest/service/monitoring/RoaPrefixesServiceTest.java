@@ -1,11 +1,10 @@
 package net.ripe.rpki.rest.service.monitoring;
 
+import com.jayway.jsonpath.JsonPath;
 import lombok.Setter;
 import net.ripe.ipresource.Asn;
 import net.ripe.ipresource.IpRange;
 import net.ripe.rpki.TestRpkiBootApplication;
-import net.ripe.rpki.domain.ManagedCertificateAuthority;
-import net.ripe.rpki.domain.roa.RoaConfiguration;
 import net.ripe.rpki.domain.roa.RoaConfigurationPrefix;
 import net.ripe.rpki.domain.roa.RoaConfigurationRepository;
 import net.ripe.rpki.rest.service.Rest;
@@ -24,11 +23,11 @@ import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static org.hamcrest.Matchers.hasSize;
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -42,9 +41,15 @@ public class RoaPrefixesServiceTest {
     @MockBean
     private RoaConfigurationRepository roaConfigurationRepository;
 
+    @Autowired
+    private MonitoringFeedService monitoringFeedService;
+
     @Autowired
     private MockMvc mockMvc;
 
+    private static final RoaConfigurationPrefix AS64496_PREFIX = new RoaConfigurationPrefix(Asn.parse("AS64496"), IpRange.parse("192.0.2.0/25"), 32);
+    private static final RoaConfigurationPrefix AS65536_PREFIX = new RoaConfigurationPrefix(Asn.parse("AS65536"), IpRange.parse("192.0.2.128/25"), 32);
+
     private static HttpHeaders ifNoneMatchHeader(MvcResult result) {
         String eTag = result.getResponse().getHeader(HttpHeaders.ETAG);
 
@@ -54,10 +59,9 @@ public class RoaPrefixesServiceTest {
     }
 
     @Test
-    public void shouldAcceptLastModifiedAndReturnArrayOtherwise() throws Exception {
-        final Instant t0 = Instant.now();
-        when(roaConfigurationRepository.lastModified()).thenReturn(Optional.of(t0));
-        when(roaConfigurationRepository.countRoaPrefixes()).thenReturn(42);
+    public void shouldAcceptEntityTagUntilPrefixesChange() throws Exception {
+        when(roaConfigurationRepository.findAllPrefixes()).thenReturn(Collections.singletonList(AS64496_PREFIX));
+        monitoringFeedService.refresh(true);
 
         // Get initial eTag
         MvcResult res = mockMvc.perform(
@@ -75,41 +79,82 @@ public class RoaPrefixesServiceTest {
         )
                 .andExpect(status().isNotModified());
 
-        // Number of objects changes -> new request.
-        when(roaConfigurationRepository.countRoaPrefixes()).thenReturn(43);
-
-        MvcResult res2 = mockMvc.perform(
+        // Rebuilding the feed without changes keeps the version
+        monitoringFeedService.refresh(true);
+        mockMvc.perform(
                         Rest.get("/api/monitoring/roa-prefixes")
                                 .headers(ifNoneMatchHeader(res))
                 )
-                .andExpect(status().isOk())
-                .andReturn();
+                .andExpect(status().isNotModified());
 
-        // Time of last change is updated -> new request
-        when(roaConfigurationRepository.lastModified()).thenReturn(Optional.of(t0.plusSeconds(60)));
+        // Prefixes change -> new request.
+        when(roaConfigurationRepository.findAllPrefixes()).thenReturn(Arrays.asList(AS64496_PREFIX, AS65536_PREFIX));
+        monitoringFeedService.refresh(true);
 
         mockMvc.perform(
                         Rest.get("/api/monitoring/roa-prefixes")
-                                .headers(ifNoneMatchHeader(res2))
+                                .headers(ifNoneMatchHeader(res))
                 )
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roas", hasSize(2)));
+    }
+
+    @Test
+    public void shouldReturnChangesSinceVersion() throws Exception {
+        when(roaConfigurationRepository.countRoaPrefixes()).thenReturn(1);
+        when(roaConfigurationRepository.lastModified()).thenReturn(Optional.of(Instant.ofEpochMilli(1_000)));
+        when(roaConfigurationRepository.findAllPrefixes()).thenReturn(Collections.singletonList(AS64496_PREFIX));
+        monitoringFeedService.refresh(true);
+        String version = JsonPath.read(mockMvc.perform(Rest.get("/api/monitoring/roa-prefixes"))
+                .andReturn().getResponse().getContentAsString(), "$.metadata.version");
+
+        when(roaConfigurationRepository.lastModified()).thenReturn(Optional.of(Instant.ofEpochMilli(2_000)));
+        when(roaConfigurationRepository.findAllPrefixes()).thenReturn(Collections.singletonList(AS65536_PREFIX));
+        monitoringFeedService.refresh(true);
+
+        mockMvc.perform(Rest.get("/api/monitoring/roa-prefixes?since=" + version))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.since").value(version))
+                .andExpect(jsonPath("$.added", hasSize(1)))
+                .andExpect(jsonPath("$.added[0].asn").value("AS65536"))
+                .andExpect(jsonPath("$.removed", hasSize(1)))
+                .andExpect(jsonPath("$.removed[0].asn").value("AS64496"));
+
+        mockMvc.perform(Rest.get("/api/monitoring/roa-prefixes?since=1-1"))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    public void shouldReturnPages() throws Exception {
+        when(roaConfigurationRepository.findAllPrefixes()).thenReturn(Arrays.asList(AS64496_PREFIX, AS65536_PREFIX));
+        monitoringFeedService.refresh(true);
+
+        String cursor = JsonPath.read(mockMvc.perform(Rest.get("/api/monitoring/roa-prefixes?limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roas", hasSize(1)))
+                .andExpect(jsonPath("$.roas[0].asn").value("AS64496"))
+                .andReturn().getResponse().getContentAsString(), "$.nextCursor");
+
+        mockMvc.perform(Rest.get("/api/monitoring/roa-prefixes?limit=1&cursor=" + cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roas", hasSize(1)))
+                .andExpect(jsonPath("$.roas[0].asn").value("AS65536"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        mockMvc.perform(Rest.get("/api/monitoring/roa-prefixes?limit=0"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
     public void shouldReturnObjectsAsJsonMatchingValidatedObjectsShape() throws Exception {
-        when(roaConfigurationRepository.lastModified()).thenReturn(Optional.of(Instant.now()));
-
-        when(roaConfigurationRepository.findAll()).thenReturn(Arrays.asList(
-                new RoaConfiguration(mock(ManagedCertificateAuthority.class), Arrays.asList(
-                    new RoaConfigurationPrefix(Asn.parse("AS64496"), IpRange.parse("192.0.2.0/25"), 32),
-                    new RoaConfigurationPrefix(Asn.parse("AS65536"), IpRange.parse("192.0.2.128/25"), 32),
-                    new RoaConfigurationPrefix(Asn.parse("AS64496"), IpRange.parse("192.0.2.128/25"), 25)
-                )),
-                new RoaConfiguration(mock(ManagedCertificateAuthority.class), Arrays.asList(
-                        new RoaConfigurationPrefix(Asn.parse("AS65551"), IpRange.parse("2001:DB8::/32"), 33),
-                        new RoaConfigurationPrefix(Asn.parse("AS65550"), IpRange.parse("2001:DB8:ABCD::/48"), 48)
-                ))
+        when(roaConfigurationRepository.findAllPrefixes()).thenReturn(Arrays.asList(
+                new RoaConfigurationPrefix(Asn.parse("AS64496"), IpRange.parse("192.0.2.0/25"), 32),
+                new RoaConfigurationPrefix(Asn.parse("AS65536"), IpRange.parse("192.0.2.128/25"), 32),
+                new RoaConfigurationPrefix(Asn.parse("AS64496"), IpRange.parse("192.0.2.128/25"), 25),
+                new RoaConfigurationPrefix(Asn.parse("AS65551"), IpRange.parse("2001:DB8::/32"), 33),
+                new RoaConfigurationPrefix(Asn.parse("AS65550"), IpRange.parse("2001:DB8:ABCD::/48"), 48)
         ));
+        monitoringFeedService.refresh(true);
 
         // shape:
         // ...
@@ -8,7 +8,10 @@ import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 
@@ -58,4 +61,97 @@ public class JpaResourceCacheImplTest extends CertificationDomainTestCase {
         assertEquals(Optional.empty(), resourceCache.lookupResources(CaName.fromMembershipId(3)));
     }
 
+    @Test
+    public void testPopulateOnlyWritesChangedEntries() {
+        Map<CaName, IpResourceSet> m = new HashMap<>();
+        m.put(CaName.fromMembershipId(1), IpResourceSet.parse("10.0.0.0/8"));
+        m.put(CaName.fromMembershipId(2), IpResourceSet.parse("11.0.0.0/8"));
+        m.put(CaName.fromMembershipId(3), IpResourceSet.parse("AS3333"));
+        assertEquals(3, (int) withTx(() -> resourceCache.populateCache(m)));
+        assertEquals(0, (int) withTx(() -> resourceCache.populateCache(m)));
+
+        Map<CaName, IpResourceSet> updated = new HashMap<>(m);
+        updated.put(CaName.fromMembershipId(1), IpResourceSet.parse("10.0.0.0/8, 12.0.0.0/8"));
+        updated.remove(CaName.fromMembershipId(2));
+        updated.put(CaName.fromMembershipId(4), IpResourceSet.parse("13.0.0.0/8"));
+        assertEquals(3, (int) withTx(() -> resourceCache.populateCache(updated)));
+
+        assertEquals(updated, resourceCache.allMemberResources());
+        assertEquals(Optional.of(IpResourceSet.parse("10.0.0.0/8, 12.0.0.0/8")), resourceCache.lookupResources(CaName.fromMembershipId(1)));
+        assertEquals(Optional.empty(), resourceCache.lookupResources(CaName.fromMembershipId(2)));
+        assertEquals(Optional.of(IpResourceSet.parse("13.0.0.0/8")), resourceCache.lookupResources(CaName.fromMembershipId(4)));
+    }
+
+    @Test
+    public void testPopulateRecordsChangedEntries() {
+        Map<CaName, IpResourceSet> m = new HashMap<>();
+        m.put(CaName.fromMembershipId(1), IpResourceSet.parse("10.0.0.0/8"));
+        m.put(CaName.fromMembershipId(2), IpResourceSet.parse("11.0.0.0/8"));
+        inTx(() -> resourceCache.populateCache(m));
+        inTx(() -> resourceCache.findResourceChanges().forEach(resourceCache::clearResourceChange));
+
+        Map<CaName, IpResourceSet> updated = new HashMap<>(m);
+        updated.put(CaName.fromMembershipId(1), IpResourceSet.parse("12.0.0.0/8"));
+        updated.put(CaName.fromMembershipId(3), IpResourceSet.parse("13.0.0.0/8"));
+        inTx(() -> resourceCache.populateCache(updated));
+
+        Map<CaName, Long> changes = withTx(() -> resourceCache.findResourceChanges());
+        assertEquals(new HashSet<>(Arrays.asList(CaName.fromMembershipId(1), CaName.fromMembershipId(3))), changes.keySet());
+
+        // A change recorded after the changes were read is kept
+        inTx(() -> resourceCache.updateEntry(CaName.fromMembershipId(1), IpResourceSet.parse("14.0.0.0/8")));
+        inTx(() -> changes.forEach(resourceCache::clearResourceChange));
+        assertEquals(Collections.singleton(CaName.fromMembershipId(1)), withTx(() -> resourceCache.findResourceChanges()).keySet());
+    }
+
+    @Test
+    public void testLookupAfterUpdateEntry() {
+        inTx(() -> resourceCache.updateEntry(CaName.fromMembershipId(1), IpResourceSet.parse("10.0.0.0/8")));
+        assertEquals(Optional.of(IpResourceSet.parse("10.0.0.0/8")), resourceCache.lookupResources(CaName.fromMembershipId(1)));
+
+        inTx(() -> resourceCache.updateEntry(CaName.fromMembershipId(1), IpResourceSet.parse("12.0.0.0/8")));
+        assertEquals(Optional.of(IpResourceSet.parse("12.0.0.0/8")), resourceCache.lookupResources(CaName.fromMembershipId(1)));
+    }
+
+    @Test
+    public void testLookupSeesUncommittedUpdatesInSameTransaction() {
+        inTx(() -> resourceCache.updateEntry(CaName.fromMembershipId(1), IpResourceSet.parse("10.0.0.0/8")));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            resourceCache.updateEntry(CaName.fromMembershipId(1), IpResourceSet.parse("11.0.0.0/8"));
+            assertEquals(Optional.of(IpResourceSet.parse("11.0.0.0/8")), resourceCache.lookupResources(CaName.fromMembershipId(1)));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(Optional.of(IpResourceSet.parse("10.0.0.0/8")), resourceCache.lookupResources(CaName.fromMembershipId(1)));
+    }
+
+    @Test
+    public void testLookupAfterModificationByAnotherNode() {
+        inTx(() -> resourceCache.updateEntry(CaName.fromMembershipId(1), IpResourceSet.parse("10.0.0.0/8")));
+        assertEquals(Optional.of(IpResourceSet.parse("10.0.0.0/8")), resourceCache.lookupResources(CaName.fromMembershipId(1)));
+
+        // Another node changes the table and the stored generation
+        inTx(() -> {
+            entityManager.createNativeQuery("UPDATE resource_cache SET resources = '11.0.0.0/8' WHERE name = :name")
+                .setParameter("name", CaName.fromMembershipId(1).toString())
+                .executeUpdate();
+            entityManager.createNativeQuery("UPDATE property SET value = CAST(nextval('seq_all') AS TEXT) WHERE key = 'resource_cache_generation'")
+                .executeUpdate();
+        });
+
+        // The changes of this node are not applied to a snapshot that misses the changes of the other node
+        inTx(() -> resourceCache.updateEntry(CaName.fromMembershipId(2), IpResourceSet.parse("12.0.0.0/8")));
+        assertEquals(Optional.of(IpResourceSet.parse("11.0.0.0/8")), resourceCache.lookupResources(CaName.fromMembershipId(1)));
+        assertEquals(Optional.of(IpResourceSet.parse("12.0.0.0/8")), resourceCache.lookupResources(CaName.fromMembershipId(2)));
+    }
+
+    @Test
+    public void testLookupInsideTransaction() {
+        inTx(() -> resourceCache.updateEntry(CaName.fromMembershipId(1), IpResourceSet.parse("10.0.0.0/8")));
+
+        transactionTemplate.executeWithoutResult(status ->
+            assertEquals(Optional.of(IpResourceSet.parse("10.0.0.0/8")), resourceCache.lookupResources(CaName.fromMembershipId(1))));
+        assertEquals(Optional.of(IpResourceSet.parse("10.0.0.0/8")), resourceCache.lookupResources(CaName.fromMembershipId(1)));
+    }
 }
@@ -11,6 +11,7 @@ import net.ripe.rpki.server.api.dto.ManagedCertificateAuthorityData;
 import net.ripe.rpki.server.api.dto.NonHostedCertificateAuthorityData;
 import net.ripe.rpki.server.api.dto.NonHostedPublicKeyData;
 import net.ripe.rpki.server.api.dto.ResourceCertificateData;
+import net.ripe.rpki.server.api.ports.ResourceCache;
 import net.ripe.rpki.server.api.ports.ResourceLookupService;
 import net.ripe.rpki.server.api.services.read.ResourceCertificateViewService;
 import org.joda.time.DateTime;
@@ -36,6 +37,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -55,12 +58,15 @@ public class ListResourceClassProcessorTest {
     @Mock
     private ResourceCertificateViewService resourceCertificateViewService;
 
+    @Mock
+    private ResourceCache resourceCache;
+
     private X509ResourceCertificate issuerCertificate;
     private URI uri;
 
     @Before
     public void setup() throws URISyntaxException {
-        processor = new ListResourceClassProcessor(resourceLookupService, resourceCertificateViewService);
+        processor = new ListResourceClassProcessor(resourceLookupService, resourceCertificateViewService, resourceCache);
 
         uri = new URI("rsync://test");
         issuerCertificate = mock(X509ResourceCertificate.class);
@@ -119,6 +125,38 @@ public class ListResourceClassProcessorTest {
         assertEquals("127.0.0.1", getDefaultResourceClassElement(responsePayload).getResourceSetIpv4().toString());
     }
 
+    @Test
+    public void shouldReuseClassElementsWhileInputsAreUnchanged() {
+        when(resourceCache.getGeneration()).thenReturn(1L);
+
+        ResourceClassListResponsePayload first = processor.process(nonHostedCertificateAuthority, productionCA);
+        ResourceClassListResponsePayload second = processor.process(nonHostedCertificateAuthority, productionCA);
+
+        assertThat(second).isNotSameAs(first);
+        assertSame(first.getClassElements().get(0), second.getClassElements().get(0));
+        verify(resourceLookupService, times(1)).lookupMemberCaPotentialResources(nonHostedCertificateAuthority.getName());
+    }
+
+    @Test
+    public void shouldRecomputeClassElementsWhenResourceCacheChanged() {
+        when(resourceCache.getGeneration()).thenReturn(1L, 2L);
+
+        processor.process(nonHostedCertificateAuthority, productionCA);
+        processor.process(nonHostedCertificateAuthority, productionCA);
+
+        verify(resourceLookupService, times(2)).lookupMemberCaPotentialResources(nonHostedCertificateAuthority.getName());
+    }
+
+    @Test
+    public void shouldNotCacheClassElementsWhenResourceCacheIsModifiedInTransaction() {
+        when(resourceCache.getGeneration()).thenReturn(-1L);
+
+        processor.process(nonHostedCertificateAuthority, productionCA);
+        processor.process(nonHostedCertificateAuthority, productionCA);
+
+        verify(resourceLookupService, times(2)).lookupMemberCaPotentialResources(nonHostedCertificateAuthority.getName());
+    }
+
     private ResourceClassListResponseClassElement getDefaultResourceClassElement(ResourceClassListResponsePayload responsePayload) {
         return responsePayload.getClassElements().stream()
             .filter(classElement -> DEFAULT_RESOURCE_CLASS.equals(classElement.getClassName()))
@@ -1,5 +1,7 @@
 package net.ripe.rpki.ripencc.provisioning;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObject;
 import net.ripe.rpki.commons.provisioning.payload.list.request.ResourceClassListQueryPayloadBuilder;
 import net.ripe.rpki.commons.provisioning.payload.revocation.request.CertificateRevocationRequestPayloadBuilder;
@@ -10,16 +12,23 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -32,12 +41,15 @@ public class ProvisioningAuditLogServiceBeanTest {
 
     private EntityManager entityManager;
 
+    private MeterRegistry meterRegistry;
+
     private static final UUID TEST_USER_UUID = UUID.fromString("6e80bc78-7f56-407a-be41-3d3f76af2919");
 
     @Before
     public void setUp() {
         entityManager = mock(EntityManager.class);
-        provisioningAuditLogServiceBean = new ProvisioningAuditLogServiceBean(entityManager);
+        meterRegistry = new SimpleMeterRegistry();
+        provisioningAuditLogServiceBean = new ProvisioningAuditLogServiceBean(entityManager, mock(PlatformTransactionManager.class), meterRegistry, 10, 5);
     }
 
     @SuppressWarnings("unchecked")
@@ -96,4 +108,78 @@ public class ProvisioningAuditLogServiceBeanTest {
         verify(logEntity, times(0)).getId();
         verify(entityManager, times(1)).persist(any(ProvisioningAuditLogEntity.class));
     }
+
+    @Test
+    public void testQueuedEntriesAreWrittenOnStop() throws InterruptedException {
+        ProvisioningCmsObject cms = mock(ProvisioningCmsObject.class);
+        when(cms.getPayload()).thenReturn(new CertificateRevocationRequestPayloadBuilder().build());
+        when(cms.getEncoded()).thenReturn(new byte[] {1, 2, 3, 4 });
+        final byte[] request = "<?xml version='1.0' encoding='UTF-8'?><bla></bla>".getBytes(StandardCharsets.UTF_8);
+
+        provisioningAuditLogServiceBean.start();
+        for (int i = 0; i < 8; ++i) {
+            provisioningAuditLogServiceBean.log(new ProvisioningAuditLogEntity(cms, "principal", TEST_USER_UUID), i == 0 ? request : null);
+        }
+        provisioningAuditLogServiceBean.stop();
+
+        verify(entityManager, times(8)).persist(any(ProvisioningAuditLogEntity.class));
+        assertThat(meterRegistry.get("rpkicore.provisioning.audit.queue.depth").gauge().value()).isZero();
+        assertThat(meterRegistry.get("rpkicore.provisioning.audit.synchronous.writes").counter().count()).isZero();
+    }
+
+    @Test
+    public void testEntriesAreWrittenSynchronouslyWhenWriterIsNotRunning() {
+        ProvisioningCmsObject cms = mock(ProvisioningCmsObject.class);
+        when(cms.getPayload()).thenReturn(new CertificateRevocationRequestPayloadBuilder().build());
+        when(cms.getEncoded()).thenReturn(new byte[] {1, 2, 3, 4 });
+
+        // Not started, so nothing is queued.
+        for (int i = 0; i < 3; ++i) {
+            provisioningAuditLogServiceBean.log(new ProvisioningAuditLogEntity(cms, "principal", TEST_USER_UUID), null);
+        }
+
+        verify(entityManager, times(3)).persist(any(ProvisioningAuditLogEntity.class));
+        assertThat(meterRegistry.get("rpkicore.provisioning.audit.synchronous.writes").counter().count()).isEqualTo(3.0);
+    }
+
+    @Test
+    public void testEntriesAreStoredOneByOneWhenBatchFails() throws InterruptedException {
+        ProvisioningCmsObject cms = mock(ProvisioningCmsObject.class);
+        when(cms.getPayload()).thenReturn(new CertificateRevocationRequestPayloadBuilder().build());
+        when(cms.getEncoded()).thenReturn(new byte[] {1, 2, 3, 4 });
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Object> persisted = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            if (failed.compareAndSet(false, true)) {
+                throw new PersistenceException("connection reset");
+            }
+            persisted.add(invocation.getArgument(0));
+            return null;
+        }).when(entityManager).persist(any(ProvisioningAuditLogEntity.class));
+
+        List<ProvisioningAuditLogEntity> entries = new ArrayList<>();
+        provisioningAuditLogServiceBean.start();
+        for (int i = 0; i < 8; ++i) {
+            ProvisioningAuditLogEntity entry = new ProvisioningAuditLogEntity(cms, "principal", TEST_USER_UUID);
+            entries.add(entry);
+            provisioningAuditLogServiceBean.log(entry, null);
+        }
+        provisioningAuditLogServiceBean.stop();
+
+        assertThat(failed).isTrue();
+        assertThat(persisted).containsExactlyInAnyOrderElementsOf(entries);
+    }
+
+    @Test
+    public void testSynchronousWriteIsRetriedWhenStoreFails() {
+        ProvisioningCmsObject cms = mock(ProvisioningCmsObject.class);
+        when(cms.getPayload()).thenReturn(new CertificateRevocationRequestPayloadBuilder().build());
+        when(cms.getEncoded()).thenReturn(new byte[] {1, 2, 3, 4 });
+        ProvisioningAuditLogEntity entry = new ProvisioningAuditLogEntity(cms, "principal", TEST_USER_UUID);
+        doThrow(new PersistenceException("connection reset")).doNothing().when(entityManager).persist(entry);
+
+        provisioningAuditLogServiceBean.log(entry, null);
+
+        verify(entityManager, times(2)).persist(entry);
+    }
 }
@@ -0,0 +1,100 @@
+package net.ripe.rpki.ripencc.services.impl;
+
+import com.google.gson.JsonParseException;
+import net.ripe.ipresource.IpResourceSet;
+import net.ripe.rpki.server.api.ports.ResourceServicesClient.MemberResources;
+import net.ripe.rpki.server.api.ports.ResourceServicesClient.TotalResources;
+import net.ripe.rpki.server.api.support.objects.CaName;
+import net.ripe.rpki.util.GeneratedReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TotalResourcesJsonDecoderTest {
+
+    private static final String TOTAL_RESOURCES_HEADER = "{\"response\": {\"status\": 200, \"message\": \"OK\", \"content\": {\"allMembersResources\": {\"asns\": [], \"ipv4Allocations\": [";
+    private static final String TOTAL_RESOURCES_FOOTER = "], \"ipv4Assignments\": [], \"ipv6Allocations\": [], \"ipv6Assignments\": [], \"ipv4ErxResources\": []}, " +
+        "\"ripeNccDelegations\": {\"ripeNccAsnDelegations\": [], \"ripeNccIpv4Delegations\": [{\"range\": \"10.0.0.0/8\"}], \"ripeNccIpv6Delegations\": []}}}}";
+
+    @Test
+    void should_aggregate_member_resources_per_ca() throws IOException {
+        TotalResources resources = TotalResourcesJsonDecoder.decode(new StringReader(
+            "{\"response\": {\"status\": 200, \"content\": {" +
+                "\"allMembersResources\": {" +
+                "\"asns\": [{\"resource\": \"AS1111\", \"membershipId\": 1111, \"caName\": \"1111\"}]," +
+                "\"ipv4Allocations\": [{\"resource\": \"193.1.0.0/21\", \"caName\": \"1111\"}, {\"resource\": \"193.1.8.0/21\", \"caName\": \"1111\"}]," +
+                "\"ipv4Assignments\": [{\"resource\": \"193.6.0.0/21\", \"caName\": \"org-bluelight\"}, {\"resource\": \"193.7.0.0/21\", \"caName\": null}]," +
+                "\"ipv6Allocations\": []," +
+                "\"ipv6Assignments\": []," +
+                "\"ipv4ErxResources\": [{\"resource\": \"51.0.0.0/8\", \"resourceStatus\": \"ISSUED\", \"caName\": \"1111\"}]" +
+                "}," +
+                "\"ripeNccDelegations\": {\"ripeNccAsnDelegations\": [{\"range\": \"AS7-AS7\", \"status\": \"ALLOCATED\"}], \"ripeNccIpv4Delegations\": [], \"ripeNccIpv6Delegations\": []}" +
+                "}}}"
+        ));
+
+        MemberResources members = resources.getAllMembersResources();
+        assertThat(members.getCertifiableResources()).containsOnlyKeys(CaName.fromMembershipId(1111L), CaName.fromOrganisationId("ORG-BLUELIGHT"));
+        assertThat(members.getCertifiableResources().get(CaName.fromMembershipId(1111L))).isEqualTo(IpResourceSet.parse("AS1111, 193.1.0.0/20, 51.0.0.0/8"));
+        assertThat(members.getMemberResourcesCounts())
+            .containsEntry("Asn", 1)
+            .containsEntry("Ipv4Allocations", 2)
+            .containsEntry("Ipv4Assignments", 2)
+            .containsEntry("Ipv6Allocations", 0)
+            .containsEntry("Ipv4ErxResources", 1);
+        assertThat(resources.allDelegationResources()).isEqualTo(IpResourceSet.parse("AS7"));
+    }
+
+    @Test
+    void should_reject_response_without_content() {
+        assertThatThrownBy(() -> TotalResourcesJsonDecoder.decode(new StringReader("{\"response\": {\"status\": 500}}")))
+            .isInstanceOf(JsonParseException.class);
+    }
+
+    @Test
+    void should_decode_large_generated_response() throws IOException {
+        int caCount = 2_000;
+        int resourcesPerCa = 15;
+        int records = caCount * resourcesPerCa;
+        GeneratedReader json = new GeneratedReader(records + 2, i -> {
+            if (i == 0) {
+                return TOTAL_RESOURCES_HEADER;
+            } else if (i == records + 1) {
+                return TOTAL_RESOURCES_FOOTER;
+            }
+            return (i > 1 ? "," : "") + memberResource(i - 1, resourcesPerCa);
+        });
+
+        TotalResources resources = TotalResourcesJsonDecoder.decode(json);
+
+        MemberResources members = resources.getAllMembersResources();
+        assertThat(members.getMemberResourcesCounts()).containsEntry("Ipv4Allocations", records);
+        assertThat(members.getCertifiableResources()).hasSize(caCount);
+        // Each CA gets a contiguous block that is aggregated into a single range.
+        for (int ca = 0; ca < caCount; ++ca) {
+            String range = address(ca * resourcesPerCa) + "-" + address((ca + 1) * resourcesPerCa - 1);
+            assertThat(members.getCertifiableResources().get(CaName.fromMembershipId((long) ca))).isEqualTo(IpResourceSet.parse(range));
+        }
+        assertThat(json.getCharactersRead()).isGreaterThan(10_000_000L);
+    }
+
+    /**
+     * A member resource record with the extra fields of the real response, which the decoder must skip.
+     */
+    private static String memberResource(int i, int resourcesPerCa) {
+        long membershipId = i / resourcesPerCa;
+        return "{\"resource\": \"" + address(i) + "/32\"" +
+            ", \"version\": 1, \"registrationDate\": \"2014-08-05\", \"actor\": \"anon10\", \"ticketNumber\": \"NCC#2014080397\"" +
+            ", \"organisationName\": \"India Charlie India Alpha\", \"irStatus\": \"INFRA\", \"irTimestamp\": 1267484400000" +
+            ", \"resourceStatus\": \"ALLOCATED\", \"countryCode\": \"NL\", \"organisationObjectId\": \"ORG-XX2-RIPE\"" +
+            ", \"legacy\": false, \"assignmentType\": \"NORMAL\", \"membershipId\": " + membershipId +
+            ", \"caName\": \"" + membershipId + "\"}";
+    }
+
+    private static String address(int i) {
+        return "10." + (i >>> 16 & 0xff) + "." + (i >>> 8 & 0xff) + "." + (i & 0xff);
+    }
+}
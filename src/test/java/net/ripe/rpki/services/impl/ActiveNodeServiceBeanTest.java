@@ -7,6 +7,11 @@ import net.ripe.rpki.domain.property.PropertyEntityRepository;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.Collections;
 
 import static net.ripe.rpki.services.impl.ActiveNodeServiceBean.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -20,6 +25,7 @@ public class ActiveNodeServiceBeanTest {
     private ActiveNodeServiceBean subject;
 
     private PropertyEntityRepository propertyEntityRepository;
+    private Query leaseQuery;
     private static final String TEST_ACTIVE_NODE_NAME = "active-node";
 
     @Rule
@@ -28,7 +34,14 @@ public class ActiveNodeServiceBeanTest {
     @Before
     public void setUp() {
         propertyEntityRepository = mock(PropertyEntityRepository.class);
-        subject = new ActiveNodeServiceBean(propertyEntityRepository, new SimpleMeterRegistry());
+        subject = new ActiveNodeServiceBean(propertyEntityRepository, mockEntityManager(), mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 30, 10);
+    }
+
+    private EntityManager mockEntityManager() {
+        EntityManager entityManager = mock(EntityManager.class);
+        leaseQuery = mock(Query.class, RETURNS_SELF);
+        when(entityManager.createNativeQuery(anyString())).thenReturn(leaseQuery);
+        return entityManager;
     }
 
     @Test
@@ -58,19 +71,85 @@ public class ActiveNodeServiceBeanTest {
     }
 
     @Test
-    public void shouldCompareAgainstActiveNode_inactive() {
-        PropertyEntity propertyEntity = new PropertyEntity(ACTIVE_NODE_KEY, TEST_ACTIVE_NODE_NAME);
-        when(propertyEntityRepository.findByKey(ACTIVE_NODE_KEY)).thenReturn(propertyEntity);
+    public void shouldNotBeActiveWithoutLease() {
+        assertThat(subject.isActiveNode()).isFalse();
+        assertThat(subject.getFencingToken()).isZero();
+        assertThat(subject.hasLostLease(0)).isTrue();
+    }
+
+    @Test
+    public void shouldBeActiveWhenLeaseIsAcquired() {
+        when(leaseQuery.getResultList()).thenReturn(Collections.singletonList(42L));
+
+        subject.renewLease();
+
+        assertThat(subject.isActiveNode()).isTrue();
+        assertThat(subject.getFencingToken()).isEqualTo(42L);
+        assertThat(subject.hasLostLease(42L)).isFalse();
+        assertThat(subject.hasLostLease(41L)).isTrue();
+    }
+
+    @Test
+    public void shouldReleaseLeaseWhenAnotherNodeIsSelected() {
+        when(leaseQuery.getResultList()).thenReturn(Collections.singletonList(42L));
+        subject.renewLease();
+
+        when(leaseQuery.getResultList()).thenReturn(Collections.emptyList());
+        subject.renewLease();
 
         assertThat(subject.isActiveNode()).isFalse();
+        assertThat(subject.hasLostLease(42L)).isTrue();
+        verify(leaseQuery).executeUpdate();
     }
 
     @Test
-    public void shouldCompareAgainstActiveNode_active() {
-        PropertyEntity propertyEntity = new PropertyEntity(ACTIVE_NODE_KEY, subject.getCurrentNodeName());
-        when(propertyEntityRepository.findByKey(ACTIVE_NODE_KEY)).thenReturn(propertyEntity);
+    public void shouldKeepLeaseWhenRenewalFails() {
+        when(leaseQuery.getResultList()).thenReturn(Collections.singletonList(42L));
+        subject.renewLease();
+
+        when(leaseQuery.getResultList()).thenThrow(new IllegalStateException("database unavailable"));
+        subject.renewLease();
 
         assertThat(subject.isActiveNode()).isTrue();
+        assertThat(subject.hasLostLease(42L)).isFalse();
+    }
+
+    @Test
+    public void shouldNotBeActiveWhenLeaseExpired() {
+        subject = new ActiveNodeServiceBean(propertyEntityRepository, mockEntityManager(), mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 0, 10);
+        when(leaseQuery.getResultList()).thenReturn(Collections.singletonList(42L));
+
+        subject.renewLease();
+
+        assertThat(subject.isActiveNode()).isFalse();
+        assertThat(subject.hasLostLease(42L)).isTrue();
+    }
+
+    @Test
+    public void shouldNotLockLeaseThatIsNotHeld() {
+        assertThat(subject.lockLease(42L)).isFalse();
+
+        verify(leaseQuery, never()).getResultList();
+    }
+
+    @Test
+    public void shouldLockLeaseRowInDatabase() {
+        when(leaseQuery.getResultList()).thenReturn(Collections.singletonList(42L));
+        subject.renewLease();
+
+        when(leaseQuery.getResultList()).thenReturn(Collections.singletonList(1));
+        assertThat(subject.lockLease(42L)).isTrue();
+        verify(leaseQuery).setParameter("fencingToken", 42L);
+    }
+
+    @Test
+    public void shouldNotLockLeaseTakenOverInDatabase() {
+        when(leaseQuery.getResultList()).thenReturn(Collections.singletonList(42L));
+        subject.renewLease();
+
+        // Still valid in memory, but the lease row has another token or has expired.
+        when(leaseQuery.getResultList()).thenReturn(Collections.emptyList());
+        assertThat(subject.lockLease(42L)).isFalse();
     }
 
     @Test
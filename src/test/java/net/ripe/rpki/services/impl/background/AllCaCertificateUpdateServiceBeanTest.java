@@ -31,12 +31,17 @@ import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.security.auth.x500.X500Principal;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -87,7 +92,7 @@ public class AllCaCertificateUpdateServiceBeanTest extends CertificationDomainTe
                 return action.doInTransaction(new SimpleTransactionStatus());
             }
         };
-        subject = new AllCaCertificateUpdateServiceBean(new BackgroundTaskRunner(activeNodeService, new SimpleMeterRegistry()), caViewService, commandService, resourceCache, repositoryConfiguration, transactionTemplate, certificateAuthorityRepository, childParentCertificateUpdateSaga, 1000);
+        subject = new AllCaCertificateUpdateServiceBean(new BackgroundTaskRunner(activeNodeService, new SimpleMeterRegistry()), caViewService, commandService, resourceCache, repositoryConfiguration, transactionTemplate, certificateAuthorityRepository, childParentCertificateUpdateSaga, 1000, 24);
 
         when(activeNodeService.isActiveNode()).thenReturn(true);
         when(commandService.execute(isA(CertificateAuthorityCommand.class))).thenReturn(CommandStatus.create());
@@ -144,6 +149,44 @@ public class AllCaCertificateUpdateServiceBeanTest extends CertificationDomainTe
         verify(commandService).execute(new UpdateAllIncomingResourceCertificatesCommand(memberCa2.getVersionedId(), Integer.MAX_VALUE));
     }
 
+    @Test
+    public void should_only_update_member_cas_with_resource_changes_after_full_sweep() {
+        CaIdentity memberCa1 = new CaIdentity(new VersionedId(10L), CaName.of(new X500Principal("CN=nl.isp")));
+        CaIdentity memberCa2 = new CaIdentity(new VersionedId(11L), CaName.of(new X500Principal("CN=gr.isp")));
+        CaName removedMember = CaName.of(new X500Principal("CN=removed.isp"));
+        when(productionCaMock.getName()).thenReturn(PRODUCTION_CA_NAME);
+        when(caViewService.findAllChildrenIdsForCa(PRODUCTION_CA_NAME)).thenReturn(Arrays.asList(memberCa1, memberCa2));
+
+        subject.execute();
+        verify(commandService).execute(new UpdateAllIncomingResourceCertificatesCommand(memberCa1.getVersionedId(), Integer.MAX_VALUE));
+        verify(commandService).execute(new UpdateAllIncomingResourceCertificatesCommand(memberCa2.getVersionedId(), Integer.MAX_VALUE));
+
+        Map<CaName, Long> resourceChanges = new HashMap<>();
+        resourceChanges.put(memberCa2.getCaName(), 42L);
+        resourceChanges.put(removedMember, 43L);
+        when(resourceCache.findResourceChanges()).thenReturn(resourceChanges);
+
+        subject.execute();
+
+        verify(commandService).execute(new UpdateAllIncomingResourceCertificatesCommand(memberCa1.getVersionedId(), Integer.MAX_VALUE));
+        verify(commandService, times(2)).execute(new UpdateAllIncomingResourceCertificatesCommand(memberCa2.getVersionedId(), Integer.MAX_VALUE));
+        verify(resourceCache).clearResourceChange(memberCa2.getCaName(), 42L);
+        verify(resourceCache).clearResourceChange(removedMember, 43L);
+    }
+
+    @Test
+    public void should_keep_resource_change_when_update_fails() {
+        CaIdentity memberCa = new CaIdentity(new VersionedId(10L), CaName.of(new X500Principal("CN=nl.isp")));
+        when(productionCaMock.getName()).thenReturn(PRODUCTION_CA_NAME);
+        when(caViewService.findAllChildrenIdsForCa(PRODUCTION_CA_NAME)).thenReturn(Collections.singletonList(memberCa));
+        when(resourceCache.findResourceChanges()).thenReturn(Collections.singletonMap(memberCa.getCaName(), 42L));
+        doThrow(new RuntimeException("test")).when(commandService).execute(new UpdateAllIncomingResourceCertificatesCommand(memberCa.getVersionedId(), Integer.MAX_VALUE));
+
+        subject.execute();
+
+        verify(resourceCache, never()).clearResourceChange(any(), anyLong());
+    }
+
     @Test
     public void should_not_throw_exception_if_fails() {
         doThrow(new RuntimeException("test")).when(commandService).execute(new UpdateAllIncomingResourceCertificatesCommand(PRODUCTION_CA_ID, Integer.MAX_VALUE));
@@ -0,0 +1,191 @@
+package net.ripe.rpki.services.impl.background;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
+import net.ripe.rpki.domain.audit.AuditPartitionRepository;
+import net.ripe.rpki.domain.audit.AuditPartitionRepository.AuditPartition;
+import net.ripe.rpki.server.api.services.system.ActiveNodeService;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static net.ripe.rpki.domain.audit.AuditPartitionRepository.COMMAND_AUDIT_TABLE;
+import static net.ripe.rpki.domain.audit.AuditPartitionRepository.PROVISIONING_AUDIT_LOG_TABLE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AuditRetentionServiceBeanTest {
+
+    private static final Instant NOW = Instant.parse("2022-10-18T12:00:00Z");
+    private static final Instant CUTOFF = Instant.parse("2022-04-01T00:00:00Z");
+
+    @Rule
+    public TemporaryFolder archiveFolder = new TemporaryFolder();
+
+    @Mock
+    private ActiveNodeService activeNodeService;
+
+    @Mock
+    private AuditPartitionRepository auditPartitionRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private Path archiveDirectory;
+
+    @Before
+    public void setUp() {
+        archiveDirectory = archiveFolder.getRoot().toPath().resolve("audit-archive");
+        when(auditPartitionRepository.createMonthlyPartition(anyString(), any())).thenReturn(true);
+    }
+
+    @Test
+    public void should_create_partitions_ahead() {
+        subject(0).runService();
+
+        for (String table : Arrays.asList(COMMAND_AUDIT_TABLE, PROVISIONING_AUDIT_LOG_TABLE)) {
+            for (int i = 0; i <= AuditRetentionServiceBean.MONTHS_CREATED_AHEAD; ++i) {
+                verify(auditPartitionRepository).createMonthlyPartition(table, YearMonth.of(2022, 10).plusMonths(i));
+            }
+        }
+        verify(auditPartitionRepository, never()).findPartitions(anyString());
+    }
+
+    @Test
+    public void should_archive_and_drop_expired_monthly_partitions() throws IOException {
+        AuditPartition expired = new AuditPartition(COMMAND_AUDIT_TABLE, "commandaudit_p2022_03", CUTOFF);
+        AuditPartition retained = new AuditPartition(COMMAND_AUDIT_TABLE, "commandaudit_p2022_04", Instant.parse("2022-05-01T00:00:00Z"));
+        when(auditPartitionRepository.findPartitions(COMMAND_AUDIT_TABLE)).thenReturn(Arrays.asList(expired, retained));
+        when(auditPartitionRepository.exportEntries(eq(expired), eq(CUTOFF), any())).thenAnswer(invocation -> {
+            invocation.getArgument(2, OutputStream.class).write("id\n1\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+
+        subject(6).runService();
+
+        verify(auditPartitionRepository).dropPartition(expired);
+        verify(auditPartitionRepository, never()).dropPartition(retained);
+        verify(auditPartitionRepository, never()).exportEntries(eq(retained), any(), any());
+        assertThat(readArchive("commandaudit_p2022_03.csv.gz")).isEqualTo("id\n1\n");
+    }
+
+    @Test
+    public void should_archive_and_delete_expired_entries_of_legacy_partition() throws IOException {
+        AuditPartition legacy = new AuditPartition(PROVISIONING_AUDIT_LOG_TABLE, "provisioning_audit_log_legacy", Instant.parse("2022-10-01T00:00:00Z"));
+        when(auditPartitionRepository.findPartitions(PROVISIONING_AUDIT_LOG_TABLE)).thenReturn(Collections.singletonList(legacy));
+        when(auditPartitionRepository.exportEntries(eq(legacy), eq(CUTOFF), any())).thenAnswer(invocation -> {
+            invocation.getArgument(2, OutputStream.class).write("id\n1\n2\n".getBytes(StandardCharsets.UTF_8));
+            return 2L;
+        });
+        when(auditPartitionRepository.deleteEntries(legacy, CUTOFF)).thenReturn(2);
+
+        subject(6).runService();
+
+        verify(auditPartitionRepository).deleteEntries(legacy, CUTOFF);
+        verify(auditPartitionRepository, never()).dropPartition(any());
+        assertThat(readArchive("provisioning_audit_log_legacy_before_2022-04.csv.gz")).isEqualTo("id\n1\n2\n");
+    }
+
+    @Test
+    public void should_keep_default_partition_without_expired_entries() throws IOException {
+        AuditPartition defaultPartition = new AuditPartition(COMMAND_AUDIT_TABLE, "commandaudit_default", null);
+        when(auditPartitionRepository.findPartitions(COMMAND_AUDIT_TABLE)).thenReturn(Collections.singletonList(defaultPartition));
+        when(auditPartitionRepository.exportEntries(eq(defaultPartition), eq(CUTOFF), any())).thenReturn(0L);
+
+        subject(6).runService();
+
+        verify(auditPartitionRepository, never()).deleteEntries(any(), any());
+        verify(auditPartitionRepository, never()).dropPartition(any());
+        try (Stream<Path> files = Files.list(archiveDirectory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    public void should_not_replace_earlier_archive() throws IOException {
+        AuditPartition defaultPartition = new AuditPartition(COMMAND_AUDIT_TABLE, "commandaudit_default", null);
+        when(auditPartitionRepository.findPartitions(COMMAND_AUDIT_TABLE)).thenReturn(Collections.singletonList(defaultPartition));
+        when(auditPartitionRepository.exportEntries(eq(defaultPartition), eq(CUTOFF), any())).thenAnswer(invocation -> {
+            invocation.getArgument(2, OutputStream.class).write("id\n2\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+        when(auditPartitionRepository.deleteEntries(defaultPartition, CUTOFF)).thenReturn(1);
+        Files.createDirectories(archiveDirectory);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archiveDirectory.resolve("commandaudit_default_before_2022-04.csv.gz")))) {
+            out.write("id\n1\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        subject(6).runService();
+
+        assertThat(readArchive("commandaudit_default_before_2022-04.csv.gz")).isEqualTo("id\n1\n");
+        assertThat(readArchive("commandaudit_default_before_2022-04.2.csv.gz")).isEqualTo("id\n2\n");
+    }
+
+    @Test
+    public void should_delete_archive_when_entries_are_not_removed() throws IOException {
+        AuditPartition expired = new AuditPartition(COMMAND_AUDIT_TABLE, "commandaudit_p2022_03", CUTOFF);
+        when(auditPartitionRepository.findPartitions(COMMAND_AUDIT_TABLE)).thenReturn(Collections.singletonList(expired));
+        when(auditPartitionRepository.exportEntries(eq(expired), eq(CUTOFF), any())).thenAnswer(invocation -> {
+            invocation.getArgument(2, OutputStream.class).write("id\n1\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+        doThrow(new IllegalStateException("lock timeout")).when(auditPartitionRepository).dropPartition(expired);
+
+        assertThatThrownBy(() -> subject(6).runService()).isInstanceOf(IllegalStateException.class);
+
+        try (Stream<Path> files = Files.list(archiveDirectory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    public void should_require_archive_directory_when_retention_is_set() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        BackgroundTaskRunner backgroundTaskRunner = new BackgroundTaskRunner(activeNodeService, registry);
+
+        assertThatThrownBy(() -> new AuditRetentionServiceBean(backgroundTaskRunner, auditPartitionRepository,
+            transactionManager, registry, 6, null, Clock.fixed(NOW, ZoneOffset.UTC)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("audit.archive.directory");
+    }
+
+    private AuditRetentionServiceBean subject(int retentionMonths) {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        return new AuditRetentionServiceBean(new BackgroundTaskRunner(activeNodeService, registry), auditPartitionRepository,
+            transactionManager, registry, retentionMonths, archiveDirectory, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private String readArchive(String name) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(archiveDirectory.resolve(name)))) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
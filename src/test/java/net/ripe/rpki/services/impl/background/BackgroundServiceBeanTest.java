@@ -1,6 +1,9 @@
 package net.ripe.rpki.services.impl.background;
 
+import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.core.services.background.BackgroundResource;
+import net.ripe.rpki.core.services.background.BackgroundResourceAccess;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
 import net.ripe.rpki.core.services.background.SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode;
 import net.ripe.rpki.server.api.services.system.ActiveNodeService;
@@ -20,14 +23,18 @@ public class BackgroundServiceBeanTest {
 
     private ActiveNodeService activeNodeService;
 
+    private SimpleMeterRegistry meterRegistry;
 
+    private BackgroundTaskRunner backgroundTaskRunner;
 
     @Before
     public void setUp() {
         activeNodeService = mock(ActiveNodeService.class);
         when(activeNodeService.isActiveNode()).thenReturn(true);
+        meterRegistry = new SimpleMeterRegistry();
+        backgroundTaskRunner = new BackgroundTaskRunner(activeNodeService, meterRegistry);
 
-        subject = new MyBackgroundServiceBean(activeNodeService);
+        subject = new MyBackgroundServiceBean("Test Service", backgroundTaskRunner, BackgroundResourceAccess.writes(BackgroundResource.CA_HIERARCHY));
     }
 
     @Test
@@ -83,20 +90,70 @@ public class BackgroundServiceBeanTest {
         assertEquals(1, subject.getExecutionCounter()); // the second execution is skipped
     }
 
+    @Test
+    public void shouldRunServicesWithoutConflictingResourcesConcurrently() throws Exception {
+        MyBackgroundServiceBean other = new MyBackgroundServiceBean("Other Service", backgroundTaskRunner, BackgroundResourceAccess.writes(BackgroundResource.PUBLISHED_OBJECTS).andReads(BackgroundResource.RIS_DATA));
+        new Thread(() -> subject.execute()).start();
+        assertTrue("subject started", subject.runningLatch.await(1, TimeUnit.SECONDS));
+
+        new Thread(() -> other.execute()).start();
+        assertTrue("other service started while subject is running", other.runningLatch.await(1, TimeUnit.SECONDS));
+
+        subject.stoppingLatch.countDown();
+        other.stoppingLatch.countDown();
+    }
+
+    @Test
+    public void shouldWaitForServiceWithConflictingResources() throws Exception {
+        MyBackgroundServiceBean other = new MyBackgroundServiceBean("Other Service", backgroundTaskRunner, BackgroundResourceAccess.reads(BackgroundResource.CA_HIERARCHY));
+        new Thread(() -> subject.execute()).start();
+        assertTrue("subject started", subject.runningLatch.await(1, TimeUnit.SECONDS));
+
+        Thread otherThread = new Thread(() -> other.execute());
+        otherThread.start();
+        assertFalse("other service waits for subject", other.runningLatch.await(200, TimeUnit.MILLISECONDS));
+        assertTrue(other.isWaitingOrRunning());
+
+        subject.stoppingLatch.countDown();
+        assertTrue("other service started after subject finished", other.runningLatch.await(1, TimeUnit.SECONDS));
+        other.stoppingLatch.countDown();
+        otherThread.join(1000);
+
+        Timer lockWait = meterRegistry.get("rpkicore.background.service.lock.wait").tag("service", "Other Service").timer();
+        assertEquals(1, lockWait.count());
+        assertTrue("recorded time spent waiting", lockWait.totalTime(TimeUnit.MILLISECONDS) >= 200);
+    }
+
+    @Test
+    public void shouldDetermineConflictingResourceAccess() {
+        BackgroundResourceAccess readsCas = BackgroundResourceAccess.reads(BackgroundResource.CA_HIERARCHY);
+        BackgroundResourceAccess writesCas = BackgroundResourceAccess.writes(BackgroundResource.CA_HIERARCHY);
+        BackgroundResourceAccess writesPublishedObjects = BackgroundResourceAccess.writes(BackgroundResource.PUBLISHED_OBJECTS);
+
+        assertFalse(readsCas.conflictsWith(readsCas));
+        assertTrue(readsCas.conflictsWith(writesCas));
+        assertTrue(writesCas.conflictsWith(readsCas));
+        assertTrue(writesCas.conflictsWith(writesCas));
+        assertFalse(writesCas.conflictsWith(writesPublishedObjects));
+        assertFalse(BackgroundResourceAccess.NONE.conflictsWith(writesCas));
+    }
+
     private static class MyBackgroundServiceBean extends SequentialBackgroundServiceWithAdminPrivilegesOnActiveNode {
+        private final String name;
         private int executionCounter;
         private final CountDownLatch runningLatch;
         private final CountDownLatch stoppingLatch;
 
-        private MyBackgroundServiceBean(ActiveNodeService activeNodeService) {
-            super(new BackgroundTaskRunner(activeNodeService, new SimpleMeterRegistry()));
+        private MyBackgroundServiceBean(String name, BackgroundTaskRunner backgroundTaskRunner, BackgroundResourceAccess resourceAccess) {
+            super(backgroundTaskRunner, resourceAccess);
+            this.name = name;
             this.runningLatch = new CountDownLatch(1);
             this.stoppingLatch = new CountDownLatch(1);
         }
 
         @Override
         public String getName() {
-            return "Test Service";
+            return name;
         }
 
         @Override
@@ -0,0 +1,157 @@
+package net.ripe.rpki.services.impl.background;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.core.services.background.BackgroundServiceExecutionResult;
+import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
+import net.ripe.rpki.domain.PublicationRequestRepository;
+import net.ripe.rpki.server.api.services.background.BackgroundService;
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_REPOSITORY_PUBLICATION_SERVICE;
+import static net.ripe.rpki.services.impl.background.BackgroundServices.PUBLIC_REPOSITORY_RRDP_SERVICE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PublicationRequestQueueTest {
+
+    private static final long COALESCE_DELAY_MILLIS = 500;
+    private static final long MINIMUM_INTERVAL_MILLIS = 5_000;
+    private static final long NOW = 1_666_094_400_000L;
+
+    private static final BackgroundServiceExecutionResult SUCCESS = new BackgroundServiceExecutionResult(0, 0, BackgroundServiceExecutionResult.Status.SUCCESS);
+    private static final BackgroundServiceExecutionResult FAILURE = new BackgroundServiceExecutionResult(0, 0, BackgroundServiceExecutionResult.Status.FAILURE);
+
+    private final PublicationRequestRepository publicationRequestRepository = mock(PublicationRequestRepository.class);
+    private final BackgroundTaskRunner backgroundTaskRunner = mock(BackgroundTaskRunner.class);
+    private final ApplicationContext applicationContext = mock(ApplicationContext.class);
+    private final BackgroundService publicationService = mock(BackgroundService.class);
+    private final BackgroundService rrdpService = mock(BackgroundService.class);
+
+    /** The requested sleeps, each of which advances the current time. */
+    private final List<Long> sleeps = new ArrayList<>();
+    private Runnable duringSleep = () -> {};
+
+    private PublicationRequestQueue subject;
+
+    @Before
+    public void setUp() {
+        DateTimeUtils.setCurrentMillisFixed(NOW);
+        when(backgroundTaskRunner.isActiveNode()).thenReturn(true);
+        when(applicationContext.getBean(PUBLIC_REPOSITORY_PUBLICATION_SERVICE, BackgroundService.class)).thenReturn(publicationService);
+        when(applicationContext.getBean(PUBLIC_REPOSITORY_RRDP_SERVICE, BackgroundService.class)).thenReturn(rrdpService);
+        when(publicationService.execute()).thenReturn(SUCCESS);
+        when(rrdpService.execute()).thenReturn(SUCCESS);
+
+        // A retry delay of zero makes the worker check for pending requests without waiting for a signal.
+        subject = new PublicationRequestQueue(
+            publicationRequestRepository, backgroundTaskRunner, new BackgroundServiceMetrics(new SimpleMeterRegistry()),
+            applicationContext, mock(PlatformTransactionManager.class), true,
+            COALESCE_DELAY_MILLIS, MINIMUM_INTERVAL_MILLIS, 0,
+            millis -> {
+                sleeps.add(millis);
+                DateTimeUtils.setCurrentMillisFixed(DateTimeUtils.currentTimeMillis() + millis);
+                duringSleep.run();
+            }
+        );
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void should_not_publish_without_signal_or_pending_requests() throws InterruptedException {
+        subject.processNextSignal();
+
+        assertThat(sleeps).isEmpty();
+        verify(publicationService, never()).execute();
+    }
+
+    @Test
+    public void should_coalesce_signals_into_single_publication() throws InterruptedException {
+        subject.signal();
+        subject.signal();
+        // Commands that commit while the worker waits are published by the same run.
+        duringSleep = subject::signal;
+
+        subject.processNextSignal();
+        subject.processNextSignal();
+
+        assertThat(sleeps).containsExactly(COALESCE_DELAY_MILLIS);
+        verify(publicationService, times(1)).execute();
+        verify(rrdpService, times(1)).execute();
+    }
+
+    @Test
+    public void should_keep_minimum_interval_between_publications() throws InterruptedException {
+        subject.signal();
+        subject.processNextSignal();
+
+        DateTimeUtils.setCurrentMillisFixed(DateTimeUtils.currentTimeMillis() + 1_000);
+        subject.signal();
+        subject.processNextSignal();
+
+        DateTimeUtils.setCurrentMillisFixed(DateTimeUtils.currentTimeMillis() + MINIMUM_INTERVAL_MILLIS);
+        subject.signal();
+        subject.processNextSignal();
+
+        assertThat(sleeps).containsExactly(COALESCE_DELAY_MILLIS, MINIMUM_INTERVAL_MILLIS - 1_000, COALESCE_DELAY_MILLIS);
+        verify(publicationService, times(3)).execute();
+    }
+
+    @Test
+    public void should_continue_publishing_while_requests_remain() throws InterruptedException {
+        when(publicationRequestRepository.hasPendingRequests()).thenReturn(true, false);
+
+        subject.signal();
+        subject.processNextSignal();
+        subject.processNextSignal();
+        subject.processNextSignal();
+
+        assertThat(sleeps).containsExactly(COALESCE_DELAY_MILLIS, MINIMUM_INTERVAL_MILLIS);
+        verify(publicationService, times(2)).execute();
+    }
+
+    @Test
+    public void should_retry_pending_requests_after_failure() throws InterruptedException {
+        when(publicationService.execute())
+            .thenThrow(new IllegalStateException("publication failed"))
+            .thenReturn(FAILURE)
+            .thenReturn(SUCCESS);
+        when(publicationRequestRepository.hasPendingRequests()).thenReturn(true, true, false);
+
+        subject.signal();
+        // Failed with an exception, the request is still pending.
+        subject.processNextSignal();
+        // Failed, the request is still pending.
+        subject.processNextSignal();
+        subject.processNextSignal();
+        subject.processNextSignal();
+
+        verify(publicationService, times(3)).execute();
+        verify(rrdpService, times(1)).execute();
+    }
+
+    @Test
+    public void should_not_publish_on_inactive_node() throws InterruptedException {
+        when(backgroundTaskRunner.isActiveNode()).thenReturn(false);
+
+        subject.signal();
+        subject.processNextSignal();
+
+        verify(publicationService, never()).execute();
+    }
+}
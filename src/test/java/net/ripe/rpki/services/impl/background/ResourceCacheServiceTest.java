@@ -1,5 +1,6 @@
 package net.ripe.rpki.services.impl.background;
 
+import com.google.common.collect.Sets;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.Getter;
 import net.ripe.ipresource.IpResourceSet;
@@ -394,9 +395,11 @@ public class ResourceCacheServiceTest {
         }
 
         @Override
-        public void populateCache(Map<CaName, IpResourceSet> certifiableResources) {
-            this.cache.set(certifiableResources);
+        public int populateCache(Map<CaName, IpResourceSet> certifiableResources) {
+            Map<CaName, IpResourceSet> previous = this.cache.getAndSet(certifiableResources);
             this.lastUpdate.set(System.currentTimeMillis());
+            return Sets.difference(previous.entrySet(), certifiableResources.entrySet()).size()
+                + (int) certifiableResources.keySet().stream().filter(caName -> !previous.containsKey(caName)).count();
         }
 
         @Override
@@ -405,5 +408,19 @@ public class ResourceCacheServiceTest {
                     .filter(x -> !x.getKey().equals(productionCaName))
                     .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
         }
+
+        @Override
+        public long getGeneration() {
+            return lastUpdate.get();
+        }
+
+        @Override
+        public Map<CaName, Long> findResourceChanges() {
+            return emptyMap();
+        }
+
+        @Override
+        public void clearResourceChange(CaName caName, long generation) {
+        }
     }
 }
\ No newline at end of file
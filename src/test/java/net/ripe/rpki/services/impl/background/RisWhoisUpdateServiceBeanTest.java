@@ -2,9 +2,13 @@ package net.ripe.rpki.services.impl.background;
 
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.ipresource.Asn;
+import net.ripe.ipresource.IpRange;
+import net.ripe.ipresource.IpResourceSet;
 import net.ripe.rpki.bgpris.BgpRisEntryRepositoryBean;
 import net.ripe.rpki.bgpris.riswhois.RisWhoisFetcher;
 import net.ripe.rpki.core.services.background.BackgroundTaskRunner;
+import net.ripe.rpki.server.api.dto.BgpRisEntry;
 import net.ripe.rpki.server.api.services.system.ActiveNodeService;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,9 +17,12 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.List;
+import java.io.StringReader;
+import java.util.Collections;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -28,7 +35,6 @@ public class RisWhoisUpdateServiceBeanTest {
     @Mock
     ActiveNodeService activeNodeService;
 
-    @Mock
     BgpRisEntryRepositoryBean repository;
 
     @Mock
@@ -39,26 +45,25 @@ public class RisWhoisUpdateServiceBeanTest {
     @Before
     public void setUp() {
         MeterRegistry registry = new SimpleMeterRegistry();
+        repository = new BgpRisEntryRepositoryBean();
         subject = new RisWhoisUpdateServiceBean(new BackgroundTaskRunner(activeNodeService, registry), repository, BASE_URL, fetcher, registry);
     }
 
 
-    @SuppressWarnings({"unchecked"})
     @Test
     public void shouldUpdateRepositoryWhenMoreThan100kEntriesFound() throws IOException {
-        when(fetcher.fetch(IPV4_FILE_URL)).thenReturn(getTestLines(100001));
-        when(fetcher.fetch(IPV6_FILE_URL)).thenReturn(getTestLines(0));
+        givenContent(IPV4_FILE_URL, getTestLines(100001));
+        givenContent(IPV6_FILE_URL, getTestLines(0));
 
         subject.runService();
 
-        verify(repository).resetEntries(isA(List.class));
+        assertThat(repository.isEmpty()).isFalse();
     }
 
-    @SuppressWarnings({"unchecked"})
     @Test
     public void shouldNotFailOnPartiallyBrokenFile() throws IOException {
-        when(fetcher.fetch(IPV4_FILE_URL)).thenReturn(getTestLines(100001));
-        when(fetcher.fetch(IPV6_FILE_URL)).thenReturn(
+        givenContent(IPV4_FILE_URL, getTestLines(100001));
+        givenContent(IPV6_FILE_URL,
                 "207841\t::ffff:0.0.0.0/96\t1\n" +
                 "268624\t::ffff:45.164.124.0/120\t1\n" +
                 "268624\t::ffff:45.164.125.0/120\t1\n" +
@@ -69,29 +74,44 @@ public class RisWhoisUpdateServiceBeanTest {
 
         subject.runService();
 
-        verify(repository).resetEntries(isA(List.class));
+        assertThat(repository.isEmpty()).isFalse();
     }
 
-    @SuppressWarnings({"unchecked"})
     @Test
     public void shouldNOTUpdateRepositoryWhenLessThan100kEntriesFound() throws IOException {
-        when(fetcher.fetch(IPV4_FILE_URL)).thenReturn(getTestLines(0));
-        when(fetcher.fetch(IPV6_FILE_URL)).thenReturn(getTestLines(99999));
+        givenContent(IPV4_FILE_URL, getTestLines(0));
+        givenContent(IPV6_FILE_URL, getTestLines(99999));
 
         subject.runService();
 
-        verify(repository, never()).resetEntries(isA(Collection.class));
+        assertThat(repository.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldKeepCurrentEntriesWhenFetchingADumpFails() throws IOException {
+        BgpRisEntry current = new BgpRisEntry(Asn.parse("AS3333"), IpRange.parse("193.0.0.0/21"), 100);
+        repository.resetEntries(Collections.singletonList(current));
+        givenContent(IPV4_FILE_URL, getTestLines(100001));
+        when(fetcher.fetch(eq(IPV6_FILE_URL), any())).thenThrow(new IOException());
+
+        subject.runService();
+
+        assertThat(repository.findMostSpecificOverlapping(IpResourceSet.parse("0.0.0.0/0"))).containsExactly(current);
     }
 
     @Test
     public void shouldHandleExceptionsGracefully() throws IOException {
-        when(fetcher.fetch(IPV4_FILE_URL)).thenThrow(new IOException());
-        when(fetcher.fetch(IPV6_FILE_URL)).thenThrow(new IOException());
+        when(fetcher.fetch(eq(IPV4_FILE_URL), any())).thenThrow(new IOException());
 
         // No uncaught exception
         subject.runService();
     }
 
+    private void givenContent(String url, String content) throws IOException {
+        when(fetcher.fetch(eq(url), any())).thenAnswer(invocation ->
+            invocation.<RisWhoisFetcher.ContentHandler<?>>getArgument(1).handle(new StringReader(content)));
+    }
+
     private String getTestLines(int lines) {
         StringBuilder responseBuilder = new StringBuilder();
         for (int i = 0; i < lines; i++) {
@@ -0,0 +1,57 @@
+package net.ripe.rpki.services.impl.background;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.domain.roa.RoaConfigurationRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class RoaMetricsServiceTest {
+
+    private RoaConfigurationRepository roaConfigurationRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private RoaMetricsService subject;
+
+    @Before
+    public void setUp() {
+        roaConfigurationRepository = mock(RoaConfigurationRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        subject = new RoaMetricsService(meterRegistry, roaConfigurationRepository, mock(PlatformTransactionManager.class), 300);
+    }
+
+    @Test
+    public void should_not_query_repository_when_scraped() {
+        assertThat(vrpCount()).isNaN();
+        assertThat(meterRegistry.get("rpkicore.vrp.count.computed").gauge().value()).isZero();
+
+        verifyNoInteractions(roaConfigurationRepository);
+    }
+
+    @Test
+    public void should_report_computed_vrp_count() {
+        when(roaConfigurationRepository.countRoaPrefixes()).thenReturn(42);
+
+        subject.refresh();
+
+        assertThat(vrpCount()).isEqualTo(42.0);
+        assertThat(meterRegistry.get("rpkicore.vrp.count.computed").gauge().value()).isPositive();
+        verify(roaConfigurationRepository, times(1)).countRoaPrefixes();
+    }
+
+    @Test
+    public void should_keep_previous_vrp_count_when_refresh_fails() {
+        when(roaConfigurationRepository.countRoaPrefixes()).thenReturn(42).thenThrow(new IllegalStateException("database unavailable"));
+        subject.refresh();
+
+        subject.refresh();
+
+        assertThat(vrpCount()).isEqualTo(42.0);
+    }
+
+    private double vrpCount() {
+        return meterRegistry.get("rpkicore.vrp.count").gauge().value();
+    }
+}
@@ -59,4 +59,14 @@ public class IssueUpdatedManifestAndCrlCommandHandlerTest {
 
         assertThrows(CommandWithoutEffectException.class, () -> subject.handle(new IssueUpdatedManifestAndCrlCommand(rootCa.getVersionedId())));
     }
+
+    @Test
+    public void should_complete_check_when_reconciliation_was_needed() {
+        when(rootCa.isReconciliationNeeded()).thenReturn(true);
+        when(manifestPublicationService.updateManifestAndCrlIfNeeded(rootCa)).thenReturn(0L);
+
+        subject.handle(new IssueUpdatedManifestAndCrlCommand(rootCa.getVersionedId()));
+
+        verify(rootCa).manifestAndCrlCheckCompleted();
+    }
 }
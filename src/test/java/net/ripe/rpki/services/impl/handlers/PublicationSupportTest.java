@@ -1,32 +1,30 @@
 package net.ripe.rpki.services.impl.handlers;
 
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import junit.framework.TestCase;
 import net.ripe.rpki.domain.PublishedObjectData;
-import net.ripe.rpki.domain.PublishedObjectRepository;
 import net.ripe.rpki.publication.server.PublishingServerClient;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
-import reactor.core.publisher.Mono;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static net.ripe.rpki.domain.TestObjects.BASE_URI;
+import static net.ripe.rpki.publication.server.PublishingServerReplies.replyWith;
 import static net.ripe.rpki.services.impl.handlers.PublicationSupport.CORE_CLIENT_ID;
-import static net.ripe.rpki.services.impl.handlers.PublicationSupport.objectHash;
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -39,14 +37,10 @@ public class PublicationSupportTest extends TestCase {
 
     private static final URI PUBLICATION_SERVER_URL = URI.create("https://localhost/publication-server");
 
-    @Mock
-    private PublishedObjectRepository publishedObjectRepository;
-
     @Mock
     private PublishingServerClient publishingServerClient;
 
-    @Captor
-    private ArgumentCaptor<String> xmlCaptor;
+    private final List<String> xmlRequests = new ArrayList<>();
 
     private PublicationSupport subject;
     private PublishedObjectData published1;
@@ -58,10 +52,8 @@ public class PublicationSupportTest extends TestCase {
         published1 = new PublishedObjectData(new Timestamp(System.currentTimeMillis()), BASE_URI.resolve("object.cer"), new byte[]{4, 5, 6});
         published2 = new PublishedObjectData(new Timestamp(System.currentTimeMillis()), BASE_URI.resolve("manifest.mft"), new byte[]{1, 2, 3});
 
-        when(publishedObjectRepository.findCurrentlyPublishedObjects()).thenReturn(Arrays.asList(published1, published2));
-
         meterRegistry = new SimpleMeterRegistry();
-        subject = new PublicationSupport(publishingServerClient, meterRegistry, Collections.singletonList(PUBLICATION_SERVER_URL));
+        subject = new PublicationSupport(publishingServerClient, meterRegistry, Collections.singletonList(PUBLICATION_SERVER_URL), 1024 * 1024, 0);
     }
 
     @Test
@@ -69,13 +61,11 @@ public class PublicationSupportTest extends TestCase {
         final String listResponse = "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\"></msg>";
         final String publishResponse = "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\"></msg>";
 
-        when(publishingServerClient.publish(PUBLICATION_SERVER_URL, LIST_REQUEST, CORE_CLIENT_ID)).thenReturn(Mono.just(listResponse));
-        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), anyString(), eq(CORE_CLIENT_ID))).thenReturn(Mono.just(publishResponse));
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), eq(CORE_CLIENT_ID))).then(replyWith(xmlRequests, listResponse, publishResponse));
 
-        subject.publishAllObjects(Arrays.asList(published1, published2));
+        subject.publishAllObjects(Stream.of(published1, published2));
 
-        verify(publishingServerClient, times(2)).publish(eq(PUBLICATION_SERVER_URL), xmlCaptor.capture(), eq(CORE_CLIENT_ID));
-        List<String> xmlRequests = xmlCaptor.getAllValues();
+        verify(publishingServerClient, times(2)).publish(eq(PUBLICATION_SERVER_URL), any(), eq(CORE_CLIENT_ID));
         assertEquals(LIST_REQUEST, xmlRequests.get(0));
         assertEquals("<msg xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\" type=\"query\" version=\"3\">" +
             "<publish uri=\"rsync://localhost:20873/repository/manifest.mft\">AQID</publish>" +
@@ -90,12 +80,11 @@ public class PublicationSupportTest extends TestCase {
             "</msg>";
         final String publishResponse = "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\"></msg>";
 
-        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), anyString(), eq(CORE_CLIENT_ID))).thenReturn(Mono.just(listResponse)).thenReturn(Mono.just(publishResponse));
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), eq(CORE_CLIENT_ID))).then(replyWith(xmlRequests, listResponse, publishResponse));
 
-        subject.publishAllObjects(Collections.singletonList(published1));
+        subject.publishAllObjects(Stream.of(published1));
 
-        verify(publishingServerClient, times(2)).publish(eq(PUBLICATION_SERVER_URL), xmlCaptor.capture(), eq(CORE_CLIENT_ID));
-        List<String> xmlRequests = xmlCaptor.getAllValues();
+        verify(publishingServerClient, times(2)).publish(eq(PUBLICATION_SERVER_URL), any(), eq(CORE_CLIENT_ID));
         assertEquals(LIST_REQUEST, xmlRequests.get(0));
         assertEquals("<msg xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\" type=\"query\" version=\"3\">" +
             "<withdraw hash=\"039058C6F2C0CB492C533B0A4D14EF77CC0F78ABCCCED5287D84A1A2011CFB81\" uri=\"rsync://localhost:20873/repository/manifest.mft\"/>" +
@@ -110,12 +99,11 @@ public class PublicationSupportTest extends TestCase {
             "</msg>";
         final String publishResponse = "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\"></msg>";
 
-        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), anyString(), eq(CORE_CLIENT_ID))).thenReturn(Mono.just(listResponse)).thenReturn(Mono.just(publishResponse));
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), eq(CORE_CLIENT_ID))).then(replyWith(xmlRequests, listResponse, publishResponse));
 
-        subject.publishAllObjects(Arrays.asList(published1, published2));
+        subject.publishAllObjects(Stream.of(published1, published2));
 
-        verify(publishingServerClient, times(2)).publish(eq(PUBLICATION_SERVER_URL), xmlCaptor.capture(), eq(CORE_CLIENT_ID));
-        List<String> xmlRequests = xmlCaptor.getAllValues();
+        verify(publishingServerClient, times(2)).publish(eq(PUBLICATION_SERVER_URL), any(), eq(CORE_CLIENT_ID));
         assertEquals(LIST_REQUEST, xmlRequests.get(0));
         assertEquals("<msg xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\" type=\"query\" version=\"3\">" +
             "<publish uri=\"rsync://localhost:20873/repository/object.cer\">BAUG</publish>" +
@@ -123,6 +111,23 @@ public class PublicationSupportTest extends TestCase {
             "</msg>", xmlRequests.get(1));
     }
 
+    @Test
+    public void should_publish_last_object_with_duplicate_uri() {
+        final String listResponse = "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\"></msg>";
+        final String publishResponse = "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\"></msg>";
+        PublishedObjectData duplicate = new PublishedObjectData(new Timestamp(System.currentTimeMillis()), published2.getUri(), new byte[]{7, 8, 9});
+
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), eq(CORE_CLIENT_ID))).then(replyWith(xmlRequests, listResponse, publishResponse));
+
+        subject.publishAllObjects(Stream.of(published1, published2, duplicate));
+
+        verify(publishingServerClient, times(2)).publish(eq(PUBLICATION_SERVER_URL), any(), eq(CORE_CLIENT_ID));
+        assertEquals("<msg xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\" type=\"query\" version=\"3\">" +
+            "<publish uri=\"rsync://localhost:20873/repository/manifest.mft\">BwgJ</publish>" +
+            "<publish uri=\"rsync://localhost:20873/repository/object.cer\">BAUG</publish>" +
+            "</msg>", xmlRequests.get(1));
+    }
+
     @Test
     public void should_keep_objects_with_matching_hash() {
         final String listResponse = "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\">" +
@@ -130,31 +135,23 @@ public class PublicationSupportTest extends TestCase {
             "</msg>";
         final String publishResponse = "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\"></msg>";
 
-        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), anyString(), eq(CORE_CLIENT_ID))).thenReturn(Mono.just(listResponse)).thenReturn(Mono.just(publishResponse));
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), eq(CORE_CLIENT_ID))).then(replyWith(xmlRequests, listResponse, publishResponse));
 
-        subject.publishAllObjects(Arrays.asList(published1, published2));
+        subject.publishAllObjects(Stream.of(published1, published2));
 
-        verify(publishingServerClient, times(2)).publish(eq(PUBLICATION_SERVER_URL), xmlCaptor.capture(), eq(CORE_CLIENT_ID));
-        List<String> xmlRequests = xmlCaptor.getAllValues();
+        verify(publishingServerClient, times(2)).publish(eq(PUBLICATION_SERVER_URL), any(), eq(CORE_CLIENT_ID));
         assertEquals(LIST_REQUEST, xmlRequests.get(0));
         assertEquals("<msg xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\" type=\"query\" version=\"3\">" +
             "<publish uri=\"rsync://localhost:20873/repository/object.cer\">BAUG</publish>" +
             "</msg>", xmlRequests.get(1));
     }
 
-    @Test
-    public void should_compute_correct_hash() {
-        final byte[] bytes = "sample text".getBytes(StandardCharsets.US_ASCII);
-        // echo -n "sample text" | openssl dgst -sha256 -hex | tr a-f A-F
-        assertEquals("BC658C641EF71739FB9995BDED59B21150BBFF4367F6E4E4C7934B489B9D2C00", objectHash(bytes));
-    }
-
     @Test
     public void should_count_successful_publications() {
         final String listResponse = "<msg type=\"reply\" version=\"3\" xmlns=\"http://www.hactrn.net/uris/rpki/publication-spec/\"></msg>";
-        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), anyString(), eq(CORE_CLIENT_ID))).thenReturn(Mono.just(listResponse));
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), eq(CORE_CLIENT_ID))).then(replyWith(xmlRequests, listResponse));
 
-        subject.publishAllObjects(Collections.emptyList());
+        subject.publishAllObjects(Stream.empty());
 
         assertThat(meterRegistry.get("rpkicore.publication.total").tag("status", "success").counter()).satisfies((counter) -> {
             assertThat(counter.count()).isEqualTo(1);
@@ -163,12 +160,16 @@ public class PublicationSupportTest extends TestCase {
 
     @Test
     public void should_count_failed_publications() {
-        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), anyString(), eq(CORE_CLIENT_ID))).thenThrow(new RuntimeException("unit testing"));
+        when(publishingServerClient.publish(eq(PUBLICATION_SERVER_URL), any(), eq(CORE_CLIENT_ID))).thenThrow(new RuntimeException("unit testing"));
 
-        subject.publishAllObjects(Collections.emptyList());
+        subject.publishAllObjects(Stream.empty());
 
         assertThat(meterRegistry.get("rpkicore.publication.total").tag("status", "failed").counter()).satisfies((counter) -> {
             assertThat(counter.count()).isEqualTo(1);
         });
     }
+
+    private static String objectHash(byte[] bytes) {
+        return BaseEncoding.base16().encode(Hashing.sha256().hashBytes(bytes).asBytes());
+    }
 }
@@ -5,6 +5,7 @@ import net.ripe.ipresource.IpResourceSet;
 import net.ripe.rpki.commons.util.VersionedId;
 import net.ripe.rpki.domain.CertificateAuthorityRepository;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
+import net.ripe.rpki.domain.ReconciliationReason;
 import net.ripe.rpki.domain.aspa.AspaConfiguration;
 import net.ripe.rpki.domain.aspa.AspaConfigurationRepository;
 import net.ripe.rpki.server.api.commands.UpdateAspaConfigurationCommand;
@@ -67,7 +68,7 @@ public class UpdateAspaConfigurationCommandHandlerTest {
         ArgumentCaptor<AspaConfiguration> aspaConfigurationArgumentCaptor = ArgumentCaptor.forClass(AspaConfiguration.class);
         verify(aspaConfigurationRepository).add(aspaConfigurationArgumentCaptor.capture());
         assertThat(aspaConfigurationArgumentCaptor.getValue().getProviders()).isEqualTo(Collections.singletonMap(Asn.parse("AS3"), AspaAfiLimit.IPv4));
-        verify(managedCertificateAuthority).configurationUpdated();
+        verify(managedCertificateAuthority).reconciliationNeeded(ReconciliationReason.ASPA_CONFIGURATION);
     }
 
     @Test
@@ -85,7 +86,7 @@ public class UpdateAspaConfigurationCommandHandlerTest {
         subject.handle(command);
 
         assertThat(aspa_as1234.getProviders()).isEqualTo(Collections.singletonMap(Asn.parse("AS3"), AspaAfiLimit.IPv4));
-        verify(managedCertificateAuthority).configurationUpdated();
+        verify(managedCertificateAuthority).reconciliationNeeded(ReconciliationReason.ASPA_CONFIGURATION);
     }
 
     @Test
@@ -100,7 +101,7 @@ public class UpdateAspaConfigurationCommandHandlerTest {
         subject.handle(command);
 
         verify(aspaConfigurationRepository).remove(aspa_as1234);
-        verify(managedCertificateAuthority).configurationUpdated();
+        verify(managedCertificateAuthority).reconciliationNeeded(ReconciliationReason.ASPA_CONFIGURATION);
     }
 
     @Test
@@ -116,7 +117,7 @@ public class UpdateAspaConfigurationCommandHandlerTest {
         )));
 
         assertThatThrownBy(() -> subject.handle(command)).isInstanceOf(CommandWithoutEffectException.class);
-        verify(managedCertificateAuthority, never()).configurationUpdated();
+        verify(managedCertificateAuthority, never()).reconciliationNeeded(ReconciliationReason.ASPA_CONFIGURATION);
     }
 
     @Test
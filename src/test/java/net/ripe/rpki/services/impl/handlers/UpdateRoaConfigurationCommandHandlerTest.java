@@ -4,6 +4,7 @@ import net.ripe.ipresource.Asn;
 import net.ripe.ipresource.IpRange;
 import net.ripe.rpki.domain.CertificateAuthorityRepository;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
+import net.ripe.rpki.domain.ReconciliationReason;
 import net.ripe.rpki.domain.TestObjects;
 import net.ripe.rpki.domain.inmemory.InMemoryResourceCertificateRepository;
 import net.ripe.rpki.domain.roa.RoaConfiguration;
@@ -17,6 +18,7 @@ import net.ripe.rpki.services.impl.background.RoaMetricsService;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
 
 import static org.junit.Assert.*;
@@ -98,6 +100,36 @@ public class UpdateRoaConfigurationCommandHandlerTest {
         verify(roaMetricsService).countDeleted(1);
     }
 
+    @Test
+    public void should_log_only_deletions_of_configured_prefixes() {
+        RoaConfigurationPrefix configured = new RoaConfigurationPrefix(ASN, PREFIX, null);
+        RoaConfigurationPrefix other = new RoaConfigurationPrefix(ASN, IpRange.parse("10.2/16"), null);
+        configuration.addPrefix(Collections.singleton(configured));
+
+        subject.handle(new UpdateRoaConfigurationCommand(
+                certificateAuthority.getVersionedId(),
+                Collections.singletonList(other.toData()),
+                Arrays.asList(configured.toData(), other.toData(), new RoaConfigurationPrefixData(ASN, IpRange.parse("10.3/16"), null))));
+
+        assertEquals(Collections.emptySet(), configuration.getPrefixes());
+        verify(roaEntityService).logRoaPrefixDeletion(configuration, Collections.singleton(configured));
+    }
+
+    @Test
+    public void should_log_deletion_of_prefix_replaced_with_other_maximum_length() {
+        RoaConfigurationPrefix configured = new RoaConfigurationPrefix(ASN, PREFIX, 24);
+        RoaConfigurationPrefix replacement = new RoaConfigurationPrefix(ASN, PREFIX, 22);
+        configuration.addPrefix(Collections.singleton(configured));
+
+        subject.handle(new UpdateRoaConfigurationCommand(
+                certificateAuthority.getVersionedId(),
+                Collections.singletonList(replacement.toData()),
+                Collections.singletonList(configured.toData())));
+
+        assertEquals(Collections.singleton(replacement), configuration.getPrefixes());
+        verify(roaEntityService).logRoaPrefixDeletion(configuration, Collections.singleton(configured));
+    }
+
     @Test
     public void should_notify_roa_entity_service_on_configuration_change() {
         certificateAuthority.manifestAndCrlCheckCompleted();
@@ -109,5 +141,6 @@ public class UpdateRoaConfigurationCommandHandlerTest {
                 Collections.emptyList()));
 
         assertThat(certificateAuthority.isManifestAndCrlCheckNeeded()).isTrue();
+        assertThat(certificateAuthority.getReconciliationReasons()).containsExactly(ReconciliationReason.ROA_CONFIGURATION);
     }
 }
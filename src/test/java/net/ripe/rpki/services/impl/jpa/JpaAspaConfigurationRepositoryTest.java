@@ -48,4 +48,18 @@ public class JpaAspaConfigurationRepositoryTest extends CertificationDomainTestC
         final SortedMap<Asn, AspaConfiguration> byCa = subject.findByCertificateAuthority(ca);
         assertThat(byCa.values()).hasSize(1).allSatisfy(aspa -> assertThat(aspa.toData()).isEqualTo(aspa1.toData()));
     }
+
+    @Test
+    public void shouldCountAndReturnLastModified() {
+        assertThat(subject.countAspaConfigurations()).isZero();
+        assertThat(subject.lastModified()).isEmpty();
+
+        SortedMap<Asn, AspaAfiLimit> providers = new TreeMap<>();
+        providers.put(Asn.parse("AS10"), AspaAfiLimit.ANY);
+        subject.add(new AspaConfiguration(ca, Asn.parse("AS1"), providers));
+        entityManager.flush();
+
+        assertThat(subject.countAspaConfigurations()).isEqualTo(1);
+        assertThat(subject.lastModified()).isPresent();
+    }
 }
@@ -0,0 +1,154 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import net.ripe.rpki.commons.provisioning.cms.ProvisioningCmsObject;
+import net.ripe.rpki.commons.provisioning.payload.revocation.request.CertificateRevocationRequestPayloadBuilder;
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.domain.ProvisioningAuditLogEntity;
+import net.ripe.rpki.domain.audit.AuditPartitionRepository.AuditPartition;
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
+import javax.transaction.Transactional;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static net.ripe.rpki.domain.audit.AuditPartitionRepository.COMMAND_AUDIT_TABLE;
+import static net.ripe.rpki.domain.audit.AuditPartitionRepository.PROVISIONING_AUDIT_LOG_TABLE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Transactional
+public class JpaAuditPartitionRepositoryTest extends CertificationDomainTestCase {
+
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    @Inject
+    private JpaAuditPartitionRepository subject;
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void should_find_partitions_with_their_end() {
+        for (String table : Arrays.asList(COMMAND_AUDIT_TABLE, PROVISIONING_AUDIT_LOG_TABLE)) {
+            List<AuditPartition> partitions = subject.findPartitions(table);
+
+            assertThat(partitions).extracting(AuditPartition::getName).contains(table + "_legacy", table + "_default");
+            assertThat(partitions.get(partitions.size() - 1).isDefault()).isTrue();
+            for (AuditPartition partition : partitions.subList(0, partitions.size() - 1)) {
+                assertThat(partition.getEnd()).isNotNull();
+                assertThat(partition.getEnd().atZone(ZoneOffset.UTC).toLocalDateTime())
+                    .isEqualTo(YearMonth.from(partition.getEnd().atZone(ZoneOffset.UTC)).atDay(1).atStartOfDay());
+                if (!partition.getName().endsWith("_legacy")) {
+                    YearMonth month = YearMonth.parse(partition.getName().substring((table + "_p").length()), MONTH_SUFFIX);
+                    assertThat(partition.getEnd()).isEqualTo(startOf(month.plusMonths(1)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void should_create_monthly_partition() {
+        YearMonth month = YearMonth.now(ZoneOffset.UTC).plusYears(10);
+
+        assertThat(subject.createMonthlyPartition(COMMAND_AUDIT_TABLE, month)).isTrue();
+        assertThat(subject.createMonthlyPartition(COMMAND_AUDIT_TABLE, month)).isTrue();
+
+        assertThat(subject.findPartitions(COMMAND_AUDIT_TABLE))
+            .contains(new AuditPartition(COMMAND_AUDIT_TABLE, "commandaudit_p" + month.format(MONTH_SUFFIX), startOf(month.plusMonths(1))));
+    }
+
+    @Test
+    public void should_export_and_delete_entries_before_cutoff() {
+        ProvisioningAuditLogEntity expired = persistEntry("1990-01-15T12:00:00Z");
+        ProvisioningAuditLogEntity retained = persistEntry("1990-03-15T12:00:00Z");
+        AuditPartition legacy = findPartition(PROVISIONING_AUDIT_LOG_TABLE + "_legacy");
+        Instant cutoff = Instant.parse("1990-02-01T00:00:00Z");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(subject.exportEntries(legacy, cutoff, out)).isEqualTo(1);
+
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("id", "executiontime", "entry_uuid", "summary");
+        assertThat(lines[1]).contains(expired.getEntryUuid().toString(), "1990-01-15");
+
+        assertThat(subject.deleteEntries(legacy, cutoff)).isEqualTo(1);
+        assertThat(countEntryUuids(expired.getEntryUuid())).isZero();
+        assertThat(countEntryUuids(retained.getEntryUuid())).isOne();
+    }
+
+    @Test
+    public void should_drop_partition_with_its_entry_uuids() {
+        YearMonth month = YearMonth.now(ZoneOffset.UTC).plusYears(10);
+        assertThat(subject.createMonthlyPartition(PROVISIONING_AUDIT_LOG_TABLE, month)).isTrue();
+        ProvisioningAuditLogEntity entry = persistEntry(startOf(month).toString());
+        AuditPartition partition = findPartition(PROVISIONING_AUDIT_LOG_TABLE + "_p" + month.format(MONTH_SUFFIX));
+
+        subject.dropPartition(partition);
+
+        assertThat(subject.findPartitions(PROVISIONING_AUDIT_LOG_TABLE)).doesNotContain(partition);
+        assertThat(countEntryUuids(entry.getEntryUuid())).isZero();
+    }
+
+    @Test
+    public void should_keep_entry_uuid_unique_across_partitions() {
+        ProvisioningAuditLogEntity entry = persistEntry("1990-01-15T12:00:00Z");
+        assertThat(countEntryUuids(entry.getEntryUuid())).isOne();
+
+        // The copy ends up in the default partition.
+        Query copy = entityManager.createNativeQuery("INSERT INTO provisioning_audit_log (id, version, created_at, updated_at, " +
+                "request_message_type, principal, summary, executiontime, provisioning_cms_object, non_hosted_ca_uuid, entry_uuid) " +
+                "SELECT nextval('seq_all'), version, created_at, updated_at, request_message_type, principal, summary, " +
+                "       executiontime + INTERVAL '100 years', provisioning_cms_object, non_hosted_ca_uuid, entry_uuid " +
+                "  FROM provisioning_audit_log WHERE id = :id")
+            .setParameter("id", entry.getId());
+
+        assertThatThrownBy(copy::executeUpdate).isInstanceOf(PersistenceException.class);
+    }
+
+    private ProvisioningAuditLogEntity persistEntry(String executionTime) {
+        ProvisioningCmsObject cms = mock(ProvisioningCmsObject.class);
+        when(cms.getPayload()).thenReturn(new CertificateRevocationRequestPayloadBuilder().build());
+        when(cms.getEncoded()).thenReturn(new byte[]{1, 2, 3, 4});
+
+        DateTimeUtils.setCurrentMillisFixed(Instant.parse(executionTime).toEpochMilli());
+        ProvisioningAuditLogEntity entry = new ProvisioningAuditLogEntity(cms, "principal", UUID.randomUUID());
+        entityManager.persist(entry);
+        entityManager.flush();
+        DateTimeUtils.setCurrentMillisSystem();
+        return entry;
+    }
+
+    private AuditPartition findPartition(String name) {
+        return subject.findPartitions(PROVISIONING_AUDIT_LOG_TABLE).stream()
+            .filter(partition -> partition.getName().equals(name))
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("partition " + name + " not found"));
+    }
+
+    private long countEntryUuids(UUID entryUuid) {
+        return ((Number) entityManager.createNativeQuery("SELECT COUNT(*) FROM provisioning_audit_log_entry_uuid WHERE entry_uuid = CAST(:entryUuid AS UUID)")
+            .setParameter("entryUuid", entryUuid.toString())
+            .getSingleResult()).longValue();
+    }
+
+    private static Instant startOf(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+}
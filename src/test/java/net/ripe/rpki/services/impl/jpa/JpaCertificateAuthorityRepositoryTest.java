@@ -1,5 +1,7 @@
 package net.ripe.rpki.services.impl.jpa;
 
+import net.ripe.ipresource.Asn;
+import net.ripe.ipresource.IpRange;
 import net.ripe.rpki.commons.provisioning.x509.ProvisioningIdentityCertificateBuilderTest;
 import net.ripe.rpki.commons.util.UTC;
 import net.ripe.rpki.domain.CertificateAuthority;
@@ -9,24 +11,52 @@ import net.ripe.rpki.domain.NameNotUniqueException;
 import net.ripe.rpki.domain.NonHostedCertificateAuthority;
 import net.ripe.rpki.domain.ProductionCertificateAuthority;
 import net.ripe.rpki.domain.manifest.ManifestEntity;
+import net.ripe.rpki.domain.roa.RoaConfiguration;
+import net.ripe.rpki.domain.roa.RoaConfigurationPrefix;
+import net.ripe.rpki.domain.roa.RoaConfigurationRepository;
+import net.ripe.rpki.server.api.commands.UpdateRoaConfigurationCommand;
+import net.ripe.rpki.server.api.dto.CaStatCaEvent;
+import net.ripe.rpki.server.api.dto.CaStatEvent;
+import net.ripe.rpki.server.api.dto.CaStatRoaEvent;
+import net.ripe.rpki.server.api.dto.RoaConfigurationPrefixData;
+import org.apache.commons.io.IOUtils;
+import org.hibernate.Session;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.security.auth.x500.X500Principal;
 import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
-@Transactional
 public class JpaCertificateAuthorityRepositoryTest extends CertificationDomainTestCase {
 
+    private static final DateTimeFormatter CA_STAT_DATE_FORMAT = DateTimeFormat.forPattern("YYYY-MM-dd HH:mm:ss");
+
+    @Autowired
+    private RoaConfigurationRepository roaConfigurationRepository;
+
     @Before
     public void setUp() {
-        clearDatabase();
+        transactionTemplate.executeWithoutResult((status) -> clearDatabase());
     }
 
     @Test
+    @Transactional
     public void findAllWithOutdatedManifests() {
         assertThat(certificateAuthorityRepository.findAllWithOutdatedManifests(
             UTC.dateTime().plus(ManifestEntity.TIME_TO_NEXT_UPDATE_SOFT_LIMIT),
@@ -35,6 +65,7 @@ public class JpaCertificateAuthorityRepositoryTest extends CertificationDomainTe
     }
 
     @Test
+    @Transactional
     public void findAllWithPendingPublications() {
         assertThat(certificateAuthorityRepository.findAllWithManifestsExpiringBefore(
             UTC.dateTime().plus(ManifestEntity.TIME_TO_NEXT_UPDATE_SOFT_LIMIT),
@@ -43,16 +74,19 @@ public class JpaCertificateAuthorityRepositoryTest extends CertificationDomainTe
     }
 
     @Test
+    @Transactional
     public void deleteNonHostedPublicKeysWithoutSigningCertificates() {
         assertThat(certificateAuthorityRepository.deleteNonHostedPublicKeysWithoutSigningCertificates()).isZero();
     }
 
     @Test
+    @Transactional
     public void getCasWithoutKeyPairsOlderThenOneYear() {
         assertThat(certificateAuthorityRepository.getCasWithoutKeyPairsAndRoaConfigurationsAndUserActivityDuringTheLastYear()).isEmpty();
     }
 
     @Test
+    @Transactional
     public void should_throw_NameNotUniqueException_for_duplicate_ca_name() {
         ProductionCertificateAuthority prodCa = createInitialisedProdCaWithRipeResources();
         CertificateAuthority ca1 = new HostedCertificateAuthority(1000L, new X500Principal("CN=ca"), prodCa);
@@ -63,4 +97,172 @@ public class JpaCertificateAuthorityRepositoryTest extends CertificationDomainTe
             (exception) -> assertThat(exception.getMessage()).isEqualTo("Name 'CN=ca' not unique.")
         );
     }
+
+    @Test
+    @Transactional
+    public void should_maintain_roa_count_of_ca_stat() {
+        ProductionCertificateAuthority ca = createInitialisedProdCaWithRipeResources();
+        RoaConfiguration roaConfiguration = roaConfigurationRepository.getOrCreateByCertificateAuthority(ca);
+        RoaConfigurationPrefix p1 = new RoaConfigurationPrefix(new Asn(1), IpRange.parse("10.11.0.0/16"), 16);
+        RoaConfigurationPrefix p2 = new RoaConfigurationPrefix(new Asn(2), IpRange.parse("10.12.0.0/16"), 24);
+        RoaConfigurationPrefix p3 = new RoaConfigurationPrefix(new Asn(3), IpRange.parse("2001:db8::/32"), null);
+
+        roaConfiguration.addPrefix(Arrays.asList(p1, p2, p3));
+        entityManager.flush();
+        assertThat(roaCountOf(ca)).isEqualTo(3);
+
+        roaConfiguration.removePrefix(Collections.singletonList(p2));
+        entityManager.flush();
+        assertThat(roaCountOf(ca)).isEqualTo(2);
+
+        roaConfigurationRepository.remove(roaConfiguration);
+        entityManager.flush();
+        assertThat(roaCountOf(ca)).isZero();
+    }
+
+    @Test
+    @Transactional
+    public void should_find_ca_stat_events_in_period() {
+        entityManager.createNativeQuery("DELETE FROM ca_stat_event").executeUpdate();
+        insertCaStatEvent(utc(1995, 1, 1), "CN=a", "created", 0, 0);
+        insertCaStatEvent(utc(1995, 2, 1), "CN=a", "roas", 2, 0);
+        insertCaStatEvent(utc(1995, 3, 1), "CN=a", "roas", 0, 1);
+        insertCaStatEvent(utc(1995, 4, 1), "UNKNOWN", "deleted", 0, 0);
+
+        assertThat(certificateAuthorityRepository.getCAStatEvents(null, null, 0, null)).containsExactly(
+            CaStatCaEvent.created("CN=a", format(utc(1995, 1, 1))),
+            new CaStatRoaEvent("CN=a", format(utc(1995, 2, 1)), 2, 0),
+            new CaStatRoaEvent("CN=a", format(utc(1995, 3, 1)), 0, 1),
+            CaStatCaEvent.deleted(format(utc(1995, 4, 1)))
+        );
+        // The start of the period is inclusive, the end exclusive.
+        assertThat(certificateAuthorityRepository.getCAStatEvents(utc(1995, 2, 1), utc(1995, 4, 1), 0, null)).containsExactly(
+            new CaStatRoaEvent("CN=a", format(utc(1995, 2, 1)), 2, 0),
+            new CaStatRoaEvent("CN=a", format(utc(1995, 3, 1)), 0, 1)
+        );
+        assertThat(certificateAuthorityRepository.getCAStatEvents(utc(1995, 3, 1), null, 0, null)).containsExactly(
+            new CaStatRoaEvent("CN=a", format(utc(1995, 3, 1)), 0, 1),
+            CaStatCaEvent.deleted(format(utc(1995, 4, 1)))
+        );
+        assertThat(certificateAuthorityRepository.getCAStatEvents(null, null, 1, 2)).containsExactly(
+            new CaStatRoaEvent("CN=a", format(utc(1995, 2, 1)), 2, 0),
+            new CaStatRoaEvent("CN=a", format(utc(1995, 3, 1)), 0, 1)
+        );
+        assertThat(certificateAuthorityRepository.getCAStatEvents(utc(1995, 2, 1), null, 2, 10)).containsExactly(
+            CaStatCaEvent.deleted(format(utc(1995, 4, 1)))
+        );
+    }
+
+    @Test
+    @Transactional
+    public void should_convert_command_audit_to_ca_stat_events() throws IOException {
+        ProductionCertificateAuthority ca = createInitialisedProdCaWithRipeResources();
+        entityManager.flush();
+        entityManager.createNativeQuery("DELETE FROM ca_stat_event").executeUpdate();
+        entityManager.createNativeQuery("DELETE FROM commandaudit").executeUpdate();
+        insertCommandAudit(utc(1996, 1, 1), ca, "ActivateHostedCertificateAuthorityCommand", "Created CA.");
+        insertCommandAudit(utc(1996, 2, 1), ca, "UpdateRoaConfigurationCommand",
+            "Updated ROA configuration. Additions: [asn=AS1, prefix=10.11.0.0/16, maximumLength=16], [asn=AS2, prefix=10.12.0.0/16, maximumLength=24]. Deletions: none.");
+        insertCommandAudit(utc(1996, 3, 1), ca, "UpdateRoaConfigurationCommand",
+            "Updated ROA configuration. Additions: none. Deletions: [asn=AS1, prefix=10.11.0.0/16, maximumLength=16].");
+        insertCommandAudit(utc(1996, 4, 1), ca, "CreateRoaSpecificationCommand",
+            "Created ROA specification 'spec' [asn=AS3, prefix=10.13.0.0/16, maximumLength=16], [asn=AS3, prefix=10.14.0.0/16, maximumLength=16].");
+        insertCommandAudit(utc(1996, 5, 1), ca, "DeleteRoaSpecificationCommand",
+            "Deleted ROA specification 'spec' [asn=AS3, prefix=10.13.0.0/16, maximumLength=16].");
+        insertCommandAudit(utc(1996, 6, 1), ca, "DeleteCertificateAuthorityCommand", "Deleted Certificate Authority.");
+
+        String backfill = caStatEventBackfillStatement();
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate(backfill);
+            }
+        });
+
+        String caName = ca.getName().getName();
+        assertThat(certificateAuthorityRepository.getCAStatEvents(null, null, 0, null)).containsExactly(
+            CaStatCaEvent.created(caName, format(utc(1996, 1, 1))),
+            new CaStatRoaEvent(caName, format(utc(1996, 2, 1)), 2, 0),
+            new CaStatRoaEvent(caName, format(utc(1996, 3, 1)), 0, 1),
+            new CaStatRoaEvent(caName, format(utc(1996, 4, 1)), 2, 0),
+            new CaStatRoaEvent(caName, format(utc(1996, 5, 1)), 0, 1),
+            CaStatCaEvent.deleted(format(utc(1996, 6, 1)))
+        );
+    }
+
+    @Test
+    public void should_record_ca_stat_events_of_commands() {
+        DateTime start = DateTime.now(DateTimeZone.UTC).minusSeconds(1);
+        ProductionCertificateAuthority ca = withTx(() -> createInitialisedProdCaWithRipeResources());
+
+        commandService.execute(new UpdateRoaConfigurationCommand(
+            ca.getVersionedId(),
+            Arrays.asList(
+                new RoaConfigurationPrefixData(Asn.parse("AS3333"), IpRange.parse("10.0.0.0/8"), null),
+                new RoaConfigurationPrefixData(Asn.parse("AS3334"), IpRange.parse("10.0.0.0/8"), 16)
+            ),
+            Collections.emptyList()));
+
+        String caName = ca.getName().getName();
+        List<CaStatEvent> events = withTx(() -> certificateAuthorityRepository.getCAStatEvents(start, null, 0, null));
+        assertThat(events).hasSize(1).allSatisfy(event -> {
+            assertThat(event).isInstanceOf(CaStatRoaEvent.class);
+            assertThat(event.caName).isEqualTo(caName);
+            assertThat(((CaStatRoaEvent) event).roasAdded).isEqualTo(2);
+            assertThat(((CaStatRoaEvent) event).roasDeleted).isNull();
+        });
+        assertThat(withTx(() -> roaCountOf(ca))).isEqualTo(2);
+    }
+
+    private int roaCountOf(CertificateAuthority ca) {
+        String caName = ca.getName().getName();
+        return certificateAuthorityRepository.getCAStats().stream()
+            .filter(stat -> stat.caName.equals(caName))
+            .mapToInt(stat -> stat.roas)
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("no statistics for " + caName));
+    }
+
+    private void insertCaStatEvent(DateTime executionTime, String caName, String event, int roasAdded, int roasDeleted) {
+        entityManager.createNativeQuery("INSERT INTO ca_stat_event (executiontime, ca_name, event, roas_added, roas_deleted) " +
+                "VALUES (:executionTime, :caName, :event, :roasAdded, :roasDeleted)")
+            .setParameter("executionTime", new Timestamp(executionTime.getMillis()))
+            .setParameter("caName", caName)
+            .setParameter("event", event)
+            .setParameter("roasAdded", roasAdded)
+            .setParameter("roasDeleted", roasDeleted)
+            .executeUpdate();
+    }
+
+    private void insertCommandAudit(DateTime executionTime, CertificateAuthority ca, String commandType, String commandSummary) {
+        entityManager.createNativeQuery("INSERT INTO commandaudit (id, executiontime, principal, ca_id, ca_version, commandtype, commandgroup, commandsummary) " +
+                "VALUES (nextval('seq_all'), :executionTime, 'test', :caId, 1, :commandType, 'USER', :commandSummary)")
+            .setParameter("executionTime", new Timestamp(executionTime.getMillis()))
+            .setParameter("caId", ca.getId())
+            .setParameter("commandType", commandType)
+            .setParameter("commandSummary", commandSummary)
+            .executeUpdate();
+    }
+
+    /**
+     * The statement of the migration that converted the command audit to CA statistics events.
+     */
+    private static String caStatEventBackfillStatement() throws IOException {
+        try (InputStream in = JpaCertificateAuthorityRepositoryTest.class.getResourceAsStream("/db/migration/V121__ca_statistics.sql")) {
+            String migration = IOUtils.toString(in, StandardCharsets.UTF_8);
+            int start = migration.indexOf("INSERT INTO ca_stat_event");
+            assertThat(start).isNotNegative();
+            return migration.substring(start, migration.indexOf(';', start));
+        }
+    }
+
+    private static DateTime utc(int year, int month, int day) {
+        return new DateTime(year, month, day, 0, 0, DateTimeZone.UTC);
+    }
+
+    /**
+     * The repository formats the event times in the default time zone.
+     */
+    private static String format(DateTime dateTime) {
+        return CA_STAT_DATE_FORMAT.print(dateTime.withZone(DateTimeZone.getDefault()));
+    }
 }
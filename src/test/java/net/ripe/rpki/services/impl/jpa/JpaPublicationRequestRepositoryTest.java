@@ -0,0 +1,92 @@
+package net.ripe.rpki.services.impl.jpa;
+
+import net.ripe.rpki.domain.CertificationDomainTestCase;
+import net.ripe.rpki.domain.ProductionCertificateAuthority;
+import net.ripe.rpki.domain.PublicationRequestRepository.PublicationRequest;
+import net.ripe.rpki.domain.TestObjects;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.transaction.Transactional;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+public class JpaPublicationRequestRepositoryTest extends CertificationDomainTestCase {
+
+    @Autowired
+    private JpaPublicationRequestRepository subject;
+
+    private ProductionCertificateAuthority ca;
+
+    @Before
+    public void setUp() {
+        clearDatabase();
+        ca = TestObjects.createInitialisedProdCaWithRipeResources();
+        entityManager.persist(ca);
+        entityManager.flush();
+    }
+
+    @Test
+    public void should_coalesce_requests_for_the_same_ca() {
+        subject.requestPublication(ca.getId(), "UpdateRoaConfigurationCommand");
+        subject.requestPublication(ca.getId(), "UpdateAspaConfigurationCommand");
+
+        assertThat(subject.hasPendingRequests()).isTrue();
+
+        List<PublicationRequest> found = subject.findRequests();
+        assertThat(found).hasSize(1);
+        assertThat(found.get(0).getCommandType()).isEqualTo("UpdateAspaConfigurationCommand");
+        assertThat(found.get(0).getRequestedAt()).isNotNull();
+
+        subject.removeRequests(found);
+
+        assertThat(subject.hasPendingRequests()).isFalse();
+        assertThat(subject.findRequests()).isEmpty();
+    }
+
+    @Test
+    public void should_keep_request_made_after_it_was_found() {
+        subject.requestPublication(ca.getId(), "UpdateRoaConfigurationCommand");
+        List<PublicationRequest> found = subject.findRequests();
+
+        // The CA requests publication again while the publication transaction is running.
+        subject.requestPublication(ca.getId(), "UpdateAspaConfigurationCommand");
+        subject.removeRequests(found);
+
+        assertThat(subject.hasPendingRequests()).isTrue();
+        List<PublicationRequest> remaining = subject.findRequests();
+        assertThat(remaining).hasSize(1);
+        assertThat(remaining.get(0).getCommandType()).isEqualTo("UpdateAspaConfigurationCommand");
+        assertThat(remaining.get(0).getVersion()).isNotEqualTo(found.get(0).getVersion());
+        assertThat(remaining.get(0).getRequestedAt()).isAfterOrEqualTo(found.get(0).getRequestedAt());
+    }
+
+    @Test
+    public void should_keep_time_of_oldest_pending_request() {
+        subject.requestPublication(ca.getId(), "UpdateRoaConfigurationCommand");
+        Instant requestedAt = Instant.parse("2022-10-18T12:00:00Z");
+        entityManager.createNativeQuery("UPDATE publication_request SET requested_at = :requestedAt WHERE ca_id = :caId")
+            .setParameter("requestedAt", Timestamp.from(requestedAt))
+            .setParameter("caId", ca.getId())
+            .executeUpdate();
+
+        subject.requestPublication(ca.getId(), "UpdateAspaConfigurationCommand");
+
+        List<PublicationRequest> found = subject.findRequests();
+        assertThat(found).hasSize(1);
+        assertThat(found.get(0).getCommandType()).isEqualTo("UpdateAspaConfigurationCommand");
+        assertThat(found.get(0).getRequestedAt()).isEqualTo(requestedAt);
+    }
+
+    @Test
+    public void should_ignore_requests_for_deleted_ca() {
+        subject.requestPublication(-1L, "DeleteCertificateAuthorityCommand");
+
+        assertThat(subject.hasPendingRequests()).isFalse();
+    }
+}
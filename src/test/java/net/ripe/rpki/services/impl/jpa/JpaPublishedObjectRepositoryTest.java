@@ -24,6 +24,8 @@ import java.net.URI;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static net.ripe.rpki.commons.crypto.cms.manifest.ManifestCms.hashContents;
 import static net.ripe.rpki.domain.PublicationStatus.PENDING_STATUSES;
@@ -126,13 +128,14 @@ public class JpaPublishedObjectRepositoryTest extends CertificationDomainTestCas
     }
 
     @Test
-    public void findCurrentlyPublishedObjects() {
-        List<PublishedObjectData> publishedObjects = publishedObjectRepository.findCurrentlyPublishedObjects();
+    public void streamCurrentlyPublishedObjects() {
+        List<PublishedObjectData> publishedObjects = currentlyPublishedObjects();
         assertEquals(1, publishedObjects.size());
 
         PublishedObjectData published = publishedObjects.get(0);
         assertEquals(publishedObject.getUri(), published.getUri());
         assertArrayEquals(publishedObject.getContent(), published.getContent());
+        assertArrayEquals(hashContents(publishedObject.getContent()), published.getSha256());
     }
 
     @Test
@@ -145,7 +148,7 @@ public class JpaPublishedObjectRepositoryTest extends CertificationDomainTestCas
         assertEquals(PUBLISHED, toBePublishedObject.getStatus());
         entityManager.refresh(toBePublishedTaObject);
         assertEquals(PUBLISHED, toBePublishedTaObject.getStatus());
-        assertEquals(4, publishedObjectRepository.findCurrentlyPublishedObjects().size());
+        assertEquals(4, currentlyPublishedObjects().size());
 
         // No pending objects so no updates required.
         assertEquals(0, publishedObjectRepository.findEntriesByPublicationStatus(PENDING_STATUSES).size());
@@ -156,7 +159,7 @@ public class JpaPublishedObjectRepositoryTest extends CertificationDomainTestCas
         assertEquals(1, publishedObjectRepository.findEntriesByPublicationStatus(PENDING_STATUSES).size());
         assertEquals(1, publishedObjectRepository.updatePublicationStatus());
         assertEquals(0, trustAnchorPublishedObjectRepository.updatePublicationStatus());
-        assertEquals(3, publishedObjectRepository.findCurrentlyPublishedObjects().size());
+        assertEquals(3, currentlyPublishedObjects().size());
     }
 
     @Test
@@ -241,4 +244,10 @@ public class JpaPublishedObjectRepositoryTest extends CertificationDomainTestCas
 
         assertEquals(1, publishedObjectRepository.deleteExpiredObjects(expirationTime));
     }
+
+    private List<PublishedObjectData> currentlyPublishedObjects() {
+        try (Stream<PublishedObjectData> publishedObjects = publishedObjectRepository.streamCurrentlyPublishedObjects()) {
+            return publishedObjects.collect(Collectors.toList());
+        }
+    }
 }
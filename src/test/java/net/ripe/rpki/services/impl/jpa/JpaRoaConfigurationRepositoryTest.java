@@ -15,6 +15,7 @@ import javax.transaction.Transactional;
 import java.math.BigInteger;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.assertj.core.api.BDDAssertions.then;
@@ -64,6 +65,38 @@ public class JpaRoaConfigurationRepositoryTest extends CertificationDomainTestCa
         assertEquals(3, subject.countRoaPrefixes());
     }
 
+    @Test
+    public void shouldFindAllPrefixes() {
+        RoaConfiguration roaConfig = subject.getOrCreateByCertificateAuthority(ca);
+        RoaConfigurationPrefix p1 = new RoaConfigurationPrefix(new Asn(1), IpRange.parse("10.11.0.0/16"), 24);
+        RoaConfigurationPrefix p2 = new RoaConfigurationPrefix(new Asn(2), IpRange.parse("2001:db8::/32"), null);
+        roaConfig.addPrefix(Arrays.asList(p1, p2));
+        entityManager.flush();
+
+        then(subject.findAllPrefixes()).containsExactlyInAnyOrder(p1, p2);
+    }
+
+    @Test
+    public void shouldOnlyWriteChangedPrefixRows() {
+        RoaConfiguration roaConfig = subject.getOrCreateByCertificateAuthority(ca);
+        RoaConfigurationPrefix p1 = new RoaConfigurationPrefix(new Asn(1), IpRange.parse("10.11.0.0/16"), 16);
+        RoaConfigurationPrefix p2 = new RoaConfigurationPrefix(new Asn(2), IpRange.parse("10.12.0.0/16"), 16);
+        roaConfig.addPrefix(Arrays.asList(p1, p2));
+        entityManager.flush();
+        entityManager.createNativeQuery("UPDATE roaconfiguration_prefixes SET maximum_length = 20 WHERE asn = 1").executeUpdate();
+        entityManager.clear();
+
+        RoaConfiguration reloaded = subject.findByCertificateAuthority(ca).get();
+        RoaConfigurationPrefix p3 = new RoaConfigurationPrefix(new Asn(3), IpRange.parse("10.13.0.0/16"), null);
+        reloaded.addPrefix(Collections.singleton(p3));
+        reloaded.removePrefix(Collections.singleton(p2));
+        entityManager.flush();
+
+        // The row of the untouched prefix is not deleted and re-inserted with the state of the collection
+        assertEquals(1L, countQuery("SELECT COUNT(*) FROM roaconfiguration_prefixes WHERE asn = 1 AND maximum_length = 20"));
+        assertEquals(2L, countQuery("SELECT COUNT(*) FROM roaconfiguration_prefixes"));
+    }
+
     @Test
     public void shouldReturnEmptyLastModifiedWhenEmpty() {
         then(subject.findAll()).hasSize(0);
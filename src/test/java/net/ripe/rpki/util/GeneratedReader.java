@@ -0,0 +1,49 @@
+package net.ripe.rpki.util;
+
+import java.io.Reader;
+import java.util.function.IntFunction;
+
+/**
+ * Reader that generates its text one chunk at a time while it is read, so large test input is never held in memory.
+ */
+public class GeneratedReader extends Reader {
+    private final int chunks;
+    private final IntFunction<String> generator;
+    private int next;
+    private String current = "";
+    private int position;
+    private long charactersRead;
+
+    /**
+     * @param chunks the number of chunks to generate
+     * @param generator generates the text of the chunk with the given index, starting at 0
+     */
+    public GeneratedReader(int chunks, IntFunction<String> generator) {
+        this.chunks = chunks;
+        this.generator = generator;
+    }
+
+    public long getCharactersRead() {
+        return charactersRead;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+        while (position == current.length()) {
+            if (next == chunks) {
+                return -1;
+            }
+            current = generator.apply(next++);
+            position = 0;
+        }
+        int n = Math.min(length, current.length() - position);
+        current.getChars(position, position + n, buffer, offset);
+        position += n;
+        charactersRead += n;
+        return n;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -5,6 +5,7 @@ import net.ripe.rpki.domain.CertificationDomainTestCase;
 import net.ripe.rpki.domain.HostedCertificateAuthority;
 import net.ripe.rpki.domain.ManagedCertificateAuthority;
 import net.ripe.rpki.domain.ProductionCertificateAuthority;
+import net.ripe.rpki.domain.ReconciliationReason;
 import net.ripe.rpki.domain.TestObjects;
 import org.junit.After;
 import org.junit.Before;
@@ -119,7 +120,7 @@ public class JdbcDBComponentTest extends CertificationDomainTestCase {
             assertThat(entityManager.getLockMode(ca)).isEqualTo(LockModeType.OPTIMISTIC);
 
             jdbcDbComponent.lockCertificateAuthorityForceIncrement(ca.getId());
-            ca.configurationUpdated(); // Force state change in CA so Hibernate will flush entity
+            ca.reconciliationNeeded(ReconciliationReason.ROA_CONFIGURATION); // Force state change in CA so Hibernate will flush entity
             entityManager.flush();
 
             // After flush the lock type changes to OPTIMISTIC_FORCE_INCREMENT
@@ -133,7 +134,7 @@ public class JdbcDBComponentTest extends CertificationDomainTestCase {
             final ManagedCertificateAuthority ca = (ManagedCertificateAuthority) certificateAuthorityRepository.findAll().iterator().next();
             assertThat(entityManager.getLockMode(ca)).isEqualTo(LockModeType.OPTIMISTIC);
 
-            ca.configurationUpdated(); // Force state change in CA so Hibernate will flush entity
+            ca.reconciliationNeeded(ReconciliationReason.ROA_CONFIGURATION); // Force state change in CA so Hibernate will flush entity
             entityManager.flush();
 
             // After flush the lock type changes to OPTIMISTIC_FORCE_INCREMENT